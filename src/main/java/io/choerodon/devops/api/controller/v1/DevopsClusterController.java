@@ -312,4 +312,25 @@ public class DevopsClusterController {
             @RequestParam(value = "node_name") String nodeName) {
         return new ResponseEntity<>(clusterNodeInfoService.getNodeInfo(organizationId, clusterId, nodeName), HttpStatus.OK);
     }
+
+    /**
+     * 查询节点最近的CPU和内存采样，用于趋势图
+     *
+     * @param organizationId 组织id
+     * @param clusterId      集群id
+     * @param nodeName       节点名称
+     * @return 按时间顺序排列的采样
+     */
+    @Permission(level = ResourceLevel.ORGANIZATION, roles = {InitRoleCode.ORGANIZATION_ADMINISTRATOR})
+    @ApiOperation(value = "查询节点最近的CPU和内存采样")
+    @GetMapping(value = "/node_metrics")
+    public ResponseEntity<List<ClusterNodeMetricDTO>> listNodeMetrics(
+            @ApiParam(value = "组织ID", required = true)
+            @PathVariable(value = "organization_id") Long organizationId,
+            @ApiParam(value = "集群id", required = true)
+            @RequestParam(value = "cluster_id") Long clusterId,
+            @ApiParam(value = "节点名称", required = true)
+            @RequestParam(value = "node_name") String nodeName) {
+        return new ResponseEntity<>(clusterNodeInfoService.listNodeMetrics(organizationId, clusterId, nodeName), HttpStatus.OK);
+    }
 }
@@ -0,0 +1,66 @@
+package io.choerodon.devops.api.dto;
+
+/**
+ * one sample of the cpu and memory usage of a node, used for trend charts
+ *
+ * @author zmf
+ */
+public class ClusterNodeMetricDTO {
+    private String time;
+
+    private String cpuRequestPercentage;
+    private String cpuLimitPercentage;
+
+    private String memoryRequestPercentage;
+    private String memoryLimitPercentage;
+
+    private String podPercentage;
+
+    public String getTime() {
+        return time;
+    }
+
+    public void setTime(String time) {
+        this.time = time;
+    }
+
+    public String getCpuRequestPercentage() {
+        return cpuRequestPercentage;
+    }
+
+    public void setCpuRequestPercentage(String cpuRequestPercentage) {
+        this.cpuRequestPercentage = cpuRequestPercentage;
+    }
+
+    public String getCpuLimitPercentage() {
+        return cpuLimitPercentage;
+    }
+
+    public void setCpuLimitPercentage(String cpuLimitPercentage) {
+        this.cpuLimitPercentage = cpuLimitPercentage;
+    }
+
+    public String getMemoryRequestPercentage() {
+        return memoryRequestPercentage;
+    }
+
+    public void setMemoryRequestPercentage(String memoryRequestPercentage) {
+        this.memoryRequestPercentage = memoryRequestPercentage;
+    }
+
+    public String getMemoryLimitPercentage() {
+        return memoryLimitPercentage;
+    }
+
+    public void setMemoryLimitPercentage(String memoryLimitPercentage) {
+        this.memoryLimitPercentage = memoryLimitPercentage;
+    }
+
+    public String getPodPercentage() {
+        return podPercentage;
+    }
+
+    public void setPodPercentage(String podPercentage) {
+        this.podPercentage = podPercentage;
+    }
+}
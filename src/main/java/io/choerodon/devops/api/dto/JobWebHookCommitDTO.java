@@ -0,0 +1,25 @@
+package io.choerodon.devops.api.dto;
+
+/**
+ * job webhook中的commit信息，其中id为job所属pipeline的id
+ */
+public class JobWebHookCommitDTO {
+    private Long id;
+    private String sha;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getSha() {
+        return sha;
+    }
+
+    public void setSha(String sha) {
+        this.sha = sha;
+    }
+}
@@ -1,12 +1,19 @@
 package io.choerodon.devops.api.dto;
 
+import java.util.Date;
+
 public class JobWebHookDTO {
 
     private String sha;
     private String ref;
+    private Long buildId;
     private String buildName;
     private String buildStage;
     private String buildStatus;
+    private Date buildStartedAt;
+    private Date buildFinishedAt;
+    private Long pipelineId;
+    private JobWebHookCommitDTO commit;
 
     public String getSha() {
         return sha;
@@ -47,4 +54,44 @@ public class JobWebHookDTO {
     public void setRef(String ref) {
         this.ref = ref;
     }
+
+    public Long getBuildId() {
+        return buildId;
+    }
+
+    public void setBuildId(Long buildId) {
+        this.buildId = buildId;
+    }
+
+    public Date getBuildStartedAt() {
+        return buildStartedAt;
+    }
+
+    public void setBuildStartedAt(Date buildStartedAt) {
+        this.buildStartedAt = buildStartedAt;
+    }
+
+    public Date getBuildFinishedAt() {
+        return buildFinishedAt;
+    }
+
+    public void setBuildFinishedAt(Date buildFinishedAt) {
+        this.buildFinishedAt = buildFinishedAt;
+    }
+
+    public Long getPipelineId() {
+        return pipelineId;
+    }
+
+    public void setPipelineId(Long pipelineId) {
+        this.pipelineId = pipelineId;
+    }
+
+    public JobWebHookCommitDTO getCommit() {
+        return commit;
+    }
+
+    public void setCommit(JobWebHookCommitDTO commit) {
+        this.commit = commit;
+    }
 }
@@ -1,8 +1,11 @@
 package io.choerodon.devops.api.dto;
 
+import java.util.List;
+
 public class PipelineWebHookDTO {
     private PipelineWebHookAttributesDTO objectAttributes;
     private PipelineWebHookUserDTO user;
+    private List<PipelineWebHookBuildDTO> builds;
     private String token;
 
     public PipelineWebHookAttributesDTO getObjectAttributes() {
@@ -21,6 +24,14 @@ public class PipelineWebHookDTO {
         this.user = user;
     }
 
+    public List<PipelineWebHookBuildDTO> getBuilds() {
+        return builds;
+    }
+
+    public void setBuilds(List<PipelineWebHookBuildDTO> builds) {
+        this.builds = builds;
+    }
+
     public String getToken() {
         return token;
     }
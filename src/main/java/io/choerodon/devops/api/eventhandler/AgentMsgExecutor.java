@@ -0,0 +1,128 @@
+package io.choerodon.devops.api.eventhandler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.zaxxer.hikari.util.UtilityElf;
+import io.choerodon.devops.infra.config.AgentMessageProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按分区键(集群+环境)将agent消息分发到单线程的分区队列中处理，
+ * 同一分区键的消息保持有序，不同集群、不同环境之间并行处理。
+ * 分区队列满时阻塞提交消息的websocket读线程直到有空位，消息不会被丢弃
+ */
+@Component
+public class AgentMsgExecutor implements PublicMetrics, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentMsgExecutor.class);
+    private static final String METRIC_PREFIX = "agent.message.";
+
+    private final ThreadPoolExecutor[] partitions;
+    private final long offerTimeoutMs;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong backpressure = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @Autowired
+    public AgentMsgExecutor(AgentMessageProperties agentMessageProperties) {
+        this.offerTimeoutMs = agentMessageProperties.getOfferTimeoutMs();
+        this.partitions = new ThreadPoolExecutor[agentMessageProperties.getPartitions()];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new ThreadPoolExecutor(1, 1,
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(agentMessageProperties.getQueueCapacity()),
+                    new UtilityElf.DefaultThreadFactory("agent-msg-" + i, true),
+                    this::waitForCapacity);
+        }
+    }
+
+    /**
+     * 提交消息处理任务
+     *
+     * @param partitionKey 分区键，相同分区键的任务按提交顺序执行
+     * @param description  任务描述，用于日志
+     * @param task         处理任务
+     * @return 服务关闭或等待时线程被中断返回false，任务未提交
+     */
+    public boolean execute(String partitionKey, String description, Runnable task) {
+        ThreadPoolExecutor partition = partitions[Math.floorMod(partitionKey.hashCode(), partitions.length)];
+        try {
+            partition.execute(() -> runSafely(description, task));
+            submitted.incrementAndGet();
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            logger.error("agent message executor is shutting down, message not handled: {}", description);
+            return false;
+        }
+    }
+
+    void runSafely(String description, Runnable task) {
+        try {
+            task.run();
+            completed.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            logger.error("handle agent message failed: {}", description, e);
+        }
+    }
+
+    /**
+     * 分区队列满时阻塞等待入队，等待超过offerTimeoutMs时记录告警后继续等待
+     */
+    private void waitForCapacity(Runnable task, ThreadPoolExecutor executor) {
+        backpressure.incrementAndGet();
+        try {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException();
+            }
+            if (executor.getQueue().offer(task, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            logger.warn("agent message queue is full, waiting for capacity, queue size: {}", executor.getQueue().size());
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "submitted", submitted.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "completed", completed.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "failed", failed.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "backpressure", backpressure.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "rejected", rejected.get()));
+        for (int i = 0; i < partitions.length; i++) {
+            metrics.add(new Metric<>(METRIC_PREFIX + "queue." + i, partitions[i].getQueue().size()));
+        }
+        return metrics;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        for (ThreadPoolExecutor partition : partitions) {
+            partition.shutdown();
+        }
+        for (ThreadPoolExecutor partition : partitions) {
+            partition.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package io.choerodon.devops.api.eventhandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.zaxxer.hikari.util.UtilityElf;
+import io.choerodon.devops.infra.config.AgentMessageProperties;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 在合并窗口内缓存resource_update消息，同一资源key只保留resourceVersion最大的一条，
+ * 窗口结束后按分区批量提交到{@link AgentMsgExecutor}处理。
+ * 一批消息在同一个事务中写入，每条消息使用一个保存点，单条失败只回滚该条
+ */
+@Component
+public class ResourceUpdateCoalescer implements PublicMetrics, DisposableBean {
+
+    private static final String METRIC_PREFIX = "agent.message.coalesce.";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String METADATA = "metadata";
+    private static final String RESOURCE_VERSION = "resourceVersion";
+    /**
+     * 无法解析resourceVersion时优先级最低，不会替换有效的消息，只按到达顺序替换同样无法解析的消息
+     */
+    private static final long UNKNOWN_VERSION = Long.MIN_VALUE;
+
+    private final AgentMsgExecutor agentMsgExecutor;
+    private final int maxPending;
+    private final Map<String, Map<String, PendingUpdate>> pendingByPartition = new HashMap<>();
+    /**
+     * 分区提交锁，保证同一分区取出缓存和提交任务的顺序一致，提交阻塞时不影响其它分区
+     */
+    private final ConcurrentMap<String, Object> partitionLocks = new ConcurrentHashMap<>();
+    private final TransactionTemplate batchTransaction;
+    private final TransactionTemplate updateTransaction;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private int pendingCount;
+
+    public ResourceUpdateCoalescer(AgentMsgExecutor agentMsgExecutor, AgentMessageProperties agentMessageProperties) {
+        this(agentMsgExecutor, agentMessageProperties, null);
+    }
+
+    @Autowired
+    public ResourceUpdateCoalescer(AgentMsgExecutor agentMsgExecutor, AgentMessageProperties agentMessageProperties,
+                                   PlatformTransactionManager transactionManager) {
+        this.agentMsgExecutor = agentMsgExecutor;
+        if (transactionManager != null) {
+            batchTransaction = new TransactionTemplate(transactionManager);
+            updateTransaction = new TransactionTemplate(transactionManager);
+            updateTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        } else {
+            batchTransaction = null;
+            updateTransaction = null;
+        }
+        long windowMs = agentMessageProperties.getCoalesceWindowMs();
+        this.maxPending = agentMessageProperties.getCoalesceMaxPending();
+        if (windowMs > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(
+                    new UtilityElf.DefaultThreadFactory("agent-msg-coalesce", true));
+            scheduler.scheduleWithFixedDelay(this::flushAll, windowMs, windowMs, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * 缓存一条resource_update消息
+     *
+     * @param partitionKey 分区键
+     * @param resourceKey  资源key
+     * @param payload      消息内容，用于读取resourceVersion
+     * @param description  任务描述
+     * @param task         处理任务
+     * @return 未开启合并时返回false，调用方需要自行处理该消息
+     */
+    public boolean offer(String partitionKey, String resourceKey, String payload, String description, Runnable task) {
+        if (scheduler == null) {
+            return false;
+        }
+        received.incrementAndGet();
+        PendingUpdate update = new PendingUpdate(getResourceVersion(payload), description, task);
+        boolean full;
+        synchronized (pendingByPartition) {
+            Map<String, PendingUpdate> pending = pendingByPartition.computeIfAbsent(partitionKey, k -> new LinkedHashMap<>());
+            PendingUpdate previous = pending.get(resourceKey);
+            if (previous == null) {
+                pending.put(resourceKey, update);
+                pendingCount++;
+            } else {
+                superseded.incrementAndGet();
+                if (update.resourceVersion >= previous.resourceVersion) {
+                    // 保证刷新时该资源的位置与最后一次收到的消息一致
+                    pending.remove(resourceKey);
+                    pending.put(resourceKey, update);
+                }
+            }
+            full = pendingCount >= maxPending;
+        }
+        if (full) {
+            flushAll();
+        }
+        return true;
+    }
+
+    /**
+     * 先提交某个分区缓存的resource_update消息，再提交该分区的其它消息，保证分区内的处理顺序
+     *
+     * @param partitionKey 分区键
+     * @param description  任务描述
+     * @param task         处理任务
+     */
+    public void flushAndExecute(String partitionKey, String description, Runnable task) {
+        if (scheduler == null) {
+            agentMsgExecutor.execute(partitionKey, description, task);
+            return;
+        }
+        synchronized (partitionLock(partitionKey)) {
+            flushPartition(partitionKey);
+            agentMsgExecutor.execute(partitionKey, description, task);
+        }
+    }
+
+    private void flushAll() {
+        List<String> partitionKeys;
+        synchronized (pendingByPartition) {
+            partitionKeys = new ArrayList<>(pendingByPartition.keySet());
+        }
+        partitionKeys.forEach(partitionKey -> {
+            synchronized (partitionLock(partitionKey)) {
+                flushPartition(partitionKey);
+            }
+        });
+    }
+
+    /**
+     * 在全局锁内只取出分区的缓存，提交任务时不持有全局锁，分区队列满时只阻塞当前分区
+     */
+    private void flushPartition(String partitionKey) {
+        Map<String, PendingUpdate> pending;
+        synchronized (pendingByPartition) {
+            pending = pendingByPartition.remove(partitionKey);
+            if (pending != null) {
+                pendingCount -= pending.size();
+            }
+        }
+        if (pending != null && !pending.isEmpty()) {
+            submit(partitionKey, new ArrayList<>(pending.values()));
+        }
+    }
+
+    private Object partitionLock(String partitionKey) {
+        return partitionLocks.computeIfAbsent(partitionKey, k -> new Object());
+    }
+
+    private void submit(String partitionKey, List<PendingUpdate> updates) {
+        batches.incrementAndGet();
+        agentMsgExecutor.execute(partitionKey, "resource_update batch of " + updates.size() + " on " + partitionKey,
+                () -> {
+                    if (batchTransaction == null) {
+                        updates.forEach(update -> agentMsgExecutor.runSafely(update.description, update.task));
+                    } else {
+                        batchTransaction.execute(status -> {
+                            updates.forEach(update -> agentMsgExecutor.runSafely(update.description,
+                                    () -> updateTransaction.execute(updateStatus -> {
+                                        update.task.run();
+                                        return null;
+                                    })));
+                            return null;
+                        });
+                    }
+                });
+    }
+
+    /**
+     * 读取消息中metadata.resourceVersion，只解析顶层metadata，不会取到嵌套对象中的resourceVersion
+     */
+    long getResourceVersion(String payload) {
+        if (payload != null) {
+            try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+                if (parser.nextToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.getCurrentName();
+                        JsonToken value = parser.nextToken();
+                        if (METADATA.equals(field) && value == JsonToken.START_OBJECT) {
+                            return getResourceVersion(parser);
+                        }
+                        parser.skipChildren();
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                return UNKNOWN_VERSION;
+            }
+        }
+        return UNKNOWN_VERSION;
+    }
+
+    private long getResourceVersion(JsonParser metadataParser) throws IOException {
+        while (metadataParser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = metadataParser.getCurrentName();
+            JsonToken value = metadataParser.nextToken();
+            if (RESOURCE_VERSION.equals(field) && value == JsonToken.VALUE_STRING) {
+                return Long.parseLong(metadataParser.getText());
+            }
+            metadataParser.skipChildren();
+        }
+        return UNKNOWN_VERSION;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "received", received.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "superseded", superseded.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "batches", batches.get()));
+        synchronized (pendingByPartition) {
+            metrics.add(new Metric<>(METRIC_PREFIX + "pending", pendingCount));
+        }
+        return metrics;
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            flushAll();
+        }
+    }
+
+    private static class PendingUpdate {
+        private final long resourceVersion;
+        private final String description;
+        private final Runnable task;
+
+        PendingUpdate(long resourceVersion, String description, Runnable task) {
+            this.resourceVersion = resourceVersion;
+            this.description = description;
+            this.task = task;
+        }
+    }
+}
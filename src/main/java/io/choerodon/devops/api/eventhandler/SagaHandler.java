@@ -20,6 +20,7 @@ import io.choerodon.devops.domain.application.event.GitlabGroupPayload;
 import io.choerodon.devops.domain.application.event.HarborPayload;
 import io.choerodon.devops.domain.application.event.OrganizationEventPayload;
 import io.choerodon.devops.domain.application.event.ProjectEvent;
+import io.choerodon.devops.domain.application.repository.IamRepository;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 
 /**
@@ -39,16 +40,19 @@ public class SagaHandler {
     private final OrganizationService organizationService;
     private final GitlabGroupMemberService gitlabGroupMemberService;
     private final GitlabUserService gitlabUserService;
+    private final IamRepository iamRepository;
 
     @Autowired
     public SagaHandler(ProjectService projectService, GitlabGroupService gitlabGroupService,
                        HarborService harborService, OrganizationService organizationService,
-                       GitlabGroupMemberService gitlabGroupMemberService, GitlabUserService gitlabUserService) {
+                       GitlabGroupMemberService gitlabGroupMemberService, GitlabUserService gitlabUserService,
+                       IamRepository iamRepository) {
         this.gitlabGroupService = gitlabGroupService;
         this.harborService = harborService;
         this.organizationService = organizationService;
         this.gitlabGroupMemberService = gitlabGroupMemberService;
         this.gitlabUserService = gitlabUserService;
+        this.iamRepository = iamRepository;
     }
 
     private void loggerInfo(Object o) {
@@ -63,6 +67,7 @@ public class SagaHandler {
             seq = 1)
     public String handleGitlabGroupEvent(String msg) {
         ProjectEvent projectEvent = gson.fromJson(msg, ProjectEvent.class);
+        iamRepository.evictProjectCache(projectEvent.getProjectId());
         GitlabGroupPayload gitlabGroupPayload = new GitlabGroupPayload();
         BeanUtils.copyProperties(projectEvent, gitlabGroupPayload);
         loggerInfo(gitlabGroupPayload);
@@ -95,6 +100,7 @@ public class SagaHandler {
             seq = 1)
     public String handleUpdateGitlabGroupEvent(String msg) {
         ProjectEvent projectEvent = gson.fromJson(msg, ProjectEvent.class);
+        iamRepository.evictProjectCache(projectEvent.getProjectId());
         GitlabGroupPayload gitlabGroupPayload = new GitlabGroupPayload();
         BeanUtils.copyProperties(projectEvent, gitlabGroupPayload);
         loggerInfo(gitlabGroupPayload);
@@ -146,6 +152,7 @@ public class SagaHandler {
     public String handleOrganizationCreateEvent(String payload) {
         OrganizationEventPayload organizationEventPayload = gson.fromJson(payload, OrganizationEventPayload.class);
         loggerInfo(organizationEventPayload);
+        iamRepository.evictOrganizationCache(organizationEventPayload.getId());
         organizationService.create(organizationEventPayload);
         return payload;
     }
@@ -161,6 +168,7 @@ public class SagaHandler {
                 new TypeToken<List<GitlabGroupMemberDTO>>() {
                 }.getType());
         loggerInfo(gitlabGroupMemberDTOList);
+        gitlabGroupMemberDTOList.forEach(t -> iamRepository.evictUserRoleCache(t.getUserId()));
         gitlabGroupMemberService.createGitlabGroupMemberRole(gitlabGroupMemberDTOList);
         return gitlabGroupMemberDTOList;
     }
@@ -176,6 +184,7 @@ public class SagaHandler {
                 new TypeToken<List<GitlabGroupMemberDTO>>() {
                 }.getType());
         loggerInfo(gitlabGroupMemberDTOList);
+        gitlabGroupMemberDTOList.forEach(t -> iamRepository.evictUserRoleCache(t.getUserId()));
         gitlabGroupMemberService.deleteGitlabGroupMemberRole(gitlabGroupMemberDTOList);
         return gitlabGroupMemberDTOList;
     }
@@ -191,6 +200,7 @@ public class SagaHandler {
         }.getType());
         loggerInfo(gitlabUserDTO);
         gitlabUserDTO.forEach(t -> {
+            iamRepository.evictUserCache(TypeUtil.objToLong(t.getId()));
             GitlabUserRequestDTO gitlabUserReqDTO = new GitlabUserRequestDTO();
             gitlabUserReqDTO.setProvider("oauth2_generic");
             gitlabUserReqDTO.setExternUid(t.getId());
@@ -215,6 +225,7 @@ public class SagaHandler {
     public String handleUpdateUserEvent(String payload) {
         GitlabUserDTO gitlabUserDTO = gson.fromJson(payload, GitlabUserDTO.class);
         loggerInfo(gitlabUserDTO);
+        iamRepository.evictUserCache(TypeUtil.objToLong(gitlabUserDTO.getId()));
 
         GitlabUserRequestDTO gitlabUserReqDTO = new GitlabUserRequestDTO();
         gitlabUserReqDTO.setProvider("oauth2_generic");
@@ -239,6 +250,7 @@ public class SagaHandler {
     public String handleIsEnabledUserEvent(String payload) {
         GitlabUserDTO gitlabUserDTO = gson.fromJson(payload, GitlabUserDTO.class);
         loggerInfo(gitlabUserDTO);
+        iamRepository.evictUserCache(TypeUtil.objToLong(gitlabUserDTO.getId()));
 
         gitlabUserService.isEnabledGitlabUser(TypeUtil.objToInteger(gitlabUserDTO.getId()));
         return payload;
@@ -253,6 +265,7 @@ public class SagaHandler {
     public String handleDisEnabledUserEvent(String payload) {
         GitlabUserDTO gitlabUserDTO = gson.fromJson(payload, GitlabUserDTO.class);
         loggerInfo(gitlabUserDTO);
+        iamRepository.evictUserCache(TypeUtil.objToLong(gitlabUserDTO.getId()));
 
         gitlabUserService.disEnabledGitlabUser(TypeUtil.objToInteger(gitlabUserDTO.getId()));
         return payload;
@@ -267,6 +280,7 @@ public class SagaHandler {
     public String registerOrganization(String payload) {
         RegisterOrganizationDTO registerOrganizationDTO = gson.fromJson(payload, RegisterOrganizationDTO.class);
         loggerInfo(registerOrganizationDTO);
+        iamRepository.evictOrganizationCache(registerOrganizationDTO.getOrganizationId());
 
         organizationService.registerOrganization(registerOrganizationDTO);
         return payload;
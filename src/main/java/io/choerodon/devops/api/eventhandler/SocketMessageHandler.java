@@ -20,12 +20,16 @@ import org.springframework.stereotype.Component;
 public class SocketMessageHandler extends AbstractAgentMsgHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(SocketMessageHandler.class);
+    private static final String ENV = "env";
 
     private DeployMsgHandlerService deployMsgHandlerService;
+    private ResourceUpdateCoalescer resourceUpdateCoalescer;
 
     @Autowired
-    public SocketMessageHandler(DeployMsgHandlerService deployMsgHandlerService) {
+    public SocketMessageHandler(DeployMsgHandlerService deployMsgHandlerService,
+                                ResourceUpdateCoalescer resourceUpdateCoalescer) {
         this.deployMsgHandlerService = deployMsgHandlerService;
+        this.resourceUpdateCoalescer = resourceUpdateCoalescer;
     }
 
     @Override
@@ -38,6 +42,29 @@ public class SocketMessageHandler extends AbstractAgentMsgHandler {
             logger.debug(msg.toString());
         }
         msg.setDispatch(false);
+        String partitionKey = getPartitionKey(msg);
+        String description = helmType.toValue() + " " + msg.getKey();
+        if (helmType == HelmType.RESOURCE_UPDATE && resourceUpdateCoalescer.offer(
+                partitionKey, msg.getKey(), msg.getPayload(), description, () -> handle(helmType, msg))) {
+            return;
+        }
+        // 先提交该分区内被合并的resource_update消息，保证处理顺序
+        resourceUpdateCoalescer.flushAndExecute(partitionKey, description, () -> handle(helmType, msg));
+    }
+
+    /**
+     * 同一集群同一环境的消息使用相同的分区键，不带环境信息的消息按集群分区
+     */
+    private String getPartitionKey(Msg msg) {
+        String key = msg.getKey();
+        String namespace = "";
+        if (key != null && key.contains(ENV + ":")) {
+            namespace = KeyParseTool.getValue(key, ENV);
+        }
+        return msg.getClusterId() + ":" + namespace;
+    }
+
+    private void handle(HelmType helmType, Msg msg) {
         switch (helmType) {
             case HELM_RELEASE_PRE_INSTALL:
                 deployMsgHandlerService.handlerPreInstall(
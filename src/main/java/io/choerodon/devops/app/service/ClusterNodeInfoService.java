@@ -3,6 +3,7 @@ package io.choerodon.devops.app.service;
 import io.choerodon.core.domain.Page;
 import io.choerodon.devops.api.dto.AgentNodeInfoDTO;
 import io.choerodon.devops.api.dto.ClusterNodeInfoDTO;
+import io.choerodon.devops.api.dto.ClusterNodeMetricDTO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
 import java.util.List;
@@ -58,4 +59,14 @@ public interface ClusterNodeInfoService {
      * @return the node information
      */
     ClusterNodeInfoDTO getNodeInfo(Long organizationId, Long clusterId, String nodeName);
+
+    /**
+     * list the recent cpu and memory samples of a node in time order
+     *
+     * @param organizationId organization id
+     * @param clusterId      the cluster id
+     * @param nodeName       the node name
+     * @return the samples, oldest first
+     */
+    List<ClusterNodeMetricDTO> listNodeMetrics(Long organizationId, Long clusterId, String nodeName);
 }
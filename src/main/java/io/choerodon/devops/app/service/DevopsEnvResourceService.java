@@ -4,6 +4,7 @@ import java.util.List;
 
 import io.choerodon.devops.api.dto.DevopsEnvResourceDTO;
 import io.choerodon.devops.api.dto.InstanceEventDTO;
+import io.choerodon.devops.domain.application.entity.DevopsEnvResourceDetailE;
 
 /**
  * Created by younger on 2018/4/25.
@@ -21,4 +22,21 @@ public interface DevopsEnvResourceService {
     DevopsEnvResourceDTO listResourcesInHelmRelease(Long instanceId);
 
     List<InstanceEventDTO> listInstancePodEvent(Long instanceId);
+
+    /**
+     * 根据资源信息生成资源摘要，在保存资源详情前调用，查询实例资源时直接使用摘要而不再解析资源信息
+     *
+     * @param kind                     资源类型
+     * @param devopsEnvResourceDetailE 资源详情，生成的摘要写入其中
+     */
+    void fillResourceSummary(String kind, DevopsEnvResourceDetailE devopsEnvResourceDetailE);
+
+    /**
+     * 为一批升级前保存的资源详情生成摘要
+     *
+     * @param lastDetailId 上一批最后的资源详情id，从此id之后开始
+     * @param size         每批条数
+     * @return 本批最后的资源详情id，没有需要生成摘要的数据时返回null
+     */
+    Long fillResourceSummaries(Long lastDetailId, int size);
 }
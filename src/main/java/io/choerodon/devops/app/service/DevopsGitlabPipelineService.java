@@ -18,5 +18,9 @@ public interface DevopsGitlabPipelineService {
 
     void handleCreate(PipelineWebHookDTO pipelineWebHookDTO);
 
+    void reconcilePipelines();
+
+    void backfillPipelineDuration();
+
     Page<DevopsGitlabPipelineDTO> pagePipelines(Long appId, String branch, PageRequest pageRequest, Date startTime, Date endTime);
 }
@@ -40,7 +40,6 @@ import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 import io.choerodon.websocket.Msg;
 import io.choerodon.websocket.helper.CommandSender;
 import io.choerodon.websocket.helper.EnvListener;
-import io.choerodon.websocket.helper.EnvSession;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -64,14 +63,14 @@ public class ApplicationInstanceServiceImpl implements ApplicationInstanceServic
     private static final String RELEASE_NAME = "ReleaseName";
     private static Gson gson = new Gson();
 
-    @Value("${agent.version}")
-    private String agentExpectVersion;
     @Value("${services.helm.url}")
     private String helmUrl;
     @Value("${services.gitlab.url}")
     private String gitlabUrl;
     @Value("${services.gitlab.sshUrl}")
     private String gitlabSshUrl;
+    @Value("${values.inProcess:false}")
+    private Boolean valuesInProcess;
 
     @Autowired
     private DevopsEnvFileResourceRepository devopsEnvFileResourceRepository;
@@ -115,18 +114,18 @@ public class ApplicationInstanceServiceImpl implements ApplicationInstanceServic
     private DevopsEnvUserPermissionRepository devopsEnvUserPermissionRepository;
     @Autowired
     private CheckOptionsHandler checkOptionsHandler;
+    @Autowired
+    private ReplaceResultCache replaceResultCache;
 
 
     @Override
     public Page<DevopsEnvPreviewInstanceDTO> listApplicationInstance(Long projectId, PageRequest pageRequest,
                                                                      Long envId, Long versionId, Long appId, String params) {
-        Map<String, EnvSession> envs = envListener.connectedEnv();
-
         Page<ApplicationInstanceE> applicationInstanceEPage = applicationInstanceRepository.listApplicationInstance(
                 projectId, pageRequest, envId, versionId, appId, params);
 
         List<ApplicationInstanceE> applicationInstanceES = applicationInstanceEPage.getContent();
-        setInstanceConnect(applicationInstanceES, envs);
+        setInstanceConnect(applicationInstanceES);
 
         Page<ApplicationInstanceDTO> applicationInstanceDTOS = ConvertPageHelper
                 .convertPage(applicationInstanceEPage, ApplicationInstanceDTO.class);
@@ -561,14 +560,13 @@ public class ApplicationInstanceServiceImpl implements ApplicationInstanceServic
     public DevopsEnvPreviewDTO listByEnv(Long projectId, Long envId, String params) {
         Map<String, Object> maps = gson.fromJson(params, new TypeToken<Map<String, Object>>() {
         }.getType());
-        Map<String, EnvSession> envs = envListener.connectedEnv();
         Map<String, Object> searchParamMap = TypeUtil.cast(maps.get(TypeUtil.SEARCH_PARAM));
         String paramMap = TypeUtil.cast(maps.get(TypeUtil.PARAM));
         List<ApplicationInstanceDO> applicationInstancesDOS = applicationInstanceMapper
                 .listApplicationInstance(projectId, envId, null, null, searchParamMap, paramMap);
         List<ApplicationInstanceE> applicationInstanceES = ConvertHelper
                 .convertList(applicationInstancesDOS, ApplicationInstanceE.class);
-        setInstanceConnect(applicationInstanceES, envs);
+        setInstanceConnect(applicationInstanceES);
         Map<String, List<ApplicationInstanceE>> resultMaps = applicationInstanceES.stream()
                 .collect(Collectors.groupingBy(t -> t.getApplicationE().getName()));
         DevopsEnvPreviewDTO devopsEnvPreviewDTO = new DevopsEnvPreviewDTO();
@@ -1097,17 +1095,21 @@ public class ApplicationInstanceServiceImpl implements ApplicationInstanceServic
         return errorLines;
     }
 
-    private void setInstanceConnect(List<ApplicationInstanceE> applicationInstanceES,
-                                    Map<String, EnvSession> envSessionMap) {
-        applicationInstanceES.forEach(applicationInstanceE ->
-                applicationInstanceE.setConnect(envSessionMap.entrySet().stream()
-                        .anyMatch(entry -> {
-                            EnvSession envSession = entry.getValue();
-                            DevopsEnvironmentE devopsEnvironmentE = devopsEnvironmentRepository
-                                    .queryById(applicationInstanceE.getDevopsEnvironmentE().getId());
-                            return envSession.getClusterId().equals(devopsEnvironmentE.getClusterE().getId())
-                                    && EnvUtil.compareVersion(envSession.getVersion(), agentExpectVersion) != 1;
-                        })));
+    private void setInstanceConnect(List<ApplicationInstanceE> applicationInstanceES) {
+        if (applicationInstanceES.isEmpty()) {
+            return;
+        }
+        Set<Long> connectedClusterIds = envUtil.getConnectedAndUpdatedClusterIds(envListener);
+        Set<Long> envIds = applicationInstanceES.stream()
+                .map(applicationInstanceE -> applicationInstanceE.getDevopsEnvironmentE().getId())
+                .collect(Collectors.toSet());
+        Map<Long, Long> envClusterIds = new HashMap<>();
+        devopsEnvironmentRepository.listByIds(envIds).forEach(devopsEnvironmentE ->
+                envClusterIds.put(devopsEnvironmentE.getId(), devopsEnvironmentE.getClusterE().getId()));
+        applicationInstanceES.forEach(applicationInstanceE -> {
+            Long clusterId = envClusterIds.get(applicationInstanceE.getDevopsEnvironmentE().getId());
+            applicationInstanceE.setConnect(clusterId != null && connectedClusterIds.contains(clusterId));
+        });
     }
 
     private C7nHelmRelease getC7NHelmRelease(String code, ApplicationVersionE applicationVersionE,
@@ -1134,6 +1136,17 @@ public class ApplicationInstanceServiceImpl implements ApplicationInstanceServic
             return replaceResult;
         }
 
+        return replaceResultCache.get(versionValue, deployValue, () -> {
+            // 进程内合并与values_yaml脚本的一致性验证通过前，默认仍调用脚本
+            ReplaceResult replaceResult = Boolean.TRUE.equals(valuesInProcess)
+                    ? ValuesYamlUtil.merge(versionValue, deployValue)
+                    : replaceByScript(versionValue, deployValue);
+            replaceResult.setTotalLine(FileUtil.getFileTotalLine(replaceResult.getYaml()));
+            return replaceResult;
+        });
+    }
+
+    private ReplaceResult replaceByScript(String versionValue, String deployValue) {
         String fileName = GenerateUUID.generateUUID() + YAML_SUFFIX;
         String path = "deployfile";
         FileUtil.saveDataToFile(path, fileName, versionValue + "\n" + "---" + "\n" + deployValue);
@@ -1142,12 +1155,12 @@ public class ApplicationInstanceServiceImpl implements ApplicationInstanceServic
             replaceResult = FileUtil.replaceNew(path + System.getProperty(FILE_SEPARATOR) + fileName);
         } catch (Exception e) {
             throw new CommonException(e.getMessage(), e);
+        } finally {
+            FileUtil.deleteFile(path + System.getProperty(FILE_SEPARATOR) + fileName);
         }
         if (replaceResult.getHighlightMarkers() == null) {
             replaceResult.setHighlightMarkers(new ArrayList<>());
         }
-        replaceResult.setTotalLine(FileUtil.getFileTotalLine(replaceResult.getYaml()));
-        FileUtil.deleteFile(path + System.getProperty(FILE_SEPARATOR) + fileName);
         return replaceResult;
     }
 
@@ -1,10 +1,20 @@
 package io.choerodon.devops.app.service.impl;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import com.google.gson.Gson;
+import com.zaxxer.hikari.util.UtilityElf;
 import io.choerodon.core.convertor.ConvertHelper;
 import io.choerodon.core.convertor.ConvertPageHelper;
 import io.choerodon.core.domain.Page;
@@ -28,6 +38,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 /**
@@ -45,6 +57,16 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
     private static final String FILE_SEPARATOR = "/";
     private static final Logger logger = LoggerFactory.getLogger(ApplicationMarketServiceImpl.class);
 
+    private static final String VALUES_YAML = "values.yaml";
+    private static final String README = "README.md";
+    // 导出时下载chart包、导入时读取chart包的线程池
+    private static final ExecutorService MARKET_EXECUTOR = new ThreadPoolExecutor(8, 8,
+            60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), new UtilityElf.DefaultThreadFactory("market-file", true));
+
+    // 导出时同时下载的chart包个数，下载的内容写入zip前保存在内存中
+    private static final int EXPORT_DOWNLOADS = 4;
+
     private static Gson gson = new Gson();
 
     @Value("${services.gitlab.url}")
@@ -64,6 +86,8 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
     private HarborConfigurationProperties harborConfigurationProperties;
     @Autowired
     private ApplicationVersionValueRepository applicationVersionValueRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
 
     @Override
     public Long release(Long projectId, ApplicationReleasingDTO applicationReleasingDTO) {
@@ -413,47 +437,146 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
         Organization organization = iamRepository.queryOrganizationById(projectE.getOrganization().getId());
         String orgCode = organization.getCode();
         String projectCode = projectE.getCode();
-        appFileList.stream().forEach(t -> {
+        String classPath = String.format("Charts%s%s%s%s",
+                FILE_SEPARATOR,
+                orgCode,
+                FILE_SEPARATOR,
+                projectCode);
+        // 先在事务外并行读取所有chart包中的values和README，再在一个事务中逐个应用批量写库
+        Map<ApplicationReleasingDTO, Map<String, Future<Map<String, String>>>> appCharts = new LinkedHashMap<>();
+        List<File> chartFiles = new ArrayList<>();
+        appFileList.forEach(t -> {
             String appName = t.getName();
             File[] appFiles = t.listFiles();
-            if (appFiles != null && !appFileList.isEmpty()) {
-                String appFileName = String.format("%s%s", appName, JSON_FILE);
-                List<File> appMarkets = Arrays.stream(appFiles).parallel()
-                        .filter(k -> k.getName().equals(appFileName))
-                        .collect(Collectors.toCollection(ArrayList::new));
-                if (appMarkets != null && !appMarkets.isEmpty() && appMarkets.size() == 1) {
-                    File appMarket = appMarkets.get(0);
-                    String appMarketJson = FileUtil.getFileContent(appMarket);
+            if (appFiles != null) {
+                Map<String, File> fileMap = Arrays.stream(appFiles)
+                        .collect(Collectors.toMap(File::getName, file -> file, (a, b) -> a));
+                File appMarket = fileMap.get(String.format("%s%s", appName, JSON_FILE));
+                if (appMarket != null) {
                     ApplicationReleasingDTO applicationReleasingDTO =
-                            gson.fromJson(appMarketJson, ApplicationReleasingDTO.class);
-                    ApplicationE applicationE = new ApplicationE();
-                    String appCode = applicationReleasingDTO.getCode();
-                    applicationE.setName(applicationReleasingDTO.getName());
-                    applicationE.setIsSkipCheckPermission(true);
-                    applicationE.setType("normal");
-                    Long appId = createOrUpdateApp(applicationE, appCode, projectId);
-                    Boolean isVersionPublish = isPublic != null;
-                    applicationReleasingDTO.getAppVersions().stream()
-                            .forEach(appVersion -> createVersion(
-                                    appVersion, orgCode, projectCode, appCode, appId, appFiles, isVersionPublish
-                            ));
-                    // 发布应用
-                    releaseApp(isPublic, applicationReleasingDTO, appId);
+                            gson.fromJson(FileUtil.getFileContent(appMarket), ApplicationReleasingDTO.class);
+                    Map<String, Future<Map<String, String>>> charts = new LinkedHashMap<>();
+                    applicationReleasingDTO.getAppVersions().forEach(appVersion -> {
+                        File tgz = fileMap.get(String.format("%s-%s.tgz",
+                                applicationReleasingDTO.getCode(), appVersion.getVersion()));
+                        if (tgz != null && !charts.containsKey(appVersion.getVersion())) {
+                            charts.put(appVersion.getVersion(), MARKET_EXECUTOR.submit(() -> readChart(tgz)));
+                            chartFiles.add(tgz);
+                        }
+                    });
+                    appCharts.put(applicationReleasingDTO, charts);
                 }
             }
         });
+        Map<ApplicationReleasingDTO, Map<String, Map<String, String>>> apps = new LinkedHashMap<>();
+        try {
+            appCharts.forEach((applicationReleasingDTO, charts) -> {
+                Map<String, Map<String, String>> versions = new LinkedHashMap<>();
+                charts.forEach((version, future) -> versions.put(version, getChart(future)));
+                apps.put(applicationReleasingDTO, versions);
+            });
+        } finally {
+            appCharts.values().forEach(charts -> charts.values().forEach(future -> future.cancel(true)));
+        }
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            int imported = 0;
+            for (Map.Entry<ApplicationReleasingDTO, Map<String, Map<String, String>>> entry : apps.entrySet()) {
+                importApp(projectId, orgCode, projectCode, entry.getKey(), entry.getValue(), isPublic);
+                imported++;
+                logger.info("import market apps: {}/{}, app {} with {} versions",
+                        imported, apps.size(), entry.getKey().getCode(), entry.getValue().size());
+            }
+            return null;
+        });
+        // 事务提交后再复制chart包，导入失败回滚时不留下复制的文件
+        chartFiles.forEach(tgz -> FileUtil.copyFile(tgz.getAbsolutePath(), classPath));
+    }
+
+    private Map<String, String> readChart(File tgz) {
+        Map<String, String> chartFiles = FileUtil.readTarGzFiles(tgz, VALUES_YAML, README);
+        if (chartFiles.get(VALUES_YAML) == null) {
+            throw new CommonException("error.version.values.notExist");
+        }
+        return chartFiles;
+    }
+
+    private void importApp(Long projectId, String organizationCode, String projectCode,
+                           ApplicationReleasingDTO applicationReleasingDTO,
+                           Map<String, Map<String, String>> charts, Boolean isPublic) {
+        ApplicationE applicationE = new ApplicationE();
+        String appCode = applicationReleasingDTO.getCode();
+        applicationE.setName(applicationReleasingDTO.getName());
+        applicationE.setIsSkipCheckPermission(true);
+        applicationE.setType("normal");
+        Long appId = createOrUpdateApp(applicationE, appCode, projectId);
+        Map<String, ApplicationVersionE> existVersions = applicationVersionRepository
+                .listByAppIdAndVersions(appId, new ArrayList<>(charts.keySet())).stream()
+                .collect(Collectors.toMap(ApplicationVersionE::getVersion, t -> t, (a, b) -> a));
+
+        List<ApplicationVersionE> applicationVersionES = new ArrayList<>(charts.size());
+        List<ApplicationVersionValueE> applicationVersionValueES = new ArrayList<>(charts.size());
+        for (Map.Entry<String, Map<String, String>> chart : charts.entrySet()) {
+            Map<String, String> chartFiles = chart.getValue();
+            ApplicationVersionE applicationVersionE = initVersion(
+                    chart.getKey(), organizationCode, projectCode, appCode, appId);
+            applicationVersionE.initApplicationVersionReadmeV(chartFiles.getOrDefault(README, "# 暂无"));
+            ApplicationVersionE version = existVersions.get(chart.getKey());
+            if (isPublic != null) {
+                applicationVersionE.setIsPublish(1L);
+            } else {
+                applicationVersionE.setIsPublish(version == null ? null : version.getIsPublish());
+            }
+            if (version != null) {
+                applicationVersionE.setId(version.getId());
+            }
+            ApplicationVersionValueE applicationVersionValueE = new ApplicationVersionValueE();
+            applicationVersionValueE.setValue(chartFiles.get(VALUES_YAML) + System.getProperty("line.separator"));
+            applicationVersionValueES.add(applicationVersionValueE);
+            applicationVersionES.add(applicationVersionE);
+        }
+        List<ApplicationVersionValueE> values = applicationVersionValueRepository.batchCreate(applicationVersionValueES);
+        for (int i = 0; i < applicationVersionES.size(); i++) {
+            applicationVersionES.get(i).initApplicationVersionValueE(values.get(i).getId());
+        }
+        // 新版本批量插入，已存在的版本逐个更新
+        applicationVersionRepository.batchCreate(applicationVersionES.stream()
+                .filter(t -> t.getId() == null).collect(Collectors.toList()));
+        applicationVersionES.stream().filter(t -> t.getId() != null)
+                .forEach(applicationVersionRepository::updateVersion);
+        // 发布应用
+        releaseApp(isPublic, applicationReleasingDTO, appId);
+    }
+
+    private Map<String, String> getChart(Future<Map<String, String>> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CommonException) {
+                throw (CommonException) e.getCause();
+            }
+            throw new CommonException("error.version.insert", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommonException("error.version.insert", e);
+        }
     }
 
     /**
      * 导出应用市场应用 zip
+     * chart包由线程池并行下载到内存，按顺序直接写入zip，不再先落盘再打包，
+     * 同时下载的chart包不超过EXPORT_DOWNLOADS个，写入zip后即释放
      *
      * @param appMarkets 应用市场应用信息
      */
     public void export(List<AppMarketDownloadDTO> appMarkets, String fileName) {
         List<String> images = new ArrayList<>();
+        // zip条目，json等内容直接确定，chart包写入zip前才下载
+        List<ExportEntry> entries = new ArrayList<>();
         for (AppMarketDownloadDTO appMarketDownloadDTO : appMarkets) {
             ApplicationReleasingDTO applicationReleasingDTO = getMarketApp(appMarketDownloadDTO.getAppMarketId(), null);
-            String destpath = String.format("charts%s%s",
+            String destpath = String.format("%s%s%s",
+                    fileName,
                     FILE_SEPARATOR,
                     applicationReleasingDTO.getCode());
             ApplicationE applicationE = applicationRepository.query(applicationReleasingDTO.getAppId());
@@ -464,8 +587,8 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
                             .filter(t -> appMarketDownloadDTO.getAppVersionIds().contains(t.getId()))
                             .collect(Collectors.toCollection(ArrayList::new))
             );
-            String appMarketJson = gson.toJson(applicationReleasingDTO);
-            FileUtil.saveDataToFile(destpath, applicationReleasingDTO.getCode() + JSON_FILE, appMarketJson);
+            entries.add(new ExportEntry(destpath + FILE_SEPARATOR + applicationReleasingDTO.getCode() + JSON_FILE,
+                    gson.toJson(applicationReleasingDTO).getBytes(StandardCharsets.UTF_8), null));
             appMarketDownloadDTO.getAppVersionIds().forEach(appVersionId -> {
                 ApplicationVersionE applicationVersionE = applicationVersionRepository.query(appVersionId);
                 images.add(applicationVersionE.getImage());
@@ -481,33 +604,71 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
                         "-",
                         applicationVersionE.getVersion(),
                         ".tgz");
-
-                HttpClientUtil.getTgz(repoUrl,
-                        String.format("%s%s%s-%s.tgz",
-                                destpath,
-                                FILE_SEPARATOR,
-                                applicationE.getCode(),
-                                applicationVersionE.getVersion()));
+                entries.add(new ExportEntry(String.format("%s%s%s-%s.tgz",
+                        destpath,
+                        FILE_SEPARATOR,
+                        applicationE.getCode(),
+                        applicationVersionE.getVersion()), null, repoUrl));
             });
-            StringBuilder stringBuilder = new StringBuilder();
-            for (String image : images) {
-                stringBuilder.append(image);
-                stringBuilder.append(System.getProperty("line.separator"));
-            }
-            InputStream inputStream = this.getClass().getResourceAsStream("/shell/push_image.sh");
-            FileUtil.saveDataToFile(fileName, PUSH_IAMGES, FileUtil.replaceReturnString(inputStream, null));
-            FileUtil.saveDataToFile(fileName, IMAGES, stringBuilder.toString());
-            FileUtil.moveFiles(CHARTS, fileName);
         }
-        try (FileOutputStream outputStream = new FileOutputStream(fileName + ".zip")) {
-            FileUtil.toZip(fileName, outputStream, true);
-            FileUtil.deleteDirectory(new File(CHARTS));
-            FileUtil.deleteDirectory(new File(fileName));
-        } catch (IOException e) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (String image : images) {
+            stringBuilder.append(image);
+            stringBuilder.append(System.getProperty("line.separator"));
+        }
+        InputStream inputStream = this.getClass().getResourceAsStream("/shell/push_image.sh");
+        entries.add(new ExportEntry(fileName + FILE_SEPARATOR + PUSH_IAMGES,
+                FileUtil.replaceReturnString(inputStream, null).getBytes(StandardCharsets.UTF_8), null));
+        entries.add(new ExportEntry(fileName + FILE_SEPARATOR + IMAGES,
+                stringBuilder.toString().getBytes(StandardCharsets.UTF_8), null));
+        writeExportZip(fileName + ".zip", entries);
+    }
+
+    private void writeExportZip(String zipFile, List<ExportEntry> entries) {
+        long total = entries.stream().filter(entry -> entry.chartUrl != null).count();
+        int downloaded = 0;
+        // 已提交还未写入zip的下载任务，条目下标 -> 下载任务
+        Map<Integer, Future<byte[]>> downloads = new HashMap<>();
+        int next = 0;
+        try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)))) {
+            for (int i = 0; i < entries.size(); i++) {
+                for (; next < entries.size() && downloads.size() < EXPORT_DOWNLOADS; next++) {
+                    String chartUrl = entries.get(next).chartUrl;
+                    if (chartUrl != null) {
+                        downloads.put(next, MARKET_EXECUTOR.submit(() -> HttpClientUtil.getTgz(chartUrl)));
+                    }
+                }
+                ExportEntry entry = entries.get(i);
+                byte[] data = entry.data;
+                if (entry.chartUrl != null) {
+                    data = downloads.remove(i).get();
+                    downloaded++;
+                    logger.info("export {}: {}/{} charts", zipFile, downloaded, total);
+                }
+                zos.putNextEntry(new ZipEntry(entry.name));
+                zos.write(data);
+                zos.closeEntry();
+                entries.set(i, null);
+            }
+        } catch (IOException | ExecutionException e) {
+            cancelExport(zipFile, downloads);
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            if (cause instanceof CommonException) {
+                throw (CommonException) cause;
+            }
+            throw new CommonException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            cancelExport(zipFile, downloads);
+            Thread.currentThread().interrupt();
             throw new CommonException(e.getMessage(), e);
         }
     }
 
+    private void cancelExport(String zipFile, Map<Integer, Future<byte[]>> downloads) {
+        downloads.values().forEach(future -> future.cancel(true));
+        FileUtil.deleteFile(zipFile);
+    }
+
     private Page<ApplicationReleasingDTO> getReleasingDTOs(Long projectId,
                                                            Page<ApplicationMarketE> applicationMarketEPage) {
         Page<ApplicationReleasingDTO> applicationReleasingDTOPage = ConvertPageHelper.convertPage(
@@ -526,13 +687,11 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
     }
 
 
-    private void createVersion(AppMarketVersionDTO appVersion,
-                               String organizationCode,
-                               String projectCode,
-                               String appCode,
-                               Long appId,
-                               File[] appFiles,
-                               Boolean isVersionPublish) {
+    private ApplicationVersionE initVersion(String version,
+                                            String organizationCode,
+                                            String projectCode,
+                                            String appCode,
+                                            Long appId) {
         ApplicationVersionE applicationVersionE = new ApplicationVersionE();
         String image = String.format("%s%s%s%s%s%s%s%s%s", harborConfigurationProperties.getBaseUrl(),
                 FILE_SEPARATOR,
@@ -542,7 +701,7 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
                 FILE_SEPARATOR,
                 appCode,
                 ":",
-                appVersion.getVersion()
+                version
         );
         applicationVersionE.setImage(image);
         applicationVersionE.setRepository(String.format("%s%s%s%s%s",
@@ -551,55 +710,9 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
                 FILE_SEPARATOR,
                 projectCode,
                 FILE_SEPARATOR));
-        applicationVersionE.setVersion(appVersion.getVersion());
+        applicationVersionE.setVersion(version);
         applicationVersionE.initApplicationEById(appId);
-        String tazName = String.format("%s%s%s%s",
-                appCode,
-                "-",
-                appVersion.getVersion(),
-                ".tgz"
-        );
-        List<File> tgzVersions = Arrays.stream(appFiles).parallel()
-                .filter(k -> k.getName().equals(tazName))
-                .collect(Collectors.toCollection(ArrayList::new));
-        if (!tgzVersions.isEmpty()) {
-            ApplicationVersionValueE applicationVersionValueE = new ApplicationVersionValueE();
-            try {
-                FileUtil.unTarGZ(tgzVersions.get(0).getAbsolutePath(), appCode);
-                File valueYaml = FileUtil.queryFileFromFiles(new File(appCode), "values.yaml");
-                if (valueYaml == null) {
-                    throw new CommonException("error.version.values.notExist");
-                }
-                applicationVersionValueE.setValue(FileUtil.replaceReturnString(new FileInputStream(valueYaml), null));
-
-                applicationVersionE.initApplicationVersionValueE(applicationVersionValueRepository
-                        .create(applicationVersionValueE).getId());
-            } catch (Exception e) {
-                throw new CommonException("error.version.insert");
-            }
-            applicationVersionE.initApplicationVersionReadmeV(FileUtil.getReadme(appCode));
-            ApplicationVersionE version = applicationVersionRepository
-                    .queryByAppAndVersion(appId, appVersion.getVersion());
-
-            if (isVersionPublish) {
-                applicationVersionE.setIsPublish(1L);
-            } else {
-                applicationVersionE.setIsPublish(version == null ? null : version.getIsPublish());
-            }
-            if (version == null) {
-                applicationVersionRepository.create(applicationVersionE);
-            } else {
-                applicationVersionE.setId(version.getId());
-                applicationVersionRepository.updateVersion(applicationVersionE);
-            }
-            String classPath = String.format("Charts%s%s%s%s",
-                    FILE_SEPARATOR,
-                    organizationCode,
-                    FILE_SEPARATOR,
-                    projectCode);
-            FileUtil.copyFile(tgzVersions.get(0).getAbsolutePath(), classPath);
-            FileUtil.deleteDirectory(new File(appCode));
-        }
+        return applicationVersionE;
     }
 
     private Long createOrUpdateApp(ApplicationE applicationE, String appCode, Long projectId) {
@@ -651,4 +764,19 @@ public class ApplicationMarketServiceImpl implements ApplicationMarketService {
             }
         }
     }
+
+    /**
+     * 导出zip的条目，data为直接写入的内容，chartUrl不为空时写入下载的chart包
+     */
+    private static class ExportEntry {
+        private final String name;
+        private final byte[] data;
+        private final String chartUrl;
+
+        ExportEntry(String name, byte[] data, String chartUrl) {
+            this.name = name;
+            this.data = data;
+            this.chartUrl = chartUrl;
+        }
+    }
 }
@@ -1,12 +1,8 @@
 package io.choerodon.devops.app.service.impl;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.stream.Collectors;
 
 import io.choerodon.devops.domain.application.handler.DevopsCiInvalidException;
@@ -36,7 +32,8 @@ import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 @Service
 public class ApplicationVersionServiceImpl implements ApplicationVersionService {
 
-    private static final String DESTPATH = "devops";
+    private static final String VALUES_YAML = "values.yaml";
+    private static final String README = "README.md";
     @Value("${services.gitlab.url}")
     private String gitlabUrl;
     @Autowired
@@ -78,13 +75,15 @@ public class ApplicationVersionServiceImpl implements ApplicationVersionService
 
     private void doCreate(String image, String token, String version, String commit, MultipartFile files) {
         ApplicationE applicationE = applicationRepository.queryByToken(token);
+        // 版本已存在时直接返回，不再查询iam和保存chart包
+        if (applicationVersionRepository.queryByAppAndVersion(applicationE.getId(), version) != null) {
+            return;
+        }
 
         ApplicationVersionValueE applicationVersionValueE = new ApplicationVersionValueE();
         ApplicationVersionE applicationVersionE = new ApplicationVersionE();
         ProjectE projectE = iamRepository.queryIamProject(applicationE.getProjectE().getId());
         Organization organization = iamRepository.queryOrganizationById(projectE.getOrganization().getId());
-        ApplicationVersionE newApplicationVersionE = applicationVersionRepository
-                .queryByAppAndVersion(applicationE.getId(), version);
         applicationVersionE.initApplicationEById(applicationE.getId());
         applicationVersionE.setImage(image);
         applicationVersionE.setCommit(commit);
@@ -95,19 +94,12 @@ public class ApplicationVersionServiceImpl implements ApplicationVersionService
                 organization.getCode(),
                 System.getProperty("file.separator"),
                 projectE.getCode());
-        String path = FileUtil.multipartFileToFile(classPath, files);
-        if (newApplicationVersionE != null) {
-            return;
-        }
-        String destFilePath = DESTPATH + version;
-        FileUtil.unTarGZ(path, destFilePath);
-        String values;
-        try (FileInputStream fis = new FileInputStream(new File(Objects.requireNonNull(FileUtil.queryFileFromFiles(
-                new File(destFilePath), "values.yaml")).getAbsolutePath()))) {
-            values = FileUtil.replaceReturnString(fis, null);
-        } catch (IOException e) {
-            throw new CommonException(e);
+        // 保存chart包的同时从流中读取values.yaml和README.md，不再解压到磁盘
+        Map<String, String> chartFiles = FileUtil.saveTarGzAndReadFiles(classPath, files, VALUES_YAML, README);
+        if (chartFiles.get(VALUES_YAML) == null) {
+            throw new CommonException("The values.yaml is not found in the chart!");
         }
+        String values = chartFiles.get(VALUES_YAML) + System.getProperty("line.separator");
 
         try {
             FileUtil.checkYamlFormat(values);
@@ -121,9 +113,8 @@ public class ApplicationVersionServiceImpl implements ApplicationVersionService
         } catch (Exception e) {
             throw new CommonException("error.version.insert", e);
         }
-        applicationVersionE.initApplicationVersionReadmeV(FileUtil.getReadme(destFilePath));
+        applicationVersionE.initApplicationVersionReadmeV(chartFiles.getOrDefault(README, "# 暂无"));
         applicationVersionRepository.create(applicationVersionE);
-        FileUtil.deleteDirectory(new File(destFilePath));
     }
 
     @Override
@@ -5,20 +5,32 @@ import io.choerodon.core.domain.Page;
 import io.choerodon.core.domain.PageInfo;
 import io.choerodon.devops.api.dto.AgentNodeInfoDTO;
 import io.choerodon.devops.api.dto.ClusterNodeInfoDTO;
+import io.choerodon.devops.api.dto.ClusterNodeMetricDTO;
 import io.choerodon.devops.app.service.ClusterNodeInfoService;
 import io.choerodon.devops.domain.application.repository.DevopsClusterRepository;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
 import org.springframework.util.StringUtils;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
@@ -26,18 +38,30 @@ import java.util.stream.Collectors;
  */
 @Service
 public class ClusterNodeInfoServiceImpl implements ClusterNodeInfoService {
-    private static final String REDIS_CLUSTER_KEY_TEMPLATE = "node_info_org_id_%s_cluster_id_%s";
+    /**
+     * the nodes used to be kept in a list under the key without this suffix, a new key name
+     * keeps hash operations from hitting an old list key with WRONGTYPE
+     */
+    private static final String HASH_KEY_SUFFIX = "_hash";
+    private static final String REDIS_CLUSTER_KEY_TEMPLATE = "node_info_org_id_%s_cluster_id_%s" + HASH_KEY_SUFFIX;
     private static final String CPU_MEASURE_FORMAT = "%.3f";
     private static final String MEMORY_MEASURE_FORMAT = "%.3f%s";
     private static final String[] MEMORY_MEASURE = {"Ki", "Ki", "Mi", "Gi"};
     private static final String PERCENTAGE_FORMAT = "%.2f%%";
     /**
-     * 如果出现时间的解析失误，可能是并发问题，不建议作为局部变量，可以考虑使用Joda-Time库，
-     * 目前考虑Agent发送消息的间隔不会产生并发问题，当前日期(201901018)
+     * the node names of a cluster in the order reported by the agent, used for pagination
+     */
+    private static final String NAMES_KEY_SUFFIX = "_names";
+    /**
+     * the recent cpu and memory samples of a node, newest first
      */
-    private final SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private static final String HISTORY_KEY_SUFFIX = "_history_";
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final Logger LOGGER = LoggerFactory.getLogger(ClusterNodeInfoServiceImpl.class);
 
+    @Value("${agent.nodeHistorySize:60}")
+    private int nodeHistorySize;
+
     @Autowired
     private DevopsClusterRepository devopsClusterRepository;
     @Autowired
@@ -53,10 +77,69 @@ public class ClusterNodeInfoServiceImpl implements ClusterNodeInfoService {
         return String.format(REDIS_CLUSTER_KEY_TEMPLATE, organizationId, clusterId);
     }
 
+    /**
+     * the nodes are kept in a hash keyed by node name, and all the keys of the cluster
+     * are replaced in one transaction so that readers never see an empty cluster
+     */
     @Override
     public void setValueForKey(String redisClusterKey, List<AgentNodeInfoDTO> agentNodeInfoDTOS) {
-        stringRedisTemplate.delete(redisClusterKey);
-        stringRedisTemplate.opsForList().rightPushAll(redisClusterKey, agentNodeInfoDTOS.stream().map(this::node2JsonString).collect(Collectors.toList()));
+        String namesKey = redisClusterKey + NAMES_KEY_SUFFIX;
+        List<String> previousNames = stringRedisTemplate.opsForList().range(namesKey, 0, -1);
+
+        Map<String, String> nodes = new LinkedHashMap<>();
+        Map<String, String> samples = new LinkedHashMap<>();
+        String now = LocalDateTime.now().format(DATE_TIME_FORMATTER);
+        agentNodeInfoDTOS.forEach(raw -> {
+            ClusterNodeInfoDTO node = toNodeInfo(raw);
+            nodes.put(node.getNodeName(), JSONObject.toJSONString(node));
+            samples.put(node.getNodeName(), JSONObject.toJSONString(toNodeMetric(node, now)));
+        });
+
+        stringRedisTemplate.execute(new SessionCallback<List<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> List<Object> execute(RedisOperations<K, V> redisOperations) throws DataAccessException {
+                RedisOperations<String, String> operations = (RedisOperations<String, String>) redisOperations;
+                operations.multi();
+                if (previousNames != null) {
+                    previousNames.stream()
+                            .filter(name -> !nodes.containsKey(name))
+                            .forEach(name -> operations.delete(getHistoryKey(redisClusterKey, name)));
+                }
+                operations.delete(getLegacyKey(redisClusterKey));
+                operations.delete(redisClusterKey);
+                operations.delete(namesKey);
+                if (!nodes.isEmpty()) {
+                    operations.opsForHash().putAll(redisClusterKey, nodes);
+                    operations.opsForList().rightPushAll(namesKey, new ArrayList<>(nodes.keySet()));
+                }
+                samples.forEach((name, sample) -> {
+                    String historyKey = getHistoryKey(redisClusterKey, name);
+                    operations.opsForList().leftPush(historyKey, sample);
+                    operations.opsForList().trim(historyKey, 0, nodeHistorySize - 1L);
+                });
+                return operations.exec();
+            }
+        });
+    }
+
+    private String getLegacyKey(String redisClusterKey) {
+        return redisClusterKey.substring(0, redisClusterKey.length() - HASH_KEY_SUFFIX.length());
+    }
+
+    private String getHistoryKey(String redisClusterKey, String nodeName) {
+        return redisClusterKey + HISTORY_KEY_SUFFIX + nodeName;
+    }
+
+    private ClusterNodeMetricDTO toNodeMetric(ClusterNodeInfoDTO node, String time) {
+        ClusterNodeMetricDTO metric = new ClusterNodeMetricDTO();
+        metric.setTime(time);
+        metric.setCpuRequestPercentage(node.getCpuRequestPercentage());
+        metric.setCpuLimitPercentage(node.getCpuLimitPercentage());
+        metric.setMemoryRequestPercentage(node.getMemoryRequestPercentage());
+        metric.setMemoryLimitPercentage(node.getMemoryLimitPercentage());
+        metric.setPodPercentage(node.getPodPercentage());
+        return metric;
     }
 
     private String toNormalCpuValue(String cpuAmount) {
@@ -80,9 +163,9 @@ public class ClusterNodeInfoServiceImpl implements ClusterNodeInfoService {
      * Don't change the execution order unless you know about what you do.
      *
      * @param raw the node information
-     * @return the json string of the node information
+     * @return the node information to be stored
      */
-    private String node2JsonString(AgentNodeInfoDTO raw) {
+    private ClusterNodeInfoDTO toNodeInfo(AgentNodeInfoDTO raw) {
         ClusterNodeInfoDTO node = new ClusterNodeInfoDTO();
         BeanUtils.copyProperties(raw, node);
         node.setCpuLimit(toNormalCpuValue(node.getCpuLimit()));
@@ -98,11 +181,12 @@ public class ClusterNodeInfoServiceImpl implements ClusterNodeInfoService {
         setCpuPercentage(node);
 
         try {
-            node.setCreateTime(simpleDateFormat.format(simpleDateFormat.parse(raw.getCreateTime())));
-        } catch (ParseException e) {
+            node.setCreateTime(DATE_TIME_FORMATTER.format(
+                    DATE_TIME_FORMATTER.parse(raw.getCreateTime(), new ParsePosition(0))));
+        } catch (DateTimeException e) {
             LOGGER.info("date: {} failed to be formatted", raw.getCreateTime());
         }
-        return JSONObject.toJSONString(node);
+        return node;
     }
 
     /**
@@ -170,16 +254,22 @@ public class ClusterNodeInfoServiceImpl implements ClusterNodeInfoService {
         long start = (long) pageRequest.getPage() * (long) pageRequest.getSize();
         long stop = start + (long) pageRequest.getSize() - 1;
         String redisKey = getRedisClusterKey(clusterId, organizationId);
+        String namesKey = redisKey + NAMES_KEY_SUFFIX;
 
-        long total = stringRedisTemplate.opsForList().size(redisKey);
-        List<ClusterNodeInfoDTO> nodes = stringRedisTemplate
-                .opsForList()
-                .range(redisKey, start, stop)
-                .stream()
-                .map(node -> JSONObject.parseObject(node, ClusterNodeInfoDTO.class))
-                .collect(Collectors.toList());
+        Long total = stringRedisTemplate.opsForList().size(namesKey);
+        List<String> names = stringRedisTemplate.opsForList().range(namesKey, start, stop);
+        List<ClusterNodeInfoDTO> nodes = new ArrayList<>();
+        if (names != null && !names.isEmpty()) {
+            nodes = stringRedisTemplate
+                    .<String, String>opsForHash()
+                    .multiGet(redisKey, names)
+                    .stream()
+                    .filter(Objects::nonNull)
+                    .map(node -> JSONObject.parseObject(node, ClusterNodeInfoDTO.class))
+                    .collect(Collectors.toList());
+        }
 
-        return new Page<>(nodes, new PageInfo(pageRequest.getPage(), pageRequest.getSize()), total);
+        return new Page<>(nodes, new PageInfo(pageRequest.getPage(), pageRequest.getSize()), total == null ? 0 : total);
     }
 
     @Override
@@ -188,17 +278,29 @@ public class ClusterNodeInfoServiceImpl implements ClusterNodeInfoService {
             return null;
         }
 
-        String redisKey = getRedisClusterKey(clusterId, organizationId);
-        long total = stringRedisTemplate.opsForList().size(redisKey);
+        String node = stringRedisTemplate
+                .<String, String>opsForHash()
+                .get(getRedisClusterKey(clusterId, organizationId), nodeName);
+        return node == null ? null : JSONObject.parseObject(node, ClusterNodeInfoDTO.class);
+    }
 
-        // get all nodes according to the cluster id and filter the node with the certain name
-        return stringRedisTemplate
+    @Override
+    public List<ClusterNodeMetricDTO> listNodeMetrics(Long organizationId, Long clusterId, String nodeName) {
+        if (StringUtils.isEmpty(nodeName)) {
+            return Collections.emptyList();
+        }
+
+        List<String> samples = stringRedisTemplate
                 .opsForList()
-                .range(redisKey, 0, total - 1)
-                .stream()
-                .map(node -> JSONObject.parseObject(node, ClusterNodeInfoDTO.class))
-                .filter(node -> nodeName.equals(node.getNodeName()))
-                .findFirst()
-                .orElse(null);
+                .range(getHistoryKey(getRedisClusterKey(clusterId, organizationId), nodeName), 0, -1);
+        if (samples == null) {
+            return Collections.emptyList();
+        }
+        // the samples are stored newest first, return them in time order for charts
+        List<ClusterNodeMetricDTO> metrics = samples.stream()
+                .map(sample -> JSONObject.parseObject(sample, ClusterNodeMetricDTO.class))
+                .collect(Collectors.toList());
+        Collections.reverse(metrics);
+        return metrics;
     }
 }
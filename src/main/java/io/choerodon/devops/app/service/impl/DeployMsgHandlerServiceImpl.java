@@ -18,6 +18,7 @@ import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.api.dto.*;
 import io.choerodon.devops.app.service.ClusterNodeInfoService;
 import io.choerodon.devops.app.service.DeployMsgHandlerService;
+import io.choerodon.devops.app.service.DevopsEnvResourceService;
 import io.choerodon.devops.domain.application.entity.*;
 import io.choerodon.devops.domain.application.factory.DevopsInstanceResourceFactory;
 import io.choerodon.devops.domain.application.repository.*;
@@ -25,7 +26,6 @@ import io.choerodon.devops.domain.application.valueobject.*;
 import io.choerodon.devops.infra.common.util.*;
 import io.choerodon.devops.infra.common.util.enums.*;
 import io.choerodon.devops.infra.config.HarborConfigurationProperties;
-import io.choerodon.devops.infra.dataobject.DevopsEnvPodContainerDO;
 import io.choerodon.devops.infra.dataobject.DevopsIngressDO;
 import io.choerodon.devops.infra.mapper.ApplicationMarketMapper;
 import io.choerodon.websocket.Msg;
@@ -142,6 +142,8 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
     private DevopsConfigMapRepository devopsConfigMapRepository;
     @Autowired
     private ClusterNodeInfoService clusterNodeInfoService;
+    @Autowired
+    private DevopsEnvResourceService devopsEnvResourceService;
 
 
     public void handlerUpdatePodMessage(String key, String msg, Long envId) {
@@ -226,13 +228,7 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
 
     private void handleEnvPod(V1Pod v1Pod, ApplicationInstanceE applicationInstanceE, String resourceVersion, DevopsEnvPodE devopsEnvPodE, Boolean flag, List<DevopsEnvPodE> devopsEnvPodEList) {
         if (devopsEnvPodEList == null || devopsEnvPodEList.isEmpty()) {
-            devopsEnvPodE.initApplicationInstanceE(applicationInstanceE.getId());
-            devopsEnvPodRepository.insert(devopsEnvPodE);
-            Long podId = devopsEnvPodRepository.get(devopsEnvPodE).getId();
-            v1Pod.getSpec().getContainers().forEach(t ->
-                    containerRepository.insert(new DevopsEnvPodContainerDO(
-                            podId,
-                            t.getName())));
+            insertPod(v1Pod, applicationInstanceE.getId(), devopsEnvPodE);
         } else {
             for (DevopsEnvPodE pod : devopsEnvPodEList) {
                 if (pod.getName().equals(v1Pod.getMetadata().getName())
@@ -242,26 +238,30 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
                         devopsEnvPodE.initApplicationInstanceE(pod.getApplicationInstanceE().getId());
                         devopsEnvPodE.setObjectVersionNumber(pod.getObjectVersionNumber());
                         devopsEnvPodRepository.update(devopsEnvPodE);
-                        containerRepository.deleteByPodId(pod.getId());
-                        v1Pod.getSpec().getContainers().forEach(t ->
-                                containerRepository.insert(
-                                        new DevopsEnvPodContainerDO(pod.getId(), t.getName())));
+                        containerRepository.batchUpsertByPodId(pod.getId(), getContainerNames(v1Pod));
                     }
                     flag = true;
                 }
             }
             if (!flag) {
-                devopsEnvPodE.initApplicationInstanceE(applicationInstanceE.getId());
-                devopsEnvPodRepository.insert(devopsEnvPodE);
-                Long podId = devopsEnvPodRepository.get(devopsEnvPodE).getId();
-                v1Pod.getSpec().getContainers().forEach(t ->
-                        containerRepository.insert(new DevopsEnvPodContainerDO(
-                                podId,
-                                t.getName())));
+                insertPod(v1Pod, applicationInstanceE.getId(), devopsEnvPodE);
             }
         }
     }
 
+    /**
+     * 插入pod并批量同步其容器，插入时直接回填主键，不再重新查询pod
+     */
+    private void insertPod(V1Pod v1Pod, Long instanceId, DevopsEnvPodE devopsEnvPodE) {
+        devopsEnvPodE.initApplicationInstanceE(instanceId);
+        Long podId = devopsEnvPodRepository.insert(devopsEnvPodE).getId();
+        containerRepository.batchUpsertByPodId(podId, getContainerNames(v1Pod));
+    }
+
+    private List<String> getContainerNames(V1Pod v1Pod) {
+        return v1Pod.getSpec().getContainers().stream().map(V1Container::getName).collect(Collectors.toList());
+    }
+
     @Override
     public void handlerReleaseInstall(String key, String msg, Long clusterId) {
         Long envId = getEnvId(key, clusterId);
@@ -975,84 +975,107 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
 
         ResourceSyncPayload resourceSyncPayload = JSONArray.parseObject(msg, ResourceSyncPayload.class);
         ResourceType resourceType = ResourceType.forString(resourceSyncPayload.getResourceType());
-        List<DevopsEnvResourceE> devopsEnvResourceES;
         if (resourceType == null) {
             resourceType = ResourceType.forString("MissType");
         }
         if (resourceSyncPayload.getResources() == null) {
             return;
         }
+        Set<String> resourceNames = new HashSet<>(Arrays.asList(resourceSyncPayload.getResources()));
         switch (resourceType) {
             case POD:
-                devopsEnvResourceES = devopsEnvResourceRepository
-                        .listByEnvAndType(envId, ResourceType.POD.getType());
-                if (!devopsEnvResourceES.isEmpty()) {
-                    List<String> podNames = Arrays.asList(resourceSyncPayload.getResources());
-                    devopsEnvResourceES.stream()
-                            .filter(devopsEnvResourceE -> !podNames.contains(devopsEnvResourceE.getName()))
-                            .forEach(devopsEnvResourceE -> {
-                                devopsEnvResourceRepository.deleteByEnvIdAndKindAndName(
-                                        envId, ResourceType.POD.getType(), devopsEnvResourceE.getName());
-                                devopsEnvPodRepository.deleteByName(
-                                        devopsEnvResourceE.getName(), KeyParseTool.getValue(key, "env"));
-                            });
+                Set<String> stalePodNames = deleteStaleResources(envId, ResourceType.POD.getType(), resourceNames);
+                if (!stalePodNames.isEmpty()) {
+                    devopsEnvPodRepository.deleteByIds(
+                            devopsEnvPodRepository.listByNamespace(KeyParseTool.getValue(key, "env")).stream()
+                                    .filter(devopsEnvPodE -> stalePodNames.contains(devopsEnvPodE.getName()))
+                                    .map(DevopsEnvPodE::getId)
+                                    .collect(Collectors.toList()));
                 }
                 break;
             case DEPLOYMENT:
-                devopsEnvResourceES = devopsEnvResourceRepository
-                        .listByEnvAndType(envId, ResourceType.DEPLOYMENT.getType());
-                if (!devopsEnvResourceES.isEmpty()) {
-                    List<String> deploymentNames = Arrays.asList(resourceSyncPayload.getResources());
-                    devopsEnvResourceES.stream()
-                            .filter(devopsEnvResourceE -> !deploymentNames.contains(devopsEnvResourceE.getName()))
-                            .forEach(devopsEnvResourceE ->
-                                    devopsEnvResourceRepository.deleteByEnvIdAndKindAndName(
-                                            envId, ResourceType.DEPLOYMENT.getType(), devopsEnvResourceE.getName()));
-                }
+                deleteStaleResources(envId, ResourceType.DEPLOYMENT.getType(), resourceNames);
                 break;
             case REPLICASET:
-                devopsEnvResourceES = devopsEnvResourceRepository
-                        .listByEnvAndType(envId, ResourceType.REPLICASET.getType());
-                if (!devopsEnvResourceES.isEmpty()) {
-                    List<String> replicaSetNames = Arrays.asList(resourceSyncPayload.getResources());
-                    devopsEnvResourceES.stream()
-                            .filter(devopsEnvResourceE -> !replicaSetNames.contains(devopsEnvResourceE.getName()))
-                            .forEach(devopsEnvResourceE ->
-                                    devopsEnvResourceRepository.deleteByEnvIdAndKindAndName(
-                                            envId, ResourceType.REPLICASET.getType(), devopsEnvResourceE.getName()));
+                deleteStaleResources(envId, ResourceType.REPLICASET.getType(), resourceNames);
+                break;
+            case SERVICE:
+                // 处理中的网络可能还未被agent创建，不能删除
+                List<DevopsServiceE> staleServices = devopsServiceRepository.selectByEnvId(envId).stream()
+                        .filter(devopsServiceE -> !resourceNames.contains(devopsServiceE.getName())
+                                && !ServiceStatus.OPERATIING.getStatus().equals(devopsServiceE.getStatus()))
+                        .collect(Collectors.toList());
+                if (!staleServices.isEmpty()) {
+                    List<Long> serviceIds = staleServices.stream()
+                            .map(DevopsServiceE::getId).collect(Collectors.toList());
+                    deleteStaleObjects(envId, ResourceType.SERVICE.getType(), SERVICE_KIND, serviceIds,
+                            staleServices.stream().map(DevopsServiceE::getName).collect(Collectors.toSet()));
+                    devopsServiceRepository.deleteByIds(serviceIds);
+                }
+                break;
+            case INGRESS:
+                // 处理中的域名可能还未被agent创建，不能删除
+                List<DevopsIngressE> staleIngresses = devopsIngressRepository.listByEnvId(envId).stream()
+                        .filter(devopsIngressE -> !resourceNames.contains(devopsIngressE.getName())
+                                && !IngressStatus.OPERATING.getStatus().equals(devopsIngressE.getStatus()))
+                        .collect(Collectors.toList());
+                if (!staleIngresses.isEmpty()) {
+                    List<Long> ingressIds = staleIngresses.stream()
+                            .map(DevopsIngressE::getId).collect(Collectors.toList());
+                    deleteStaleObjects(envId, ResourceType.INGRESS.getType(), INGRESS_KIND, ingressIds,
+                            staleIngresses.stream().map(DevopsIngressE::getName).collect(Collectors.toSet()));
+                    devopsIngressRepository.deleteIngressByIds(ingressIds);
                 }
                 break;
-//            case SERVICE:
-//                List<DevopsServiceV> devopsServiceVS = devopsServiceRepository.listDevopsService(envId);
-//                if (!devopsServiceVS.isEmpty()) {
-//                    List<String> seriviceNames = Arrays.asList(resourceSyncPayload.getResources());
-//                    devopsServiceVS.stream()
-//                            .filter(devopsServiceV -> !seriviceNames.contains(devopsServiceV.getName()))
-//                            .forEach(devopsServiceV -> {
-//                                devopsServiceRepository.delete(devopsServiceV.getId());
-//                                devopsEnvResourceRepository.deleteByEnvIdAndKindAndName(
-//                                        envId, ResourceType.SERVICE.getType(), devopsServiceV.getName());
-//                            });
-//                }
-//                break;
-//            case INGRESS:
-//                List<DevopsIngressE> devopsIngressES = devopsIngressRepository.listByEnvId(envId);
-//                if (!devopsIngressES.isEmpty()) {
-//                    List<String> ingressNames = Arrays.asList(resourceSyncPayload.getResources());
-//                    devopsIngressES.stream()
-//                            .filter(devopsIngressE -> !ingressNames.contains(devopsIngressE.getName()))
-//                            .forEach(devopsIngressE -> {
-//                                devopsIngressRepository.deleteIngress(devopsIngressE.getId());
-//                                devopsEnvResourceRepository.deleteByEnvIdAndKindAndName(
-//                                        envId, ResourceType.INGRESS.getType(), devopsIngressE.getName());
-//                            });
-//                }
-//                break;
             default:
                 break;
         }
     }
 
+    /**
+     * 批量清理agent中已不存在的网络或域名，与resourceDelete中单个删除时的处理一致
+     *
+     * @param envId      环境id
+     * @param kind       资源类型
+     * @param objectType 操作记录的对象类型
+     * @param objectIds  网络或域名id
+     * @param names      网络或域名名称
+     */
+    private void deleteStaleObjects(Long envId, String kind, String objectType, List<Long> objectIds,
+                                    Set<String> names) {
+        objectIds.forEach(objectId -> {
+            DevopsEnvCommandE devopsEnvCommandE = new DevopsEnvCommandE();
+            devopsEnvCommandE.setStatus(CommandStatus.SUCCESS.getStatus());
+            devopsEnvCommandE.setCommandType(CommandType.DELETE.getType());
+            devopsEnvCommandE.setObjectId(objectId);
+            devopsEnvCommandE.setObject(objectType);
+            devopsEnvCommandRepository.create(devopsEnvCommandE);
+        });
+        devopsEnvFileResourceRepository.deleteByEnvIdAndResources(envId, objectIds, kind);
+        // 网络和域名资源不一定属于实例，按环境查询
+        devopsEnvResourceRepository.deleteByIds(
+                devopsEnvResourceRepository.listByEnvIdAndKindAndNames(envId, kind, names).stream()
+                        .map(DevopsEnvResourceE::getId)
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * 批量删除agent中已不存在的实例资源
+     *
+     * @param envId         环境id
+     * @param kind          资源类型
+     * @param resourceNames agent中存在的资源名称
+     * @return 被删除的资源名称
+     */
+    private Set<String> deleteStaleResources(Long envId, String kind, Set<String> resourceNames) {
+        List<DevopsEnvResourceE> staleResources = devopsEnvResourceRepository.listByEnvAndType(envId, kind).stream()
+                .filter(devopsEnvResourceE -> !resourceNames.contains(devopsEnvResourceE.getName()))
+                .collect(Collectors.toList());
+        devopsEnvResourceRepository.deleteByIds(
+                staleResources.stream().map(DevopsEnvResourceE::getId).collect(Collectors.toList()));
+        return staleResources.stream().map(DevopsEnvResourceE::getName).collect(Collectors.toSet());
+    }
+
     @Override
     public void jobEvent(String msg) {
         Event event = JSONArray.parseObject(msg, Event.class);
@@ -1276,6 +1299,7 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
             devopsEnvResourceE.initDevopsEnvCommandE(applicationInstanceE.getCommandId());
         }
         if (newdevopsEnvResourceE == null) {
+            devopsEnvResourceService.fillResourceSummary(devopsEnvResourceE.getKind(), devopsEnvResourceDetailE);
             devopsEnvResourceE.initDevopsInstanceResourceMessageE(
                     devopsEnvResourceDetailRepository.create(devopsEnvResourceDetailE).getId());
             devopsEnvResourceRepository.create(devopsEnvResourceE);
@@ -1301,6 +1325,7 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
             devopsEnvResourceDetailE.setId(
                     newdevopsEnvResourceE.getDevopsEnvResourceDetailE().getId());
             devopsEnvResourceRepository.update(newdevopsEnvResourceE);
+            devopsEnvResourceService.fillResourceSummary(devopsEnvResourceE.getKind(), devopsEnvResourceDetailE);
             devopsEnvResourceDetailRepository.update(devopsEnvResourceDetailE);
         }
 
@@ -1404,15 +1429,9 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
         devopsEnvPodE.setResourceVersion(resourceVersion);
         devopsEnvPodE.setNamespace(v1Pod.getMetadata().getNamespace());
         devopsEnvPodE.setReady(getReadyValue(status, v1Pod));
-        devopsEnvPodE.initApplicationInstanceE(applicationInstanceE.getId());
         devopsEnvPodE.setNodeName(v1Pod.getSpec().getNodeName());
         devopsEnvPodE.setRestartCount(K8sUtil.getRestartCountForPod(v1Pod));
-        devopsEnvPodRepository.insert(devopsEnvPodE);
-        Long podId = devopsEnvPodRepository.get(devopsEnvPodE).getId();
-        v1Pod.getSpec().getContainers().forEach(t ->
-                containerRepository.insert(new DevopsEnvPodContainerDO(
-                        podId,
-                        t.getName())));
+        insertPod(v1Pod, applicationInstanceE.getId(), devopsEnvPodE);
     }
 
     private void insertDevopsCommandEvent(Event event, String type) {
@@ -1666,6 +1685,7 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
         DevopsClusterE devopsClusterE = devopsClusterRepository.query(clusterId);
         devopsClusterE.setNamespaces(msg);
         devopsClusterRepository.update(devopsClusterE);
+        devopsEnvironmentRepository.evictEnvIdCacheByClusterId(clusterId);
 
     }
 
@@ -1914,12 +1934,7 @@ public class DeployMsgHandlerServiceImpl implements DeployMsgHandlerService {
 
 
     private Long getEnvId(String key, Long clusterId) {
-        DevopsEnvironmentE devopsEnvironmentE = devopsEnvironmentRepository.queryByClusterIdAndCode(clusterId, KeyParseTool.getNamespace(key));
-        Long envId = null;
-        if (devopsEnvironmentE != null) {
-            envId = devopsEnvironmentE.getId();
-        }
-        return envId;
+        return devopsEnvironmentRepository.queryIdByClusterIdAndCode(clusterId, KeyParseTool.getNamespace(key));
     }
 
     @Override
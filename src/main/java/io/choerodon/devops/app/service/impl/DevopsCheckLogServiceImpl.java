@@ -27,6 +27,7 @@ import io.choerodon.devops.api.dto.iam.UserWithRoleDTO;
 import io.choerodon.devops.app.service.ApplicationInstanceService;
 import io.choerodon.devops.app.service.DevopsCheckLogService;
 import io.choerodon.devops.app.service.DevopsEnvironmentService;
+import io.choerodon.devops.app.service.DevopsEnvResourceService;
 import io.choerodon.devops.app.service.DevopsIngressService;
 import io.choerodon.devops.domain.application.entity.*;
 import io.choerodon.devops.domain.application.entity.gitlab.*;
@@ -77,6 +78,7 @@ public class DevopsCheckLogServiceImpl implements DevopsCheckLogService {
     private static final String FAILED = "failed: ";
     private static final String SERIAL_STRING = " serializable to yaml";
     private static final String YAML_FILE = ".yaml";
+    private static final int RESOURCE_DETAIL_BATCH_SIZE = 500;
     private static final Logger LOGGER = LoggerFactory.getLogger(DevopsCheckLogServiceImpl.class);
     private static final ExecutorService executorService = new ThreadPoolExecutor(0, 1,
             0L, TimeUnit.MILLISECONDS,
@@ -152,6 +154,8 @@ public class DevopsCheckLogServiceImpl implements DevopsCheckLogService {
     private DevopsEnvPodMapper devopsEnvPodMapper;
     @Autowired
     private GitUtil gitUtil;
+    @Autowired
+    private DevopsEnvResourceService devopsEnvResourceService;
 
     @Override
     public void checkLog(String version) {
@@ -784,6 +788,9 @@ public class DevopsCheckLogServiceImpl implements DevopsCheckLogService {
                 syncCommandVersionId();
             } else if ("0.14.0".equals(version)) {
                 syncDevopsEnvPodNodeNameAndRestartCount();
+            } else if ("0.15.0".equals(version)) {
+                compressResourceDetails(logs);
+                fillResourceSummaries(logs);
             } else {
                 LOGGER.info("version not matched");
             }
@@ -813,6 +820,48 @@ public class DevopsCheckLogServiceImpl implements DevopsCheckLogService {
         }
 
 
+        /**
+         * 分批将devops_env_resource_detail中未压缩的资源信息转为压缩存储
+         */
+        private void compressResourceDetails(List<CheckLog> logs) {
+            CheckLog checkLog = new CheckLog();
+            checkLog.setContent("compress resource details");
+            long count = 0;
+            Long lastId = 0L;
+            try {
+                while ((lastId = devopsEnvResourceDetailRepository.compressMessages(lastId, RESOURCE_DETAIL_BATCH_SIZE)) != null) {
+                    count = count + 1;
+                    LOGGER.info("compressed resource details batch {}, last id {}", count, lastId);
+                }
+                checkLog.setResult(SUCCESS);
+            } catch (Exception e) {
+                LOGGER.info("compress resource details error", e);
+                checkLog.setResult(FAILED + e.getMessage());
+            }
+            logs.add(checkLog);
+        }
+
+        /**
+         * 分批为devops_env_resource_detail中升级前的资源详情生成摘要
+         */
+        private void fillResourceSummaries(List<CheckLog> logs) {
+            CheckLog checkLog = new CheckLog();
+            checkLog.setContent("fill resource summaries");
+            long count = 0;
+            Long lastId = 0L;
+            try {
+                while ((lastId = devopsEnvResourceService.fillResourceSummaries(lastId, RESOURCE_DETAIL_BATCH_SIZE)) != null) {
+                    count = count + 1;
+                    LOGGER.info("filled resource summaries batch {}, last detail id {}", count, lastId);
+                }
+                checkLog.setResult(SUCCESS);
+            } catch (Exception e) {
+                LOGGER.info("fill resource summaries error", e);
+                checkLog.setResult(FAILED + e.getMessage());
+            }
+            logs.add(checkLog);
+        }
+
         private void syncObjects(List<CheckLog> logs, Long envId) {
             List<DevopsEnvironmentE> devopsEnvironmentES;
             if (envId != null) {
@@ -823,7 +872,6 @@ public class DevopsCheckLogServiceImpl implements DevopsCheckLogService {
             }
             LOGGER.info("begin to sync env objects for {}  env", devopsEnvironmentES.size());
             devopsEnvironmentES.forEach(devopsEnvironmentE -> {
-                gitUtil.setSshKey(devopsEnvironmentE.getEnvIdRsa());
                 if (devopsEnvironmentE.getGitlabEnvProjectId() != null) {
                     LOGGER.info("{}:{}  begin to upgrade!", devopsEnvironmentE.getCode(), devopsEnvironmentE.getId());
                     String filePath;
@@ -886,9 +934,9 @@ public class DevopsCheckLogServiceImpl implements DevopsCheckLogService {
                     git.tag().setName("agent-sync").call();
                 }
 
-                gitUtil.gitPush(git);
+                gitUtil.gitPush(git, env.getEnvIdRsa());
 
-                gitUtil.gitPushTag(git);
+                gitUtil.gitPushTag(git, env.getEnvIdRsa());
                 LOGGER.info("{}:{} finish to upgrade", env.getCode(), env.getId());
             } catch (IOException e) {
                 LOGGER.info("error.git.open: " + filePath, e);
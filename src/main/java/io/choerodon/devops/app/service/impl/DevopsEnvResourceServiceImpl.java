@@ -2,13 +2,17 @@ package io.choerodon.devops.app.service.impl;
 
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import com.alibaba.fastjson.JSONObject;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.kubernetes.client.JSON;
 import io.kubernetes.client.models.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import io.choerodon.devops.api.dto.*;
 import io.choerodon.devops.app.service.DevopsEnvResourceService;
@@ -29,6 +33,7 @@ public class DevopsEnvResourceServiceImpl implements DevopsEnvResourceService {
     private static final String LINE_SEPARATOR = "line.separator";
     private static final String NONE_LABEL = "<none>";
     private static JSON json = new JSON();
+    private static ObjectMapper objectMapper = new ObjectMapper();
 
     @Autowired
     private DevopsEnvResourceRepository devopsEnvResourceRepository;
@@ -51,27 +56,56 @@ public class DevopsEnvResourceServiceImpl implements DevopsEnvResourceService {
 
     @Override
     public DevopsEnvResourceDTO listResources(Long instanceId) {
-        ApplicationInstanceE applicationInstanceE = applicationInstanceRepository.selectById(instanceId);
-        List<DevopsEnvResourceE> devopsEnvResourceES =
-                devopsEnvResourceRepository.listByInstanceId(instanceId);
-        DevopsEnvResourceDTO devopsEnvResourceDTO = new DevopsEnvResourceDTO();
-        if (devopsEnvResourceES == null) {
-            return devopsEnvResourceDTO;
-        }
-
-        // 关联资源
-        devopsEnvResourceES.forEach(devopsInstanceResourceE -> dealWithResource(
-                devopsEnvResourceDetailRepository.query(devopsInstanceResourceE.getDevopsEnvResourceDetailE().getId()),
-                devopsInstanceResourceE,
-                devopsEnvResourceDTO,
-                applicationInstanceE.getDevopsEnvironmentE().getId()
-                )
-        );
-        return devopsEnvResourceDTO;
+        return listResources(instanceId, false);
     }
 
     @Override
     public DevopsEnvResourceDTO listResourcesInHelmRelease(Long instanceId) {
+        return listResources(instanceId, true);
+    }
+
+    @Override
+    public void fillResourceSummary(String kind, DevopsEnvResourceDetailE devopsEnvResourceDetailE) {
+        ResourceType resourceType = ResourceType.forString(kind);
+        if (resourceType == null) {
+            resourceType = ResourceType.MISSTYPE;
+        }
+        DevopsEnvResourceDTO summary = new DevopsEnvResourceDTO();
+        try {
+            addResourceToDTO(resourceType, devopsEnvResourceDetailE.getMessage(), summary);
+            devopsEnvResourceDetailE.setSummary(JSONObject.toJSONString(summary));
+            devopsEnvResourceDetailE.setReleaseGenerated(isReleaseGenerated(devopsEnvResourceDetailE.getMessage()));
+        } catch (Exception e) {
+            // 摘要置为空串而不是null，避免选择性更新时保留旧的摘要，查询时再解析资源信息
+            devopsEnvResourceDetailE.setSummary("");
+            devopsEnvResourceDetailE.setReleaseGenerated(false);
+        }
+    }
+
+    @Override
+    public Long fillResourceSummaries(Long lastDetailId, int size) {
+        List<DevopsEnvResourceE> devopsEnvResourceES = devopsEnvResourceRepository.listWithoutSummary(lastDetailId, size);
+        if (devopsEnvResourceES.isEmpty()) {
+            return null;
+        }
+        devopsEnvResourceES.forEach(devopsEnvResourceE -> {
+            DevopsEnvResourceDetailE devopsEnvResourceDetailE = devopsEnvResourceDetailRepository.query(
+                    devopsEnvResourceE.getDevopsEnvResourceDetailE().getId());
+            // 生成失败时摘要为空串，不会被再次查出
+            fillResourceSummary(devopsEnvResourceE.getKind(), devopsEnvResourceDetailE);
+            devopsEnvResourceDetailRepository.updateSummary(devopsEnvResourceDetailE);
+        });
+        return devopsEnvResourceES.get(devopsEnvResourceES.size() - 1).getDevopsEnvResourceDetailE().getId();
+    }
+
+    /**
+     * 查询实例的资源，优先使用资源更新时生成的摘要，没有摘要的资源再解析资源信息
+     *
+     * @param instanceId   实例id
+     * @param releaseOnly 是否只查询chart包中定义的资源
+     * @return 实例的资源
+     */
+    private DevopsEnvResourceDTO listResources(Long instanceId, boolean releaseOnly) {
         ApplicationInstanceE applicationInstanceE = applicationInstanceRepository.selectById(instanceId);
         List<DevopsEnvResourceE> devopsEnvResourceES =
                 devopsEnvResourceRepository.listByInstanceId(instanceId);
@@ -79,18 +113,111 @@ public class DevopsEnvResourceServiceImpl implements DevopsEnvResourceService {
         if (devopsEnvResourceES == null) {
             return devopsEnvResourceDTO;
         }
+        Long envId = applicationInstanceE.getDevopsEnvironmentE().getId();
+        Map<Long, DevopsEnvResourceDetailE> summaries = listSummaries(devopsEnvResourceES.stream()
+                .map(devopsEnvResourceE -> devopsEnvResourceE.getDevopsEnvResourceDetailE().getId())
+                .collect(Collectors.toList()));
+        Map<String, List<IngressDTO>> serviceIngresses = listServiceIngresses(devopsEnvResourceES.stream()
+                .filter(devopsEnvResourceE -> ResourceType.SERVICE.getType().equals(devopsEnvResourceE.getKind()))
+                .map(DevopsEnvResourceE::getName)
+                .collect(Collectors.toSet()), envId);
 
         // 关联资源
         devopsEnvResourceES.forEach(devopsInstanceResourceE -> {
-                    DevopsEnvResourceDetailE detailE = devopsEnvResourceDetailRepository.query(devopsInstanceResourceE.getDevopsEnvResourceDetailE().getId());
-                    if (isReleaseGenerated(detailE.getMessage())) {
-                        dealWithResource(detailE, devopsInstanceResourceE, devopsEnvResourceDTO, applicationInstanceE.getDevopsEnvironmentE().getId());
+                    Long detailId = devopsInstanceResourceE.getDevopsEnvResourceDetailE().getId();
+                    DevopsEnvResourceDetailE summaryE = summaries.get(detailId);
+                    if (summaryE == null || StringUtils.isEmpty(summaryE.getSummary())) {
+                        DevopsEnvResourceDetailE detailE = devopsEnvResourceDetailRepository.query(detailId);
+                        if (!releaseOnly || isReleaseGenerated(detailE.getMessage())) {
+                            dealWithResource(detailE, devopsInstanceResourceE, devopsEnvResourceDTO, serviceIngresses);
+                        }
+                    } else if (!releaseOnly || Boolean.TRUE.equals(summaryE.getReleaseGenerated())) {
+                        if (ResourceType.SERVICE.getType().equals(devopsInstanceResourceE.getKind())) {
+                            addServiceIngressesToResource(devopsEnvResourceDTO, devopsInstanceResourceE.getName(), serviceIngresses);
+                        }
+                        mergeSummary(devopsEnvResourceDTO,
+                                JSONObject.parseObject(summaryE.getSummary(), DevopsEnvResourceDTO.class));
                     }
                 }
         );
         return devopsEnvResourceDTO;
     }
 
+    private Map<Long, DevopsEnvResourceDetailE> listSummaries(List<Long> detailIds) {
+        return devopsEnvResourceDetailRepository.listSummaryByIds(detailIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(DevopsEnvResourceDetailE::getId, Function.identity()));
+    }
+
+    /**
+     * 查询网络关联的域名，所有网络的域名资源和摘要各只查询一次
+     *
+     * @param serviceNames 网络名称
+     * @param envId        环境id
+     * @return 网络名称到域名的映射
+     */
+    private Map<String, List<IngressDTO>> listServiceIngresses(Set<String> serviceNames, Long envId) {
+        Map<String, List<String>> ingressNamesByService = new HashMap<>();
+        serviceNames.forEach(serviceName -> {
+            DevopsServiceE devopsServiceE = devopsServiceRepository.selectByNameAndEnvId(serviceName, envId);
+            if (devopsServiceE != null) {
+                ingressNamesByService.put(serviceName,
+                        devopsIngressRepository.queryIngressNameByServiceId(devopsServiceE.getId()));
+            }
+        });
+        Set<String> ingressNames = ingressNamesByService.values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toSet());
+        Map<String, DevopsEnvResourceE> ingressResources = new HashMap<>();
+        devopsEnvResourceRepository.listByEnvIdAndKindAndNames(envId, ResourceType.INGRESS.getType(), ingressNames)
+                .forEach(devopsEnvResourceE -> ingressResources.putIfAbsent(devopsEnvResourceE.getName(), devopsEnvResourceE));
+        //升级0.11.0-0.12.0,资源表新增envId,修复以前的域名数据
+        Set<String> legacyIngressNames = ingressNames.stream()
+                .filter(ingressName -> !ingressResources.containsKey(ingressName))
+                .collect(Collectors.toSet());
+        devopsEnvResourceRepository.listByEnvIdAndKindAndNames(null, ResourceType.INGRESS.getType(), legacyIngressNames)
+                .forEach(devopsEnvResourceE -> ingressResources.putIfAbsent(devopsEnvResourceE.getName(), devopsEnvResourceE));
+
+        Map<Long, DevopsEnvResourceDetailE> summaries = listSummaries(ingressResources.values().stream()
+                .map(devopsEnvResourceE -> devopsEnvResourceE.getDevopsEnvResourceDetailE().getId())
+                .collect(Collectors.toList()));
+        Map<String, List<IngressDTO>> ingressDTOs = new HashMap<>();
+        ingressResources.forEach((ingressName, devopsEnvResourceE) -> {
+            Long detailId = devopsEnvResourceE.getDevopsEnvResourceDetailE().getId();
+            DevopsEnvResourceDetailE summaryE = summaries.get(detailId);
+            if (summaryE != null && !StringUtils.isEmpty(summaryE.getSummary())) {
+                ingressDTOs.put(ingressName, JSONObject.parseObject(
+                        summaryE.getSummary(), DevopsEnvResourceDTO.class).getIngressDTOS());
+            } else {
+                DevopsEnvResourceDTO devopsEnvResourceDTO = new DevopsEnvResourceDTO();
+                addIngressToResource(devopsEnvResourceDTO, json.deserialize(
+                        devopsEnvResourceDetailRepository.query(detailId).getMessage(), V1beta1Ingress.class));
+                ingressDTOs.put(ingressName, devopsEnvResourceDTO.getIngressDTOS());
+            }
+        });
+
+        Map<String, List<IngressDTO>> serviceIngresses = new HashMap<>();
+        ingressNamesByService.forEach((serviceName, domainNames) -> serviceIngresses.put(serviceName,
+                domainNames.stream()
+                        .filter(ingressDTOs::containsKey)
+                        .flatMap(domainName -> ingressDTOs.get(domainName).stream())
+                        .collect(Collectors.toList())));
+        return serviceIngresses;
+    }
+
+    private void mergeSummary(DevopsEnvResourceDTO devopsEnvResourceDTO, DevopsEnvResourceDTO summary) {
+        devopsEnvResourceDTO.getPodDTOS().addAll(summary.getPodDTOS());
+        devopsEnvResourceDTO.getDeploymentDTOS().addAll(summary.getDeploymentDTOS());
+        devopsEnvResourceDTO.getServiceDTOS().addAll(summary.getServiceDTOS());
+        devopsEnvResourceDTO.getIngressDTOS().addAll(summary.getIngressDTOS());
+        devopsEnvResourceDTO.getReplicaSetDTOS().addAll(summary.getReplicaSetDTOS());
+        devopsEnvResourceDTO.getDaemonSetDTOS().addAll(summary.getDaemonSetDTOS());
+        devopsEnvResourceDTO.getStatefulSetDTOS().addAll(summary.getStatefulSetDTOS());
+        devopsEnvResourceDTO.getPersistentVolumeClaimDTOS().addAll(summary.getPersistentVolumeClaimDTOS());
+    }
+
     /**
      * 判断该资源是否是应用chart包中定义而生成资源
      *
@@ -99,7 +226,7 @@ public class DevopsEnvResourceServiceImpl implements DevopsEnvResourceService {
      */
     private boolean isReleaseGenerated(String message) {
         try {
-            JsonNode info = new ObjectMapper().readTree(message);
+            JsonNode info = objectMapper.readTree(message);
             return info.get("metadata").get("labels").get("choerodon.io/release") != null;
         } catch (Exception e) {
             return false;
@@ -113,87 +240,61 @@ public class DevopsEnvResourceServiceImpl implements DevopsEnvResourceService {
      * @param devopsEnvResourceDetailE 资源详情
      * @param devopsInstanceResourceE  资源
      * @param devopsEnvResourceDTO     存放处理结果的dto
-     * @param envId                    环境id
+     * @param serviceIngresses         网络名称到域名的映射
      */
-    private void dealWithResource(DevopsEnvResourceDetailE devopsEnvResourceDetailE, DevopsEnvResourceE devopsInstanceResourceE, DevopsEnvResourceDTO devopsEnvResourceDTO, Long envId) {
+    private void dealWithResource(DevopsEnvResourceDetailE devopsEnvResourceDetailE, DevopsEnvResourceE devopsInstanceResourceE, DevopsEnvResourceDTO devopsEnvResourceDTO, Map<String, List<IngressDTO>> serviceIngresses) {
         ResourceType resourceType = ResourceType.forString(devopsInstanceResourceE.getKind());
         if (resourceType == null) {
             resourceType = ResourceType.MISSTYPE;
         }
+        if (resourceType == ResourceType.SERVICE) {
+            addServiceIngressesToResource(devopsEnvResourceDTO, devopsInstanceResourceE.getName(), serviceIngresses);
+        }
+        if (resourceType == ResourceType.INGRESS && devopsInstanceResourceE.getApplicationInstanceE() == null) {
+            return;
+        }
+        addResourceToDTO(resourceType, devopsEnvResourceDetailE.getMessage(), devopsEnvResourceDTO);
+    }
+
+    /**
+     * 解析资源信息，根据类型填入 devopsEnvResourceDTO 中
+     *
+     * @param resourceType         资源类型
+     * @param message              资源信息
+     * @param devopsEnvResourceDTO 存放处理结果的dto
+     */
+    private void addResourceToDTO(ResourceType resourceType, String message, DevopsEnvResourceDTO devopsEnvResourceDTO) {
         switch (resourceType) {
             case POD:
-                V1Pod v1Pod = json.deserialize(devopsEnvResourceDetailE.getMessage(), V1Pod.class);
+                V1Pod v1Pod = json.deserialize(message, V1Pod.class);
                 addPodToResource(devopsEnvResourceDTO, v1Pod);
                 break;
             case DEPLOYMENT:
-                V1beta2Deployment v1beta2Deployment = json.deserialize(
-                        devopsEnvResourceDetailE.getMessage(),
-                        V1beta2Deployment.class);
+                V1beta2Deployment v1beta2Deployment = json.deserialize(message, V1beta2Deployment.class);
                 addDeploymentToResource(devopsEnvResourceDTO, v1beta2Deployment);
                 break;
             case SERVICE:
-                V1Service v1Service = json.deserialize(devopsEnvResourceDetailE.getMessage(),
-                        V1Service.class);
-                DevopsServiceE devopsServiceE = devopsServiceRepository.selectByNameAndEnvId(
-                        devopsInstanceResourceE.getName(), envId);
-                if (devopsServiceE != null) {
-                    List<String> domainNames =
-                            devopsIngressRepository.queryIngressNameByServiceId(
-                                    devopsServiceE.getId());
-                    domainNames.forEach(domainName -> {
-                        DevopsEnvResourceE devopsEnvResourceE1 =
-                                devopsEnvResourceRepository.queryResource(
-                                        null,
-                                        null,
-                                        envId,
-                                        "Ingress",
-                                        domainName);
-                        //升级0.11.0-0.12.0,资源表新增envId,修复以前的域名数据
-                        if (devopsEnvResourceE1 == null) {
-                            devopsEnvResourceE1 = devopsEnvResourceRepository.queryResource(
-                                    null,
-                                    null,
-                                    null,
-                                    "Ingress",
-                                    domainName);
-                        }
-                        if (devopsEnvResourceE1 != null) {
-                            DevopsEnvResourceDetailE devopsEnvResourceDetailE1 =
-                                    devopsEnvResourceDetailRepository.query(
-                                            devopsEnvResourceE1.getDevopsEnvResourceDetailE().getId());
-                            V1beta1Ingress v1beta1Ingress = json.deserialize(
-                                    devopsEnvResourceDetailE1.getMessage(),
-                                    V1beta1Ingress.class);
-                            addIngressToResource(devopsEnvResourceDTO, v1beta1Ingress);
-                        }
-                    });
-                }
+                V1Service v1Service = json.deserialize(message, V1Service.class);
                 addServiceToResource(devopsEnvResourceDTO, v1Service);
                 break;
             case INGRESS:
-                if (devopsInstanceResourceE.getApplicationInstanceE() != null) {
-                    V1beta1Ingress v1beta1Ingress = json.deserialize(
-                            devopsEnvResourceDetailE.getMessage(),
-                            V1beta1Ingress.class);
-                    addIngressToResource(devopsEnvResourceDTO, v1beta1Ingress);
-                }
+                V1beta1Ingress v1beta1Ingress = json.deserialize(message, V1beta1Ingress.class);
+                addIngressToResource(devopsEnvResourceDTO, v1beta1Ingress);
                 break;
             case REPLICASET:
-                V1beta2ReplicaSet v1beta2ReplicaSet = json.deserialize(
-                        devopsEnvResourceDetailE.getMessage(),
-                        V1beta2ReplicaSet.class);
+                V1beta2ReplicaSet v1beta2ReplicaSet = json.deserialize(message, V1beta2ReplicaSet.class);
                 addReplicaSetToResource(devopsEnvResourceDTO, v1beta2ReplicaSet);
                 break;
             case DAEMONSET:
-                V1beta2DaemonSet v1beta2DaemonSet = json.deserialize(devopsEnvResourceDetailE.getMessage(), V1beta2DaemonSet.class);
+                V1beta2DaemonSet v1beta2DaemonSet = json.deserialize(message, V1beta2DaemonSet.class);
                 addDaemonSetToResource(devopsEnvResourceDTO, v1beta2DaemonSet);
                 break;
             case STATEFULSET:
-                V1beta2StatefulSet v1beta2StatefulSet = json.deserialize(devopsEnvResourceDetailE.getMessage(), V1beta2StatefulSet.class);
+                V1beta2StatefulSet v1beta2StatefulSet = json.deserialize(message, V1beta2StatefulSet.class);
                 addStatefulSetSetToResource(devopsEnvResourceDTO, v1beta2StatefulSet);
                 break;
             case PERSISTENT_VOLUME_CLAIM:
-                V1PersistentVolumeClaim persistentVolumeClaim = json.deserialize(devopsEnvResourceDetailE.getMessage(), V1PersistentVolumeClaim.class);
+                V1PersistentVolumeClaim persistentVolumeClaim = json.deserialize(message, V1PersistentVolumeClaim.class);
                 addPersistentVolumeClaimToResource(devopsEnvResourceDTO, persistentVolumeClaim);
                 break;
             default:
@@ -201,6 +302,21 @@ public class DevopsEnvResourceServiceImpl implements DevopsEnvResourceService {
         }
     }
 
+    /**
+     * 添加网络关联的域名
+     *
+     * @param devopsEnvResourceDTO 实例资源参数
+     * @param serviceName          网络名称
+     * @param serviceIngresses     网络名称到域名的映射
+     */
+    private void addServiceIngressesToResource(DevopsEnvResourceDTO devopsEnvResourceDTO, String serviceName,
+                                               Map<String, List<IngressDTO>> serviceIngresses) {
+        List<IngressDTO> ingressDTOS = serviceIngresses.get(serviceName);
+        if (ingressDTOS != null) {
+            devopsEnvResourceDTO.getIngressDTOS().addAll(ingressDTOS);
+        }
+    }
+
 
     @Override
     public List<InstanceEventDTO> listInstancePodEvent(Long instanceId) {
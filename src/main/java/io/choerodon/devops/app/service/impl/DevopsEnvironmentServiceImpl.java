@@ -1,6 +1,5 @@
 package io.choerodon.devops.app.service.impl;
 
-import java.io.File;
 import java.util.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -96,7 +95,7 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
     @Autowired
     private EnvUtil envUtil;
     @Autowired
-    private GitUtil gitUtil;
+    private GitOpsRepositoryPool gitOpsRepositoryPool;
     @Autowired
     private SagaClient sagaClient;
     @Autowired
@@ -181,11 +180,10 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
     @Override
     public List<DevopsEnvGroupEnvsDTO> listDevopsEnvGroupEnvs(Long projectId, Boolean active) {
         List<DevopsEnvGroupEnvsDTO> devopsEnvGroupEnvsDTOS = new ArrayList<>();
-        List<Long> connectedClusterList = envUtil.getConnectedEnvList(envListener);
-        List<Long> upgradeClusterList = envUtil.getUpdatedEnvList(envListener);
+        Set<Long> connectedClusterIds = envUtil.getConnectedAndUpdatedClusterIds(envListener);
         List<DevopsEnvironmentE> devopsEnvironmentES = devopsEnviromentRepository
                 .queryByprojectAndActive(projectId, active).stream().peek(t ->
-                        setEnvStatus(connectedClusterList, upgradeClusterList, t)
+                        setEnvStatus(connectedClusterIds, t)
                 )
                 .sorted(Comparator.comparing(DevopsEnvironmentE::getSequence))
                 .collect(Collectors.toList());
@@ -197,9 +195,16 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
             return devopsEnvGroupEnvsDTOS;
         }
         List<DevopsEnvGroupE> devopsEnvGroupES = devopsEnvGroupRepository.listByProjectId(projectId);
+        Map<Long, DevopsEnvGroupE> envGroupMap = devopsEnvGroupES.stream()
+                .collect(Collectors.toMap(DevopsEnvGroupE::getId, t -> t));
+        Set<Long> clusterIds = devopsEnviromentRepDTOS.stream()
+                .map(DevopsEnviromentRepDTO::getClusterId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Long, String> clusterNames = new HashMap<>();
+        devopsClusterRepository.listByIds(clusterIds).forEach(t -> clusterNames.put(t.getId(), t.getName()));
         devopsEnviromentRepDTOS.forEach(devopsEnviromentRepDTO -> {
-            DevopsClusterE devopsClusterE = devopsClusterRepository.query(devopsEnviromentRepDTO.getClusterId());
-            devopsEnviromentRepDTO.setClusterName(devopsClusterE == null ? null : devopsClusterE.getName());
+            devopsEnviromentRepDTO.setClusterName(clusterNames.get(devopsEnviromentRepDTO.getClusterId()));
             if (devopsEnviromentRepDTO.getDevopsEnvGroupId() == null) {
                 devopsEnviromentRepDTO.setDevopsEnvGroupId(0L);
             }
@@ -213,7 +218,7 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
             DevopsEnvGroupEnvsDTO devopsEnvGroupEnvsDTO = new DevopsEnvGroupEnvsDTO();
             DevopsEnvGroupE devopsEnvGroupE = new DevopsEnvGroupE();
             if (key != 0) {
-                devopsEnvGroupE = devopsEnvGroupRepository.query(key);
+                devopsEnvGroupE = envGroupMap.containsKey(key) ? envGroupMap.get(key) : devopsEnvGroupRepository.query(key);
             }
             devopsEnvGroupEnvsDTO.setDevopsEnvGroupId(devopsEnvGroupE.getId());
             devopsEnvGroupEnvsDTO.setDevopsEnvGroupName(devopsEnvGroupE.getName());
@@ -235,21 +240,20 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
     public List<DevopsEnviromentRepDTO> listByProjectIdAndActive(Long projectId, Boolean active) {
 
         // 查询当前用户的环境权限
-        List<Long> permissionEnvIds = devopsEnvUserPermissionRepository
+        Set<Long> permissionEnvIds = devopsEnvUserPermissionRepository
                 .listByUserId(TypeUtil.objToLong(GitUserNameUtil.getUserId())).stream()
                 .filter(DevopsEnvUserPermissionE::getPermitted)
-                .map(DevopsEnvUserPermissionE::getEnvId).collect(Collectors.toList());
+                .map(DevopsEnvUserPermissionE::getEnvId).collect(Collectors.toSet());
         ProjectE projectE = iamRepository.queryIamProject(projectId);
         // 查询当前用户是否为项目所有者
         Boolean isProjectOwner = iamRepository
                 .isProjectOwner(TypeUtil.objToLong(GitUserNameUtil.getUserId()), projectE);
 
-        List<Long> connectedClusterList = envUtil.getConnectedEnvList(envListener);
-        List<Long> upgradeClusterList = envUtil.getUpdatedEnvList(envListener);
+        Set<Long> connectedClusterIds = envUtil.getConnectedAndUpdatedClusterIds(envListener);
         List<DevopsEnvironmentE> devopsEnvironmentES = devopsEnviromentRepository
                 .queryByprojectAndActive(projectId, active).stream()
                 .filter(devopsEnvironmentE -> !devopsEnvironmentE.getFailed()).peek(t -> {
-                    setEnvStatus(connectedClusterList, upgradeClusterList, t);
+                    setEnvStatus(connectedClusterIds, t);
                     // 项目成员返回拥有对应权限的环境，项目所有者返回所有环境
                     setPermission(t, permissionEnvIds, isProjectOwner);
                 })
@@ -269,9 +273,8 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
     public Boolean activeEnvironment(Long projectId, Long environmentId, Boolean active) {
         DevopsEnvironmentE devopsEnvironmentE = devopsEnviromentRepository.queryById(environmentId);
 
-        List<Long> upgradeClusterList = envUtil.getUpdatedEnvList(envListener);
-        List<Long> connectedClusterList = envUtil.getConnectedEnvList(envListener);
-        setEnvStatus(connectedClusterList, upgradeClusterList, devopsEnvironmentE);
+        Set<Long> connectedClusterIds = envUtil.getConnectedAndUpdatedClusterIds(envListener);
+        setEnvStatus(connectedClusterIds, devopsEnvironmentE);
         if (!active && devopsEnvironmentE.getConnect()) {
             devopsEnvironmentValidator.checkEnvCanDisabled(environmentId);
         }
@@ -395,11 +398,10 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
             devopsEnviromentRepository.update(devopsEnvironmentE);
             sequence = sequence + 1;
         }
-        List<Long> connectedEnvList = envUtil.getConnectedEnvList(envListener);
-        List<Long> upgradeClusterList = envUtil.getUpdatedEnvList(envListener);
+        Set<Long> connectedClusterIds = envUtil.getConnectedAndUpdatedClusterIds(envListener);
 
         devopsEnvironmentES.forEach(t ->
-                setEnvStatus(connectedEnvList, upgradeClusterList, t)
+                setEnvStatus(connectedClusterIds, t)
         );
         if (!devopsEnvironmentES.isEmpty()) {
             DevopsEnvGroupE devopsEnvGroupE = new DevopsEnvGroupE();
@@ -414,12 +416,8 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
         return devopsEnvGroupEnvsDTO;
     }
 
-    private void setEnvStatus(List<Long> connectedEnvList, List<Long> upgradeEnvList, DevopsEnvironmentE t) {
-        if (connectedEnvList.contains(t.getClusterE().getId()) && upgradeEnvList.contains(t.getClusterE().getId())) {
-            t.initConnect(true);
-        } else {
-            t.initConnect(false);
-        }
+    private void setEnvStatus(Set<Long> connectedClusterIds, DevopsEnvironmentE t) {
+        t.initConnect(connectedClusterIds.contains(t.getClusterE().getId()));
     }
 
     @Override
@@ -578,12 +576,7 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
         String url = GitUtil.getGitlabSshUrl(pattern, gitlabSshUrl, organization.getCode(),
                 projectE.getCode(), devopsEnvironmentE.getCode());
 
-        File file = new File(path);
-        gitUtil.setSshKey(devopsEnvironmentE.getEnvIdRsa());
-        if (!file.exists()) {
-            gitUtil.cloneBySsh(path, url);
-        }
-        return path;
+        return gitOpsRepositoryPool.prepare(path, url, devopsEnvironmentE.getEnvIdRsa());
     }
 
     @Override
@@ -673,15 +666,17 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
             return allMemberWithOtherUsersPage;
         } else {
             // 否则过滤项目成员中含有项目所有者的人
+            Set<Long> ownerIds = allOwnerUsersPage.getContent().stream().map(UserDTO::getId)
+                    .collect(Collectors.toSet());
             List<UserDTO> returnUserDTOList = allMemberWithOtherUsersPage.stream()
-                    .filter(e -> !allOwnerUsersPage.getContent().contains(e)).collect(Collectors.toList());
+                    .filter(e -> !ownerIds.contains(e.getId())).collect(Collectors.toList());
             // 设置过滤后的分页显示参数
             allMemberWithOtherUsersPage.setContent(returnUserDTOList);
             return allMemberWithOtherUsersPage;
         }
     }
 
-    private void setPermission(DevopsEnvironmentE devopsEnvironmentE, List<Long> permissionEnvIds,
+    private void setPermission(DevopsEnvironmentE devopsEnvironmentE, Set<Long> permissionEnvIds,
                                Boolean isProjectOwner) {
         if (permissionEnvIds.contains(devopsEnvironmentE.getId()) || isProjectOwner) {
             devopsEnvironmentE.setPermission(true);
@@ -722,14 +717,9 @@ public class DevopsEnvironmentServiceImpl implements DevopsEnvironmentService {
     public List<DevopsClusterRepDTO> listDevopsCluster(Long projectId) {
         ProjectE projectE = iamRepository.queryIamProject(projectId);
         List<DevopsClusterRepDTO> devopsClusterRepDTOS = ConvertHelper.convertList(devopsClusterRepository.listByProjectId(projectId, projectE.getOrganization().getId()), DevopsClusterRepDTO.class);
-        List<Long> connectedClusterList = envUtil.getConnectedEnvList(envListener);
-        List<Long> upgradeClusterList = envUtil.getUpdatedEnvList(envListener);
+        Set<Long> connectedClusterIds = envUtil.getConnectedAndUpdatedClusterIds(envListener);
         devopsClusterRepDTOS.forEach(t -> {
-            if (connectedClusterList.contains(t.getId()) && upgradeClusterList.contains(t.getId())) {
-                t.setConnect(true);
-            } else {
-                t.setConnect(false);
-            }
+            t.setConnect(connectedClusterIds.contains(t.getId()));
         });
         return devopsClusterRepDTOS;
     }
@@ -1,13 +1,10 @@
 package io.choerodon.devops.app.service.impl;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.util.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import com.alibaba.fastjson.JSONObject;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.choerodon.asgard.saga.annotation.Saga;
@@ -24,6 +21,7 @@ import io.choerodon.devops.domain.application.entity.gitlab.CommitE;
 import io.choerodon.devops.domain.application.entity.gitlab.CompareResultsE;
 import io.choerodon.devops.domain.application.entity.iam.UserE;
 import io.choerodon.devops.domain.application.handler.GitOpsExplainException;
+import io.choerodon.devops.domain.application.handler.GitOpsFileParser;
 import io.choerodon.devops.domain.application.handler.ResourceBundleHandler;
 import io.choerodon.devops.domain.application.repository.*;
 import io.choerodon.devops.domain.application.valueobject.*;
@@ -32,6 +30,8 @@ import io.choerodon.devops.domain.service.DeployService;
 import io.choerodon.devops.domain.service.HandlerObjectFileRelationsService;
 import io.choerodon.devops.domain.service.impl.*;
 import io.choerodon.devops.infra.common.util.FileUtil;
+import io.choerodon.devops.infra.common.util.GitCommitIndex;
+import io.choerodon.devops.infra.common.util.GitOpsRepositoryPool;
 import io.choerodon.devops.infra.common.util.GitUserNameUtil;
 import io.choerodon.devops.infra.common.util.GitUtil;
 import io.choerodon.devops.infra.common.util.TypeUtil;
@@ -52,7 +52,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.interceptor.TransactionAspectSupport;
-import org.yaml.snakeyaml.Yaml;
 
 /**
  * Creator: Runge
@@ -97,8 +96,6 @@ public class DevopsGitServiceImpl implements DevopsGitService {
     @Autowired
     private SagaClient sagaClient;
     @Autowired
-    private GitUtil gitUtil;
-    @Autowired
     private DevopsEnvironmentRepository devopsEnvironmentRepository;
     @Autowired
     private DevopsEnvFileResourceRepository devopsEnvFileResourceRepository;
@@ -128,6 +125,12 @@ public class DevopsGitServiceImpl implements DevopsGitService {
     @Autowired
     @Qualifier("handlerC7nSecretServiceImpl")
     private HandlerObjectFileRelationsService handlerC7nSecretRelationsService;
+    @Autowired
+    private GitOpsFileParser gitOpsFileParser;
+    @Autowired
+    private GitOpsRepositoryPool gitOpsRepositoryPool;
+    @Autowired
+    private GitCommitIndex gitCommitIndex;
 
     public Integer getGitlabUserId() {
         UserAttrE userAttrE = userAttrRepository.queryById(TypeUtil.objToLong(GitUserNameUtil.getUserId()));
@@ -203,15 +206,16 @@ public class DevopsGitServiceImpl implements DevopsGitService {
                 devopsGitRepository.listBranches(applicationId, pageRequest, params);
         Page<BranchDTO> page = new Page<>();
         BeanUtils.copyProperties(branches, page);
+        // 整页的创建者、提交者和issue一次查出，避免每个分支分别查询
+        Map<Long, Issue> issues = agileRepository.listIssues(projectId,
+                branches.stream().map(DevopsBranchE::getIssueId).collect(Collectors.toSet()), organization.getId());
+        Map<Long, UserE> users = devopsGitRepository.listUsersByGitlabUserIds(branches.stream()
+                .flatMap(t -> Stream.of(t.getUserId(), t.getLastCommitUser()))
+                .collect(Collectors.toSet()));
         page.setContent(branches.stream().map(t -> {
-            Issue issue = null;
-            if (t.getIssueId() != null) {
-                issue = agileRepository.queryIssue(projectId, t.getIssueId(), organization.getId());
-            }
-            UserE userE = iamRepository.queryUserByUserId(
-                    devopsGitRepository.getUserIdByGitlabUserId(t.getUserId()));
-            UserE commitUserE = iamRepository.queryUserByUserId(
-                    devopsGitRepository.getUserIdByGitlabUserId(t.getLastCommitUser()));
+            Issue issue = t.getIssueId() == null ? null : issues.get(t.getIssueId());
+            UserE userE = t.getUserId() == null ? null : users.get(t.getUserId());
+            UserE commitUserE = t.getLastCommitUser() == null ? null : users.get(t.getLastCommitUser());
             String commitUrl = String.format("%s/commit/%s?view=parallel", path, t.getLastCommit());
             return getBranchDTO(t, commitUrl, commitUserE, userE, issue);
         }).collect(Collectors.toList()));
@@ -398,6 +402,8 @@ public class DevopsGitServiceImpl implements DevopsGitService {
                 handleDiffs(gitLabProjectId, operationFiles, deletedFiles, beforeSync, beforeSyncDelete,
                         devopsEnvironmentE, devopsEnvCommitE);
             }
+            //预先计算本次同步所有文件的最新提交，后续按文件查询时直接命中
+            gitCommitIndex.getLatestCommits(path + GIT_SUFFIX, operationFiles);
             List<C7nHelmRelease> c7nHelmReleases = new ArrayList<>();
             List<V1Service> v1Services = new ArrayList<>();
             List<V1beta1Ingress> v1beta1Ingresses = new ArrayList<>();
@@ -483,28 +489,34 @@ public class DevopsGitServiceImpl implements DevopsGitService {
 
     private void handleFiles(List<String> operationFiles, List<String> deletedFiles,
                              DevopsEnvironmentE devopsEnvironmentE, DevopsEnvCommitE devopsEnvCommitE, String path) {
-        //新增解释文件记录
-        for (String filePath : operationFiles) {
-            DevopsEnvFileE devopsEnvFileE = devopsEnvFileRepository
-                    .queryByEnvAndPath(devopsEnvironmentE.getId(), filePath);
-            if (devopsEnvFileE == null) {
-                devopsEnvFileE = new DevopsEnvFileE();
-                devopsEnvFileE.setDevopsCommit(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+        //新增解释文件记录，一次遍历提交历史得到所有文件的最新提交
+        Map<String, String> latestCommits = gitCommitIndex.getLatestCommits(path + GIT_SUFFIX, operationFiles);
+        Map<String, List<DevopsEnvFileE>> existFiles = devopsEnvFileRepository
+                .listByEnvId(devopsEnvironmentE.getId()).stream()
+                .collect(Collectors.groupingBy(DevopsEnvFileE::getFilePath));
+        List<DevopsEnvFileE> createFiles = new ArrayList<>();
+        List<DevopsEnvFileE> updateFiles = new ArrayList<>();
+        for (String filePath : new LinkedHashSet<>(operationFiles)) {
+            String commit = latestCommits.getOrDefault(filePath, "");
+            List<DevopsEnvFileE> devopsEnvFileES = existFiles.get(filePath);
+            if (devopsEnvFileES == null) {
+                DevopsEnvFileE devopsEnvFileE = new DevopsEnvFileE();
+                devopsEnvFileE.setDevopsCommit(commit);
                 devopsEnvFileE.setFilePath(filePath);
                 devopsEnvFileE.setEnvId(devopsEnvCommitE.getEnvId());
-                devopsEnvFileRepository.create(devopsEnvFileE);
+                createFiles.add(devopsEnvFileE);
             } else {
-                devopsEnvFileE.setDevopsCommit(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
-                devopsEnvFileRepository.update(devopsEnvFileE);
+                devopsEnvFileES.stream()
+                        .filter(devopsEnvFileE -> !commit.equals(devopsEnvFileE.getDevopsCommit()))
+                        .forEach(devopsEnvFileE -> {
+                            devopsEnvFileE.setDevopsCommit(commit);
+                            updateFiles.add(devopsEnvFileE);
+                        });
             }
         }
-
-        for (String filePath : deletedFiles) {
-            DevopsEnvFileE devopsEnvFileE = new DevopsEnvFileE();
-            devopsEnvFileE.setEnvId(devopsEnvironmentE.getId());
-            devopsEnvFileE.setFilePath(filePath);
-            devopsEnvFileRepository.delete(devopsEnvFileE);
-        }
+        devopsEnvFileRepository.batchCreate(createFiles);
+        devopsEnvFileRepository.batchUpdateDevopsCommit(updateFiles);
+        devopsEnvFileRepository.deleteByEnvIdAndPaths(devopsEnvironmentE.getId(), deletedFiles);
     }
 
     private void handleTag(PushWebHookDTO pushWebHookDTO, Integer gitLabProjectId, Integer gitLabUserId,
@@ -580,103 +592,80 @@ public class DevopsGitServiceImpl implements DevopsGitService {
                                                         List<DevopsEnvFileResourceE> beforeSyncDelete,
                                                         List<C7nCertification> c7nCertifications) {
         Map<String, String> objectPath = new HashMap<>();
-
-        files.forEach(filePath -> {
-            Yaml yaml = new Yaml();
-            File file = new File(String.format("%s/%s", path, filePath));
-            try {
-                for (Object data : yaml.loadAll(new FileInputStream(file))) {
-                    JSONObject jsonObject = new JSONObject((Map<String, Object>) data);
-                    String type = jsonObject.get("kind").toString();
-                    switch (type) {
-                        case C7NHELM_RELEASE:
-                            //反序列文件为c7nHelmRelease对象,
-                            ConvertK8sObjectService<C7nHelmRelease> convertC7nHelmRelease = new ConvertC7nHelmReleaseServiceImpl();
-                            convertC7nHelmRelease.setT(new C7nHelmRelease());
-                            C7nHelmRelease c7nHelmRelease = convertC7nHelmRelease
-                                    .serializableObject(jsonObject.toJSONString(), filePath, objectPath);
-                            //校验参数校验参数是否合法
-                            convertC7nHelmRelease.checkParameters(c7nHelmRelease, objectPath);
-                            //校验对象是否在其它文件中已经定义
-                            convertC7nHelmRelease
-                                    .checkIfExist(c7nHelmReleases, envId, beforeSyncDelete, objectPath, c7nHelmRelease);
-                            break;
-                        case INGRESS:
-                            //反序列文件为V1beta1ingress对象,
-                            ConvertK8sObjectService<V1beta1Ingress> convertV1beta1Ingress = new ConvertV1beta1IngressServiceImpl();
-                            convertV1beta1Ingress.setT(new V1beta1Ingress());
-                            V1beta1Ingress v1beta1Ingress = convertV1beta1Ingress
-                                    .serializableObject(jsonObject.toJSONString(), filePath, objectPath);
-                            //校验参数校验参数是否合法
-                            convertV1beta1Ingress.checkParameters(v1beta1Ingress, objectPath);
-                            //校验对象是否在其它文件中已经定义
-                            convertV1beta1Ingress.checkIfExist(v1beta1Ingresses, envId, beforeSyncDelete, objectPath,
-                                    v1beta1Ingress);
-                            break;
-                        case SERVICE:
-                            //反序列文件为V1service对象,
-                            ConvertK8sObjectService<V1Service> convertV1Service = new ConvertV1ServiceServiceImpl();
-                            convertV1Service.setT(new V1Service());
-                            V1Service v1Service = convertV1Service
-                                    .serializableObject(jsonObject.toJSONString(), filePath, objectPath);
-                            //校验参数校验参数是否合法
-                            convertV1Service.checkParameters(v1Service, objectPath);
-                            //校验对象是否在其它文件中已经定义
-                            convertV1Service.checkIfExist(v1Services, envId, beforeSyncDelete, objectPath, v1Service);
-                            break;
-                        case CERTIFICATE:
-                            //反序列文件为C7nCertification对象,
-                            ConvertK8sObjectService<C7nCertification> convertC7nCertification = new ConvertC7nCertificationServiceImpl();
-                            convertC7nCertification.setT(new C7nCertification());
-                            C7nCertification c7nCertification = convertC7nCertification
-                                    .serializableObject(jsonObject.toJSONString(), filePath, objectPath);
-                            //校验参数校验参数是否合法
-                            convertC7nCertification.checkParameters(c7nCertification, objectPath);
-                            //校验对象是否在其它文件中已经定义
-                            convertC7nCertification.checkIfExist(c7nCertifications, envId, beforeSyncDelete, objectPath,
-                                    c7nCertification);
-                            break;
-                        case CONFIGMAP:
-                            //反序列文件为ConfigMap对象,
-                            ConvertK8sObjectService<V1ConfigMap> convertConfigMap = new ConvertV1ConfigMapServiceImpl();
-                            convertConfigMap.setT(new V1ConfigMap());
-                            V1ConfigMap v1ConfigMap = convertConfigMap
-                                    .serializableObject(jsonObject.toJSONString(), filePath, objectPath);
-                            //校验参数校验参数是否合法
-                            convertConfigMap.checkParameters(v1ConfigMap, objectPath);
-                            //校验对象是否在其它文件中已经定义
-                            convertConfigMap.checkIfExist(configMaps, envId, beforeSyncDelete, objectPath,
-                                    v1ConfigMap);
-                            break;
-                        case SECRET:
-                            // 反序列文件为C7nSecret对象
-                            ConvertK8sObjectService<C7nSecret> convertC7nSecret = new ConvertC7nSecretServiceImpl();
-                            convertC7nSecret.setT(new C7nSecret());
-                            C7nSecret c7nSecret = convertC7nSecret
-                                    .serializableObject(jsonObject.toJSONString(), filePath, objectPath);
-                            // 校验参数校验参数是否合法
-                            convertC7nSecret.checkParameters(c7nSecret, objectPath);
-                            // 校验对象是否在其它文件中已经定义
-                            convertC7nSecret.checkIfExist(c7nSecrets, envId, beforeSyncDelete, objectPath, c7nSecret);
-                            break;
-                        case ENDPOINTS:
-                            // 反序列文件为V1EndPoints对象
-                            ConvertK8sObjectService<V1Endpoints> convertEndPoints = new ConvertV1EndPointsServiceImpl();
-                            convertEndPoints.setT(new V1Endpoints());
-                            V1Endpoints v1Endpoints1 = convertEndPoints
-                                    .serializableObject(jsonObject.toJSONString(), filePath, objectPath);
-                            // 校验参数校验参数是否合法
-                            convertEndPoints.checkParameters(v1Endpoints1, objectPath);
-                            v1Endpoints.add(v1Endpoints1);
-                            break;
-                        default:
-                            break;
-                    }
+        ConvertK8sObjectService<C7nHelmRelease> convertC7nHelmRelease = new ConvertC7nHelmReleaseServiceImpl();
+        ConvertK8sObjectService<V1beta1Ingress> convertV1beta1Ingress = new ConvertV1beta1IngressServiceImpl();
+        ConvertK8sObjectService<V1Service> convertV1Service = new ConvertV1ServiceServiceImpl();
+        ConvertK8sObjectService<C7nCertification> convertC7nCertification = new ConvertC7nCertificationServiceImpl();
+        ConvertK8sObjectService<V1ConfigMap> convertConfigMap = new ConvertV1ConfigMapServiceImpl();
+        ConvertK8sObjectService<C7nSecret> convertC7nSecret = new ConvertC7nSecretServiceImpl();
+        ConvertK8sObjectService<V1Endpoints> convertEndPoints = new ConvertV1EndPointsServiceImpl();
+
+        //并行解析文件，再按文件顺序校验对象，保证重复对象的判断与串行解析时一致
+        for (GitOpsFileParser.ParsedFile parsedFile : gitOpsFileParser.parse(path, files)) {
+            String filePath = parsedFile.getFilePath();
+            for (GitOpsFileParser.ParsedObject parsedObject : parsedFile.getObjects()) {
+                objectPath.put(TypeUtil.objToString(parsedObject.getObject().hashCode()), filePath);
+                switch (parsedObject.getKind()) {
+                    case C7NHELM_RELEASE:
+                        C7nHelmRelease c7nHelmRelease = (C7nHelmRelease) parsedObject.getObject();
+                        //校验参数校验参数是否合法
+                        convertC7nHelmRelease.checkParameters(c7nHelmRelease, objectPath);
+                        //校验对象是否在其它文件中已经定义
+                        convertC7nHelmRelease
+                                .checkIfExist(c7nHelmReleases, envId, beforeSyncDelete, objectPath, c7nHelmRelease);
+                        break;
+                    case INGRESS:
+                        V1beta1Ingress v1beta1Ingress = (V1beta1Ingress) parsedObject.getObject();
+                        //校验参数校验参数是否合法
+                        convertV1beta1Ingress.checkParameters(v1beta1Ingress, objectPath);
+                        //校验对象是否在其它文件中已经定义
+                        convertV1beta1Ingress.checkIfExist(v1beta1Ingresses, envId, beforeSyncDelete, objectPath,
+                                v1beta1Ingress);
+                        break;
+                    case SERVICE:
+                        V1Service v1Service = (V1Service) parsedObject.getObject();
+                        //校验参数校验参数是否合法
+                        convertV1Service.checkParameters(v1Service, objectPath);
+                        //校验对象是否在其它文件中已经定义
+                        convertV1Service.checkIfExist(v1Services, envId, beforeSyncDelete, objectPath, v1Service);
+                        break;
+                    case CERTIFICATE:
+                        C7nCertification c7nCertification = (C7nCertification) parsedObject.getObject();
+                        //校验参数校验参数是否合法
+                        convertC7nCertification.checkParameters(c7nCertification, objectPath);
+                        //校验对象是否在其它文件中已经定义
+                        convertC7nCertification.checkIfExist(c7nCertifications, envId, beforeSyncDelete, objectPath,
+                                c7nCertification);
+                        break;
+                    case CONFIGMAP:
+                        V1ConfigMap v1ConfigMap = (V1ConfigMap) parsedObject.getObject();
+                        //校验参数校验参数是否合法
+                        convertConfigMap.checkParameters(v1ConfigMap, objectPath);
+                        //校验对象是否在其它文件中已经定义
+                        convertConfigMap.checkIfExist(configMaps, envId, beforeSyncDelete, objectPath,
+                                v1ConfigMap);
+                        break;
+                    case SECRET:
+                        C7nSecret c7nSecret = (C7nSecret) parsedObject.getObject();
+                        // 校验参数校验参数是否合法
+                        convertC7nSecret.checkParameters(c7nSecret, objectPath);
+                        // 校验对象是否在其它文件中已经定义
+                        convertC7nSecret.checkIfExist(c7nSecrets, envId, beforeSyncDelete, objectPath, c7nSecret);
+                        break;
+                    case ENDPOINTS:
+                        V1Endpoints v1Endpoints1 = (V1Endpoints) parsedObject.getObject();
+                        // 校验参数校验参数是否合法
+                        convertEndPoints.checkParameters(v1Endpoints1, objectPath);
+                        v1Endpoints.add(v1Endpoints1);
+                        break;
+                    default:
+                        break;
                 }
-            } catch (FileNotFoundException e) {
-                throw new CommonException(e.getMessage(), e);
             }
-        });
+            if (parsedFile.getError() != null) {
+                throw parsedFile.getError();
+            }
+        }
         return objectPath;
     }
 
@@ -751,10 +740,10 @@ public class DevopsGitServiceImpl implements DevopsGitService {
             devopsEnvFileErrorE = new DevopsEnvFileErrorE();
             devopsEnvFileErrorE.setFilePath(filePath);
             devopsEnvFileErrorE.setEnvId(envId);
-            devopsEnvFileErrorE.setCommit(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+            devopsEnvFileErrorE.setCommit(gitCommitIndex.getLatestCommit(path + GIT_SUFFIX, filePath));
         } else {
             devopsEnvFileErrorE.setFilePath(filePath);
-            devopsEnvFileErrorE.setCommit(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+            devopsEnvFileErrorE.setCommit(gitCommitIndex.getLatestCommit(path + GIT_SUFFIX, filePath));
         }
         return devopsEnvFileErrorE;
     }
@@ -766,16 +755,6 @@ public class DevopsGitServiceImpl implements DevopsGitService {
     }
 
     private void handDevopsEnvGitRepository(String path, String url, String envIdRsa, String commit) {
-        File file = new File(path);
-        gitUtil.setSshKey(envIdRsa);
-        final String repoPath = path + GIT_SUFFIX;
-        if (!file.exists()) {
-            gitUtil.cloneBySsh(path, url);
-            gitUtil.checkout(repoPath, commit);
-        } else {
-            gitUtil.checkout(repoPath, "master");
-            gitUtil.pullBySsh(repoPath);
-            gitUtil.checkout(repoPath, commit);
-        }
+        gitOpsRepositoryPool.update(path, url, envIdRsa, commit);
     }
 }
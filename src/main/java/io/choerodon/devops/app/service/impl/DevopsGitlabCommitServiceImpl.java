@@ -7,6 +7,7 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import io.choerodon.core.domain.Page;
 import io.choerodon.devops.api.dto.CommitFormRecordDTO;
+import io.choerodon.devops.api.dto.CommitDTO;
 import io.choerodon.devops.api.dto.CommitFormUserDTO;
 import io.choerodon.devops.api.dto.DevopsGitlabCommitDTO;
 import io.choerodon.devops.api.dto.PushWebHookDTO;
@@ -44,29 +45,27 @@ public class DevopsGitlabCommitServiceImpl implements DevopsGitlabCommitService
         ApplicationE applicationE = applicationRepository.queryByToken(token);
         String ref = pushWebHookDTO.getRef().split("/")[2];
         if (!pushWebHookDTO.getCommits().isEmpty()) {
-            pushWebHookDTO.getCommits().forEach(commitDTO -> {
-                DevopsGitlabCommitE devopsGitlabCommitE = devopsGitlabCommitRepository.queryByShaAndRef(commitDTO.getId(), ref);
-
-                if (devopsGitlabCommitE == null) {
-                    devopsGitlabCommitE = new DevopsGitlabCommitE();
-                    devopsGitlabCommitE.setAppId(applicationE.getId());
-                    devopsGitlabCommitE.setCommitContent(commitDTO.getMessage());
-                    devopsGitlabCommitE.setCommitSha(commitDTO.getId());
-                    devopsGitlabCommitE.setRef(ref);
-                    devopsGitlabCommitE.setUrl(commitDTO.getUrl());
-                    if ("root".equals(commitDTO.getAuthor().getName())) {
-                        devopsGitlabCommitE.setUserId(1L);
-                    } else {
-                        UserE userE = iamRepository.queryByEmail(applicationE.getProjectE().getId(),
-                                commitDTO.getAuthor().getEmail());
-                        if (userE != null) {
-                            devopsGitlabCommitE.setUserId(userE.getId());
-                        }
-                    }
-                    devopsGitlabCommitE.setCommitDate(commitDTO.getTimestamp());
-                    devopsGitlabCommitRepository.create(devopsGitlabCommitE);
-                }
-            });
+            //一次查询分支上已记录的commit，未记录的commit批量写入
+            Set<String> existingShas = devopsGitlabCommitRepository.listExistingShas(ref,
+                    pushWebHookDTO.getCommits().stream().map(CommitDTO::getId).collect(Collectors.toSet()));
+            Map<String, Long> emailUserIds = new HashMap<>();
+            List<DevopsGitlabCommitE> devopsGitlabCommitES = new ArrayList<>();
+            // 已记录的和本次推送中重复的commit都跳过
+            pushWebHookDTO.getCommits().stream()
+                    .filter(commitDTO -> existingShas.add(commitDTO.getId()))
+                    .forEach(commitDTO -> {
+                        DevopsGitlabCommitE devopsGitlabCommitE = new DevopsGitlabCommitE();
+                        devopsGitlabCommitE.setAppId(applicationE.getId());
+                        devopsGitlabCommitE.setCommitContent(commitDTO.getMessage());
+                        devopsGitlabCommitE.setCommitSha(commitDTO.getId());
+                        devopsGitlabCommitE.setRef(ref);
+                        devopsGitlabCommitE.setUrl(commitDTO.getUrl());
+                        devopsGitlabCommitE.setUserId(getUserId(applicationE, commitDTO.getAuthor().getName(),
+                                commitDTO.getAuthor().getEmail(), emailUserIds));
+                        devopsGitlabCommitE.setCommitDate(commitDTO.getTimestamp());
+                        devopsGitlabCommitES.add(devopsGitlabCommitE);
+                    });
+            devopsGitlabCommitRepository.batchCreate(devopsGitlabCommitES);
         } else {
             //直接从一个分支切出来另外一个分支，没有commits记录
             DevopsGitlabCommitE devopsGitlabCommitE = devopsGitlabCommitRepository.queryByShaAndRef(pushWebHookDTO.getCheckoutSha(), ref);
@@ -78,15 +77,8 @@ public class DevopsGitlabCommitServiceImpl implements DevopsGitlabCommitService
                 devopsGitlabCommitE.setCommitSha(commitE.getId());
                 devopsGitlabCommitE.setRef(ref);
                 devopsGitlabCommitE.setUrl(commitE.getUrl());
-                if ("root".equals(commitE.getAuthorName())) {
-                    devopsGitlabCommitE.setUserId(1L);
-                } else {
-                    UserE userE = iamRepository.queryByEmail(applicationE.getProjectE().getId(),
-                            commitE.getAuthorEmail());
-                    if (userE != null) {
-                        devopsGitlabCommitE.setUserId(userE.getId());
-                    }
-                }
+                devopsGitlabCommitE.setUserId(getUserId(applicationE, commitE.getAuthorName(),
+                        commitE.getAuthorEmail(), new HashMap<>()));
                 devopsGitlabCommitE.setCommitDate(commitE.getCommittedDate());
                 devopsGitlabCommitRepository.create(devopsGitlabCommitE);
             }
@@ -94,6 +86,21 @@ public class DevopsGitlabCommitServiceImpl implements DevopsGitlabCommitService
 
     }
 
+    /**
+     * 根据提交人邮箱获取用户id，同一次推送中相同的邮箱只查询一次
+     */
+    private Long getUserId(ApplicationE applicationE, String authorName, String authorEmail,
+                           Map<String, Long> emailUserIds) {
+        if ("root".equals(authorName)) {
+            return 1L;
+        }
+        if (!emailUserIds.containsKey(authorEmail)) {
+            emailUserIds.put(authorEmail,
+                    iamRepository.queryUserIdByEmail(applicationE.getProjectE().getId(), authorEmail));
+        }
+        return emailUserIds.get(authorEmail);
+    }
+
     @Override
     public DevopsGitlabCommitDTO getCommits(Long projectId, String appIds, Date startDate, Date endDate) {
 
@@ -9,36 +9,58 @@ import java.util.stream.Collectors;
 import com.alibaba.fastjson.JSONArray;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import io.choerodon.asgard.saga.annotation.Saga;
 import io.choerodon.asgard.saga.dto.StartInstanceDTO;
 import io.choerodon.asgard.saga.feign.SagaClient;
+import io.choerodon.core.convertor.ConvertHelper;
 import io.choerodon.core.domain.Page;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.api.dto.*;
 import io.choerodon.devops.app.service.DevopsGitlabPipelineService;
 import io.choerodon.devops.domain.application.entity.*;
 import io.choerodon.devops.domain.application.entity.gitlab.GitlabJobE;
+import io.choerodon.devops.domain.application.entity.gitlab.GitlabPipelineE;
 import io.choerodon.devops.domain.application.entity.iam.UserE;
 import io.choerodon.devops.domain.application.repository.*;
 import io.choerodon.devops.domain.application.valueobject.Organization;
 import io.choerodon.devops.domain.application.valueobject.Stage;
 import io.choerodon.devops.infra.common.util.TypeUtil;
+import io.choerodon.devops.infra.common.util.enums.PipelineStatus;
 import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDO;
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDailyDO;
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineStageDO;
 import io.choerodon.devops.infra.dataobject.gitlab.CommitStatuseDO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
 @Service
 public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DevopsGitlabPipelineServiceImpl.class);
     private static final Integer ADMIN = 1;
+    private static final String SONARQUBE = "sonarqube";
+    // 阶段信息中开始时间和结束时间的格式，与原stage字段保持一致
+    private static final String STARTED_AT_PATTERN = "yyyy-MM-dd HH:mm:ss";
+    private static final String FINISHED_AT_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX";
+    private static final List<String> UNFINISHED_STATUS = Arrays.asList("created", "pending", "running");
     private ObjectMapper objectMapper = new ObjectMapper();
     @Value("${services.gitlab.url}")
     private String gitlabUrl;
+    @Value("${pipeline.reconcile.batchSize:50}")
+    private Integer reconcileBatchSize;
+    @Value("${pipeline.reconcile.maxAttempts:5}")
+    private Integer reconcileMaxAttempts;
+    @Value("${pipeline.reconcile.retryDelayMs:60000}")
+    private Long reconcileRetryDelayMs;
+    @Value("${pipeline.rollup.backfillBatchSize:200}")
+    private Integer backfillBatchSize;
 
     @Autowired
     private DevopsGitlabPipelineRepository devopsGitlabPipelineRepository;
@@ -75,108 +97,341 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
     @Override
     public void handleCreate(PipelineWebHookDTO pipelineWebHookDTO) {
         ApplicationE applicationE = applicationRepository.queryByToken(pipelineWebHookDTO.getToken());
-        DevopsGitlabPipelineE devopsGitlabPipelineE = devopsGitlabPipelineRepository.queryByGitlabPipelineId(pipelineWebHookDTO.getObjectAttributes().getId());
+        PipelineWebHookAttributesDTO attributes = pipelineWebHookDTO.getObjectAttributes();
+        DevopsGitlabPipelineE devopsGitlabPipelineE = devopsGitlabPipelineRepository.queryByGitlabPipelineId(attributes.getId());
+        String previousStatus = devopsGitlabPipelineE == null ? null : devopsGitlabPipelineE.getStatus();
         if ("admin1".equals(pipelineWebHookDTO.getUser().getUsername()) || "root".equals(pipelineWebHookDTO.getUser().getUsername())) {
             pipelineWebHookDTO.getUser().setUsername("admin");
         }
-        Integer gitlabUserId = ADMIN;
         UserAttrE userAttrE = userAttrRepository.queryByGitlabUserName(pipelineWebHookDTO.getUser().getUsername());
-        if (userAttrE != null) {
-            gitlabUserId = TypeUtil.objToInteger(userAttrE.getGitlabUserId());
-        }
-        //查询pipeline最新阶段信息
-
-
-        List<Stage> stages = new ArrayList<>();
-        List<String> stageNames = new ArrayList<>();
-        List<Integer> gitlabJobIds = gitlabProjectRepository
-                .listJobs(applicationE.getGitlabProjectE().getId(), TypeUtil.objToInteger(pipelineWebHookDTO.getObjectAttributes().getId()), gitlabUserId).stream().map(GitlabJobE::getId).collect(Collectors.toList());
-
-        Stage sonar = null;
-        List<CommitStatuseDO> commitStatuseDOS =  gitlabProjectRepository.getCommitStatuse(applicationE.getGitlabProjectE().getId(), pipelineWebHookDTO.getObjectAttributes().getSha(), ADMIN);
-        for (CommitStatuseDO commitStatuseDO : commitStatuseDOS) {
-            if (gitlabJobIds.contains(commitStatuseDO.getId())) {
-                Stage stage = getPipelibeStage(commitStatuseDO);
-                stages.add(stage);
-            } else if (commitStatuseDO.getName().equals("sonarqube") && !stageNames.contains("sonarqube") && !stages.isEmpty()) {
-                Stage stage = getPipelibeStage(commitStatuseDO);
-                sonar = stage;
-                stages.add(stage);
-                stageNames.add(commitStatuseDO.getName());
-            }
-        }
-        DevopsGitlabCommitE devopsGitlabCommitE = devopsGitlabCommitRepository.queryByShaAndRef(pipelineWebHookDTO.getObjectAttributes().getSha(), pipelineWebHookDTO.getObjectAttributes().getRef());
 
-        //pipeline不存在则创建,存在则更新状态和阶段信息
+        //阶段信息只取自webhook中的job，缺失或与pipeline状态不一致时标记，由定时任务从gitlab补全
+        List<PipelineWebHookBuildDTO> builds = pipelineWebHookDTO.getBuilds() == null
+                ? new ArrayList<>() : pipelineWebHookDTO.getBuilds();
+        List<DevopsGitlabPipelineStageDO> stages = devopsGitlabPipelineRepository.saveStages(attributes.getId(),
+                builds.stream().filter(build -> build.getId() != null).map(this::getPipelineStage)
+                        .collect(Collectors.toList()));
+        boolean stagesIncomplete = stages.isEmpty() || (!UNFINISHED_STATUS.contains(attributes.getStatus())
+                && stages.stream().anyMatch(stage -> UNFINISHED_STATUS.contains(stage.getStatus())));
+        boolean finished = PipelineStatus.isFinished(attributes.getStatus());
+        //sonarqube不在webhook的job中，pipeline执行结束时也标记，由定时任务从commit状态中获取
+        boolean needReconcile = stagesIncomplete || (finished && !PipelineStatus.isFinished(previousStatus));
+        //阶段信息完整的pipeline执行结束时计算执行时长，否则在补全后计算
+        Long duration = !stagesIncomplete && finished ? getDuration(stages) : null;
+        DevopsGitlabCommitE devopsGitlabCommitE = devopsGitlabCommitRepository.queryByShaAndRef(attributes.getSha(), attributes.getRef());
+
+        //pipeline不存在则创建,存在则更新状态
         if (devopsGitlabPipelineE == null) {
             devopsGitlabPipelineE = new DevopsGitlabPipelineE();
             devopsGitlabPipelineE.setAppId(applicationE.getId());
             devopsGitlabPipelineE.setPipelineCreateUserId(userAttrE == null ? null : userAttrE.getIamUserId());
-            devopsGitlabPipelineE.setPipelineId(pipelineWebHookDTO.getObjectAttributes().getId());
-            devopsGitlabPipelineE.setStatus(pipelineWebHookDTO.getObjectAttributes().getStatus());
-            devopsGitlabPipelineE.setPipelineCreationDate(pipelineWebHookDTO.getObjectAttributes().getCreatedAt());
+            devopsGitlabPipelineE.setPipelineId(attributes.getId());
+            devopsGitlabPipelineE.setStatus(attributes.getStatus());
+            devopsGitlabPipelineE.setPipelineCreationDate(attributes.getCreatedAt());
+            devopsGitlabPipelineE.setNeedReconcile(needReconcile);
+            devopsGitlabPipelineE.setReconcileAttempts(0);
+            devopsGitlabPipelineE.setDuration(duration);
+            devopsGitlabPipelineE.setDurationMissing(false);
             if (devopsGitlabCommitE != null) {
                 devopsGitlabPipelineE.initDevopsGitlabCommitEById(devopsGitlabCommitE.getId());
             }
-            devopsGitlabPipelineE.setStage(JSONArray.toJSONString(stages));
             devopsGitlabPipelineRepository.create(devopsGitlabPipelineE);
         } else {
-            devopsGitlabPipelineE.setStatus(pipelineWebHookDTO.getObjectAttributes().getStatus());
-
-            List<Stage> originalStages = JSONArray.parseArray(devopsGitlabPipelineE.getStage(), Stage.class);
-            List<Stage> result = new ArrayList<>();
-            originalStages.forEach(original -> {
-                for (Stage stage : stages) {
-                    if (stage.getName().equals(original.getName())) {
-                        result.add(stage);
-                        return;
-                    }
-                }
-                result.add(original);
-            });
-            if (sonar != null && result.stream().noneMatch(x -> x.getName().equals("sonarqube"))) {
-                result.add(sonar);
+            devopsGitlabPipelineE.setStatus(attributes.getStatus());
+            boolean reconcilePending = Boolean.TRUE.equals(devopsGitlabPipelineE.getNeedReconcile());
+            //已结束的pipeline重复收到事件时，保留还未处理的补全标记
+            devopsGitlabPipelineE.setNeedReconcile(needReconcile || (finished && reconcilePending));
+            resetReconcile(devopsGitlabPipelineE, needReconcile && !reconcilePending);
+            if (duration != null) {
+                devopsGitlabPipelineE.setDuration(duration);
+                devopsGitlabPipelineE.setDurationMissing(false);
             }
-            devopsGitlabPipelineE.setStage(JSONArray.toJSONString(result));
-
             if (devopsGitlabCommitE != null) {
                 devopsGitlabPipelineE.initDevopsGitlabCommitEById(devopsGitlabCommitE.getId());
             }
             devopsGitlabPipelineRepository.update(devopsGitlabPipelineE);
         }
+        refreshDaily(devopsGitlabPipelineE, previousStatus);
     }
 
-
-    private Stage getPipelibeStage(CommitStatuseDO commitStatuseDO) {
-        Stage stage = new Stage();
-        stage.setDescription(commitStatuseDO.getDescription());
-        stage.setId(commitStatuseDO.getId());
-        stage.setName(commitStatuseDO.getName());
-        stage.setStatus(commitStatuseDO.getStatus());
-        if (commitStatuseDO.getFinishedAt() != null) {
-            stage.setFinishedAt(commitStatuseDO.getFinishedAt());
+    /**
+     * pipeline执行结束，或从结束状态重新执行时，重新计算创建当天的汇总
+     */
+    private void refreshDaily(DevopsGitlabPipelineE devopsGitlabPipelineE, String previousStatus) {
+        boolean finished = (devopsGitlabPipelineE.getDuration() != null
+                || Boolean.TRUE.equals(devopsGitlabPipelineE.getDurationMissing()))
+                && PipelineStatus.isFinished(devopsGitlabPipelineE.getStatus());
+        if (devopsGitlabPipelineE.getPipelineCreationDate() != null
+                && (finished || PipelineStatus.isFinished(previousStatus))) {
+            devopsGitlabPipelineRepository.refreshDaily(devopsGitlabPipelineE.getAppId(),
+                    devopsGitlabPipelineE.getPipelineCreationDate());
         }
-        if (commitStatuseDO.getStartedAt() != null) {
-            stage.setStartedAt(commitStatuseDO.getStartedAt());
-        }
-        return stage;
+    }
+
+    private Long getDuration(List<DevopsGitlabPipelineStageDO> stageDOS) {
+        //按job id排序，重试过的job只计算最后一次
+        Map<String, DevopsGitlabPipelineStageDO> stages = new HashMap<>();
+        stageDOS.stream().sorted(Comparator.comparing(DevopsGitlabPipelineStageDO::getJobId))
+                .forEach(stageDO -> stages.put(stageDO.getName(), stageDO));
+        return stages.values().stream()
+                .filter(stageDO -> stageDO.getStartedAt() != null && stageDO.getFinishedAt() != null)
+                .mapToLong(stageDO -> stageDO.getFinishedAt().getTime() - stageDO.getStartedAt().getTime())
+                .sum();
     }
 
     @Override
     public void updateStages(JobWebHookDTO jobWebHookDTO) {
-        //按照job的状态实时更新pipeline阶段的状态
+        //按照job的状态实时更新pipeline阶段的状态，只写入该job对应的一行
+        if ("created".equals(jobWebHookDTO.getBuildStatus())) {
+            return;
+        }
+        Long pipelineId = jobWebHookDTO.getPipelineId();
+        if (pipelineId == null && jobWebHookDTO.getCommit() != null) {
+            pipelineId = jobWebHookDTO.getCommit().getId();
+        }
+        if (pipelineId == null || jobWebHookDTO.getBuildId() == null) {
+            markNeedReconcile(jobWebHookDTO);
+            return;
+        }
+        DevopsGitlabPipelineStageDO stageDO = new DevopsGitlabPipelineStageDO();
+        stageDO.setPipelineId(pipelineId);
+        stageDO.setJobId(jobWebHookDTO.getBuildId());
+        stageDO.setName(jobWebHookDTO.getBuildName());
+        stageDO.setStage(jobWebHookDTO.getBuildStage());
+        stageDO.setStatus(jobWebHookDTO.getBuildStatus());
+        stageDO.setStartedAt(jobWebHookDTO.getBuildStartedAt());
+        stageDO.setFinishedAt(jobWebHookDTO.getBuildFinishedAt());
+        devopsGitlabPipelineRepository.saveStage(stageDO);
+    }
+
+    /**
+     * job事件中没有pipeline或job的id时无法定位阶段，标记pipeline由定时任务补全
+     */
+    private void markNeedReconcile(JobWebHookDTO jobWebHookDTO) {
         DevopsGitlabCommitE devopsGitlabCommitE = devopsGitlabCommitRepository.queryByShaAndRef(jobWebHookDTO.getSha(), jobWebHookDTO.getRef());
-        if (devopsGitlabCommitE != null && !"created".equals(jobWebHookDTO.getBuildStatus())) {
-            DevopsGitlabPipelineE devopsGitlabPipelineE = devopsGitlabPipelineRepository.queryByCommitId(devopsGitlabCommitE.getId());
-            if (devopsGitlabPipelineE != null) {
-                List<Stage> stages = JSONArray.parseArray(devopsGitlabPipelineE.getStage(), Stage.class);
-                stages.stream().filter(stage -> jobWebHookDTO.getBuildName().equals(stage.getName())).forEach(stage ->
-                        stage.setStatus(jobWebHookDTO.getBuildStatus())
-                );
-                devopsGitlabPipelineE.setStage(JSONArray.toJSONString(stages));
+        if (devopsGitlabCommitE == null) {
+            return;
+        }
+        DevopsGitlabPipelineE devopsGitlabPipelineE = devopsGitlabPipelineRepository.queryByCommitId(devopsGitlabCommitE.getId());
+        if (devopsGitlabPipelineE != null && !Boolean.TRUE.equals(devopsGitlabPipelineE.getNeedReconcile())) {
+            devopsGitlabPipelineE.setNeedReconcile(true);
+            resetReconcile(devopsGitlabPipelineE, true);
+            devopsGitlabPipelineRepository.update(devopsGitlabPipelineE);
+        }
+    }
+
+    /**
+     * 新标记的pipeline从头计算尝试次数并立即补全，否则不更新尝试次数，避免覆盖定时任务的领取结果
+     */
+    private void resetReconcile(DevopsGitlabPipelineE devopsGitlabPipelineE, boolean newlyMarked) {
+        devopsGitlabPipelineE.setReconcileAttempts(newlyMarked ? 0 : null);
+        devopsGitlabPipelineE.setNextReconcileAt(newlyMarked ? new Date() : null);
+    }
+
+    /**
+     * 定时从gitlab补全被标记的pipeline的阶段信息和状态，webhook处理过程中不再请求gitlab
+     */
+    @Override
+    @Scheduled(initialDelayString = "${pipeline.reconcile.delayMs:60000}",
+            fixedDelayString = "${pipeline.reconcile.delayMs:60000}")
+    public void reconcilePipelines() {
+        List<DevopsGitlabPipelineE> devopsGitlabPipelineES = devopsGitlabPipelineRepository.listNeedReconcile(
+                reconcileMaxAttempts, reconcileBatchSize);
+        devopsGitlabPipelineES.forEach(devopsGitlabPipelineE -> {
+            //领取时就推迟下次重试时间，失败的pipeline排到队尾，其他实例在此之前也不会重复处理
+            int attempts = devopsGitlabPipelineE.getReconcileAttempts() == null ? 0 : devopsGitlabPipelineE.getReconcileAttempts();
+            Date nextReconcileAt = new Date(System.currentTimeMillis() + (reconcileRetryDelayMs << Math.min(attempts, 10)));
+            if (!devopsGitlabPipelineRepository.claimReconcile(devopsGitlabPipelineE, nextReconcileAt)) {
+                return;
+            }
+            try {
+                reconcilePipeline(devopsGitlabPipelineE);
+            } catch (Exception e) {
+                if (devopsGitlabPipelineE.getReconcileAttempts() >= reconcileMaxAttempts) {
+                    LOGGER.warn("error.gitlab.pipeline.reconcile: pipeline {} failed {} times, give up, {}",
+                            devopsGitlabPipelineE.getPipelineId(), devopsGitlabPipelineE.getReconcileAttempts(), e.getMessage());
+                } else {
+                    LOGGER.warn("error.gitlab.pipeline.reconcile: pipeline {}, attempt {}, {}",
+                            devopsGitlabPipelineE.getPipelineId(), devopsGitlabPipelineE.getReconcileAttempts(), e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void reconcilePipeline(DevopsGitlabPipelineE devopsGitlabPipelineE) {
+        String previousStatus = devopsGitlabPipelineE.getStatus();
+        ApplicationE applicationE = applicationRepository.query(devopsGitlabPipelineE.getAppId());
+        Integer gitlabProjectId = applicationE == null || applicationE.getGitlabProjectE() == null
+                ? null : applicationE.getGitlabProjectE().getId();
+        if (gitlabProjectId != null) {
+            Integer pipelineId = TypeUtil.objToInteger(devopsGitlabPipelineE.getPipelineId());
+            GitlabPipelineE gitlabPipelineE = gitlabProjectRepository.getPipeline(gitlabProjectId, pipelineId, ADMIN);
+            List<GitlabJobE> gitlabJobES = gitlabProjectRepository.listJobs(gitlabProjectId, pipelineId, ADMIN);
+            List<DevopsGitlabPipelineStageDO> stages = gitlabJobES.stream().map(this::getPipelineStage)
+                    .collect(Collectors.toList());
+            //sonarqube不是pipeline中的job，从commit状态中获取
+            if (!stages.isEmpty() && gitlabPipelineE != null && gitlabPipelineE.getSha() != null) {
+                Set<Integer> gitlabJobIds = gitlabJobES.stream().map(GitlabJobE::getId).collect(Collectors.toSet());
+                gitlabProjectRepository.getCommitStatuse(gitlabProjectId, gitlabPipelineE.getSha(), ADMIN).stream()
+                        .filter(commitStatuseDO -> SONARQUBE.equals(commitStatuseDO.getName())
+                                && !gitlabJobIds.contains(commitStatuseDO.getId()))
+                        .findFirst()
+                        .ifPresent(commitStatuseDO -> stages.add(getPipelineStage(commitStatuseDO)));
+            }
+            devopsGitlabPipelineRepository.replaceStages(devopsGitlabPipelineE.getPipelineId(), stages);
+            if (gitlabPipelineE != null && gitlabPipelineE.getStatus() != null) {
+                devopsGitlabPipelineE.setStatus(gitlabPipelineE.getStatus().toString());
+            }
+            if (PipelineStatus.isFinished(devopsGitlabPipelineE.getStatus())) {
+                setDuration(devopsGitlabPipelineE, stages.isEmpty() ? null : getDuration(stages));
+            }
+        }
+        devopsGitlabPipelineE.setNeedReconcile(false);
+        devopsGitlabPipelineE.setReconcileAttempts(0);
+        devopsGitlabPipelineRepository.update(devopsGitlabPipelineE);
+        refreshDaily(devopsGitlabPipelineE, previousStatus);
+    }
+
+    /**
+     * 补全历史pipeline的执行时长，并重新计算涉及日期的汇总
+     */
+    @Override
+    @Scheduled(initialDelayString = "${pipeline.rollup.backfillDelayMs:300000}",
+            fixedDelayString = "${pipeline.rollup.backfillDelayMs:300000}")
+    public void backfillPipelineDuration() {
+        List<DevopsGitlabPipelineE> devopsGitlabPipelineES = devopsGitlabPipelineRepository.listWithoutDuration(backfillBatchSize);
+        if (devopsGitlabPipelineES.isEmpty()) {
+            return;
+        }
+        Map<Long, List<Stage>> pipelineStages = listStages(
+                ConvertHelper.convertList(devopsGitlabPipelineES, DevopsGitlabPipelineDO.class));
+        Map<String, DevopsGitlabPipelineE> refreshDates = new HashMap<>();
+        devopsGitlabPipelineES.forEach(devopsGitlabPipelineE -> {
+            //没有阶段信息或计算失败的pipeline标记为无法计算，不再重复查询，也不计入时长统计
+            List<Stage> stages = pipelineStages.get(devopsGitlabPipelineE.getPipelineId());
+            try {
+                setDuration(devopsGitlabPipelineE, stages == null || stages.isEmpty() ? null : getStageDuration(stages));
+            } catch (Exception e) {
+                LOGGER.warn("error.gitlab.pipeline.duration: pipeline {}, {}", devopsGitlabPipelineE.getPipelineId(), e.getMessage());
+                setDuration(devopsGitlabPipelineE, null);
+            }
+            try {
                 devopsGitlabPipelineRepository.update(devopsGitlabPipelineE);
+                if (devopsGitlabPipelineE.getPipelineCreationDate() != null) {
+                    refreshDates.putIfAbsent(devopsGitlabPipelineE.getAppId() + ":"
+                            + new java.sql.Date(devopsGitlabPipelineE.getPipelineCreationDate().getTime()), devopsGitlabPipelineE);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("error.gitlab.pipeline.duration: pipeline {}, {}", devopsGitlabPipelineE.getPipelineId(), e.getMessage());
+            }
+        });
+        refreshDates.values().forEach(devopsGitlabPipelineE -> devopsGitlabPipelineRepository.refreshDaily(
+                devopsGitlabPipelineE.getAppId(), devopsGitlabPipelineE.getPipelineCreationDate()));
+    }
+
+    /**
+     * 写入执行时长，没有执行时长时标记为无法计算，而不是记为0
+     */
+    private void setDuration(DevopsGitlabPipelineE devopsGitlabPipelineE, Long duration) {
+        devopsGitlabPipelineE.setDuration(duration);
+        devopsGitlabPipelineE.setDurationMissing(duration == null);
+    }
+
+    private DevopsGitlabPipelineStageDO getPipelineStage(PipelineWebHookBuildDTO build) {
+        DevopsGitlabPipelineStageDO stageDO = new DevopsGitlabPipelineStageDO();
+        stageDO.setJobId(build.getId());
+        stageDO.setName(build.getName());
+        stageDO.setStage(build.getStage());
+        stageDO.setStatus(build.getStatus());
+        stageDO.setStartedAt(build.getStartedAt());
+        stageDO.setFinishedAt(build.getFinishedAt());
+        return stageDO;
+    }
+
+    private DevopsGitlabPipelineStageDO getPipelineStage(GitlabJobE gitlabJobE) {
+        DevopsGitlabPipelineStageDO stageDO = new DevopsGitlabPipelineStageDO();
+        stageDO.setJobId(TypeUtil.objToLong(gitlabJobE.getId()));
+        stageDO.setName(gitlabJobE.getName());
+        stageDO.setStage(gitlabJobE.getStage());
+        stageDO.setStatus(gitlabJobE.getStatus() == null ? null : gitlabJobE.getStatus().toString());
+        stageDO.setDescription(gitlabJobE.getDescription());
+        stageDO.setStartedAt(gitlabJobE.getStartedAt());
+        stageDO.setFinishedAt(gitlabJobE.getFinishedAt());
+        return stageDO;
+    }
+
+    private DevopsGitlabPipelineStageDO getPipelineStage(CommitStatuseDO commitStatuseDO) {
+        DevopsGitlabPipelineStageDO stageDO = new DevopsGitlabPipelineStageDO();
+        stageDO.setJobId(TypeUtil.objToLong(commitStatuseDO.getId()));
+        stageDO.setName(commitStatuseDO.getName());
+        stageDO.setStatus(commitStatuseDO.getStatus());
+        stageDO.setDescription(commitStatuseDO.getDescription());
+        stageDO.setStartedAt(parseTime(commitStatuseDO.getStartedAt()));
+        stageDO.setFinishedAt(parseTime(commitStatuseDO.getFinishedAt()));
+        return stageDO;
+    }
+
+    private Date parseTime(String time) {
+        if (time == null) {
+            return null;
+        }
+        for (String pattern : new String[]{FINISHED_AT_PATTERN, STARTED_AT_PATTERN}) {
+            try {
+                return new SimpleDateFormat(pattern).parse(time);
+            } catch (ParseException e) {
+                // 尝试下一种格式
             }
         }
+        return null;
+    }
+
+    /**
+     * 查询pipeline的阶段信息，阶段表中没有记录的历史pipeline读取原stage字段
+     */
+    private Map<Long, List<Stage>> listStages(List<DevopsGitlabPipelineDO> devopsGitlabPipelineDOS) {
+        Map<Long, Map<String, Stage>> stagesByName = new HashMap<>();
+        devopsGitlabPipelineRepository.listStages(devopsGitlabPipelineDOS.stream()
+                .map(DevopsGitlabPipelineDO::getPipelineId).distinct().collect(Collectors.toList()))
+                // 按job id升序，重试过的job保留最后一次
+                .forEach(stageDO -> stagesByName.computeIfAbsent(stageDO.getPipelineId(), k -> new LinkedHashMap<>())
+                        .put(stageDO.getName(), getStage(stageDO)));
+        Map<Long, List<Stage>> stages = new HashMap<>();
+        devopsGitlabPipelineDOS.forEach(devopsGitlabPipelineDO -> {
+            Map<String, Stage> pipelineStages = stagesByName.get(devopsGitlabPipelineDO.getPipelineId());
+            if (pipelineStages != null) {
+                stages.put(devopsGitlabPipelineDO.getPipelineId(), new ArrayList<>(pipelineStages.values()));
+            } else {
+                List<Stage> legacyStages = parseLegacyStages(devopsGitlabPipelineDO);
+                if (legacyStages != null) {
+                    stages.put(devopsGitlabPipelineDO.getPipelineId(), legacyStages);
+                }
+            }
+        });
+        return stages;
+    }
+
+    private List<Stage> parseLegacyStages(DevopsGitlabPipelineDO devopsGitlabPipelineDO) {
+        try {
+            return JSONArray.parseArray(devopsGitlabPipelineDO.getStage(), Stage.class);
+        } catch (Exception e) {
+            LOGGER.warn("error.gitlab.pipeline.stage.parse: pipeline {}, {}", devopsGitlabPipelineDO.getPipelineId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private Stage getStage(DevopsGitlabPipelineStageDO stageDO) {
+        Stage stage = new Stage();
+        stage.setId(TypeUtil.objToInteger(stageDO.getJobId()));
+        stage.setName(stageDO.getName());
+        stage.setStatus(stageDO.getStatus());
+        stage.setDescription(stageDO.getDescription());
+        if (stageDO.getStartedAt() != null) {
+            stage.setStartedAt(new SimpleDateFormat(STARTED_AT_PATTERN).format(stageDO.getStartedAt()));
+        }
+        if (stageDO.getFinishedAt() != null) {
+            stage.setFinishedAt(new SimpleDateFormat(FINISHED_AT_PATTERN).format(stageDO.getFinishedAt()));
+        }
+        return stage;
     }
 
     @Override
@@ -185,7 +440,14 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
             return new PipelineTimeDTO();
         }
         PipelineTimeDTO pipelineTimeDTO = new PipelineTimeDTO();
-        List<DevopsGitlabPipelineDO> devopsGitlabPipelineDOS = devopsGitlabPipelineRepository.listPipeline(appId, startTime, endTime);
+        //只统计已经计算出执行时长的pipeline
+        List<DevopsGitlabPipelineDO> devopsGitlabPipelineDOS = devopsGitlabPipelineRepository.listPipeline(appId, startTime, endTime)
+                .stream().filter(t -> t.getDuration() != null && PipelineStatus.isFinished(t.getStatus()))
+                .collect(Collectors.toList());
+        Map<String, String> commitVersions = applicationVersionRepository.listByAppIdAndCommits(appId,
+                devopsGitlabPipelineDOS.stream().map(DevopsGitlabPipelineDO::getSha).filter(Objects::nonNull)
+                        .collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(ApplicationVersionE::getCommit, ApplicationVersionE::getVersion, (a, b) -> a));
         List<String> pipelineTimes = new LinkedList<>();
         List<String> refs = new LinkedList<>();
         List<String> versions = new LinkedList<>();
@@ -193,17 +455,8 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
         devopsGitlabPipelineDOS.forEach(devopsGitlabPipelineDO -> {
             refs.add(devopsGitlabPipelineDO.getRef() + "-" + devopsGitlabPipelineDO.getSha());
             createDates.add(devopsGitlabPipelineDO.getPipelineCreationDate());
-            ApplicationVersionE applicationVersionE = applicationVersionRepository.queryByCommitSha(devopsGitlabPipelineDO.getSha());
-            if (applicationVersionE != null) {
-                versions.add(applicationVersionE.getVersion());
-            } else {
-                versions.add("");
-            }
-            List<Stage> stages = JSONArray.parseArray(devopsGitlabPipelineDO.getStage(), Stage.class);
-            //获取pipeline执行时间
-            if (stages != null) {
-                pipelineTimes.add(getPipelineTime(stages));
-            }
+            versions.add(commitVersions.getOrDefault(devopsGitlabPipelineDO.getSha(), ""));
+            pipelineTimes.add(getDeployTime(devopsGitlabPipelineDO.getDuration()));
         });
         pipelineTimeDTO.setCreateDates(createDates);
         pipelineTimeDTO.setPipelineTime(pipelineTimes);
@@ -212,18 +465,20 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
         return pipelineTimeDTO;
     }
 
-    private String getPipelineTime(List<Stage> stages) {
+    private Long getStageDuration(List<Stage> stages) {
+        SimpleDateFormat startedAtFormat = new SimpleDateFormat(STARTED_AT_PATTERN);
+        SimpleDateFormat finishedAtFormat = new SimpleDateFormat(FINISHED_AT_PATTERN);
         Long diff = 0L;
         for (Stage stage : stages) {
             try {
                 if (stage.getFinishedAt() != null && stage.getStartedAt() != null) {
-                    diff = diff + new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX").parse(stage.getFinishedAt()).getTime() - new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(stage.getStartedAt()).getTime();
+                    diff = diff + finishedAtFormat.parse(stage.getFinishedAt()).getTime() - startedAtFormat.parse(stage.getStartedAt()).getTime();
                 }
             } catch (ParseException e) {
                 throw new CommonException(e);
             }
         }
-        return getDeployTime(diff);
+        return diff;
     }
 
     @Override
@@ -232,32 +487,17 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
             return new PipelineFrequencyDTO();
         }
         PipelineFrequencyDTO pipelineFrequencyDTO = new PipelineFrequencyDTO();
-        List<DevopsGitlabPipelineDO> devopsGitlabPipelineDOS = devopsGitlabPipelineRepository.listPipeline(appId, startTime, endTime);
-        //按照创建时间分组
-        Map<String, List<DevopsGitlabPipelineDO>> resultMaps = devopsGitlabPipelineDOS.stream()
-                .collect(Collectors.groupingBy(t -> new java.sql.Date(t.getPipelineCreationDate().getTime()).toString()));
-        //将创建时间排序
-        List<String> creationDates = devopsGitlabPipelineDOS.stream().map(deployDO -> new java.sql.Date(deployDO.getPipelineCreationDate().getTime()).toString()).collect(Collectors.toList());
+        //按天读取汇总
+        List<DevopsGitlabPipelineDailyDO> dailyDOS = devopsGitlabPipelineRepository.listDaily(appId, startTime, endTime);
+        List<String> creationDates = new LinkedList<>();
         List<Long> pipelineFrequencys = new LinkedList<>();
         List<Long> pipelineSuccessFrequency = new LinkedList<>();
         List<Long> pipelineFailFrequency = new LinkedList<>();
-        creationDates = new ArrayList<>(new HashSet<>(creationDates)).stream().sorted(Comparator.naturalOrder()).collect(Collectors.toList());
-        creationDates.forEach(date -> {
-            Long[] newPipelineFrequencys = {0L};
-            Long[] newPipelineSuccessFrequency = {0L};
-            Long[] newPipelineFailFrequency = {0L};
-            resultMaps.get(date).forEach(devopsGitlabPipelineDO -> {
-                if ("success".equals(devopsGitlabPipelineDO.getStatus())) {
-                    newPipelineSuccessFrequency[0] = newPipelineSuccessFrequency[0] + 1L;
-                }
-                if ("failed".equals(devopsGitlabPipelineDO.getStatus())) {
-                    newPipelineFailFrequency[0] = newPipelineFailFrequency[0] + 1L;
-                }
-                newPipelineFrequencys[0] = newPipelineSuccessFrequency[0] + newPipelineFailFrequency[0];
-            });
-            pipelineFrequencys.add(newPipelineFrequencys[0]);
-            pipelineSuccessFrequency.add(newPipelineSuccessFrequency[0]);
-            pipelineFailFrequency.add(newPipelineFailFrequency[0]);
+        dailyDOS.forEach(dailyDO -> {
+            creationDates.add(new java.sql.Date(dailyDO.getStatDate().getTime()).toString());
+            pipelineFrequencys.add(dailyDO.getSuccessCount() + dailyDO.getFailedCount());
+            pipelineSuccessFrequency.add(dailyDO.getSuccessCount());
+            pipelineFailFrequency.add(dailyDO.getFailedCount());
         });
         pipelineFrequencyDTO.setCreateDates(creationDates);
         pipelineFrequencyDTO.setPipelineFailFrequency(pipelineFailFrequency);
@@ -305,6 +545,7 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
             userIds.add(devopsGitlabPipelineDO.getPipelineCreateUserId());
         });
         List<UserE> userES = iamRepository.listUsersByIds(new ArrayList<>(userIds));
+        Map<Long, List<Stage>> pipelineStages = listStages(devopsGitlabPipelineDOS.getContent());
         devopsGitlabPipelineDOS.getContent().forEach(devopsGitlabPipelineDO -> {
             DevopsGitlabPipelineDTO devopsGitlabPipelineDTO = new DevopsGitlabPipelineDTO();
             if (devopsGitlabPipelineDO.getPipelineId().equals(refWithPipelineIds.get(devopsGitlabPipelineDO.getRef()))) {
@@ -335,9 +576,11 @@ public class DevopsGitlabPipelineServiceImpl implements DevopsGitlabPipelineServ
                 devopsGitlabPipelineDTO.setVersion(version);
             }
             //pipeline阶段信息
-            List<Stage> stages = JSONArray.parseArray(devopsGitlabPipelineDO.getStage(), Stage.class);
-            if (stages != null) {
-                devopsGitlabPipelineDTO.setPipelineTime(getPipelineTime(stages));
+            List<Stage> stages = pipelineStages.get(devopsGitlabPipelineDO.getPipelineId());
+            if (devopsGitlabPipelineDO.getDuration() != null) {
+                devopsGitlabPipelineDTO.setPipelineTime(getDeployTime(devopsGitlabPipelineDO.getDuration()));
+            } else if (stages != null) {
+                devopsGitlabPipelineDTO.setPipelineTime(getDeployTime(getStageDuration(stages)));
             }
             devopsGitlabPipelineDTO.setStages(stages);
             devopsGitlabPipelineDTO.setGitlabUrl(gitlabUrl + "/"
@@ -49,6 +49,7 @@ public class GitlabWebHookServiceImpl implements GitlabWebHookService {
                 }
 
                 devopsMergeRequestRepository.saveDevopsMergeRequest(devopsMergeRequestE);
+                devopsMergeRequestRepository.syncCommits(devopsMergeRequestE);
                 break;
             case "push":
                 PushWebHookDTO pushWebHookDTO = JSONArray.parseObject(body, PushWebHookDTO.class, FastjsonParserConfigProvider.getParserConfig());
@@ -17,4 +17,11 @@ public class CommitConvertor implements ConvertorI<CommitE, CommitDO, CommitDTO>
         BeanUtils.copyProperties(dataObject, commitDTO);
         return commitDTO;
     }
+
+    @Override
+    public CommitDTO entityToDto(CommitE entity) {
+        CommitDTO commitDTO = new CommitDTO();
+        BeanUtils.copyProperties(entity, commitDTO);
+        return commitDTO;
+    }
 }
@@ -11,6 +11,8 @@ import org.springframework.stereotype.Component;
 public class DevopsEnvResourceDetailE {
     private Long id;
     private String message;
+    private String summary;
+    private Boolean isReleaseGenerated;
 
     public DevopsEnvResourceDetailE() {
     }
@@ -34,4 +36,20 @@ public class DevopsEnvResourceDetailE {
     public void setMessage(String message) {
         this.message = message;
     }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public Boolean getReleaseGenerated() {
+        return isReleaseGenerated;
+    }
+
+    public void setReleaseGenerated(Boolean releaseGenerated) {
+        isReleaseGenerated = releaseGenerated;
+    }
 }
@@ -16,6 +16,8 @@ public class DevopsMergeRequestE {
     private Date updatedAt;
     private Long objectVersionNumber;
 
+    private Boolean commitsSynced;
+
     public Long getId() {
         return id;
     }
@@ -112,6 +114,14 @@ public class DevopsMergeRequestE {
         this.objectVersionNumber = objectVersionNumber;
     }
 
+    public Boolean getCommitsSynced() {
+        return commitsSynced;
+    }
+
+    public void setCommitsSynced(Boolean commitsSynced) {
+        this.commitsSynced = commitsSynced;
+    }
+
     @Override
     public String toString() {
         return "DevopsMergeRequestE{"
@@ -0,0 +1,210 @@
+package io.choerodon.devops.domain.application.handler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.zaxxer.hikari.util.UtilityElf;
+import io.kubernetes.client.models.V1ConfigMap;
+import io.kubernetes.client.models.V1Endpoints;
+import io.kubernetes.client.models.V1Service;
+import io.kubernetes.client.models.V1beta1Ingress;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.domain.application.valueobject.C7nCertification;
+import io.choerodon.devops.domain.application.valueobject.C7nHelmRelease;
+import io.choerodon.devops.domain.application.valueobject.C7nSecret;
+
+/**
+ * 并行解析gitops库中的文件，将yaml节点直接构造为对应的k8s对象，
+ * 结果按文件顺序返回，对象的校验仍由调用方按顺序执行
+ */
+@Component
+public class GitOpsFileParser implements DisposableBean {
+
+    private static final String KIND = "kind";
+    private static final Map<String, Class<?>> KIND_TYPES = new HashMap<>();
+
+    static {
+        KIND_TYPES.put("C7NHelmRelease", C7nHelmRelease.class);
+        KIND_TYPES.put("Ingress", V1beta1Ingress.class);
+        KIND_TYPES.put("Service", V1Service.class);
+        KIND_TYPES.put("Certificate", C7nCertification.class);
+        KIND_TYPES.put("ConfigMap", V1ConfigMap.class);
+        KIND_TYPES.put("Secret", C7nSecret.class);
+        KIND_TYPES.put("Endpoints", V1Endpoints.class);
+    }
+
+    private final ThreadLocal<ObjectConstructor> constructors = ThreadLocal.withInitial(ObjectConstructor::new);
+    private final ThreadPoolExecutor executor;
+
+    public GitOpsFileParser() {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        executor = new ThreadPoolExecutor(threads, threads,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1000),
+                new UtilityElf.DefaultThreadFactory("gitops-file-parser", true),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 解析文件
+     *
+     * @param path  gitops库本地路径
+     * @param files 文件相对路径
+     * @return 与files顺序一致的解析结果
+     */
+    public List<ParsedFile> parse(String path, List<String> files) {
+        List<ParsedFile> parsedFiles = new ArrayList<>(files.size());
+        if (files.size() <= 1) {
+            files.forEach(filePath -> parsedFiles.add(parseFile(path, filePath)));
+            return parsedFiles;
+        }
+        List<Future<ParsedFile>> futures = new ArrayList<>(files.size());
+        files.forEach(filePath -> futures.add(executor.submit(() -> parseFile(path, filePath))));
+        try {
+            for (Future<ParsedFile> future : futures) {
+                parsedFiles.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new CommonException("error.gitops.file.parse", e);
+        } catch (ExecutionException e) {
+            throw new CommonException("error.gitops.file.parse", e.getCause());
+        }
+        return parsedFiles;
+    }
+
+    private ParsedFile parseFile(String path, String filePath) {
+        ParsedFile parsedFile = new ParsedFile(filePath);
+        ObjectConstructor constructor = constructors.get();
+        try (Reader reader = new UnicodeReader(
+                new FileInputStream(new File(String.format("%s/%s", path, filePath))))) {
+            for (Node node : constructor.yaml.composeAll(reader)) {
+                String kind = getKind(node);
+                Class<?> type = kind == null ? null : KIND_TYPES.get(kind);
+                if (type == null) {
+                    continue;
+                }
+                try {
+                    parsedFile.objects.add(new ParsedObject(kind, constructor.construct(node, type)));
+                } catch (Exception e) {
+                    // 构造失败后构造器内部状态未清理，不再复用
+                    constructors.remove();
+                    throw new GitOpsExplainException(e.getMessage(), filePath);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            parsedFile.error = new CommonException(e.getMessage(), e);
+        } catch (IOException e) {
+            parsedFile.error = new CommonException("error.gitops.file.read", e);
+        } catch (RuntimeException e) {
+            // 保留出错前已解析的对象，由调用方校验完这些对象后再抛出，与串行解析时的行为一致
+            parsedFile.error = e;
+        }
+        return parsedFile;
+    }
+
+    private String getKind(Node node) {
+        if (!(node instanceof MappingNode)) {
+            return null;
+        }
+        for (NodeTuple tuple : ((MappingNode) node).getValue()) {
+            if (tuple.getKeyNode() instanceof ScalarNode
+                    && KIND.equals(((ScalarNode) tuple.getKeyNode()).getValue())
+                    && tuple.getValueNode() instanceof ScalarNode) {
+                return ((ScalarNode) tuple.getValueNode()).getValue();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 单个文件的解析结果
+     */
+    public static class ParsedFile {
+        private final String filePath;
+        private final List<ParsedObject> objects = new ArrayList<>();
+        private RuntimeException error;
+
+        ParsedFile(String filePath) {
+            this.filePath = filePath;
+        }
+
+        public String getFilePath() {
+            return filePath;
+        }
+
+        public List<ParsedObject> getObjects() {
+            return objects;
+        }
+
+        /**
+         * @return 解析出错时的异常，需要在校验完已解析的对象后抛出
+         */
+        public RuntimeException getError() {
+            return error;
+        }
+    }
+
+    /**
+     * 文件中的一个k8s对象
+     */
+    public static class ParsedObject {
+        private final String kind;
+        private final Object object;
+
+        ParsedObject(String kind, Object object) {
+            this.kind = kind;
+            this.object = object;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public Object getObject() {
+            return object;
+        }
+    }
+
+    /**
+     * 每个线程复用的构造器，与Yaml.loadAs相同的方式将节点构造为指定类型
+     */
+    private static class ObjectConstructor extends Constructor {
+        private final Yaml yaml = new Yaml(this);
+
+        Object construct(Node node, Class<?> type) {
+            node.setTag(new Tag(type));
+            return constructDocument(node);
+        }
+    }
+}
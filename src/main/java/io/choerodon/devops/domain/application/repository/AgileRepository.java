@@ -1,5 +1,8 @@
 package io.choerodon.devops.domain.application.repository;
 
+import java.util.Collection;
+import java.util.Map;
+
 import io.choerodon.devops.domain.application.valueobject.Issue;
 import io.choerodon.devops.domain.application.valueobject.ProjectInfo;
 import io.choerodon.devops.infra.feign.AgileServiceClient;
@@ -8,6 +11,8 @@ public interface AgileRepository {
 
     Issue queryIssue(Long projectId, Long issueId, Long organizationId);
 
+    Map<Long, Issue> listIssues(Long projectId, Collection<Long> issueIds, Long organizationId);
+
     ProjectInfo queryProjectInfo(Long projectId);
 
     void initAgileServiceClient(AgileServiceClient agileServiceClient);
@@ -1,5 +1,6 @@
 package io.choerodon.devops.domain.application.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import io.choerodon.core.domain.Page;
@@ -42,12 +43,30 @@ public interface ApplicationVersionRepository {
 
     void updateVersion(ApplicationVersionE applicationVersionE);
 
+    /**
+     * 查询应用下指定的版本
+     *
+     * @param appId    应用id
+     * @param versions 版本号
+     * @return 已存在的版本
+     */
+    List<ApplicationVersionE> listByAppIdAndVersions(Long appId, List<String> versions);
+
+    /**
+     * 批量创建版本，readme和版本各用一条insert语句写入
+     *
+     * @param applicationVersionES 版本
+     */
+    void batchCreate(List<ApplicationVersionE> applicationVersionES);
+
     List<ApplicationVersionE> selectUpgradeVersions(Long appVersionId);
 
     void checkProIdAndVerId(Long projectId, Long appVersionId);
 
     ApplicationVersionE queryByCommitSha(String sha);
 
+    List<ApplicationVersionE> listByAppIdAndCommits(Long appId, Collection<String> commits);
+
     ApplicationVersionE getLatestVersion(Long appId);
 
     List<ApplicationVersionE> listByAppVersionIds(List<Long> appVersionIds);
@@ -1,5 +1,7 @@
 package io.choerodon.devops.domain.application.repository;
 
+import java.util.List;
+
 import io.choerodon.devops.domain.application.entity.ApplicationVersionValueE;
 
 public interface ApplicationVersionValueRepository {
@@ -8,4 +10,12 @@ public interface ApplicationVersionValueRepository {
 
     ApplicationVersionValueE query(Long appVersionValueId);
 
+    /**
+     * 批量创建版本values，一条insert语句写入
+     *
+     * @param applicationVersionValueES 版本values
+     * @return 带id的版本values，与传入顺序一致
+     */
+    List<ApplicationVersionValueE> batchCreate(List<ApplicationVersionValueE> applicationVersionValueES);
+
 }
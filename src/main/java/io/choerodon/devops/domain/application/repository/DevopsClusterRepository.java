@@ -1,5 +1,6 @@
 package io.choerodon.devops.domain.application.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import io.choerodon.core.domain.Page;
@@ -30,6 +31,14 @@ public interface DevopsClusterRepository {
 
     List<DevopsClusterE> list();
 
+    /**
+     * 根据id批量查询集群
+     *
+     * @param ids 集群id
+     * @return 集群列表
+     */
+    List<DevopsClusterE> listByIds(Collection<Long> ids);
+
     /**
      * 分页查询节点下的Pod
      * @param clusterId 集群id
@@ -21,4 +21,10 @@ public interface DevopsEnvFileRepository {
     void delete(DevopsEnvFileE devopsEnvFileE);
 
     List<DevopsEnvFileE> listByEnvIdAndPath(Long envId, String path);
+
+    void batchCreate(List<DevopsEnvFileE> devopsEnvFileES);
+
+    void batchUpdateDevopsCommit(List<DevopsEnvFileE> devopsEnvFileES);
+
+    void deleteByEnvIdAndPaths(Long envId, List<String> paths);
 }
@@ -26,4 +26,13 @@ public interface DevopsEnvFileResourceRepository {
 
     void deleteByEnvIdAndResource(Long envId, Long resourceId, String resourceType);
 
+    /**
+     * 批量删除环境下资源对应的文件关系
+     *
+     * @param envId        环境id
+     * @param resourceIds  资源id列表
+     * @param resourceType 资源类型
+     */
+    void deleteByEnvIdAndResources(Long envId, List<Long> resourceIds, String resourceType);
+
 }
@@ -21,6 +21,22 @@ public interface DevopsEnvPodContainerRepository {
 
     void deleteByPodId(Long podId);
 
+    /**
+     * 批量插入容器，插入后回填主键
+     *
+     * @param containers 容器列表
+     */
+    void batchInsert(List<DevopsEnvPodContainerDO> containers);
+
+    /**
+     * 将pod下的容器同步为给定的容器名称列表，只插入缺少的容器、删除多余的容器
+     *
+     * @param podId          pod id
+     * @param containerNames 容器名称列表
+     * @return pod下同步后的容器
+     */
+    List<DevopsEnvPodContainerDO> batchUpsertByPodId(Long podId, List<String> containerNames);
+
     DevopsEnvPodContainerDO get(Long id);
 
     DevopsEnvPodContainerDO get(DevopsEnvPodContainerDO container);
@@ -14,7 +14,13 @@ public interface DevopsEnvPodRepository {
 
     DevopsEnvPodE get(DevopsEnvPodE pod);
 
-    void insert(DevopsEnvPodE devopsEnvPodE);
+    /**
+     * 插入pod，同名pod已存在时不插入
+     *
+     * @param devopsEnvPodE pod信息
+     * @return 插入后(或已存在)的pod，包含主键
+     */
+    DevopsEnvPodE insert(DevopsEnvPodE devopsEnvPodE);
 
     List<DevopsEnvPodE> selectByInstanceId(Long instanceId);
 
@@ -24,5 +30,14 @@ public interface DevopsEnvPodRepository {
 
     void deleteByName(String name, String namespace);
 
+    List<DevopsEnvPodE> listByNamespace(String namespace);
+
+    /**
+     * 根据主键批量删除pod
+     *
+     * @param ids pod id列表
+     */
+    void deleteByIds(List<Long> ids);
+
     DevopsEnvPodE getByNameAndEnv(String name, String namespace);
 }
@@ -1,5 +1,7 @@
 package io.choerodon.devops.domain.application.repository;
 
+import java.util.List;
+
 import io.choerodon.devops.domain.application.entity.DevopsEnvResourceDetailE;
 
 /**
@@ -10,5 +12,34 @@ public interface DevopsEnvResourceDetailRepository {
 
     DevopsEnvResourceDetailE query(Long messageId);
 
+    /**
+     * 更新资源详情，资源信息去掉易变字段后与已保存的相同时不更新
+     *
+     * @param devopsEnvResourceDetailE 资源详情
+     */
     void update(DevopsEnvResourceDetailE devopsEnvResourceDetailE);
+
+    /**
+     * 批量查询资源摘要，不查询资源信息
+     *
+     * @param ids 资源详情id列表
+     * @return 只包含id、摘要和是否chart包定义的资源详情
+     */
+    List<DevopsEnvResourceDetailE> listSummaryByIds(List<Long> ids);
+
+    /**
+     * 只更新资源摘要和是否chart包定义的资源，不修改资源信息
+     *
+     * @param devopsEnvResourceDetailE 资源详情
+     */
+    void updateSummary(DevopsEnvResourceDetailE devopsEnvResourceDetailE);
+
+    /**
+     * 将一批未压缩的资源信息转为压缩存储
+     *
+     * @param lastId 上一批最后的id，从此id之后开始
+     * @param size   每批条数
+     * @return 本批最后的id，没有需要压缩的数据时返回null
+     */
+    Long compressMessages(Long lastId, int size);
 }
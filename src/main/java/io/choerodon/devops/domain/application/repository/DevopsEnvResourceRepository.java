@@ -1,5 +1,6 @@
 package io.choerodon.devops.domain.application.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import io.choerodon.devops.domain.application.entity.DevopsEnvResourceE;
@@ -20,6 +21,32 @@ public interface DevopsEnvResourceRepository {
 
     void deleteByEnvIdAndKindAndName(Long envId, String kind, String name);
 
+    /**
+     * 根据主键批量删除资源
+     *
+     * @param ids 资源id列表
+     */
+    void deleteByIds(List<Long> ids);
+
+    /**
+     * 根据资源名称批量查询资源，不关联实例，可以查到不属于实例的资源
+     *
+     * @param envId 环境id，为空时不限制环境
+     * @param kind  资源类型
+     * @param names 资源名称
+     * @return 资源列表
+     */
+    List<DevopsEnvResourceE> listByEnvIdAndKindAndNames(Long envId, String kind, Collection<String> names);
+
+    /**
+     * 按资源详情id顺序分批查询还没有生成摘要的资源
+     *
+     * @param lastDetailId 上一批最后的资源详情id，从此id之后开始
+     * @param size         每批条数
+     * @return 资源列表
+     */
+    List<DevopsEnvResourceE> listWithoutSummary(Long lastDetailId, int size);
+
     List<DevopsEnvResourceE> listByEnvAndType(Long envId, String type);
 
     DevopsEnvResourceE queryLatestJob(String kind, String name);
@@ -1,5 +1,6 @@
 package io.choerodon.devops.domain.application.repository;
 
+import java.util.Collection;
 import java.util.List;
 
 import io.choerodon.devops.domain.application.entity.DevopsEnvironmentE;
@@ -25,6 +26,22 @@ public interface DevopsEnvironmentRepository {
 
     DevopsEnvironmentE queryByClusterIdAndCode(Long clusterId, String code);
 
+    /**
+     * 根据集群和环境编码查询环境id，结果会被缓存
+     *
+     * @param clusterId 集群id
+     * @param code      环境编码
+     * @return 环境id，环境不存在时为null
+     */
+    Long queryIdByClusterIdAndCode(Long clusterId, String code);
+
+    /**
+     * 清除集群下所有环境id的缓存
+     *
+     * @param clusterId 集群id
+     */
+    void evictEnvIdCacheByClusterId(Long clusterId);
+
     DevopsEnvironmentE queryByToken(String token);
 
     List<DevopsEnvironmentE> list();
@@ -34,4 +51,12 @@ public interface DevopsEnvironmentRepository {
     void deleteById(Long id);
 
     List<DevopsEnvironmentE> listByClusterId(Long clusterId);
+
+    /**
+     * 根据id批量查询环境
+     *
+     * @param ids 环境id
+     * @return 环境列表
+     */
+    List<DevopsEnvironmentE> listByIds(Collection<Long> ids);
 }
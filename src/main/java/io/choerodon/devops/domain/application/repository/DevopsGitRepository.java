@@ -2,12 +2,14 @@ package io.choerodon.devops.domain.application.repository;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import io.choerodon.core.domain.Page;
 import io.choerodon.devops.api.dto.TagDTO;
 import io.choerodon.devops.domain.application.entity.DevopsBranchE;
 import io.choerodon.devops.domain.application.entity.gitlab.CommitE;
 import io.choerodon.devops.domain.application.entity.gitlab.CompareResultsE;
+import io.choerodon.devops.domain.application.entity.iam.UserE;
 import io.choerodon.devops.infra.dataobject.gitlab.BranchDO;
 import io.choerodon.devops.infra.dataobject.gitlab.CommitDO;
 import io.choerodon.devops.infra.dataobject.gitlab.TagDO;
@@ -33,6 +35,14 @@ public interface DevopsGitRepository {
 
     Long getUserIdByGitlabUserId(Long gitLabUserId);
 
+    /**
+     * 根据gitlab用户id批量查询iam用户
+     *
+     * @param gitlabUserIds gitlab用户id
+     * @return gitlab用户id到iam用户的映射，没有对应用户的id不在结果中
+     */
+    Map<Long, UserE> listUsersByGitlabUserIds(Set<Long> gitlabUserIds);
+
     String getGitlabUrl(Long projectId, Long appId);
 
     void createDevopsBranch(DevopsBranchE devopsBranchE);
@@ -1,8 +1,10 @@
 package io.choerodon.devops.domain.application.repository;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import io.choerodon.core.domain.Page;
 import io.choerodon.devops.api.dto.CommitFormRecordDTO;
@@ -16,6 +18,22 @@ public interface DevopsGitlabCommitRepository {
 
     DevopsGitlabCommitE queryByShaAndRef(String sha, String ref);
 
+    /**
+     * 查询分支上已经记录的commit
+     *
+     * @param ref  分支
+     * @param shas commit sha
+     * @return 已记录的commit sha
+     */
+    Set<String> listExistingShas(String ref, Collection<String> shas);
+
+    /**
+     * 批量写入commit，一条insert语句
+     *
+     * @param devopsGitlabCommitES commit
+     */
+    void batchCreate(List<DevopsGitlabCommitE> devopsGitlabCommitES);
+
     List<DevopsGitlabCommitE> listCommits(Long projectId, List<Long> appIds, Date startDate, Date endDate);
 
     Page<CommitFormRecordDTO> pageCommitRecord(Long projectId, List<Long> appId,
@@ -6,6 +6,8 @@ import java.util.List;
 import io.choerodon.core.domain.Page;
 import io.choerodon.devops.domain.application.entity.DevopsGitlabPipelineE;
 import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDO;
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDailyDO;
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineStageDO;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
 public interface DevopsGitlabPipelineRepository {
@@ -26,4 +28,66 @@ public interface DevopsGitlabPipelineRepository {
 
     List<DevopsGitlabPipelineDO> listByBranch(Long appId, String branch);
 
+    /**
+     * 保存job的阶段信息，只写入对应的一行
+     *
+     * @param stageDO 阶段信息
+     */
+    void saveStage(DevopsGitlabPipelineStageDO stageDO);
+
+    /**
+     * 保存pipeline webhook中的job阶段信息，新job批量插入，只更新有变化的job
+     *
+     * @param pipelineId gitlab pipeline id
+     * @param stageDOS   阶段信息
+     * @return 保存后pipeline的全部阶段信息
+     */
+    List<DevopsGitlabPipelineStageDO> saveStages(Long pipelineId, List<DevopsGitlabPipelineStageDO> stageDOS);
+
+    /**
+     * 用从gitlab查询到的阶段信息替换pipeline已保存的阶段信息
+     *
+     * @param pipelineId gitlab pipeline id
+     * @param stageDOS   阶段信息
+     */
+    void replaceStages(Long pipelineId, List<DevopsGitlabPipelineStageDO> stageDOS);
+
+    List<DevopsGitlabPipelineStageDO> listStages(List<Long> pipelineIds);
+
+    /**
+     * 查询需要从gitlab补全且已到重试时间的pipeline，按重试时间排序
+     *
+     * @param maxAttempts 最多尝试次数，达到后不再补全
+     * @param limit       数量
+     * @return pipeline
+     */
+    List<DevopsGitlabPipelineE> listNeedReconcile(Integer maxAttempts, Integer limit);
+
+    /**
+     * 领取pipeline的补全任务，尝试次数加一并推迟下次重试时间，多个实例中只有一个能领取成功
+     *
+     * @param devopsGitlabPipelineE pipeline，需带有查询时的尝试次数
+     * @param nextReconcileAt       本次失败后的下次重试时间
+     * @return 是否领取成功
+     */
+    boolean claimReconcile(DevopsGitlabPipelineE devopsGitlabPipelineE, Date nextReconcileAt);
+
+    /**
+     * 查询执行结束但还没有计算执行时长的pipeline，用于补全历史数据
+     *
+     * @param limit 数量
+     * @return pipeline
+     */
+    List<DevopsGitlabPipelineE> listWithoutDuration(Integer limit);
+
+    /**
+     * 按应用和pipeline创建日期重新计算当天的汇总
+     *
+     * @param appId 应用id
+     * @param date  pipeline创建时间
+     */
+    void refreshDaily(Long appId, Date date);
+
+    List<DevopsGitlabPipelineDailyDO> listDaily(Long appId, Date startTime, Date endTime);
+
 }
@@ -30,6 +30,13 @@ public interface DevopsIngressRepository {
 
     void deleteIngress(Long ingressId);
 
+    /**
+     * 根据主键批量删除域名及其路径
+     *
+     * @param ingressIds 域名id列表
+     */
+    void deleteIngressByIds(List<Long> ingressIds);
+
     Long setStatus(Long envId, String name, String status);
 
     List<String> queryIngressNameByServiceId(Long serviceId);
@@ -1,9 +1,11 @@
 package io.choerodon.devops.domain.application.repository;
 
 import java.util.List;
+import java.util.Map;
 
 import io.choerodon.core.domain.Page;
 import io.choerodon.devops.domain.application.entity.DevopsMergeRequestE;
+import io.choerodon.devops.domain.application.entity.gitlab.CommitE;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
 public interface DevopsMergeRequestRepository {
@@ -23,4 +25,35 @@ public interface DevopsMergeRequestRepository {
     List<DevopsMergeRequestE> getByGitlabProjectId(Integer gitlabProjectId);
 
     void saveDevopsMergeRequest(DevopsMergeRequestE devopsMergeRequestE);
+
+    /**
+     * 按状态统计gitlab项目下的合并请求数
+     *
+     * @param gitlabProjectId gitlab项目id
+     * @return 状态到数量的映射
+     */
+    Map<String, Integer> countByState(Integer gitlabProjectId);
+
+    /**
+     * 从gitlab同步合并请求的提交，覆盖已保存的提交
+     *
+     * @param devopsMergeRequestE 合并请求
+     */
+    void syncCommits(DevopsMergeRequestE devopsMergeRequestE);
+
+    /**
+     * 在后台线程中同步合并请求的提交，已在排队的合并请求不重复同步
+     *
+     * @param devopsMergeRequestES 合并请求
+     */
+    void syncCommitsLater(List<DevopsMergeRequestE> devopsMergeRequestES);
+
+    /**
+     * 查询已保存的合并请求提交
+     *
+     * @param projectId             gitlab项目id
+     * @param gitlabMergeRequestIds 合并请求iid
+     * @return 合并请求iid到提交列表的映射，没有保存提交的合并请求不在结果中
+     */
+    Map<Long, List<CommitE>> listCommits(Long projectId, List<Long> gitlabMergeRequestIds);
 }
@@ -18,6 +18,13 @@ public interface DevopsServiceRepository {
 
     void delete(Long id);
 
+    /**
+     * 根据主键批量删除网络及其关联的实例
+     *
+     * @param ids 网络id列表
+     */
+    void deleteByIds(List<Long> ids);
+
     void update(DevopsServiceE devopsServiceE);
 
     Boolean checkName(Long envId, String name);
@@ -36,6 +36,15 @@ public interface IamRepository {
 
     UserE queryByEmail(Long projectId, String email);
 
+    /**
+     * 查询项目下邮箱对应的用户id，结果和查询不到的邮箱都会缓存
+     *
+     * @param projectId 项目id
+     * @param email     邮箱
+     * @return 用户id，查询不到时为null
+     */
+    Long queryUserIdByEmail(Long projectId, String email);
+
     Page<UserDTO> pagingQueryUsersByRoleIdOnProjectLevel(PageRequest pageRequest,
                                                          RoleAssignmentSearchDTO roleAssignmentSearchDTO, Long roleId,
                                                          Long projectId, Boolean doPage);
@@ -49,4 +58,32 @@ public interface IamRepository {
     List<Long> getAllMemberIdsWithoutOwner(Long projectId);
 
     Boolean isProjectOwner(Long userId, ProjectE projectE);
+
+    /**
+     * 清除项目缓存，项目创建、更新事件时调用
+     *
+     * @param projectId 项目id
+     */
+    void evictProjectCache(Long projectId);
+
+    /**
+     * 清除组织缓存，组织创建、注册事件时调用
+     *
+     * @param organizationId 组织id
+     */
+    void evictOrganizationCache(Long organizationId);
+
+    /**
+     * 清除用户缓存，用户创建、更新、启用、禁用事件时调用
+     *
+     * @param userId 用户id
+     */
+    void evictUserCache(Long userId);
+
+    /**
+     * 清除用户的项目角色缓存，角色分配、删除事件时调用
+     *
+     * @param userId 用户id
+     */
+    void evictUserRoleCache(Long userId);
 }
@@ -17,6 +17,8 @@ public interface UserAttrRepository {
 
     List<UserAttrE> listByUserIds(List<Long> userIds);
 
+    List<UserAttrE> listByGitlabUserIds(List<Long> gitlabUserIds);
+
     UserAttrE queryByGitlabUserId(Long gitlabUserId);
 
     void update(UserAttrE userAttrE);
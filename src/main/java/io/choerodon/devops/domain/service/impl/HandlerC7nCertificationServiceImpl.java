@@ -23,7 +23,7 @@ import io.choerodon.devops.domain.application.valueobject.C7nCertification;
 import io.choerodon.devops.domain.application.valueobject.certification.CertificationExistCert;
 import io.choerodon.devops.domain.application.valueobject.certification.CertificationSpec;
 import io.choerodon.devops.domain.service.HandlerObjectFileRelationsService;
-import io.choerodon.devops.infra.common.util.GitUtil;
+import io.choerodon.devops.infra.common.util.GitCommitIndex;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.common.util.enums.*;
 import io.choerodon.devops.infra.dataobject.CertificationFileDO;
@@ -47,6 +47,8 @@ public class HandlerC7nCertificationServiceImpl implements HandlerObjectFileRela
     private DevopsEnvFileResourceService devopsEnvFileResourceService;
     @Autowired
     private DevopsEnvCommandRepository devopsEnvCommandRepository;
+    @Autowired
+    private GitCommitIndex gitCommitIndex;
 
     @Override
     public void handlerRelations(Map<String, String> objectPath, List<DevopsEnvFileResourceE> beforeSync,
@@ -189,7 +191,7 @@ public class HandlerC7nCertificationServiceImpl implements HandlerObjectFileRela
 
     private void updateCommandSha(String filePath, String path, Long commandId) {
         DevopsEnvCommandE devopsEnvCommandE = devopsEnvCommandRepository.query(commandId);
-        devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+        devopsEnvCommandE.setSha(gitCommitIndex.getLatestCommit(path + GIT_SUFFIX, filePath));
         devopsEnvCommandRepository.update(devopsEnvCommandE);
     }
 }
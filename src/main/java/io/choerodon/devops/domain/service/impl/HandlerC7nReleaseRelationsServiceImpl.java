@@ -18,7 +18,7 @@ import io.choerodon.devops.domain.application.valueobject.C7nHelmRelease;
 import io.choerodon.devops.domain.application.valueobject.Organization;
 import io.choerodon.devops.domain.application.valueobject.ReplaceResult;
 import io.choerodon.devops.domain.service.HandlerObjectFileRelationsService;
-import io.choerodon.devops.infra.common.util.GitUtil;
+import io.choerodon.devops.infra.common.util.GitCommitIndex;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.common.util.enums.CommandStatus;
 import io.choerodon.devops.infra.common.util.enums.CommandType;
@@ -48,6 +48,8 @@ public class HandlerC7nReleaseRelationsServiceImpl implements HandlerObjectFileR
     private ApplicationVersionRepository applicationVersionRepository;
     @Autowired
     private DevopsEnvFileResourceService devopsEnvFileResourceService;
+    @Autowired
+    private GitCommitIndex gitCommitIndex;
 
     @Override
     public void handlerRelations(Map<String, String> objectPath, List<DevopsEnvFileResourceE> beforeSync, List<C7nHelmRelease> c7nHelmReleases, List<V1Endpoints> v1Endpoints, Long envId, Long projectId, String path, Long userId) {
@@ -138,7 +140,7 @@ public class HandlerC7nReleaseRelationsServiceImpl implements HandlerObjectFileR
                                     applicationInstanceE.setCommandId(devopsEnvCommandE.getId());
                                     applicationInstanceRepository.update(applicationInstanceE);
                                 }
-                                devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                                devopsEnvCommandE.setSha(gitCommitIndex.getLatestCommit(path + GIT_SUFFIX, filePath));
                                 devopsEnvCommandRepository.update(devopsEnvCommandE);
                                 DevopsEnvFileResourceE devopsEnvFileResourceE = devopsEnvFileResourceRepository
                                         .queryByEnvIdAndResource(envId, applicationDeployDTO.getAppInstanceId(), c7nHelmRelease.getKind());
@@ -188,7 +190,7 @@ public class HandlerC7nReleaseRelationsServiceImpl implements HandlerObjectFileR
                             applicationInstanceE.setCommandId(devopsEnvCommandE.getId());
                             applicationInstanceRepository.update(applicationInstanceE);
                         }
-                        devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                        devopsEnvCommandE.setSha(gitCommitIndex.getLatestCommit(path + GIT_SUFFIX, filePath));
                         devopsEnvCommandRepository.update(devopsEnvCommandE);
                         DevopsEnvFileResourceE devopsEnvFileResourceE = new DevopsEnvFileResourceE();
                         devopsEnvFileResourceE.setEnvironment(new DevopsEnvironmentE(envId));
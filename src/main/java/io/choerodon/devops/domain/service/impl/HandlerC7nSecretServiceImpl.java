@@ -25,7 +25,7 @@ import io.choerodon.devops.domain.application.repository.DevopsEnvFileResourceRe
 import io.choerodon.devops.domain.application.repository.DevopsSecretRepository;
 import io.choerodon.devops.domain.application.valueobject.C7nSecret;
 import io.choerodon.devops.domain.service.HandlerObjectFileRelationsService;
-import io.choerodon.devops.infra.common.util.GitUtil;
+import io.choerodon.devops.infra.common.util.GitCommitIndex;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.common.util.enums.CommandStatus;
 import io.choerodon.devops.infra.common.util.enums.CommandType;
@@ -50,18 +50,21 @@ public class HandlerC7nSecretServiceImpl implements HandlerObjectFileRelationsSe
     private final DevopsEnvCommandRepository devopsEnvCommandRepository;
     private final DevopsSecretService devopsSecretService;
     private final DevopsEnvFileResourceService devopsEnvFileResourceService;
+    private final GitCommitIndex gitCommitIndex;
 
     @Autowired
     public HandlerC7nSecretServiceImpl(DevopsSecretRepository devopsSecretRepository,
                                        DevopsEnvFileResourceRepository devopsEnvFileResourceRepository,
                                        DevopsEnvCommandRepository devopsEnvCommandRepository,
                                        DevopsSecretService devopsSecretService,
-                                       DevopsEnvFileResourceService devopsEnvFileResourceService) {
+                                       DevopsEnvFileResourceService devopsEnvFileResourceService,
+                                       GitCommitIndex gitCommitIndex) {
         this.devopsSecretRepository = devopsSecretRepository;
         this.devopsEnvFileResourceRepository = devopsEnvFileResourceRepository;
         this.devopsEnvCommandRepository = devopsEnvCommandRepository;
         this.devopsSecretService = devopsSecretService;
         this.devopsEnvFileResourceService = devopsEnvFileResourceService;
+        this.gitCommitIndex = gitCommitIndex;
     }
 
     @Override
@@ -143,7 +146,7 @@ public class HandlerC7nSecretServiceImpl implements HandlerObjectFileRelationsSe
                     devopsSecretE1.setCommandId(devopsEnvCommandE.getId());
                     devopsSecretRepository.update(devopsSecretE1);
                 }
-                devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                devopsEnvCommandE.setSha(gitCommitIndex.getLatestCommit(path + GIT_SUFFIX, filePath));
                 devopsEnvCommandRepository.update(devopsEnvCommandE);
                 DevopsEnvFileResourceE devopsEnvFileResourceE = new DevopsEnvFileResourceE();
                 devopsEnvFileResourceE.setEnvironment(new DevopsEnvironmentE(envId));
@@ -194,7 +197,7 @@ public class HandlerC7nSecretServiceImpl implements HandlerObjectFileRelationsSe
                     devopsSecretE1.setCommandId(devopsEnvCommandE.getId());
                     devopsSecretRepository.update(devopsSecretE1);
                 }
-                devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                devopsEnvCommandE.setSha(gitCommitIndex.getLatestCommit(path + GIT_SUFFIX, filePath));
                 devopsEnvCommandRepository.update(devopsEnvCommandE);
                 DevopsEnvFileResourceE devopsEnvFileResourceE = devopsEnvFileResourceRepository
                         .queryByEnvIdAndResource(envId, devopsSecretE.getId(), c7nSecret.getKind());
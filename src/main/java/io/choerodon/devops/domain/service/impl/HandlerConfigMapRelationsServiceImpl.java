@@ -26,7 +26,7 @@ import io.choerodon.devops.domain.application.repository.DevopsConfigMapReposito
 import io.choerodon.devops.domain.application.repository.DevopsEnvCommandRepository;
 import io.choerodon.devops.domain.application.repository.DevopsEnvFileResourceRepository;
 import io.choerodon.devops.domain.service.HandlerObjectFileRelationsService;
-import io.choerodon.devops.infra.common.util.GitUtil;
+import io.choerodon.devops.infra.common.util.GitCommitIndex;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.common.util.enums.CommandStatus;
 import io.choerodon.devops.infra.common.util.enums.CommandType;
@@ -49,6 +49,8 @@ public class HandlerConfigMapRelationsServiceImpl implements HandlerObjectFileRe
     private DevopsConfigMapService devopsConfigMapService;
     @Autowired
     private DevopsEnvFileResourceService devopsEnvFileResourceService;
+    @Autowired
+    private GitCommitIndex gitCommitIndex;
 
 
     @Override
@@ -127,7 +129,7 @@ public class HandlerConfigMapRelationsServiceImpl implements HandlerObjectFileRe
                                     .queryByEnvIdAndName(envId, configMap.getMetadata().getName());
                             devopsEnvCommandE = devopsEnvCommandRepository.query(newDevopsConfigMapE.getDevopsEnvCommandE().getId());
                         }
-                        devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                        devopsEnvCommandE.setSha(gitCommitIndex.getLatestCommit(path + GIT_SUFFIX, filePath));
                         devopsEnvCommandRepository.update(devopsEnvCommandE);
                         DevopsEnvFileResourceE devopsEnvFileResourceE = devopsEnvFileResourceRepository
                                 .queryByEnvIdAndResource(envId, devopsConfigMapE.getId(), configMap.getKind());
@@ -169,7 +171,7 @@ public class HandlerConfigMapRelationsServiceImpl implements HandlerObjectFileRe
                             devopsConfigMapRepDTO.setCommandId(devopsConfigMapE.getDevopsEnvCommandE().getId());
                         }
                         DevopsEnvCommandE devopsEnvCommandE = devopsEnvCommandRepository.query(devopsConfigMapRepDTO.getCommandId());
-                        devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                        devopsEnvCommandE.setSha(gitCommitIndex.getLatestCommit(path + GIT_SUFFIX, filePath));
                         devopsEnvCommandRepository.update(devopsEnvCommandE);
                         DevopsEnvFileResourceE devopsEnvFileResourceE = new DevopsEnvFileResourceE();
                         devopsEnvFileResourceE.setEnvironment(new DevopsEnvironmentE(envId));
@@ -14,7 +14,7 @@ import io.choerodon.devops.domain.application.entity.*;
 import io.choerodon.devops.domain.application.handler.GitOpsExplainException;
 import io.choerodon.devops.domain.application.repository.*;
 import io.choerodon.devops.domain.service.HandlerObjectFileRelationsService;
-import io.choerodon.devops.infra.common.util.GitUtil;
+import io.choerodon.devops.infra.common.util.GitCommitIndex;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.common.util.enums.CommandStatus;
 import io.choerodon.devops.infra.common.util.enums.CommandType;
@@ -48,6 +48,8 @@ public class HandlerServiceRelationsServiceImpl implements HandlerObjectFileRela
     private DevopsEnvCommandRepository devopsEnvCommandRepository;
     @Autowired
     private DevopsServiceInstanceRepository devopsServiceInstanceRepository;
+    @Autowired
+    private GitCommitIndex gitCommitIndex;
 
     @Override
     public void handlerRelations(Map<String, String> objectPath, List<DevopsEnvFileResourceE> beforeSync, List<V1Service> v1Services, List<V1Endpoints> v1Endpoints, Long envId, Long projectId, String path, Long userId) {
@@ -130,7 +132,7 @@ public class HandlerServiceRelationsServiceImpl implements HandlerObjectFileRela
                             devopsServiceE.setCommandId(devopsEnvCommandE.getId());
                             devopsServiceRepository.update(devopsServiceE);
                         }
-                        devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                        devopsEnvCommandE.setSha(gitCommitIndex.getLatestCommit(path + GIT_SUFFIX, filePath));
                         devopsEnvCommandRepository.update(devopsEnvCommandE);
                         DevopsEnvFileResourceE devopsEnvFileResourceE = devopsEnvFileResourceRepository
                                 .queryByEnvIdAndResource(envId, devopsServiceE.getId(), v1Service.getKind());
@@ -177,7 +179,7 @@ public class HandlerServiceRelationsServiceImpl implements HandlerObjectFileRela
                             devopsServiceE.setCommandId(devopsEnvCommandE.getId());
                             devopsServiceRepository.update(devopsServiceE);
                         }
-                        devopsEnvCommandE.setSha(GitUtil.getFileLatestCommit(path + GIT_SUFFIX, filePath));
+                        devopsEnvCommandE.setSha(gitCommitIndex.getLatestCommit(path + GIT_SUFFIX, filePath));
                         devopsEnvCommandRepository.update(devopsEnvCommandE);
                         DevopsEnvFileResourceE devopsEnvFileResourceE = new DevopsEnvFileResourceE();
                         devopsEnvFileResourceE.setEnvironment(new DevopsEnvironmentE(envId));
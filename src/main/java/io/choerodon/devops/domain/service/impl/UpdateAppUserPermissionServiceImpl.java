@@ -1,7 +1,10 @@
 package io.choerodon.devops.domain.service.impl;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import io.choerodon.core.convertor.ApplicationContextHelper;
@@ -57,10 +60,10 @@ public class UpdateAppUserPermissionServiceImpl extends UpdateUserPermissionServ
                 allMemberGitlabIdsWithoutOwner = getAllGitlabMemberWithoutOwner(projectId);
 
                 addGitlabUserIds = new ArrayList<>(updateGitlabUserIds);
-                addGitlabUserIds.removeAll(allMemberGitlabIdsWithoutOwner);
+                addGitlabUserIds.removeAll(new HashSet<>(allMemberGitlabIdsWithoutOwner));
 
                 deleteGitlabUserIds = new ArrayList<>(allMemberGitlabIdsWithoutOwner);
-                deleteGitlabUserIds.removeAll(updateGitlabUserIds);
+                deleteGitlabUserIds.removeAll(new HashSet<>(updateGitlabUserIds));
 
                 super.updateGitlabUserPermission(gitlabProjectId, addGitlabUserIds, deleteGitlabUserIds);
                 return true;
@@ -68,10 +71,12 @@ public class UpdateAppUserPermissionServiceImpl extends UpdateUserPermissionServ
             case 2:
                 // 获取项目下所有项目成员的gitlabUserIds，过滤掉项目所有者
                 allMemberGitlabIdsWithoutOwner = getAllGitlabMemberWithoutOwner(projectId);
+                // gitlab项目现有成员只查询一次
+                Set<Integer> gitlabMemberIds = gitlabProjectRepository.getAllMemberByProjectId(gitlabProjectId)
+                        .stream().map(GitlabMemberE::getId).collect(Collectors.toSet());
 
                 addGitlabUserIds = allMemberGitlabIdsWithoutOwner.stream()
-                        .filter(e -> !gitlabProjectRepository.getAllMemberByProjectId(gitlabProjectId).stream()
-                                .map(GitlabMemberE::getId).collect(Collectors.toList()).contains(e))
+                        .filter(e -> !gitlabMemberIds.contains(e))
                         .collect(Collectors.toList());
 
                 super.updateGitlabUserPermission(gitlabProjectId, addGitlabUserIds, new ArrayList<>());
@@ -80,14 +85,14 @@ public class UpdateAppUserPermissionServiceImpl extends UpdateUserPermissionServ
             case 3:
                 updateGitlabUserIds = userAttrRepository.listByUserIds(userIds).stream()
                         .map(e -> TypeUtil.objToInteger(e.getGitlabUserId())).collect(Collectors.toList());
-                List<Integer> currentGitlabUserIds = gitlabProjectRepository.getAllMemberByProjectId(gitlabProjectId)
-                        .stream().map(GitlabMemberE::getId).collect(Collectors.toList());
+                Set<Integer> currentGitlabUserIds = gitlabProjectRepository.getAllMemberByProjectId(gitlabProjectId)
+                        .stream().map(GitlabMemberE::getId).collect(Collectors.toCollection(LinkedHashSet::new));
 
                 addGitlabUserIds = new ArrayList<>(updateGitlabUserIds);
                 addGitlabUserIds.removeAll(currentGitlabUserIds);
 
                 deleteGitlabUserIds = new ArrayList<>(currentGitlabUserIds);
-                deleteGitlabUserIds.removeAll(updateGitlabUserIds);
+                deleteGitlabUserIds.removeAll(new HashSet<>(updateGitlabUserIds));
 
                 super.updateGitlabUserPermission(gitlabProjectId, addGitlabUserIds, deleteGitlabUserIds);
                 return true;
@@ -99,7 +104,6 @@ public class UpdateAppUserPermissionServiceImpl extends UpdateUserPermissionServ
     // 获取iam项目下所有的项目成员的gitlabUserId，过滤掉项目所有者
     private List<Integer> getAllGitlabMemberWithoutOwner(Long projectId) {
         return userAttrRepository.listByUserIds(iamRepository.getAllMemberIdsWithoutOwner(projectId)).stream()
-                .map(UserAttrE::getGitlabUserId).collect(Collectors.toList()).stream()
-                .map(TypeUtil::objToInteger).collect(Collectors.toList());
+                .map(UserAttrE::getGitlabUserId).map(TypeUtil::objToInteger).collect(Collectors.toList());
     }
 }
@@ -1,6 +1,8 @@
 package io.choerodon.devops.domain.service.impl;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import io.choerodon.core.convertor.ApplicationContextHelper;
@@ -34,15 +36,16 @@ public class UpdateEnvUserPermissionServiceImpl extends UpdateUserPermissionServ
     @Override
     public Boolean updateUserPermission(Long projectId, Long id, List<Long> userIds, Integer option) {
         // 更新以前所有有权限的用户
-        List<Long> currentUserIds = devopsEnvUserPermissionRepository.listAll(id).stream()
-                .map(DevopsEnvUserPermissionE::getIamUserId).collect(Collectors.toList());
+        Set<Long> currentUserIds = devopsEnvUserPermissionRepository.listAll(id).stream()
+                .map(DevopsEnvUserPermissionE::getIamUserId).collect(Collectors.toSet());
+        Set<Long> updateUserIds = new HashSet<>(userIds);
         // 待添加的用户
         List<Long> addIamUserIds = userIds.stream().filter(e -> !currentUserIds.contains(e))
                 .collect(Collectors.toList());
         List<Integer> addgitlabUserIds = userAttrRepository.listByUserIds(addIamUserIds).stream()
                 .map(UserAttrE::getGitlabUserId).map(TypeUtil::objToInteger).collect(Collectors.toList());
         // 待删除的用户
-        List<Long> deleteIamUserIds = currentUserIds.stream().filter(e -> !userIds.contains(e))
+        List<Long> deleteIamUserIds = currentUserIds.stream().filter(e -> !updateUserIds.contains(e))
                 .collect(Collectors.toList());
         List<Integer> deleteGitlabUserIds = userAttrRepository.listByUserIds(deleteIamUserIds).stream()
                 .map(UserAttrE::getGitlabUserId).map(TypeUtil::objToInteger).collect(Collectors.toList());
@@ -3,6 +3,7 @@ package io.choerodon.devops.infra.common.util;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -130,6 +131,20 @@ public class EnvUtil {
                 .collect(Collectors.toCollection(ArrayList::new));
     }
 
+    /**
+     * 已连接且agent版本满足要求的集群，一次请求内计算一次，供列表逐条判断环境状态
+     *
+     * @param envListener EnvListener
+     * @return 集群id集合
+     */
+    public Set<Long> getConnectedAndUpdatedClusterIds(EnvListener envListener) {
+        Map<String, EnvSession> connectedEnv = envListener.connectedEnv();
+        return connectedEnv.values().stream()
+                .filter(t -> compareVersion(t.getVersion() == null ? "0" : t.getVersion(), agentExpectVersion) != 1)
+                .map(EnvSession::getClusterId)
+                .collect(Collectors.toSet());
+    }
+
 
     public GitConfigDTO getGitConfig(Long clusterId) {
         List<DevopsEnvironmentE> devopsEnvironments = devopsEnvironmentRepository.listByClusterId(clusterId);
@@ -4,8 +4,10 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.math.BigInteger;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -32,6 +34,8 @@ import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
 import org.apache.commons.compress.utils.IOUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -165,6 +169,82 @@ public class FileUtil {
         return path + System.getProperty("file.separator") + filename;
     }
 
+    /**
+     * 将上传的tgz包保存到指定目录，保存的同时从gzip/tar流中读取指定文件的内容，不解压到磁盘
+     * 包先写入临时文件，读取完成后再替换目标文件，避免读到写了一半的包
+     *
+     * @param path      项目目录
+     * @param files     来源文件
+     * @param fileNames 需要读取的文件名，同名文件取目录层级最浅的一个
+     * @return 文件名 -> 文件内容，包中不存在的文件不返回
+     */
+    public static Map<String, String> saveTarGzAndReadFiles(String path, MultipartFile files, String... fileNames) {
+        File repo = new File(path);
+        if (!repo.exists()) {
+            repo.mkdirs();
+        }
+        File target = new File(path, files.getOriginalFilename());
+        File tmpFile = new File(path, target.getName() + "." + UUID.randomUUID() + ".tmp");
+        Map<String, String> contents;
+        try {
+            try (InputStream in = files.getInputStream();
+                 OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile));
+                 TeeInputStream tee = new TeeInputStream(in, out)) {
+                // gzip流读到结尾时会mark/reset回退，缓冲需包在tee之外，避免回退的内容重复写入
+                contents = readTarGzEntries(new BufferedInputStream(tee), fileNames);
+                // tar结束后可能还有补齐的内容，读完保证包完整保存
+                IOUtils.copy(tee, NullOutputStream.NULL_OUTPUT_STREAM);
+            }
+            Files.move(tmpFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new CommonException("error.file.transfer", e);
+        } finally {
+            if (tmpFile.exists()) {
+                deleteFile(tmpFile);
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * 从tgz包中读取指定文件的内容，不解压到磁盘
+     *
+     * @param tarFile   tgz包
+     * @param fileNames 需要读取的文件名，同名文件取目录层级最浅的一个
+     * @return 文件名 -> 文件内容，包中不存在的文件不返回
+     */
+    public static Map<String, String> readTarGzFiles(File tarFile, String... fileNames) {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(tarFile))) {
+            return readTarGzEntries(in, fileNames);
+        } catch (IOException e) {
+            throw new CommonException("error.file.read", e);
+        }
+    }
+
+    private static Map<String, String> readTarGzEntries(InputStream inputStream, String... fileNames)
+            throws IOException {
+        Set<String> names = new HashSet<>(Arrays.asList(fileNames));
+        Map<String, String> contents = new HashMap<>();
+        Map<String, Integer> depths = new HashMap<>();
+        // 不关闭tar流，由调用方关闭底层流
+        TarArchiveInputStream tarIn = new TarArchiveInputStream(new GzipCompressorInputStream(inputStream),
+                BUFFER_SIZE);
+        TarArchiveEntry entry;
+        while ((entry = tarIn.getNextTarEntry()) != null) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            String[] segments = entry.getName().split("/");
+            String name = segments[segments.length - 1];
+            if (names.contains(name) && segments.length < depths.getOrDefault(name, Integer.MAX_VALUE)) {
+                contents.put(name, new String(IOUtils.toByteArray(tarIn), StandardCharsets.UTF_8));
+                depths.put(name, segments.length);
+            }
+        }
+        return contents;
+    }
+
     /**
      * yaml格式转字符串
      *
@@ -1223,16 +1303,16 @@ public class FileUtil {
         res.setHeader("Content-Disposition", "attachment;filename=" + filePath);
         File file = new File(filePath);
         res.setHeader("Content-Length", "" + file.length());
-        byte[] buff = new byte[1024];
+        byte[] buff = new byte[8192];
         OutputStream os;
         try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(file))) {
             os = res.getOutputStream();
             int i = bis.read(buff);
             while (i != -1) {
-                os.write(buff, 0, buff.length);
-                os.flush();
+                os.write(buff, 0, i);
                 i = bis.read(buff);
             }
+            os.flush();
         } catch (IOException e) {
             throw new CommonException(e.getMessage(), e);
         }
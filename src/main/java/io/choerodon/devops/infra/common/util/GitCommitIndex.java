@@ -0,0 +1,175 @@
+package io.choerodon.devops.infra.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * 查询文件最后一次修改的提交，一次遍历提交历史即可得到多个文件的结果，
+ * 结果按仓库当前HEAD缓存，同一次同步中的后续查询直接命中
+ */
+@Component
+public class GitCommitIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitCommitIndex.class);
+
+    /**
+     * 环境删除或断开后不再同步，长时间未访问的仓库结果自动清除
+     */
+    private final Cache<String, Snapshot> snapshots = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
+    /**
+     * 查询多个文件最后一次修改的提交
+     *
+     * @param repoPath  仓库.git目录
+     * @param filePaths 文件相对路径
+     * @return 文件相对路径和提交sha，历史中找不到的文件不包含在结果中
+     */
+    public Map<String, String> getLatestCommits(String repoPath, Collection<String> filePaths) {
+        File repoGitDir = new File(repoPath);
+        try (Repository repository = new FileRepository(repoGitDir.getAbsolutePath())) {
+            ObjectId head = repository.resolve(Constants.HEAD);
+            if (head == null) {
+                return Collections.emptyMap();
+            }
+            Snapshot snapshot = snapshots.asMap().compute(repoPath,
+                    (key, old) -> old != null && old.head.equals(head) ? old : new Snapshot(head));
+            synchronized (snapshot) {
+                Set<String> missing = new HashSet<>(filePaths);
+                missing.removeAll(snapshot.resolved);
+                if (!missing.isEmpty()) {
+                    snapshot.commits.putAll(walk(repository, head, missing));
+                    snapshot.resolved.addAll(missing);
+                }
+                Map<String, String> result = new HashMap<>();
+                filePaths.forEach(filePath -> {
+                    String commit = snapshot.commits.get(filePath);
+                    if (commit != null) {
+                        result.put(filePath, commit);
+                    }
+                });
+                return result;
+            }
+        } catch (IOException e) {
+            LOGGER.info("Get file latest commit error", e);
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * 清除仓库的缓存结果，本地仓库被删除时调用
+     *
+     * @param repoPath 仓库.git目录
+     */
+    public void invalidate(String repoPath) {
+        snapshots.invalidate(repoPath);
+    }
+
+    /**
+     * 查询文件最后一次修改的提交
+     *
+     * @param repoPath 仓库.git目录
+     * @param filePath 文件相对路径
+     * @return 提交sha，找不到时返回空字符串
+     */
+    public String getLatestCommit(String repoPath, String filePath) {
+        if (filePath == null) {
+            return "";
+        }
+        return getLatestCommits(repoPath, Collections.singletonList(filePath)).getOrDefault(filePath, "");
+    }
+
+    /**
+     * 从HEAD开始按时间倒序遍历提交，提交与所有父提交相比都有改动的文件，该提交即为文件最后一次修改的提交
+     */
+    private Map<String, String> walk(Repository repository, ObjectId head, Set<String> filePaths) throws IOException {
+        Map<String, String> commits = new HashMap<>();
+        Set<String> pending = new HashSet<>(filePaths);
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            revWalk.markStart(revWalk.parseCommit(head));
+            for (RevCommit commit : revWalk) {
+                if (pending.isEmpty()) {
+                    break;
+                }
+                Set<String> changed = null;
+                if (commit.getParentCount() == 0) {
+                    changed = changedPaths(repository, commit, null, pending);
+                }
+                for (RevCommit parent : commit.getParents()) {
+                    Set<String> changedFromParent = changedPaths(repository, commit, revWalk.parseCommit(parent), pending);
+                    if (changed == null) {
+                        changed = changedFromParent;
+                    } else {
+                        changed.retainAll(changedFromParent);
+                    }
+                    if (changed.isEmpty()) {
+                        break;
+                    }
+                }
+                for (String path : changed) {
+                    commits.put(path, commit.getName());
+                    pending.remove(path);
+                }
+            }
+        }
+        return commits;
+    }
+
+    private Set<String> changedPaths(Repository repository, RevCommit commit, RevCommit parent, Set<String> pending)
+            throws IOException {
+        Set<String> changed = new HashSet<>();
+        try (TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.setRecursive(true);
+            if (parent == null) {
+                treeWalk.addTree(commit.getTree());
+                treeWalk.setFilter(PathFilterGroup.createFromStrings(pending));
+            } else {
+                treeWalk.addTree(parent.getTree());
+                treeWalk.addTree(commit.getTree());
+                treeWalk.setFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(pending), TreeFilter.ANY_DIFF));
+            }
+            while (treeWalk.next()) {
+                if (pending.contains(treeWalk.getPathString())) {
+                    changed.add(treeWalk.getPathString());
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static class Snapshot {
+        private final ObjectId head;
+        private final Map<String, String> commits = new HashMap<>();
+        private final Set<String> resolved = new HashSet<>();
+
+        Snapshot(ObjectId head) {
+            this.head = head;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package io.choerodon.devops.infra.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 管理gitops目录下各环境的本地仓库，仓库保留在本地，更新时只拉取master分支，
+ * 占用的磁盘超出限制时按最近使用时间删除长时间未使用的仓库
+ */
+@Component
+public class GitOpsRepositoryPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitOpsRepositoryPool.class);
+    private static final String GITOPS = "gitops";
+    private static final String GIT_SUFFIX = "/.git";
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Object evictLock = new Object();
+    private volatile boolean loaded;
+
+    @Autowired
+    private GitUtil gitUtil;
+    @Autowired
+    private GitCommitIndex gitCommitIndex;
+
+    @Value("${gitops.repo.disk-budget-mb:10240}")
+    private long diskBudgetMb;
+    @Value("${gitops.repo.min-idle-minutes:30}")
+    private long minIdleMinutes;
+
+    /**
+     * 获取环境的本地仓库，不存在时clone
+     *
+     * @param path   本地路径
+     * @param url    仓库ssh地址
+     * @param sshKey 环境私钥
+     * @return 本地路径
+     */
+    public String prepare(String path, String url, String sshKey) {
+        Entry entry = getEntry(path);
+        entry.lock.lock();
+        try {
+            if (!new File(path).exists()) {
+                clone(path, url, sshKey);
+                entry.size = sizeOf(path);
+            }
+            entry.lastAccess = System.currentTimeMillis();
+        } finally {
+            entry.lock.unlock();
+        }
+        evictIfNecessary(path);
+        return path;
+    }
+
+    /**
+     * 将环境的本地仓库更新到指定提交，不存在时clone
+     *
+     * @param path   本地路径
+     * @param url    仓库ssh地址
+     * @param sshKey 环境私钥
+     * @param commit 目标提交
+     */
+    public void update(String path, String url, String sshKey, String commit) {
+        Entry entry = getEntry(path);
+        entry.lock.lock();
+        try {
+            if (!new File(path).exists()) {
+                clone(path, url, sshKey);
+                gitUtil.checkout(path + GIT_SUFFIX, commit);
+            } else {
+                gitUtil.fetchAndCheckout(path + GIT_SUFFIX, commit, sshKey);
+            }
+            entry.size = sizeOf(path);
+            entry.lastAccess = System.currentTimeMillis();
+        } finally {
+            entry.lock.unlock();
+        }
+        evictIfNecessary(path);
+    }
+
+    private void clone(String path, String url, String sshKey) {
+        Git git = gitUtil.cloneBySsh(path, url, sshKey);
+        if (git != null) {
+            git.close();
+        }
+    }
+
+    private Entry getEntry(String path) {
+        loadExisting();
+        return entries.computeIfAbsent(path, k -> new Entry());
+    }
+
+    /**
+     * 启动后第一次使用时登记已存在的本地仓库，以目录修改时间作为最近使用时间
+     */
+    private void loadExisting() {
+        if (loaded) {
+            return;
+        }
+        synchronized (evictLock) {
+            if (loaded) {
+                return;
+            }
+            File[] orgs = new File(GITOPS).listFiles(File::isDirectory);
+            for (File org : orgs == null ? new File[0] : orgs) {
+                File[] projects = org.listFiles(File::isDirectory);
+                for (File project : projects == null ? new File[0] : projects) {
+                    File[] envs = project.listFiles(File::isDirectory);
+                    for (File env : envs == null ? new File[0] : envs) {
+                        String path = String.format("%s/%s/%s/%s", GITOPS, org.getName(), project.getName(), env.getName());
+                        Entry entry = new Entry();
+                        entry.size = sizeOf(path);
+                        entry.lastAccess = env.lastModified();
+                        entries.putIfAbsent(path, entry);
+                    }
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    private void evictIfNecessary(String inUse) {
+        long budget = diskBudgetMb * FileUtils.ONE_MB;
+        if (budget <= 0) {
+            return;
+        }
+        synchronized (evictLock) {
+            long total = entries.values().stream().mapToLong(entry -> entry.size).sum();
+            if (total <= budget) {
+                return;
+            }
+            long idleBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(minIdleMinutes);
+            List<Map.Entry<String, Entry>> candidates = new ArrayList<>(entries.entrySet());
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().lastAccess));
+            for (Map.Entry<String, Entry> candidate : candidates) {
+                if (total <= budget) {
+                    break;
+                }
+                Entry entry = candidate.getValue();
+                if (candidate.getKey().equals(inUse) || entry.lastAccess > idleBefore || !entry.lock.tryLock()) {
+                    continue;
+                }
+                try {
+                    FileUtils.deleteDirectory(new File(candidate.getKey()));
+                    entries.remove(candidate.getKey());
+                    gitCommitIndex.invalidate(candidate.getKey() + GIT_SUFFIX);
+                    total -= entry.size;
+                    LOGGER.info("evict gitops repository {}, size {}", candidate.getKey(), entry.size);
+                } catch (IOException e) {
+                    LOGGER.info("evict gitops repository {} error", candidate.getKey(), e);
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+        }
+    }
+
+    private long sizeOf(String path) {
+        File file = new File(path);
+        return file.exists() ? FileUtils.sizeOfDirectory(file) : 0L;
+    }
+
+    private static class Entry {
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long size;
+        private volatile long lastAccess;
+    }
+}
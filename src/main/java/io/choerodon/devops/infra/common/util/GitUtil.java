@@ -2,10 +2,13 @@ package io.choerodon.devops.infra.common.util;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
@@ -15,9 +18,9 @@ import org.apache.commons.io.FileUtils;
 import org.eclipse.jgit.api.*;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.transport.*;
 import org.eclipse.jgit.util.FS;
 import org.slf4j.Logger;
@@ -41,8 +44,17 @@ public class GitUtil {
     private static final String REPO_NAME = "devops-service-repo";
     private static final Logger LOGGER = LoggerFactory.getLogger(DevopsGitServiceImpl.class);
 
+    private static final String ORIGIN = "origin";
+
+    /**
+     * 按私钥缓存ssh会话工厂，同一环境的多次同步复用已加载私钥的JSch
+     */
+    private final Cache<String, SshSessionFactory> sshSessionFactories = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .build();
+
     private String classPath;
-    private String sshKey;
 
     @Value("${template.url}")
     private String repoUrl;
@@ -91,31 +103,6 @@ public class GitUtil {
         }
     }
 
-    private static String getLog(String repoPath, String fileName) {
-        String latestCommit = "";
-        File file = new File(repoPath);
-        try (Repository repository = new FileRepository(file.getAbsolutePath())) {
-            try (Git git = new Git(repository)) {
-                Iterable<RevCommit> logs = git.log().addPath(fileName).call();
-                Iterator<RevCommit> revCommitIterator = logs.iterator();
-                if (revCommitIterator.hasNext()) {
-                    latestCommit = revCommitIterator.next().getName();
-                }
-            }
-        } catch (Exception e) {
-            LOGGER.info(e.getMessage());
-        }
-        return latestCommit;
-    }
-
-    public static String getFileLatestCommit(String path, String filePath) {
-        if (filePath != null) {
-            String[] fileName = filePath.split("/");
-            return GitUtil.getLog(path, fileName[fileName.length - 1]);
-        }
-        return "";
-    }
-
     public static String getGitlabSshUrl(Pattern pattern, String url, String orgCode, String proCode, String envCode) {
         String result = "";
         if (url.contains("@")) {
@@ -147,14 +134,15 @@ public class GitUtil {
     /**
      * clone by ssh
      *
-     * @param path target path
-     * @param url  git repo url
+     * @param path   target path
+     * @param url    git repo url
+     * @param sshKey ssh private key
      */
-    public Git cloneBySsh(String path, String url) {
+    public Git cloneBySsh(String path, String url, String sshKey) {
         CloneCommand cloneCommand = Git.cloneRepository();
         cloneCommand.setURI(url);
         cloneCommand.setBranch(MASTER);
-        cloneCommand.setTransportConfigCallback(getTransportConfigCallback());
+        cloneCommand.setTransportConfigCallback(getTransportConfigCallback(sshKey));
         try {
             cloneCommand.setDirectory(new File(path));
             return cloneCommand.call();
@@ -175,7 +163,7 @@ public class GitUtil {
         try (Repository repository = new FileRepository(repoGitDir.getAbsolutePath())) {
             checkout(commit, repository);
         } catch (IOException e) {
-            LOGGER.info("Get repository error", e);
+            throw new CommonException("error.git.repository.get", e);
         }
     }
 
@@ -183,43 +171,61 @@ public class GitUtil {
         try (Git git = new Git(repository)) {
             git.checkout().setName(commit).call();
         } catch (GitAPIException e) {
-            LOGGER.info("Checkout error ", e);
+            throw new CommonException("error.git.checkout", e);
         }
     }
 
     /**
-     * pull git repo using ssh
+     * 只拉取远程master分支，检出到指定提交后将本地master移动到远程master
      *
-     * @param path git repo
+     * @param path   git repo path
+     * @param commit target commit
+     * @param sshKey ssh private key
+     * @throws CommonException 拉取或检出失败时抛出，本地仓库不会停留在旧提交上而被当作已更新
      */
-    public void pullBySsh(String path) {
+    public void fetchAndCheckout(String path, String commit, String sshKey) {
         File repoGitDir = new File(path);
         try (Repository repository = new FileRepository(repoGitDir.getAbsolutePath())) {
-            pullBySsh(repository);
+            try (Git git = new Git(repository)) {
+                git.fetch()
+                        .setRemote(ORIGIN)
+                        .setRefSpecs(new RefSpec("+" + Constants.R_HEADS + MASTER + ":"
+                                + Constants.R_REMOTES + ORIGIN + PATH + MASTER))
+                        .setTransportConfigCallback(getTransportConfigCallback(sshKey))
+                        .call();
+                git.checkout().setName(commit).call();
+                // HEAD已处于游离状态，直接移动本地master，不需要检出master再合并
+                git.branchCreate()
+                        .setName(MASTER)
+                        .setForce(true)
+                        .setStartPoint(ORIGIN + PATH + MASTER)
+                        .call();
+            } catch (GitAPIException e) {
+                throw new CommonException("error.git.fetch", e);
+            }
         } catch (IOException e) {
-            LOGGER.info("Get repository error", e);
+            throw new CommonException("error.git.repository.get", e);
         }
     }
 
-    private void pullBySsh(Repository repository) {
-        try (Git git = new Git(repository)) {
-            git.pull()
-                    .setTransportConfigCallback(getTransportConfigCallback())
-                    .setRemoteBranchName(MASTER)
-                    .call();
-        } catch (GitAPIException e) {
-            LOGGER.info("Pull error", e);
-        }
-    }
-
-    private TransportConfigCallback getTransportConfigCallback() {
+    private TransportConfigCallback getTransportConfigCallback(String sshKey) {
+        SshSessionFactory sshSessionFactory = getSshSessionFactory(sshKey);
         return transport -> {
-            SshTransport sshTransport = (SshTransport) transport;
-            sshTransport.setSshSessionFactory(sshSessionFactor());
+            if (transport instanceof SshTransport) {
+                ((SshTransport) transport).setSshSessionFactory(sshSessionFactory);
+            }
         };
     }
 
-    private SshSessionFactory sshSessionFactor() {
+    private SshSessionFactory getSshSessionFactory(String sshKey) {
+        try {
+            return sshSessionFactories.get(sshKey, () -> sshSessionFactor(sshKey));
+        } catch (ExecutionException e) {
+            throw new CommonException(e.getMessage(), e);
+        }
+    }
+
+    private SshSessionFactory sshSessionFactor(String sshKey) {
         return new JschConfigSessionFactory() {
             @Override
             protected void configure(OpenSshConfig.Host host, Session session) {
@@ -419,27 +425,29 @@ public class GitUtil {
     /**
      * push current git repo
      *
-     * @param git git repo
+     * @param git    git repo
+     * @param sshKey ssh private key
      * @throws GitAPIException push error
      */
-    public void gitPush(Git git) throws GitAPIException {
-        git.push().setTransportConfigCallback(getTransportConfigCallback()).call();
+    public void gitPush(Git git, String sshKey) throws GitAPIException {
+        git.push().setTransportConfigCallback(getTransportConfigCallback(sshKey)).call();
     }
 
     /**
      * push current git repo
      *
-     * @param git git repo
+     * @param git    git repo
+     * @param sshKey ssh private key
      * @throws GitAPIException push error
      */
-    public void gitPushTag(Git git) throws GitAPIException {
+    public void gitPushTag(Git git, String sshKey) throws GitAPIException {
         List<Ref> refs = git.branchList().call();
         PushCommand pushCommand = git.push();
         for (Ref ref : refs) {
             pushCommand.add(ref);
         }
         pushCommand.setPushTags();
-        pushCommand.setTransportConfigCallback(getTransportConfigCallback()).call();
+        pushCommand.setTransportConfigCallback(getTransportConfigCallback(sshKey)).call();
     }
 
     /**
@@ -473,12 +481,4 @@ public class GitUtil {
     private void commitChanges(Git git, String commitMsg) throws GitAPIException {
         git.commit().setMessage(commitMsg).call();
     }
-
-    public String getSshKey() {
-        return sshKey;
-    }
-
-    public void setSshKey(String sshKey) {
-        this.sshKey = sshKey;
-    }
 }
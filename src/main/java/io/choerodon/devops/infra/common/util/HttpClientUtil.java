@@ -1,18 +1,44 @@
 package io.choerodon.devops.infra.common.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 
 import io.choerodon.core.exception.CommonException;
 
 public class HttpClientUtil {
 
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * 共用连接池，并行下载chart时复用连接
+     */
+    private static final CloseableHttpClient HTTP_CLIENT;
+
+    static {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(50);
+        connectionManager.setDefaultMaxPerRoute(20);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(10000)
+                .setConnectionRequestTimeout(10000)
+                .setSocketTimeout(60000)
+                .build();
+        HTTP_CLIENT = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+    }
+
     HttpClientUtil() {
     }
 
@@ -23,17 +49,44 @@ public class HttpClientUtil {
      * @param fileUrl 目标路径
      */
     public static void getTgz(String getUrl, String fileUrl) {
-        try (CloseableHttpClient httpclient = HttpClients.createDefault()) {
-            HttpGet httpGet = new HttpGet(getUrl);
-            CloseableHttpResponse response1 = httpclient.execute(httpGet);
-            try (FileOutputStream fos = new FileOutputStream(fileUrl)) {
-                InputStream is = response1.getEntity().getContent();
-                byte[] buffer = new byte[4096];
-                int r = 0;
-                while ((r = is.read(buffer)) > 0) {
-                    fos.write(buffer, 0, r);
+        try (FileOutputStream fos = new FileOutputStream(fileUrl)) {
+            getTgz(getUrl, fos);
+        } catch (IOException e) {
+            throw new CommonException(e.getMessage());
+        }
+    }
+
+    /**
+     * 下载 tgz 到内存
+     *
+     * @param getUrl tgz路径
+     * @return tgz内容
+     */
+    public static byte[] getTgz(String getUrl) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        getTgz(getUrl, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 下载 tgz 写入输出流
+     *
+     * @param getUrl       tgz路径
+     * @param outputStream 输出流
+     */
+    public static void getTgz(String getUrl, OutputStream outputStream) {
+        HttpGet httpGet = new HttpGet(getUrl);
+        try (CloseableHttpResponse response = HTTP_CLIENT.execute(httpGet)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode < 200 || statusCode >= 300) {
+                throw new CommonException("error.chart.download", getUrl, statusCode);
+            }
+            try (InputStream is = response.getEntity().getContent()) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int r;
+                while ((r = is.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, r);
                 }
-                is.close();
             }
         } catch (IOException e) {
             throw new CommonException(e.getMessage());
@@ -42,9 +95,8 @@ public class HttpClientUtil {
 
 
     public static Integer getSonar(String sonarUrl) {
-        try (CloseableHttpClient httpclient = HttpClients.createDefault()) {
-            HttpGet httpGet = new HttpGet(sonarUrl);
-            CloseableHttpResponse response1 = httpclient.execute(httpGet);
+        HttpGet httpGet = new HttpGet(sonarUrl);
+        try (CloseableHttpResponse response1 = HTTP_CLIENT.execute(httpGet)) {
             return response1.getStatusLine().getStatusCode();
         } catch (IOException e) {
             throw new CommonException(e.getMessage());
@@ -0,0 +1,101 @@
+package io.choerodon.devops.infra.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.domain.application.valueobject.HighlightMarker;
+import io.choerodon.devops.domain.application.valueobject.ReplaceResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * 缓存版本values与部署values的合并结果，以两份内容的摘要为key，
+ * 同一对values重复打开部署、升级、预览时不再重复合并
+ */
+@Component
+public class ReplaceResultCache implements PublicMetrics {
+
+    private static final String METRIC_PREFIX = "values.cache.";
+
+    private final Cache<String, ReplaceResult> cache;
+
+    public ReplaceResultCache(@Value("${values.cache.maximumSize:500}") long maximumSize,
+                              @Value("${values.cache.expireMinutes:30}") long expireMinutes) {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(0L, maximumSize))
+                .expireAfterWrite(expireMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 获取合并结果，未缓存时计算并缓存
+     *
+     * @param versionValue 版本values
+     * @param deployValue  部署values
+     * @param loader       计算合并结果
+     * @return 合并结果的副本，调用方可以修改
+     */
+    public ReplaceResult get(String versionValue, String deployValue, Supplier<ReplaceResult> loader) {
+        String key = digest(versionValue) + ":" + digest(deployValue);
+        try {
+            return copy(cache.get(key, loader::get));
+        } catch (UncheckedExecutionException | ExecutionException e) {
+            if (e.getCause() instanceof CommonException) {
+                throw (CommonException) e.getCause();
+            }
+            throw new CommonException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private String digest(String value) {
+        return Hashing.sha256().hashString(value, StandardCharsets.UTF_8).toString();
+    }
+
+    private ReplaceResult copy(ReplaceResult cached) {
+        ReplaceResult replaceResult = new ReplaceResult();
+        replaceResult.setYaml(cached.getYaml());
+        replaceResult.setDeltaYaml(cached.getDeltaYaml());
+        replaceResult.setTotalLine(cached.getTotalLine());
+        replaceResult.setNewLines(new ArrayList<>(cached.getNewLines()));
+        List<HighlightMarker> highlightMarkers = new ArrayList<>(cached.getHighlightMarkers().size());
+        cached.getHighlightMarkers().forEach(marker -> {
+            HighlightMarker highlightMarker = new HighlightMarker();
+            highlightMarker.setLine(marker.getLine());
+            highlightMarker.setEndLine(marker.getEndLine());
+            highlightMarker.setStartIndex(marker.getStartIndex());
+            highlightMarker.setEndIndex(marker.getEndIndex());
+            highlightMarker.setStartColumn(marker.getStartColumn());
+            highlightMarker.setEndColumn(marker.getEndColumn());
+            highlightMarkers.add(highlightMarker);
+        });
+        replaceResult.setHighlightMarkers(highlightMarkers);
+        return replaceResult;
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = cache.stats();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", cache.size()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "hit", stats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "miss", stats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "hitRate", stats.hitRate()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "eviction", stats.evictionCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "loadTimeMs", TimeUnit.NANOSECONDS.toMillis(stats.totalLoadTime())));
+        return metrics;
+    }
+}
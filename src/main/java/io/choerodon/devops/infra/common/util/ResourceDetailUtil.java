@@ -0,0 +1,136 @@
+package io.choerodon.devops.infra.common.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.infra.dataobject.DevopsEnvResourceDetailDO;
+
+/**
+ * 资源信息的存储格式：资源信息gzip压缩后存入message_gz，message置空；
+ * 同时保存去掉易变字段后的规范化摘要，摘要不变时不再重复写入
+ */
+public class ResourceDetailUtil {
+
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private static final String METADATA = "metadata";
+    private static final String STATUS = "status";
+    private static final String CONDITIONS = "conditions";
+    // 每次同步都可能变化、但不影响资源展示的字段
+    private static final String[] VOLATILE_METADATA = {"resourceVersion", "managedFields"};
+    private static final String[] VOLATILE_CONDITION = {"lastHeartbeatTime", "lastProbeTime"};
+
+    private ResourceDetailUtil() {
+    }
+
+    /**
+     * 压缩资源信息
+     *
+     * @param message 资源信息
+     * @return gzip压缩后的资源信息
+     */
+    public static byte[] compress(String message) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(message.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new CommonException("error.resource.detail.compress", e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 解压资源信息
+     *
+     * @param data gzip压缩后的资源信息
+     * @return 资源信息
+     */
+    public static String decompress(byte[] data) {
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return new String(ByteStreams.toByteArray(gzipInputStream), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new CommonException("error.resource.detail.decompress", e);
+        }
+    }
+
+    /**
+     * 读取资源信息，兼容未压缩的旧数据
+     *
+     * @param devopsEnvResourceDetailDO 资源详情
+     * @return 资源信息
+     */
+    public static String getMessage(DevopsEnvResourceDetailDO devopsEnvResourceDetailDO) {
+        if (devopsEnvResourceDetailDO == null) {
+            return null;
+        }
+        if (devopsEnvResourceDetailDO.getMessageGz() != null) {
+            return decompress(devopsEnvResourceDetailDO.getMessageGz());
+        }
+        return devopsEnvResourceDetailDO.getMessage();
+    }
+
+    /**
+     * 将资源信息转为压缩存储格式，message置空，写入压缩内容和摘要
+     *
+     * @param devopsEnvResourceDetailDO 资源详情
+     */
+    public static void encode(DevopsEnvResourceDetailDO devopsEnvResourceDetailDO) {
+        String message = devopsEnvResourceDetailDO.getMessage();
+        if (message == null) {
+            return;
+        }
+        devopsEnvResourceDetailDO.setMessageGz(compress(message));
+        devopsEnvResourceDetailDO.setMessageDigest(digest(message));
+        devopsEnvResourceDetailDO.setMessage(null);
+    }
+
+    /**
+     * 计算资源信息的规范化摘要，字段按名称排序并去掉易变字段，无法解析时按原文计算
+     *
+     * @param message 资源信息
+     * @return sha256摘要
+     */
+    public static String digest(String message) {
+        String canonical;
+        try {
+            Map<String, Object> object = TypeUtil.cast(CANONICAL_MAPPER.readValue(message, Map.class));
+            removeVolatileFields(object);
+            canonical = CANONICAL_MAPPER.writeValueAsString(object);
+        } catch (IOException | ClassCastException e) {
+            canonical = message;
+        }
+        return Hashing.sha256().hashString(canonical, StandardCharsets.UTF_8).toString();
+    }
+
+    private static void removeVolatileFields(Map<String, Object> object) {
+        if (object.get(METADATA) instanceof Map) {
+            Map<String, Object> metadata = TypeUtil.cast(object.get(METADATA));
+            for (String field : VOLATILE_METADATA) {
+                metadata.remove(field);
+            }
+        }
+        if (object.get(STATUS) instanceof Map) {
+            Map<String, Object> status = TypeUtil.cast(object.get(STATUS));
+            if (status.get(CONDITIONS) instanceof List) {
+                List<Object> conditions = TypeUtil.cast(status.get(CONDITIONS));
+                conditions.stream().filter(Map.class::isInstance).forEach(condition -> {
+                    Map<String, Object> conditionMap = TypeUtil.cast(condition);
+                    for (String field : VOLATILE_CONDITION) {
+                        conditionMap.remove(field);
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,532 @@
+package io.choerodon.devops.infra.common.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import io.choerodon.core.exception.CommonException;
+import io.choerodon.devops.domain.application.valueobject.HighlightMarker;
+import io.choerodon.devops.domain.application.valueobject.ReplaceResult;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.emitter.Emitter;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.NodeTuple;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+import org.yaml.snakeyaml.representer.Representer;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/**
+ * 将部署values合并到版本values中，规则与原values_yaml脚本一致：
+ * 部署values中的标量与版本values不同时替换(update)，版本values中不存在的key、列表以及替换为对象的值记为新增(add)，
+ * 版本values中的其他内容包括注释保持不变，deltaYaml为部署values中与版本values不同的部分。
+ * 原脚本保留在测试资源values/values_yaml.py中，测试用例的期望结果由它生成
+ */
+public class ValuesYamlUtil {
+
+    private static final String ILLEGAL_VALUE = "error.value.illegal";
+    private static final Pattern PLAIN_INT = Pattern.compile("^[-+]?(?:0|[1-9][0-9]*)$");
+    private static final Resolver RESOLVER = new CoreSchemaResolver();
+    private static final Yaml YAML = new Yaml(new Constructor(), new Representer(), newDumperOptions(), RESOLVER);
+
+    private ValuesYamlUtil() {
+    }
+
+    /**
+     * 合并values
+     *
+     * @param versionValue 版本values
+     * @param deployValue  部署values
+     * @return 合并后的values，新增行和修改位置，以及deltaYaml
+     */
+    public static ReplaceResult merge(String versionValue, String deployValue) {
+        Node versionRoot = compose(versionValue, true);
+        Node deployRoot = compose(deployValue, false);
+        if (!(versionRoot instanceof MappingNode)
+                || (deployRoot != null && !(deployRoot instanceof MappingNode))) {
+            throw new CommonException(ILLEGAL_VALUE);
+        }
+
+        Merger merger = new Merger(versionValue);
+        if (deployRoot != null) {
+            merger.traversal((MappingNode) versionRoot, (MappingNode) deployRoot, new ArrayList<>(), 0);
+        }
+        String yaml = merger.apply();
+        if (!yaml.endsWith("\n")) {
+            yaml = yaml + "\n";
+        }
+
+        ReplaceResult replaceResult = markChanges(yaml, merger.addList, merger.updateList);
+        replaceResult.setDeltaYaml("\n" + (merger.delta.getValue().isEmpty() ? "{}\n" : dump(merger.delta, false)));
+        return replaceResult;
+    }
+
+    /**
+     * 版本values取第一个文档，部署values取最后一个文档
+     */
+    private static Node compose(String yaml, boolean first) {
+        try {
+            Composer composer = new Composer(new ParserImpl(new StreamReader(yaml)), RESOLVER);
+            Node node = null;
+            while (composer.checkNode()) {
+                node = composer.getNode();
+                if (first) {
+                    break;
+                }
+            }
+            return node;
+        } catch (YAMLException e) {
+            throw new CommonException(ILLEGAL_VALUE, e);
+        }
+    }
+
+    private static ReplaceResult markChanges(String yaml, List<List<String>> addList, List<List<String>> updateList) {
+        MappingNode mappingNode = (MappingNode) compose(yaml, true);
+        List<Integer> addLines = new ArrayList<>();
+        for (List<String> keys : addList) {
+            Node node = getKeysNode(keys, mappingNode);
+            if (node != null) {
+                for (int i = node.getStartMark().getLine(); i <= node.getEndMark().getLine(); i++) {
+                    addLines.add(i);
+                }
+            }
+        }
+
+        List<HighlightMarker> highlightMarkers = new ArrayList<>();
+        for (List<String> keys : updateList) {
+            Node node = getKeysNode(keys, mappingNode);
+            if (node != null) {
+                HighlightMarker highlightMarker = new HighlightMarker();
+                highlightMarker.setLine(node.getStartMark().getLine());
+                highlightMarker.setEndLine(node.getEndMark().getLine());
+                highlightMarker.setStartColumn(node.getStartMark().getColumn());
+                highlightMarker.setEndColumn(node.getEndMark().getColumn());
+                highlightMarkers.add(highlightMarker);
+            }
+        }
+
+        ReplaceResult replaceResult = new ReplaceResult();
+        replaceResult.setNewLines(addLines);
+        replaceResult.setHighlightMarkers(highlightMarkers);
+        replaceResult.setYaml(yaml);
+        return replaceResult;
+    }
+
+    private static Node getKeysNode(List<String> keys, MappingNode mappingNode) {
+        MappingNode current = mappingNode;
+        for (int i = 0; i < keys.size(); i++) {
+            NodeTuple tuple = findTuple(current, keys.get(i));
+            if (tuple == null) {
+                return null;
+            }
+            if (i == keys.size() - 1) {
+                return tuple.getValueNode();
+            }
+            if (!(tuple.getValueNode() instanceof MappingNode)) {
+                return null;
+            }
+            current = (MappingNode) tuple.getValueNode();
+        }
+        return null;
+    }
+
+    private static NodeTuple findTuple(MappingNode mappingNode, String key) {
+        for (NodeTuple tuple : mappingNode.getValue()) {
+            if (tuple.getKeyNode() instanceof ScalarNode && ((ScalarNode) tuple.getKeyNode()).getValue().equals(key)) {
+                return tuple;
+            }
+        }
+        return null;
+    }
+
+    private static String dump(Node node, boolean flow) {
+        StringWriter writer = new StringWriter();
+        Emitter emitter = new Emitter(writer, newDumperOptions());
+        try {
+            for (Event event : YAML.serialize(copy(node, flow))) {
+                emitter.emit(event);
+            }
+        } catch (IOException e) {
+            throw new CommonException(ILLEGAL_VALUE, e);
+        }
+        String text = writer.toString();
+        if (text.endsWith("...\n")) {
+            text = text.substring(0, text.length() - 4);
+        }
+        return text;
+    }
+
+    private static DumperOptions newDumperOptions() {
+        DumperOptions dumperOptions = new DumperOptions();
+        dumperOptions.setIndent(2);
+        dumperOptions.setWidth(Integer.MAX_VALUE);
+        return dumperOptions;
+    }
+
+    /**
+     * 原脚本只处理str、int、bool类型的标量和"|"块标量，浮点数、十六进制等特殊写法的整数以及">"块标量都会被忽略
+     */
+    private static boolean isPlainScalar(Node node) {
+        if (!(node instanceof ScalarNode)) {
+            return false;
+        }
+        Character style = ((ScalarNode) node).getStyle();
+        if (Tag.STR.equals(node.getTag())) {
+            return style == null || (style != '|' && style != '>');
+        }
+        return Tag.BOOL.equals(node.getTag())
+                || (Tag.INT.equals(node.getTag()) && PLAIN_INT.matcher(((ScalarNode) node).getValue()).matches());
+    }
+
+    private static boolean isLiteral(Node node) {
+        return node instanceof ScalarNode && Tag.STR.equals(node.getTag())
+                && Character.valueOf('|').equals(((ScalarNode) node).getStyle());
+    }
+
+    private static boolean isNull(Node node) {
+        return node instanceof ScalarNode && Tag.NULL.equals(node.getTag());
+    }
+
+    /**
+     * 与Python的比较一致：字符串按内容比较，整数、布尔值和浮点数按数值比较，True与1相同
+     */
+    private static boolean sameScalar(Node versionNode, ScalarNode deployNode) {
+        if (!(versionNode instanceof ScalarNode)) {
+            return false;
+        }
+        if (Tag.STR.equals(deployNode.getTag())) {
+            return Tag.STR.equals(versionNode.getTag()) && ((ScalarNode) versionNode).getValue().equals(deployNode.getValue());
+        }
+        BigDecimal versionNumber = toNumber((ScalarNode) versionNode);
+        return versionNumber != null && versionNumber.compareTo(toNumber(deployNode)) == 0;
+    }
+
+    private static BigDecimal toNumber(ScalarNode node) {
+        String text = node.getValue().replace("_", "");
+        try {
+            if (Tag.BOOL.equals(node.getTag())) {
+                return text.equalsIgnoreCase("true") ? BigDecimal.ONE : BigDecimal.ZERO;
+            }
+            if (Tag.FLOAT.equals(node.getTag())) {
+                return text.toLowerCase().endsWith("inf") || text.toLowerCase().endsWith("nan")
+                        ? null : new BigDecimal(Double.parseDouble(text));
+            }
+            if (Tag.INT.equals(node.getTag())) {
+                return new BigDecimal(toInteger(text));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return null;
+    }
+
+    private static BigInteger toInteger(String text) {
+        boolean negative = text.startsWith("-");
+        String value = text.startsWith("+") || negative ? text.substring(1) : text;
+        BigInteger integer;
+        if (value.startsWith("0x")) {
+            integer = new BigInteger(value.substring(2), 16);
+        } else if (value.startsWith("0o")) {
+            integer = new BigInteger(value.substring(2), 8);
+        } else if (value.startsWith("0b")) {
+            integer = new BigInteger(value.substring(2), 2);
+        } else {
+            integer = new BigInteger(value);
+        }
+        return negative ? integer.negate() : integer;
+    }
+
+    /**
+     * 在版本values的原文上记录修改，最后统一替换，未修改的部分保持原样
+     */
+    private static class Merger {
+        private final String text;
+        private final List<Edit> edits = new ArrayList<>();
+        private final List<List<String>> addList = new ArrayList<>();
+        private final List<List<String>> updateList = new ArrayList<>();
+        private final MappingNode delta = new MappingNode(Tag.MAP, new ArrayList<>(), false);
+
+        Merger(String text) {
+            this.text = text.endsWith("\n") ? text : text + "\n";
+        }
+
+        void traversal(MappingNode versionMap, MappingNode deployMap, List<String> followKeys, int depth) {
+            List<NodeTuple> additions = new ArrayList<>();
+            for (NodeTuple deployTuple : deployMap.getValue()) {
+                if (!(deployTuple.getKeyNode() instanceof ScalarNode)) {
+                    continue;
+                }
+                String key = ((ScalarNode) deployTuple.getKeyNode()).getValue();
+                List<String> keys = new ArrayList<>(followKeys);
+                keys.add(key);
+                Node deployValue = deployTuple.getValueNode();
+                NodeTuple versionTuple = findTuple(versionMap, key);
+                Node versionValue = versionTuple == null ? null : versionTuple.getValueNode();
+
+                if (deployValue instanceof MappingNode) {
+                    if (versionTuple == null) {
+                        additions.add(deployTuple);
+                        add(keys, deployValue);
+                    } else if (versionValue instanceof MappingNode && !((MappingNode) versionValue).getValue().isEmpty()) {
+                        traversal((MappingNode) versionValue, (MappingNode) deployValue, keys, depth + 1);
+                    } else if (versionValue instanceof MappingNode || isNull(versionValue) || isPlainScalar(versionValue)) {
+                        replace(versionMap, versionTuple, deployValue);
+                        add(keys, deployValue);
+                    }
+                } else if (isPlainScalar(deployValue) || isLiteral(deployValue)) {
+                    if (versionTuple == null) {
+                        additions.add(deployTuple);
+                        add(keys, deployValue);
+                    } else if (!sameScalar(versionValue, (ScalarNode) deployValue)) {
+                        replace(versionMap, versionTuple, deployValue);
+                        updateList.add(keys);
+                        setDelta(keys, deployValue);
+                    }
+                } else if (deployValue instanceof SequenceNode) {
+                    if (versionTuple == null) {
+                        additions.add(deployTuple);
+                        add(keys, deployValue);
+                    } else if (versionValue instanceof SequenceNode) {
+                        replace(versionMap, versionTuple, deployValue);
+                        add(keys, deployValue);
+                    }
+                }
+            }
+            if (!additions.isEmpty()) {
+                append(versionMap, additions, depth);
+            }
+        }
+
+        private void add(List<String> keys, Node value) {
+            addList.add(keys);
+            setDelta(keys, value);
+        }
+
+        private void setDelta(List<String> keys, Node value) {
+            MappingNode current = delta;
+            for (int i = 0; i < keys.size() - 1; i++) {
+                NodeTuple tuple = findTuple(current, keys.get(i));
+                if (tuple == null) {
+                    MappingNode child = new MappingNode(Tag.MAP, new ArrayList<>(), false);
+                    current.getValue().add(new NodeTuple(newKey(keys.get(i)), child));
+                    current = child;
+                } else {
+                    current = (MappingNode) tuple.getValueNode();
+                }
+            }
+            current.getValue().add(new NodeTuple(newKey(keys.get(keys.size() - 1)), value));
+        }
+
+        private ScalarNode newKey(String key) {
+            return new ScalarNode(Tag.STR, key, null, null, null);
+        }
+
+        /**
+         * 替换版本values中某个key的值，从冒号之后到值的末尾
+         */
+        private void replace(MappingNode versionMap, NodeTuple versionTuple, Node deployValue) {
+            int start = valueStart(versionTuple);
+            int end = isEmptyValue(versionTuple.getValueNode()) ? start : contentEnd(versionTuple.getValueNode());
+            String rendered;
+            if (isFlow(versionMap)) {
+                rendered = " " + dump(deployValue, true).trim();
+            } else {
+                rendered = renderValue(deployValue, versionTuple.getKeyNode().getStartMark().getColumn());
+            }
+            edits.add(new Edit(start, end, rendered, 0));
+        }
+
+        /**
+         * 在版本values的对象末尾追加新增的key
+         */
+        private void append(MappingNode versionMap, List<NodeTuple> additions, int depth) {
+            if (isFlow(versionMap)) {
+                int end = versionMap.getEndMark().getIndex() - 1;
+                String entries = dump(new MappingNode(Tag.MAP, additions, true), true).trim();
+                entries = entries.substring(1, entries.length() - 1);
+                String separator = versionMap.getValue().isEmpty() ? "" : ", ";
+                edits.add(new Edit(end, end, separator + entries, depth));
+                return;
+            }
+            int column = versionMap.getValue().get(0).getKeyNode().getStartMark().getColumn();
+            String entries = indent(dump(new MappingNode(Tag.MAP, additions, false), false), column, 0);
+            int position = appendPosition(versionMap);
+            edits.add(new Edit(position, position, entries + "\n", depth));
+        }
+
+        /**
+         * 追加位置为对象之后下一个有内容的行的行首，ruamel.yaml将对象之后的空行和注释归属于最后一个key，新增的key排在它们之后
+         */
+        private int appendPosition(MappingNode versionMap) {
+            int lineStart = text.indexOf('\n', contentEnd(versionMap)) + 1;
+            while (lineStart < text.length()) {
+                int lineEnd = text.indexOf('\n', lineStart);
+                String line = text.substring(lineStart, lineEnd).trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    return lineStart;
+                }
+                lineStart = lineEnd + 1;
+            }
+            return text.length();
+        }
+
+        private String renderValue(Node value, int keyColumn) {
+            String dumped = dump(value, false);
+            if (!(value instanceof ScalarNode) && !dumped.startsWith("{") && !dumped.startsWith("[")) {
+                // 与原脚本的输出一致，对象缩进两格，列表的"-"与key对齐
+                int column = value instanceof SequenceNode ? keyColumn : keyColumn + 2;
+                return "\n" + indent(dumped, column, 0);
+            }
+            return " " + indent(dumped, keyColumn, 1);
+        }
+
+        String apply() {
+            // 从后往前替换，同一位置追加的内容外层先写入，内层的内容排在前面
+            List<Edit> sorted = new ArrayList<>(edits);
+            sorted.sort(Comparator.comparingInt((Edit edit) -> edit.start).reversed()
+                    .thenComparingInt(edit -> edit.depth));
+            StringBuilder result = new StringBuilder(text);
+            for (Edit edit : sorted) {
+                result.replace(edit.start, edit.end, edit.text);
+            }
+            return result.toString();
+        }
+
+        private int valueStart(NodeTuple tuple) {
+            int index = tuple.getKeyNode().getEndMark().getIndex();
+            while (index < text.length() && text.charAt(index) != ':') {
+                index++;
+            }
+            return Math.min(index + 1, text.length());
+        }
+
+        private boolean isEmptyValue(Node node) {
+            return isNull(node) && ((ScalarNode) node).getValue().isEmpty();
+        }
+
+        private boolean isFlow(Node node) {
+            int start = node.getStartMark().getIndex();
+            return start < text.length() && (text.charAt(start) == '{' || text.charAt(start) == '[');
+        }
+
+        /**
+         * 节点内容的结束位置，不包含块节点之后的空行和注释
+         */
+        private int contentEnd(Node node) {
+            if (node instanceof ScalarNode) {
+                int end = node.getEndMark().getIndex();
+                Character style = ((ScalarNode) node).getStyle();
+                if (style != null && (style == '|' || style == '>')) {
+                    while (end > node.getStartMark().getIndex() && Character.isWhitespace(text.charAt(end - 1))) {
+                        end--;
+                    }
+                }
+                return end;
+            }
+            if (isFlow(node)) {
+                return node.getEndMark().getIndex();
+            }
+            if (node instanceof MappingNode) {
+                List<NodeTuple> tuples = ((MappingNode) node).getValue();
+                NodeTuple last = tuples.get(tuples.size() - 1);
+                return isEmptyValue(last.getValueNode()) ? valueStart(last) : contentEnd(last.getValueNode());
+            }
+            List<Node> items = ((SequenceNode) node).getValue();
+            return contentEnd(items.get(items.size() - 1));
+        }
+    }
+
+    private static String indent(String dumped, int column, int skipLines) {
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < column; i++) {
+            prefix.append(' ');
+        }
+        String[] lines = dumped.split("\n", -1);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            if (i == lines.length - 1 && lines[i].isEmpty()) {
+                break;
+            }
+            if (i > 0) {
+                result.append('\n');
+            }
+            if (i >= skipLines && !lines[i].isEmpty()) {
+                result.append(prefix);
+            }
+            result.append(lines[i]);
+        }
+        return result.toString();
+    }
+
+    /**
+     * 复制节点用于输出，与原脚本一致不保留引号，能用普通风格时不加引号，否则由输出时自动选择；
+     * 解析得到的普通标量风格为'\0'，输出时需要为null才会使用普通风格，输出为流式风格时块标量改为双引号
+     */
+    private static Node copy(Node node, boolean flow) {
+        if (node instanceof MappingNode) {
+            List<NodeTuple> tuples = new ArrayList<>();
+            ((MappingNode) node).getValue().forEach(tuple ->
+                    tuples.add(new NodeTuple(copy(tuple.getKeyNode(), flow), copy(tuple.getValueNode(), flow))));
+            return new MappingNode(node.getTag(), tuples, flow || ((MappingNode) node).getFlowStyle());
+        }
+        if (node instanceof SequenceNode) {
+            List<Node> items = new ArrayList<>();
+            ((SequenceNode) node).getValue().forEach(item -> items.add(copy(item, flow)));
+            return new SequenceNode(node.getTag(), items, flow || ((SequenceNode) node).getFlowStyle());
+        }
+        ScalarNode scalarNode = (ScalarNode) node;
+        Character style = scalarNode.getStyle();
+        if (style != null && (style == '\0' || style == '"' || style == '\'')) {
+            style = null;
+        } else if (flow && style != null && (style == '|' || style == '>')) {
+            style = '"';
+        }
+        return new ScalarNode(scalarNode.getTag(), scalarNode.getValue(), null, null, style);
+    }
+
+    private static class Edit {
+        private final int start;
+        private final int end;
+        private final String text;
+        private final int depth;
+
+        Edit(int start, int end, String text, int depth) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * 按YAML 1.2核心schema识别标量类型，与原脚本使用的ruamel.yaml一致，如yes/on不识别为布尔值
+     */
+    private static class CoreSchemaResolver extends Resolver {
+        @Override
+        protected void addImplicitResolvers() {
+            addImplicitResolver(Tag.BOOL, Pattern.compile("^(?:true|True|TRUE|false|False|FALSE)$"), "tTfF");
+            addImplicitResolver(Tag.FLOAT, Pattern.compile(
+                    "^(?:[-+]?[0-9][0-9_]*\\.[0-9_]*(?:[eE][-+]?[0-9]+)?|[-+]?[0-9][0-9_]*[eE][-+]?[0-9]+"
+                            + "|\\.[0-9_]+(?:[eE][-+][0-9]+)?|[-+]?\\.(?:inf|Inf|INF)|\\.(?:nan|NaN|NAN))$"),
+                    "-+0123456789.");
+            addImplicitResolver(Tag.INT, Pattern.compile(
+                    "^(?:[-+]?0b[0-1_]+|[-+]?0o?[0-7_]+|[-+]?[0-9_]+|[-+]?0x[0-9a-fA-F_]+)$"), "-+0123456789");
+            addImplicitResolver(Tag.NULL, Pattern.compile("^(?:~|null|Null|NULL|)$"), "~nN\0");
+            addImplicitResolver(Tag.NULL, Pattern.compile("^$"), null);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package io.choerodon.devops.infra.common.util.enums;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonValue;
@@ -17,6 +19,8 @@ public enum PipelineStatus {
     SKIPPED;
 
     private static HashMap<String, PipelineStatus> valuesMap = new HashMap<>(6);
+    private static final List<String> FINISHED_VALUES = Arrays.asList(
+            SUCCESS.toValue(), FAILED.toValue(), CANCELED.toValue(), SKIPPED.toValue());
 
     static {
         PipelineStatus[] var0 = values();
@@ -35,6 +39,17 @@ public enum PipelineStatus {
         return valuesMap.get(value);
     }
 
+    /**
+     * 执行结束的状态
+     */
+    public static List<String> finishedValues() {
+        return FINISHED_VALUES;
+    }
+
+    public static boolean isFinished(String value) {
+        return FINISHED_VALUES.contains(value);
+    }
+
     @JsonValue
     public String toValue() {
         return this.name().toLowerCase();
@@ -0,0 +1,77 @@
+package io.choerodon.devops.infra.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * agent消息异步处理的配置
+ */
+@Component
+@ConfigurationProperties(prefix = "agent.message")
+public class AgentMessageProperties {
+
+    /**
+     * 分区数，同一集群同一环境的消息总是落在同一分区内按序处理
+     */
+    private Integer partitions = 8;
+
+    /**
+     * 每个分区的队列容量
+     */
+    private Integer queueCapacity = 2000;
+
+    /**
+     * 队列满时等待入队超过该时间(毫秒)后记录告警，并继续阻塞等待，消息不会被丢弃
+     */
+    private Long offerTimeoutMs = 200L;
+
+    /**
+     * resource_update消息合并窗口(毫秒)，窗口内同一资源只保留resourceVersion最大的消息，为0时不合并
+     */
+    private Long coalesceWindowMs = 1000L;
+
+    /**
+     * 合并窗口内最多缓存的消息数，超出后立即刷新
+     */
+    private Integer coalesceMaxPending = 5000;
+
+    public Integer getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(Integer partitions) {
+        this.partitions = partitions;
+    }
+
+    public Integer getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(Integer queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Long getOfferTimeoutMs() {
+        return offerTimeoutMs;
+    }
+
+    public void setOfferTimeoutMs(Long offerTimeoutMs) {
+        this.offerTimeoutMs = offerTimeoutMs;
+    }
+
+    public Long getCoalesceWindowMs() {
+        return coalesceWindowMs;
+    }
+
+    public void setCoalesceWindowMs(Long coalesceWindowMs) {
+        this.coalesceWindowMs = coalesceWindowMs;
+    }
+
+    public Integer getCoalesceMaxPending() {
+        return coalesceMaxPending;
+    }
+
+    public void setCoalesceMaxPending(Integer coalesceMaxPending) {
+        this.coalesceMaxPending = coalesceMaxPending;
+    }
+}
@@ -19,6 +19,10 @@ public class DevopsEnvResourceDetailDO  extends AuditDomain {
     @GeneratedValue
     private Long id;
     private String message;
+    private byte[] messageGz;
+    private String messageDigest;
+    private String summary;
+    private Boolean isReleaseGenerated;
 
     public Long getId() {
         return id;
@@ -35,4 +39,36 @@ public class DevopsEnvResourceDetailDO  extends AuditDomain {
     public void setMessage(String message) {
         this.message = message;
     }
+
+    public byte[] getMessageGz() {
+        return messageGz;
+    }
+
+    public void setMessageGz(byte[] messageGz) {
+        this.messageGz = messageGz;
+    }
+
+    public String getMessageDigest() {
+        return messageDigest;
+    }
+
+    public void setMessageDigest(String messageDigest) {
+        this.messageDigest = messageDigest;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public Boolean getReleaseGenerated() {
+        return isReleaseGenerated;
+    }
+
+    public void setReleaseGenerated(Boolean releaseGenerated) {
+        isReleaseGenerated = releaseGenerated;
+    }
 }
@@ -26,6 +26,11 @@ public class DevopsGitlabPipelineDO extends AuditDomain {
     private String stage;
     private String status;
     private Date pipelineCreationDate;
+    private Boolean needReconcile;
+    private Long duration;
+    private Boolean durationMissing;
+    private Integer reconcileAttempts;
+    private Date nextReconcileAt;
 
     @Transient
     private String ref;
@@ -132,4 +137,43 @@ public class DevopsGitlabPipelineDO extends AuditDomain {
         this.commitUserId = commitUserId;
     }
 
+    public Boolean getNeedReconcile() {
+        return needReconcile;
+    }
+
+    public void setNeedReconcile(Boolean needReconcile) {
+        this.needReconcile = needReconcile;
+    }
+
+    public Long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(Long duration) {
+        this.duration = duration;
+    }
+
+    public Integer getReconcileAttempts() {
+        return reconcileAttempts;
+    }
+
+    public void setReconcileAttempts(Integer reconcileAttempts) {
+        this.reconcileAttempts = reconcileAttempts;
+    }
+
+    public Date getNextReconcileAt() {
+        return nextReconcileAt;
+    }
+
+    public void setNextReconcileAt(Date nextReconcileAt) {
+        this.nextReconcileAt = nextReconcileAt;
+    }
+
+    public Boolean getDurationMissing() {
+        return durationMissing;
+    }
+
+    public void setDurationMissing(Boolean durationMissing) {
+        this.durationMissing = durationMissing;
+    }
 }
@@ -0,0 +1,103 @@
+package io.choerodon.devops.infra.dataobject;
+
+import java.util.Date;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import io.choerodon.mybatis.annotation.ModifyAudit;
+import io.choerodon.mybatis.annotation.VersionAudit;
+import io.choerodon.mybatis.domain.AuditDomain;
+
+/**
+ * 应用每天执行结束的pipeline汇总，pipeline结束时按应用和创建日期重新计算
+ */
+@VersionAudit
+@ModifyAudit
+@Table(name = "devops_gitlab_pipeline_daily")
+public class DevopsGitlabPipelineDailyDO extends AuditDomain {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+    private Long appId;
+    private Date statDate;
+    private Long pipelineCount;
+    private Long successCount;
+    private Long failedCount;
+    private Long totalDuration;
+    private Long p50Duration;
+    private Long p90Duration;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getAppId() {
+        return appId;
+    }
+
+    public void setAppId(Long appId) {
+        this.appId = appId;
+    }
+
+    public Date getStatDate() {
+        return statDate;
+    }
+
+    public void setStatDate(Date statDate) {
+        this.statDate = statDate;
+    }
+
+    public Long getPipelineCount() {
+        return pipelineCount;
+    }
+
+    public void setPipelineCount(Long pipelineCount) {
+        this.pipelineCount = pipelineCount;
+    }
+
+    public Long getSuccessCount() {
+        return successCount;
+    }
+
+    public void setSuccessCount(Long successCount) {
+        this.successCount = successCount;
+    }
+
+    public Long getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(Long failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    public Long getTotalDuration() {
+        return totalDuration;
+    }
+
+    public void setTotalDuration(Long totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+
+    public Long getP50Duration() {
+        return p50Duration;
+    }
+
+    public void setP50Duration(Long p50Duration) {
+        this.p50Duration = p50Duration;
+    }
+
+    public Long getP90Duration() {
+        return p90Duration;
+    }
+
+    public void setP90Duration(Long p90Duration) {
+        this.p90Duration = p90Duration;
+    }
+}
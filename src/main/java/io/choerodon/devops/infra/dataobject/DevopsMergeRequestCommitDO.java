@@ -0,0 +1,121 @@
+package io.choerodon.devops.infra.dataobject;
+
+import java.util.Date;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import io.choerodon.mybatis.annotation.ModifyAudit;
+import io.choerodon.mybatis.annotation.VersionAudit;
+import io.choerodon.mybatis.domain.AuditDomain;
+
+/**
+ * 合并请求的提交，收到合并请求webhook时同步，查询合并请求列表时不再请求gitlab
+ */
+@ModifyAudit
+@VersionAudit
+@Table(name = "devops_merge_request_commit")
+public class DevopsMergeRequestCommitDO extends AuditDomain {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+    private Long projectId;
+    private Long gitlabMergeRequestId;
+    private String commitSha;
+    private String shortId;
+    private String title;
+    private String message;
+    private String authorName;
+    private String authorEmail;
+    private Date committedDate;
+    private Date createdAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    public Long getGitlabMergeRequestId() {
+        return gitlabMergeRequestId;
+    }
+
+    public void setGitlabMergeRequestId(Long gitlabMergeRequestId) {
+        this.gitlabMergeRequestId = gitlabMergeRequestId;
+    }
+
+    public String getCommitSha() {
+        return commitSha;
+    }
+
+    public void setCommitSha(String commitSha) {
+        this.commitSha = commitSha;
+    }
+
+    public String getShortId() {
+        return shortId;
+    }
+
+    public void setShortId(String shortId) {
+        this.shortId = shortId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getAuthorName() {
+        return authorName;
+    }
+
+    public void setAuthorName(String authorName) {
+        this.authorName = authorName;
+    }
+
+    public String getAuthorEmail() {
+        return authorEmail;
+    }
+
+    public void setAuthorEmail(String authorEmail) {
+        this.authorEmail = authorEmail;
+    }
+
+    public Date getCommittedDate() {
+        return committedDate;
+    }
+
+    public void setCommittedDate(Date committedDate) {
+        this.committedDate = committedDate;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
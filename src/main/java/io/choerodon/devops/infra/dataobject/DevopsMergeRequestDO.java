@@ -3,6 +3,7 @@ package io.choerodon.devops.infra.dataobject;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 import java.util.Date;
 
 import io.choerodon.mybatis.annotation.ModifyAudit;
@@ -45,6 +46,11 @@ public class DevopsMergeRequestDO extends AuditDomain {
 
     private Date updatedAt;
 
+    private Boolean commitsSynced;
+
+    @Transient
+    private Integer count;
+
     public DevopsMergeRequestDO() {
     }
 
@@ -148,4 +154,20 @@ public class DevopsMergeRequestDO extends AuditDomain {
     public void setUpdatedAt(Date updatedAt) {
         this.updatedAt = updatedAt;
     }
+
+    public Boolean getCommitsSynced() {
+        return commitsSynced;
+    }
+
+    public void setCommitsSynced(Boolean commitsSynced) {
+        this.commitsSynced = commitsSynced;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public void setCount(Integer count) {
+        this.count = count;
+    }
 }
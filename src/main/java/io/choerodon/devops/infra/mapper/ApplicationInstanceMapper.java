@@ -9,6 +9,7 @@ import org.apache.ibatis.annotations.Param;
 import io.choerodon.devops.infra.dataobject.ApplicationInstanceDO;
 import io.choerodon.devops.infra.dataobject.ApplicationInstancesDO;
 import io.choerodon.devops.infra.dataobject.DeployDO;
+import io.choerodon.devops.infra.dataobject.DevopsEnvResourceDetailDO;
 import io.choerodon.mybatis.common.BaseMapper;
 
 
@@ -47,5 +48,5 @@ public interface ApplicationInstanceMapper extends BaseMapper<ApplicationInstanc
 
     List<DeployDO> listDeployFrequency(@Param("projectId") Long projectId, @Param("envIds") Long[] envIds, @Param("appId") Long appId, @Param("startTime") Date startTime, @Param("endTime") Date endTime);
 
-    String getInstanceResourceDetailJson(@Param("instanceId") Long instanceId, @Param("resourceName") String resourceName, @Param("resourceType") String resourceType);
+    DevopsEnvResourceDetailDO getInstanceResourceDetailJson(@Param("instanceId") Long instanceId, @Param("resourceName") String resourceName, @Param("resourceType") String resourceType);
 }
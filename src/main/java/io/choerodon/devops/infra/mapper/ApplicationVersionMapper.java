@@ -1,5 +1,6 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -58,4 +59,12 @@ public interface ApplicationVersionMapper extends BaseMapper<ApplicationVersionD
     List<ApplicationVersionDO> listByAppIdAndBranch(@Param("appId") Long appId, @Param("branch") String branch);
 
     String queryByPipelineId(@Param("pipelineId") Long pipelineId, @Param("branch") String branch);
+
+    List<ApplicationVersionDO> listByAppIdAndVersions(@Param("appId") Long appId,
+                                                      @Param("versions") List<String> versions);
+
+    List<ApplicationVersionDO> listByAppIdAndCommits(@Param("appId") Long appId,
+                                                     @Param("commits") Collection<String> commits);
+
+    int batchInsert(List<ApplicationVersionDO> applicationVersionDOS);
 }
@@ -1,7 +1,11 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.List;
+
 import io.choerodon.devops.infra.dataobject.ApplicationVersionValueDO;
 import io.choerodon.mybatis.common.BaseMapper;
 
 public interface ApplicationVersionValueMapper extends BaseMapper<ApplicationVersionValueDO> {
+
+    int batchInsert(List<ApplicationVersionValueDO> applicationVersionValueDOS);
 }
@@ -1,5 +1,6 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -32,4 +33,6 @@ public interface DevopsClusterMapper extends BaseMapper<DevopsClusterDO> {
     List<DevopsEnvPodDTO> pageQueryPodsByNodeName(@Param("clusterId") Long clusterId,
                                                   @Param("nodeName") String nodeName,
                                                   @Param("searchParam") String searchParam);
+
+    List<DevopsClusterDO> listByIds(@Param("ids") Collection<Long> ids);
 }
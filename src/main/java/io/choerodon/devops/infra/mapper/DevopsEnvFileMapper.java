@@ -6,10 +6,18 @@ import org.apache.ibatis.annotations.Param;
 
 import io.choerodon.devops.infra.dataobject.DevopsEnvFileDO;
 import io.choerodon.mybatis.common.BaseMapper;
+import io.choerodon.mybatis.domain.Audit;
 
 public interface DevopsEnvFileMapper extends BaseMapper<DevopsEnvFileDO> {
 
     DevopsEnvFileDO queryLatestByEnvAndPath(@Param("envId") Long envId, @Param("filePath") String filePath);
 
     DevopsEnvFileDO queryByEnvAndPathAndCommits(@Param("envId") Long envId, @Param("filePath") String filePath, @Param("commits") List<String> commits);
+
+    int batchInsert(List<DevopsEnvFileDO> devopsEnvFileDOS);
+
+    void batchUpdateDevopsCommit(@Param("files") List<DevopsEnvFileDO> devopsEnvFileDOS,
+                                 @Param("audit") Audit audit);
+
+    void deleteByEnvIdAndPaths(@Param("envId") Long envId, @Param("paths") List<String> paths);
 }
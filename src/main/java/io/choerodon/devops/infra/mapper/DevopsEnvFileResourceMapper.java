@@ -1,5 +1,9 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+
 import io.choerodon.devops.infra.dataobject.DevopsEnvFileResourceDO;
 import io.choerodon.mybatis.common.BaseMapper;
 
@@ -10,4 +14,8 @@ import io.choerodon.mybatis.common.BaseMapper;
  * Description:
  */
 public interface DevopsEnvFileResourceMapper extends BaseMapper<DevopsEnvFileResourceDO> {
+
+    void deleteByEnvIdAndResources(@Param("envId") Long envId,
+                                   @Param("resourceIds") List<Long> resourceIds,
+                                   @Param("resourceType") String resourceType);
 }
@@ -19,4 +19,11 @@ public interface DevopsEnvPodContainerMapper extends BaseMapper<DevopsEnvPodCont
     List<DevopsEnvPodContainerDO> listContainer(@Param("podId") Long podId,
                                                 @Param("searchParam") Map<String, Object> searchParam,
                                                 @Param("param") String param);
+
+    /**
+     * 多行插入，参数不能使用@Param命名，否则无法回填主键
+     */
+    int batchInsert(List<DevopsEnvPodContainerDO> containers);
+
+    void deleteByIds(@Param("ids") List<Long> ids);
 }
@@ -21,4 +21,6 @@ public interface DevopsEnvPodMapper extends BaseMapper<DevopsEnvPodDO> {
                                     @Param("appId") Long appId,
                                     @Param("searchParam") Map<String, Object> searchParam,
                                     @Param("param") String param);
+
+    void deleteByIds(@Param("ids") List<Long> ids);
 }
@@ -1,5 +1,9 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+
 import io.choerodon.devops.infra.dataobject.DevopsEnvResourceDetailDO;
 import io.choerodon.mybatis.common.BaseMapper;
 
@@ -8,4 +12,19 @@ import io.choerodon.mybatis.common.BaseMapper;
  */
 public interface DevopsEnvResourceDetailMapper extends BaseMapper<DevopsEnvResourceDetailDO> {
 
+    List<DevopsEnvResourceDetailDO> listSummaryByIds(@Param("ids") List<Long> ids);
+
+    DevopsEnvResourceDetailDO queryDigest(@Param("id") Long id);
+
+    void updateSummary(@Param("id") Long id,
+                       @Param("summary") String summary,
+                       @Param("releaseGenerated") Boolean releaseGenerated);
+
+    void clearMessage(@Param("id") Long id);
+
+    List<DevopsEnvResourceDetailDO> listUncompressed(@Param("lastId") Long lastId, @Param("size") Integer size);
+
+    void updateCompressedMessage(@Param("id") Long id,
+                                 @Param("messageGz") byte[] messageGz,
+                                 @Param("messageDigest") String messageDigest);
 }
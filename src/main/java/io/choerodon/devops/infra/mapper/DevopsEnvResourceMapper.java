@@ -1,10 +1,12 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.ibatis.annotations.Param;
 
 import io.choerodon.devops.infra.dataobject.DevopsEnvResourceDO;
+import io.choerodon.devops.infra.dataobject.DevopsEnvResourceDetailDO;
 import io.choerodon.mybatis.common.BaseMapper;
 
 /**
@@ -22,8 +24,17 @@ public interface DevopsEnvResourceMapper extends BaseMapper<DevopsEnvResourceDO>
     List<DevopsEnvResourceDO> listByEnvAndType(@Param("envId") Long envId,
                                                @Param("type") String type);
 
+    void deleteByIds(@Param("ids") List<Long> ids);
+
+    List<DevopsEnvResourceDO> listWithoutSummary(@Param("lastDetailId") Long lastDetailId,
+                                                 @Param("size") Integer size);
+
+    List<DevopsEnvResourceDO> listByEnvIdAndKindAndNames(@Param("envId") Long envId,
+                                                         @Param("kind") String kind,
+                                                         @Param("names") Collection<String> names);
+
     DevopsEnvResourceDO queryLatestJob(@Param("kind") String kind,
                                        @Param("name") String name);
 
-    String getResourceDetailByNameAndTypeAndInstanceId(@Param("instanceId") Long instanceId, @Param("name") String name,  @Param("kind") String resourceType);
+    DevopsEnvResourceDetailDO getResourceDetailByNameAndTypeAndInstanceId(@Param("instanceId") Long instanceId, @Param("name") String name,  @Param("kind") String resourceType);
 }
@@ -1,5 +1,8 @@
 package io.choerodon.devops.infra.mapper;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.apache.ibatis.annotations.Param;
 
 import io.choerodon.devops.infra.dataobject.DevopsEnvironmentDO;
@@ -16,4 +19,6 @@ public interface DevopsEnvironmentMapper extends BaseMapper<DevopsEnvironmentDO>
                                @Param("devopsSyncCommit") Long devopsSyncCommit, @Param("agentSyncCommit") Long agentSyncCommit);
 
     DevopsEnvironmentDO queryByToken(@Param("token") String token);
+
+    List<DevopsEnvironmentDO> listByIds(@Param("ids") Collection<Long> ids);
 }
@@ -1,6 +1,7 @@
 package io.choerodon.devops.infra.mapper;
 
 import java.sql.Date;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.ibatis.annotations.Param;
@@ -13,4 +14,8 @@ public interface DevopsGitlabCommitMapper extends BaseMapper<DevopsGitlabCommitD
                                            @Param("appIds") List<Long> appId,
                                            @Param("startDate") Date startDate,
                                            @Param("endDate") Date endDate);
+
+    List<String> listShasByRef(@Param("ref") String ref, @Param("shas") Collection<String> shas);
+
+    int batchInsert(List<DevopsGitlabCommitDO> devopsGitlabCommitDOS);
 }
@@ -0,0 +1,23 @@
+package io.choerodon.devops.infra.mapper;
+
+import java.util.Date;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDailyDO;
+import io.choerodon.mybatis.common.BaseMapper;
+import io.choerodon.mybatis.domain.Audit;
+
+public interface DevopsGitlabPipelineDailyMapper extends BaseMapper<DevopsGitlabPipelineDailyDO> {
+
+    List<DevopsGitlabPipelineDailyDO> listByAppIdAndDate(@Param("appId") Long appId,
+                                                         @Param("startDate") Date startDate,
+                                                         @Param("endDate") Date endDate);
+
+    void insertIfAbsent(@Param("appId") Long appId,
+                        @Param("statDate") Date statDate,
+                        @Param("audit") Audit audit);
+
+    DevopsGitlabPipelineDailyDO selectForUpdate(@Param("appId") Long appId, @Param("statDate") Date statDate);
+}
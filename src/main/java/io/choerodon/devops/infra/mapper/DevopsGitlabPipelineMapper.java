@@ -14,6 +14,22 @@ public interface DevopsGitlabPipelineMapper extends BaseMapper<DevopsGitlabPipel
 
     void deleteWithoutCommit();
 
+    List<DevopsGitlabPipelineDO> listNeedReconcile(@Param("now") Date now,
+                                                   @Param("maxAttempts") Integer maxAttempts,
+                                                   @Param("limit") Integer limit);
+
+    int claimReconcile(@Param("id") Long id,
+                       @Param("reconcileAttempts") Integer reconcileAttempts,
+                       @Param("nextReconcileAt") Date nextReconcileAt);
+
+    List<DevopsGitlabPipelineDO> listFinishedDuration(@Param("appId") Long appId,
+                                                      @Param("startTime") Date startTime,
+                                                      @Param("endTime") Date endTime,
+                                                      @Param("statuses") List<String> statuses);
+
+    List<DevopsGitlabPipelineDO> listWithoutDuration(@Param("statuses") List<String> statuses,
+                                                     @Param("limit") Integer limit);
+
     List<DevopsGitlabPipelineDO> listByBranch(@Param("appId") Long appId, @Param("branch") String branch);
 
 }
@@ -0,0 +1,15 @@
+package io.choerodon.devops.infra.mapper;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineStageDO;
+import io.choerodon.mybatis.common.BaseMapper;
+
+public interface DevopsGitlabPipelineStageMapper extends BaseMapper<DevopsGitlabPipelineStageDO> {
+
+    List<DevopsGitlabPipelineStageDO> listByPipelineIds(@Param("pipelineIds") List<Long> pipelineIds);
+
+    int batchInsert(List<DevopsGitlabPipelineStageDO> devopsGitlabPipelineStageDOS);
+}
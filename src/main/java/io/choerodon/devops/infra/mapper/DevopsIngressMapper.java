@@ -24,4 +24,6 @@ public interface DevopsIngressMapper extends BaseMapper<DevopsIngressDO> {
             @Param("param") String param);
 
     Boolean checkEnvHasIngress(@Param("envId") Long envId);
+
+    void deleteByIds(@Param("ids") List<Long> ids);
 }
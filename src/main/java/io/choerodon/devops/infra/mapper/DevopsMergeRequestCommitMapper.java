@@ -0,0 +1,16 @@
+package io.choerodon.devops.infra.mapper;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+
+import io.choerodon.devops.infra.dataobject.DevopsMergeRequestCommitDO;
+import io.choerodon.mybatis.common.BaseMapper;
+
+public interface DevopsMergeRequestCommitMapper extends BaseMapper<DevopsMergeRequestCommitDO> {
+
+    int batchInsert(List<DevopsMergeRequestCommitDO> devopsMergeRequestCommitDOS);
+
+    List<DevopsMergeRequestCommitDO> listByMergeRequestIds(@Param("projectId") Long projectId,
+                                                           @Param("gitlabMergeRequestIds") List<Long> gitlabMergeRequestIds);
+}
@@ -21,4 +21,12 @@ public interface DevopsMergeRequestMapper extends BaseMapper<DevopsMergeRequestD
 
     List<DevopsMergeRequestDO> getByProjectIdAndState(@Param("projectId") Integer gitLabProjectId,
                                                       @Param("state") String state);
+
+    List<DevopsMergeRequestDO> countByState(@Param("projectId") Integer gitLabProjectId);
+
+    DevopsMergeRequestDO selectForUpdate(@Param("projectId") Long projectId,
+                                         @Param("gitlabMergeRequestId") Long gitlabMergeRequestId);
+
+    void updateCommitsSynced(@Param("projectId") Long projectId,
+                             @Param("gitlabMergeRequestId") Long gitlabMergeRequestId);
 }
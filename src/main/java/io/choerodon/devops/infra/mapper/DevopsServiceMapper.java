@@ -43,4 +43,6 @@ public interface DevopsServiceMapper extends BaseMapper<DevopsServiceDO> {
     void setExternalIpNull(@Param("serviceId") Long serviceId);
 
     void deleteServiceInstance(@Param("serviceIds") List<Long> serviceIds);
+
+    void deleteByIds(@Param("ids") List<Long> ids);
 }
@@ -12,4 +12,6 @@ import io.choerodon.mybatis.common.BaseMapper;
  */
 public interface UserAttrMapper extends BaseMapper<UserAttrDO> {
     List<UserAttrDO> listByUserIds(@Param("userIds") List<Long> userIds);
+
+    List<UserAttrDO> listByGitlabUserIds(@Param("gitlabUserIds") List<Long> gitlabUserIds);
 }
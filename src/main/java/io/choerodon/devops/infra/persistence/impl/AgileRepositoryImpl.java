@@ -1,5 +1,10 @@
 package io.choerodon.devops.infra.persistence.impl;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -23,6 +28,21 @@ public class AgileRepositoryImpl implements AgileRepository {
         }
     }
 
+    /**
+     * 查询一组issue，相同的issue只查询一次，查询失败的issue不在结果中
+     */
+    @Override
+    public Map<Long, Issue> listIssues(Long projectId, Collection<Long> issueIds, Long organizationId) {
+        Map<Long, Issue> issues = new HashMap<>();
+        issueIds.stream().filter(Objects::nonNull).distinct().forEach(issueId -> {
+            Issue issue = queryIssue(projectId, issueId, organizationId);
+            if (issue != null) {
+                issues.put(issueId, issue);
+            }
+        });
+        return issues;
+    }
+
     @Override
     public ProjectInfo queryProjectInfo(Long projectId) {
         return agileServiceClient.queryProjectInfo(projectId).getBody();
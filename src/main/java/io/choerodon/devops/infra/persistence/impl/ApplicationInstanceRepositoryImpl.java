@@ -11,6 +11,7 @@ import io.choerodon.core.domain.Page;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.domain.application.entity.ApplicationInstanceE;
 import io.choerodon.devops.domain.application.repository.ApplicationInstanceRepository;
+import io.choerodon.devops.infra.common.util.ResourceDetailUtil;
 import io.choerodon.devops.infra.common.util.TypeUtil;
 import io.choerodon.devops.infra.common.util.enums.ResourceType;
 import io.choerodon.devops.infra.dataobject.ApplicationInstanceDO;
@@ -195,6 +196,7 @@ public class ApplicationInstanceRepositoryImpl implements ApplicationInstanceRep
 
     @Override
     public String getInstanceResourceDetailJson(Long instanceId, String resourceName, ResourceType resourceType) {
-        return applicationInstanceMapper.getInstanceResourceDetailJson(instanceId, resourceName, resourceType.getType());
+        return ResourceDetailUtil.getMessage(
+                applicationInstanceMapper.getInstanceResourceDetailJson(instanceId, resourceName, resourceType.getType()));
     }
 }
@@ -22,6 +22,8 @@ import io.choerodon.devops.infra.dataobject.ApplicationVersionDO;
 import io.choerodon.devops.infra.dataobject.ApplicationVersionReadmeDO;
 import io.choerodon.devops.infra.mapper.ApplicationVersionMapper;
 import io.choerodon.devops.infra.mapper.ApplicationVersionReadmeMapper;
+import io.choerodon.mybatis.domain.Audit;
+import io.choerodon.mybatis.helper.AuditHelper;
 import io.choerodon.mybatis.pagehelper.PageHelper;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
@@ -197,6 +199,45 @@ public class ApplicationVersionRepositoryImpl implements ApplicationVersionRepos
         updateReadme(applicationVersionMapper.selectByPrimaryKey(applicationVersionE.getId()).getReadmeValueId(), applicationVersionE.getApplicationVersionReadmeV().getReadme());
     }
 
+    @Override
+    public List<ApplicationVersionE> listByAppIdAndVersions(Long appId, List<String> versions) {
+        if (versions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return ConvertHelper.convertList(
+                applicationVersionMapper.listByAppIdAndVersions(appId, versions), ApplicationVersionE.class);
+    }
+
+    @Override
+    public void batchCreate(List<ApplicationVersionE> applicationVersionES) {
+        if (applicationVersionES.isEmpty()) {
+            return;
+        }
+        List<ApplicationVersionReadmeDO> readmeDOS = applicationVersionES.stream()
+                .map(t -> new ApplicationVersionReadmeDO(t.getApplicationVersionReadmeV().getReadme()))
+                .collect(Collectors.toList());
+        if (applicationVersionReadmeMapper.batchInsert(readmeDOS) != readmeDOS.size()
+                || readmeDOS.stream().map(ApplicationVersionReadmeDO::getId).anyMatch(Objects::isNull)) {
+            throw new CommonException("error.insert.readme");
+        }
+        List<ApplicationVersionDO> applicationVersionDOS = new ArrayList<>(applicationVersionES.size());
+        // 自定义的批量插入不经过通用Mapper，需要自己填充审计字段，readme表没有审计字段
+        Audit audit = AuditHelper.audit();
+        for (int i = 0; i < applicationVersionES.size(); i++) {
+            ApplicationVersionDO applicationVersionDO =
+                    ConvertHelper.convert(applicationVersionES.get(i), ApplicationVersionDO.class);
+            applicationVersionDO.setReadmeValueId(readmeDOS.get(i).getId());
+            applicationVersionDO.setCreatedBy(audit.getUser());
+            applicationVersionDO.setCreationDate(audit.getNow());
+            applicationVersionDO.setLastUpdatedBy(audit.getUser());
+            applicationVersionDO.setLastUpdateDate(audit.getNow());
+            applicationVersionDOS.add(applicationVersionDO);
+        }
+        if (applicationVersionMapper.batchInsert(applicationVersionDOS) != applicationVersionDOS.size()) {
+            throw new CommonException("error.version.insert");
+        }
+    }
+
     private void updateReadme(Long readmeValueId, String readme) {
         ApplicationVersionReadmeDO readmeDO;
         try {
@@ -231,6 +272,15 @@ public class ApplicationVersionRepositoryImpl implements ApplicationVersionRepos
         return ConvertHelper.convert(applicationVersionMapper.selectOne(applicationVersionDO), ApplicationVersionE.class);
     }
 
+    @Override
+    public List<ApplicationVersionE> listByAppIdAndCommits(Long appId, Collection<String> commits) {
+        if (commits.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return ConvertHelper.convertList(
+                applicationVersionMapper.listByAppIdAndCommits(appId, commits), ApplicationVersionE.class);
+    }
+
     @Override
     public ApplicationVersionE getLatestVersion(Long appId) {
         return ConvertHelper.convert(applicationVersionMapper.getLatestVersion(appId), ApplicationVersionE.class);
@@ -1,5 +1,9 @@
 package io.choerodon.devops.infra.persistence.impl;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
 import org.springframework.stereotype.Service;
 
 import io.choerodon.core.convertor.ConvertHelper;
@@ -32,4 +36,18 @@ public class ApplicationVersionValueRepositoryImpl implements ApplicationVersion
     public ApplicationVersionValueE query(Long appVersionValueId) {
         return ConvertHelper.convert(applcationVersionValueMapper.selectByPrimaryKey(appVersionValueId), ApplicationVersionValueE.class);
     }
+
+    @Override
+    public List<ApplicationVersionValueE> batchCreate(List<ApplicationVersionValueE> applicationVersionValueES) {
+        if (applicationVersionValueES.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ApplicationVersionValueDO> applicationVersionValueDOS = ConvertHelper
+                .convertList(applicationVersionValueES, ApplicationVersionValueDO.class);
+        if (applcationVersionValueMapper.batchInsert(applicationVersionValueDOS) != applicationVersionValueDOS.size()
+                || applicationVersionValueDOS.stream().map(ApplicationVersionValueDO::getId).anyMatch(Objects::isNull)) {
+            throw new CommonException("error.version.value.insert");
+        }
+        return ConvertHelper.convertList(applicationVersionValueDOS, ApplicationVersionValueE.class);
+    }
 }
@@ -1,5 +1,7 @@
 package io.choerodon.devops.infra.persistence.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -110,6 +112,14 @@ public class DevopsClusterRepositoryImpl implements DevopsClusterRepository {
         return ConvertHelper.convertList(devopsClusterMapper.selectAll(), DevopsClusterE.class);
     }
 
+    @Override
+    public List<DevopsClusterE> listByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return ConvertHelper.convertList(devopsClusterMapper.listByIds(ids), DevopsClusterE.class);
+    }
+
     @Override
     public Page<DevopsEnvPodE> pageQueryPodsByNodeName(Long clusterId, String nodeName, PageRequest pageRequest, String searchParam) {
         return ConvertPageHelper.convertPage(PageHelper.doPageAndSort(pageRequest, () -> devopsClusterMapper.pageQueryPodsByNodeName(clusterId, nodeName, searchParam)), DevopsEnvPodE.class);
@@ -11,6 +11,8 @@ import io.choerodon.devops.domain.application.entity.DevopsEnvFileE;
 import io.choerodon.devops.domain.application.repository.DevopsEnvFileRepository;
 import io.choerodon.devops.infra.dataobject.DevopsEnvFileDO;
 import io.choerodon.devops.infra.mapper.DevopsEnvFileMapper;
+import io.choerodon.mybatis.domain.Audit;
+import io.choerodon.mybatis.helper.AuditHelper;
 
 @Component
 public class DevopsEnvFileRepositoryImpl implements DevopsEnvFileRepository {
@@ -78,4 +80,40 @@ public class DevopsEnvFileRepositoryImpl implements DevopsEnvFileRepository {
         devopsEnvFileDO.setFilePath(path);
         return ConvertHelper.convertList(devopsEnvFileMapper.select(devopsEnvFileDO), DevopsEnvFileE.class);
     }
+
+    @Override
+    public void batchCreate(List<DevopsEnvFileE> devopsEnvFileES) {
+        if (devopsEnvFileES.isEmpty()) {
+            return;
+        }
+        List<DevopsEnvFileDO> devopsEnvFileDOS = ConvertHelper.convertList(devopsEnvFileES, DevopsEnvFileDO.class);
+        // 自定义的批量插入不经过通用Mapper，需要自己填充审计字段
+        Audit audit = AuditHelper.audit();
+        devopsEnvFileDOS.forEach(devopsEnvFileDO -> {
+            devopsEnvFileDO.setCreatedBy(audit.getUser());
+            devopsEnvFileDO.setCreationDate(audit.getNow());
+            devopsEnvFileDO.setLastUpdatedBy(audit.getUser());
+            devopsEnvFileDO.setLastUpdateDate(audit.getNow());
+        });
+        if (devopsEnvFileMapper.batchInsert(devopsEnvFileDOS) != devopsEnvFileDOS.size()) {
+            throw new CommonException("error.env.file.create");
+        }
+    }
+
+    @Override
+    public void batchUpdateDevopsCommit(List<DevopsEnvFileE> devopsEnvFileES) {
+        if (devopsEnvFileES.isEmpty()) {
+            return;
+        }
+        devopsEnvFileMapper.batchUpdateDevopsCommit(
+                ConvertHelper.convertList(devopsEnvFileES, DevopsEnvFileDO.class), AuditHelper.audit());
+    }
+
+    @Override
+    public void deleteByEnvIdAndPaths(Long envId, List<String> paths) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        devopsEnvFileMapper.deleteByEnvIdAndPaths(envId, paths);
+    }
 }
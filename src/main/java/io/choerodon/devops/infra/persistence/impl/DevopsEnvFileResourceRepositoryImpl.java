@@ -79,4 +79,12 @@ public class DevopsEnvFileResourceRepositoryImpl implements DevopsEnvFileResourc
         devopsEnvFileResourceDO.setResourceType(resourceType);
         devopsEnvFileResourceMapper.delete(devopsEnvFileResourceDO);
     }
+
+    @Override
+    public void deleteByEnvIdAndResources(Long envId, List<Long> resourceIds, String resourceType) {
+        if (resourceIds.isEmpty()) {
+            return;
+        }
+        devopsEnvFileResourceMapper.deleteByEnvIdAndResources(envId, resourceIds, resourceType);
+    }
 }
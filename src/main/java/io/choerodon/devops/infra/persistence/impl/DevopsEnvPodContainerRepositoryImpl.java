@@ -1,7 +1,11 @@
 package io.choerodon.devops.infra.persistence.impl;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import com.google.gson.Gson;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -48,6 +52,36 @@ public class DevopsEnvPodContainerRepositoryImpl implements DevopsEnvPodContaine
     }
 
 
+    @Override
+    public void batchInsert(List<DevopsEnvPodContainerDO> containers) {
+        if (!containers.isEmpty()) {
+            containerMapper.batchInsert(containers);
+        }
+    }
+
+    @Override
+    public List<DevopsEnvPodContainerDO> batchUpsertByPodId(Long podId, List<String> containerNames) {
+        Set<String> missingNames = new LinkedHashSet<>(containerNames);
+        List<DevopsEnvPodContainerDO> containers = new ArrayList<>();
+        List<Long> staleIds = new ArrayList<>();
+        for (DevopsEnvPodContainerDO container : containerMapper.select(new DevopsEnvPodContainerDO(podId))) {
+            if (missingNames.remove(container.getContainerName())) {
+                containers.add(container);
+            } else {
+                staleIds.add(container.getId());
+            }
+        }
+        if (!staleIds.isEmpty()) {
+            containerMapper.deleteByIds(staleIds);
+        }
+        List<DevopsEnvPodContainerDO> newContainers = missingNames.stream()
+                .map(name -> new DevopsEnvPodContainerDO(podId, name))
+                .collect(Collectors.toList());
+        batchInsert(newContainers);
+        containers.addAll(newContainers);
+        return containers;
+    }
+
     @Override
     public DevopsEnvPodContainerDO get(Long id) {
         return containerMapper.selectByPrimaryKey(id);
@@ -49,14 +49,16 @@ public class DevopsEnvPodRepositoryImpl implements DevopsEnvPodRepository {
     }
 
     @Override
-    public void insert(DevopsEnvPodE devopsEnvPodE) {
+    public DevopsEnvPodE insert(DevopsEnvPodE devopsEnvPodE) {
         DevopsEnvPodDO devopsEnvPodDO = new DevopsEnvPodDO();
         devopsEnvPodDO.setName(devopsEnvPodE.getName());
         devopsEnvPodDO.setNamespace(devopsEnvPodE.getNamespace());
-        if (devopsEnvPodMapper.selectOne(devopsEnvPodDO) == null) {
-            DevopsEnvPodDO pod = ConvertHelper.convert(devopsEnvPodE, DevopsEnvPodDO.class);
+        DevopsEnvPodDO pod = devopsEnvPodMapper.selectOne(devopsEnvPodDO);
+        if (pod == null) {
+            pod = ConvertHelper.convert(devopsEnvPodE, DevopsEnvPodDO.class);
             devopsEnvPodMapper.insert(pod);
         }
+        return ConvertHelper.convert(pod, DevopsEnvPodE.class);
     }
 
     @Override
@@ -111,6 +113,21 @@ public class DevopsEnvPodRepositoryImpl implements DevopsEnvPodRepository {
         }
     }
 
+    @Override
+    public List<DevopsEnvPodE> listByNamespace(String namespace) {
+        DevopsEnvPodDO devopsEnvPodDO = new DevopsEnvPodDO();
+        devopsEnvPodDO.setNamespace(namespace);
+        return ConvertHelper.convertList(devopsEnvPodMapper.select(devopsEnvPodDO), DevopsEnvPodE.class);
+    }
+
+    @Override
+    public void deleteByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        devopsEnvPodMapper.deleteByIds(ids);
+    }
+
     @Override
     public DevopsEnvPodE getByNameAndEnv(String name, String namespace) {
         DevopsEnvPodDO devopsEnvPodDO = new DevopsEnvPodDO();
@@ -1,11 +1,15 @@
 package io.choerodon.devops.infra.persistence.impl;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.stereotype.Service;
 
 import io.choerodon.core.convertor.ConvertHelper;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.domain.application.entity.DevopsEnvResourceDetailE;
 import io.choerodon.devops.domain.application.repository.DevopsEnvResourceDetailRepository;
+import io.choerodon.devops.infra.common.util.ResourceDetailUtil;
 import io.choerodon.devops.infra.dataobject.DevopsEnvResourceDetailDO;
 import io.choerodon.devops.infra.mapper.DevopsEnvResourceDetailMapper;
 
@@ -26,28 +30,73 @@ public class DevopsEnvResourceDetailRepositoryImpl implements DevopsEnvResourceD
     public DevopsEnvResourceDetailE create(DevopsEnvResourceDetailE devopsEnvResourceDetailE) {
         DevopsEnvResourceDetailDO devopsEnvResourceDetailDO =
                 ConvertHelper.convert(devopsEnvResourceDetailE, DevopsEnvResourceDetailDO.class);
+        String message = devopsEnvResourceDetailDO.getMessage();
+        ResourceDetailUtil.encode(devopsEnvResourceDetailDO);
         if (devopsEnvResourceDetailMapper.insert(devopsEnvResourceDetailDO) != 1) {
             throw new CommonException("error.message.insert");
         }
+        devopsEnvResourceDetailDO.setMessage(message);
         return ConvertHelper.convert(devopsEnvResourceDetailDO, DevopsEnvResourceDetailE.class);
     }
 
     @Override
     public DevopsEnvResourceDetailE query(Long messageId) {
-        return ConvertHelper.convert(
-                devopsEnvResourceDetailMapper.selectByPrimaryKey(messageId),
-                DevopsEnvResourceDetailE.class);
+        DevopsEnvResourceDetailDO devopsEnvResourceDetailDO = devopsEnvResourceDetailMapper.selectByPrimaryKey(messageId);
+        if (devopsEnvResourceDetailDO != null) {
+            devopsEnvResourceDetailDO.setMessage(ResourceDetailUtil.getMessage(devopsEnvResourceDetailDO));
+        }
+        return ConvertHelper.convert(devopsEnvResourceDetailDO, DevopsEnvResourceDetailE.class);
     }
 
     @Override
     public void update(DevopsEnvResourceDetailE devopsEnvResourceDetailE) {
         DevopsEnvResourceDetailDO devopsEnvResourceDetailDO = ConvertHelper.convert(
                 devopsEnvResourceDetailE, DevopsEnvResourceDetailDO.class);
-        devopsEnvResourceDetailDO.setObjectVersionNumber(
-                devopsEnvResourceDetailMapper.selectByPrimaryKey(
-                        devopsEnvResourceDetailDO.getId()).getObjectVersionNumber());
+        DevopsEnvResourceDetailDO oldDevopsEnvResourceDetailDO =
+                devopsEnvResourceDetailMapper.queryDigest(devopsEnvResourceDetailDO.getId());
+        ResourceDetailUtil.encode(devopsEnvResourceDetailDO);
+        if (devopsEnvResourceDetailDO.getMessageDigest() != null
+                && devopsEnvResourceDetailDO.getMessageDigest().equals(oldDevopsEnvResourceDetailDO.getMessageDigest())) {
+            return;
+        }
+        devopsEnvResourceDetailDO.setObjectVersionNumber(oldDevopsEnvResourceDetailDO.getObjectVersionNumber());
         if (devopsEnvResourceDetailMapper.updateByPrimaryKeySelective(devopsEnvResourceDetailDO) != 1) {
             throw new CommonException("error.message.update");
         }
+        // 旧数据未压缩，选择性更新不会清空message
+        if (devopsEnvResourceDetailDO.getMessageGz() != null && oldDevopsEnvResourceDetailDO.getMessageDigest() == null) {
+            devopsEnvResourceDetailMapper.clearMessage(devopsEnvResourceDetailDO.getId());
+        }
+    }
+
+    @Override
+    public List<DevopsEnvResourceDetailE> listSummaryByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return ConvertHelper.convertList(
+                devopsEnvResourceDetailMapper.listSummaryByIds(ids),
+                DevopsEnvResourceDetailE.class);
+    }
+
+    @Override
+    public void updateSummary(DevopsEnvResourceDetailE devopsEnvResourceDetailE) {
+        devopsEnvResourceDetailMapper.updateSummary(devopsEnvResourceDetailE.getId(),
+                devopsEnvResourceDetailE.getSummary(), devopsEnvResourceDetailE.getReleaseGenerated());
+    }
+
+    @Override
+    public Long compressMessages(Long lastId, int size) {
+        List<DevopsEnvResourceDetailDO> devopsEnvResourceDetailDOS =
+                devopsEnvResourceDetailMapper.listUncompressed(lastId, size);
+        if (devopsEnvResourceDetailDOS.isEmpty()) {
+            return null;
+        }
+        devopsEnvResourceDetailDOS.forEach(devopsEnvResourceDetailDO -> {
+            ResourceDetailUtil.encode(devopsEnvResourceDetailDO);
+            devopsEnvResourceDetailMapper.updateCompressedMessage(devopsEnvResourceDetailDO.getId(),
+                    devopsEnvResourceDetailDO.getMessageGz(), devopsEnvResourceDetailDO.getMessageDigest());
+        });
+        return devopsEnvResourceDetailDOS.get(devopsEnvResourceDetailDOS.size() - 1).getId();
     }
 }
@@ -1,7 +1,10 @@
 package io.choerodon.devops.infra.persistence.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+import io.choerodon.devops.infra.common.util.ResourceDetailUtil;
 import io.choerodon.devops.infra.common.util.enums.ResourceType;
 import org.springframework.stereotype.Service;
 
@@ -72,6 +75,29 @@ public class DevopsEnvResourceRepositoryImpl implements DevopsEnvResourceReposit
         devopsEnvResourceMapper.delete(devopsEnvResourceDO);
     }
 
+    @Override
+    public void deleteByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        devopsEnvResourceMapper.deleteByIds(ids);
+    }
+
+    @Override
+    public List<DevopsEnvResourceE> listByEnvIdAndKindAndNames(Long envId, String kind, Collection<String> names) {
+        if (names.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return ConvertHelper.convertList(
+                devopsEnvResourceMapper.listByEnvIdAndKindAndNames(envId, kind, names), DevopsEnvResourceE.class);
+    }
+
+    @Override
+    public List<DevopsEnvResourceE> listWithoutSummary(Long lastDetailId, int size) {
+        return ConvertHelper.convertList(
+                devopsEnvResourceMapper.listWithoutSummary(lastDetailId, size), DevopsEnvResourceE.class);
+    }
+
     @Override
     public List<DevopsEnvResourceE> listByEnvAndType(Long envId, String type) {
         return ConvertHelper.convertList(
@@ -100,6 +126,7 @@ public class DevopsEnvResourceRepositoryImpl implements DevopsEnvResourceReposit
 
     @Override
     public String getResourceDetailByNameAndTypeAndInstanceId(Long instanceId, String name, ResourceType resourceType) {
-        return devopsEnvResourceMapper.getResourceDetailByNameAndTypeAndInstanceId(instanceId, name, resourceType.getType());
+        return ResourceDetailUtil.getMessage(
+                devopsEnvResourceMapper.getResourceDetailByNameAndTypeAndInstanceId(instanceId, name, resourceType.getType()));
     }
 }
@@ -1,7 +1,16 @@
 package io.choerodon.devops.infra.persistence.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
 import org.springframework.stereotype.Service;
 
 import io.choerodon.core.convertor.ConvertHelper;
@@ -15,7 +24,25 @@ import io.choerodon.devops.infra.mapper.DevopsEnvironmentMapper;
  * Created by younger on 2018/4/9.
  */
 @Service
-public class DevopsEnvironmentRepositoryImpl implements DevopsEnvironmentRepository {
+public class DevopsEnvironmentRepositoryImpl implements DevopsEnvironmentRepository, PublicMetrics {
+
+    private static final String METRIC_PREFIX = "devops.env.id.cache.";
+    private static final String ENV_KEY = "%s:%s";
+
+    /**
+     * (clusterId, code) -> envId 缓存，环境不存在时缓存空值
+     * 缓存只在本实例中清除，过期时间较短以兼容多实例部署
+     */
+    private final Cache<String, Long> envIdCache = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(30, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+    private final Cache<String, Boolean> missingEnvCache = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(30, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
 
     private DevopsEnvironmentMapper devopsEnvironmentMapper;
 
@@ -29,6 +56,7 @@ public class DevopsEnvironmentRepositoryImpl implements DevopsEnvironmentReposit
         if (devopsEnvironmentMapper.insert(devopsEnvironmentDO) != 1) {
             throw new CommonException("error.environment.create");
         }
+        missingEnvCache.invalidate(getEnvKey(devopsEnvironmentDO.getClusterId(), devopsEnvironmentDO.getCode()));
         return ConvertHelper.convert(devopsEnvironmentDO, DevopsEnvironmentE.class);
     }
 
@@ -61,6 +89,9 @@ public class DevopsEnvironmentRepositoryImpl implements DevopsEnvironmentReposit
         if (devopsEnvironmentMapper.updateByPrimaryKeySelective(devopsEnvironmentDO) != 1) {
             throw new CommonException("error.environment.update");
         }
+        // 环境可能被移动到其它集群，清除旧的缓存
+        evictEnvIdCache(devopsEnvironmentDO.getId());
+        missingEnvCache.invalidateAll();
         return ConvertHelper.convert(devopsEnvironmentDO, DevopsEnvironmentE.class);
     }
 
@@ -99,6 +130,36 @@ public class DevopsEnvironmentRepositoryImpl implements DevopsEnvironmentReposit
         return ConvertHelper.convert(devopsEnvironmentMapper.selectOne(devopsEnvironmentDO), DevopsEnvironmentE.class);
     }
 
+    @Override
+    public Long queryIdByClusterIdAndCode(Long clusterId, String code) {
+        String key = getEnvKey(clusterId, code);
+        Long envId = envIdCache.getIfPresent(key);
+        if (envId != null || missingEnvCache.getIfPresent(key) != null) {
+            return envId;
+        }
+        DevopsEnvironmentDO devopsEnvironmentDO = new DevopsEnvironmentDO();
+        devopsEnvironmentDO.setClusterId(clusterId);
+        devopsEnvironmentDO.setCode(code);
+        devopsEnvironmentDO = devopsEnvironmentMapper.selectOne(devopsEnvironmentDO);
+        if (devopsEnvironmentDO == null) {
+            missingEnvCache.put(key, Boolean.TRUE);
+            return null;
+        }
+        // 创建中或创建失败的环境可能被删除后重建，不缓存
+        if (Boolean.TRUE.equals(devopsEnvironmentDO.getSynchro())
+                && !Boolean.TRUE.equals(devopsEnvironmentDO.getFailed())) {
+            envIdCache.put(key, devopsEnvironmentDO.getId());
+        }
+        return devopsEnvironmentDO.getId();
+    }
+
+    @Override
+    public void evictEnvIdCacheByClusterId(Long clusterId) {
+        String prefix = String.format(ENV_KEY, clusterId, "");
+        envIdCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+        missingEnvCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
     @Override
     public DevopsEnvironmentE queryByToken(String token) {
         return ConvertHelper.convert(devopsEnvironmentMapper.queryByToken(token), DevopsEnvironmentE.class);
@@ -119,6 +180,7 @@ public class DevopsEnvironmentRepositoryImpl implements DevopsEnvironmentReposit
     @Override
     public void deleteById(Long id) {
         devopsEnvironmentMapper.deleteByPrimaryKey(id);
+        evictEnvIdCache(id);
     }
 
     @Override
@@ -128,4 +190,31 @@ public class DevopsEnvironmentRepositoryImpl implements DevopsEnvironmentReposit
         return ConvertHelper.convertList(devopsEnvironmentMapper.select(devopsEnvironmentDO), DevopsEnvironmentE.class);
     }
 
+    @Override
+    public List<DevopsEnvironmentE> listByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return ConvertHelper.convertList(devopsEnvironmentMapper.listByIds(ids), DevopsEnvironmentE.class);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats envIdStats = envIdCache.stats();
+        CacheStats missingEnvStats = missingEnvCache.stats();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "hit", envIdStats.hitCount() + missingEnvStats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "miss", missingEnvStats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", envIdCache.size()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "missing.size", missingEnvCache.size()));
+        return metrics;
+    }
+
+    private void evictEnvIdCache(Long envId) {
+        envIdCache.asMap().values().removeIf(cachedId -> Objects.equals(cachedId, envId));
+    }
+
+    private String getEnvKey(Long clusterId, String code) {
+        return String.format(ENV_KEY, clusterId, code);
+    }
 }
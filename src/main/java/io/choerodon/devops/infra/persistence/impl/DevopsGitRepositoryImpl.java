@@ -2,9 +2,12 @@ package io.choerodon.devops.infra.persistence.impl;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import feign.FeignException;
 import io.kubernetes.client.JSON;
@@ -391,20 +394,10 @@ public class DevopsGitRepositoryImpl implements DevopsGitRepository {
     public Map<String, Object> getMergeRequestList(Long projectId, Integer gitLabProjectId,
                                                    String state,
                                                    PageRequest pageRequest) {
-        List<DevopsMergeRequestE> allMergeRequest = devopsMergeRequestRepository
-                .getByGitlabProjectId(gitLabProjectId);
-        final int[] count = {0, 0, 0};
-        if (allMergeRequest != null && !allMergeRequest.isEmpty()) {
-            allMergeRequest.forEach(devopsMergeRequestE -> {
-                if ("merged".equals(devopsMergeRequestE.getState())) {
-                    count[0]++;
-                } else if ("opened".equals(devopsMergeRequestE.getState())) {
-                    count[1]++;
-                } else if ("closed".equals(devopsMergeRequestE.getState())) {
-                    count[2]++;
-                }
-            });
-        }
+        Map<String, Integer> stateCounts = devopsMergeRequestRepository.countByState(gitLabProjectId);
+        int mergeCount = stateCounts.getOrDefault("merged", 0);
+        int openCount = stateCounts.getOrDefault("opened", 0);
+        int closeCount = stateCounts.getOrDefault("closed", 0);
         Page<DevopsMergeRequestE> page = devopsMergeRequestRepository
                 .getByGitlabProjectId(gitLabProjectId, pageRequest);
         if (StringUtil.isNotEmpty(state)) {
@@ -414,47 +407,80 @@ public class DevopsGitRepositoryImpl implements DevopsGitRepository {
         List<MergeRequestDTO> pageContent = new ArrayList<>();
         List<DevopsMergeRequestE> content = page.getContent();
         if (content != null && !content.isEmpty()) {
-            content.forEach(devopsMergeRequestE -> {
-                MergeRequestDTO mergeRequestDTO = devopsMergeRequestToMergeRequest(
-                        devopsMergeRequestE);
-                pageContent.add(mergeRequestDTO);
-            });
+            Map<Long, List<CommitE>> commits = listMergeRequestCommits(gitLabProjectId, content);
+            Map<Long, UserE> users = listUsersByGitlabUserIds(content.stream()
+                    .flatMap(t -> Stream.of(t.getAuthorId(), t.getAssigneeId()))
+                    .collect(Collectors.toSet()));
+            content.forEach(devopsMergeRequestE -> pageContent.add(devopsMergeRequestToMergeRequest(
+                    devopsMergeRequestE, commits, users)));
         }
-        int total = count[0] + count[1] + count[2];
+        int total = mergeCount + openCount + closeCount;
         Page<MergeRequestDTO> pageResult = new Page<>();
         BeanUtils.copyProperties(page, pageResult);
         pageResult.setContent(pageContent);
         Map<String, Object> result = new HashMap<>();
-        result.put("mergeCount", count[0]);
-        result.put("openCount", count[1]);
-        result.put("closeCount", count[2]);
+        result.put("mergeCount", mergeCount);
+        result.put("openCount", openCount);
+        result.put("closeCount", closeCount);
         result.put("totalCount", total);
         result.put("pageResult", pageResult);
         return result;
     }
 
-    private MergeRequestDTO devopsMergeRequestToMergeRequest(DevopsMergeRequestE devopsMergeRequestE) {
+    /**
+     * 查询已保存的合并请求提交，提交还未同步的合并请求放到后台补同步，本次先不带提交返回
+     */
+    private Map<Long, List<CommitE>> listMergeRequestCommits(Integer gitLabProjectId,
+                                                             List<DevopsMergeRequestE> mergeRequests) {
+        Long projectId = TypeUtil.objToLong(gitLabProjectId);
+        List<Long> gitlabMergeRequestIds = mergeRequests.stream()
+                .map(DevopsMergeRequestE::getGitlabMergeRequestId).collect(Collectors.toList());
+        List<DevopsMergeRequestE> unsynced = mergeRequests.stream()
+                .filter(t -> !Boolean.TRUE.equals(t.getCommitsSynced())).collect(Collectors.toList());
+        if (!unsynced.isEmpty()) {
+            devopsMergeRequestRepository.syncCommitsLater(unsynced);
+        }
+        return devopsMergeRequestRepository.listCommits(projectId, gitlabMergeRequestIds);
+    }
+
+    @Override
+    public Map<Long, UserE> listUsersByGitlabUserIds(Set<Long> gitlabUserIds) {
+        Map<Long, UserE> users = new HashMap<>();
+        gitlabUserIds.remove(null);
+        if (gitlabUserIds.isEmpty()) {
+            return users;
+        }
+        Map<Long, Long> iamUserIds = userAttrRepository.listByGitlabUserIds(new ArrayList<>(gitlabUserIds)).stream()
+                .filter(t -> t.getIamUserId() != null)
+                .collect(Collectors.toMap(UserAttrE::getGitlabUserId, UserAttrE::getIamUserId, (a, b) -> a));
+        if (iamUserIds.isEmpty()) {
+            return users;
+        }
+        Map<Long, UserE> usersById = iamRepository.listUsersByIds(new ArrayList<>(new HashSet<>(iamUserIds.values())))
+                .stream().collect(Collectors.toMap(UserE::getId, t -> t, (a, b) -> a));
+        iamUserIds.forEach((gitlabUserId, iamUserId) -> {
+            UserE userE = usersById.get(iamUserId);
+            if (userE != null) {
+                users.put(gitlabUserId, userE);
+            }
+        });
+        return users;
+    }
+
+    private MergeRequestDTO devopsMergeRequestToMergeRequest(DevopsMergeRequestE devopsMergeRequestE,
+                                                             Map<Long, List<CommitE>> commits,
+                                                             Map<Long, UserE> users) {
         MergeRequestDTO mergeRequestDTO = new MergeRequestDTO();
         BeanUtils.copyProperties(devopsMergeRequestE, mergeRequestDTO);
         mergeRequestDTO.setProjectId(devopsMergeRequestE.getProjectId().intValue());
         mergeRequestDTO.setId(devopsMergeRequestE.getId().intValue());
         mergeRequestDTO.setIid(devopsMergeRequestE.getGitlabMergeRequestId().intValue());
-        Long authorUserId = devopsGitRepository
-                .getUserIdByGitlabUserId(devopsMergeRequestE.getAuthorId());
-        Long assigneeId = devopsGitRepository
-                .getUserIdByGitlabUserId(devopsMergeRequestE.getAssigneeId());
-        Long gitlabMergeRequestId = devopsMergeRequestE.getGitlabMergeRequestId();
-        Integer gitlabUserId = devopsGitRepository.getGitlabUserId();
-        List<CommitDO> commitDOS = new ArrayList<>();
-        try {
-            commitDOS = gitlabServiceClient.listCommits(
-                    devopsMergeRequestE.getProjectId().intValue(),
-                    gitlabMergeRequestId.intValue(), gitlabUserId).getBody();
-            mergeRequestDTO.setCommits(ConvertHelper.convertList(commitDOS, CommitDTO.class));
-        } catch (FeignException e) {
-            LOGGER.info(e.getMessage());
+        List<CommitE> commitES = commits.get(devopsMergeRequestE.getGitlabMergeRequestId());
+        if (commitES != null) {
+            mergeRequestDTO.setCommits(ConvertHelper.convertList(commitES, CommitDTO.class));
         }
-        UserE authorUser = iamRepository.queryUserByUserId(authorUserId);
+        UserE authorUser = devopsMergeRequestE.getAuthorId() == null
+                ? null : users.get(devopsMergeRequestE.getAuthorId());
         if (authorUser != null) {
             AuthorDTO authorDTO = new AuthorDTO();
             authorDTO.setUsername(authorUser.getLoginName());
@@ -463,12 +489,13 @@ public class DevopsGitRepositoryImpl implements DevopsGitRepository {
             authorDTO.setWebUrl(authorUser.getImageUrl());
             mergeRequestDTO.setAuthor(authorDTO);
         }
-        UserE assigneeUser = iamRepository.queryUserByUserId(assigneeId);
+        UserE assigneeUser = devopsMergeRequestE.getAssigneeId() == null
+                ? null : users.get(devopsMergeRequestE.getAssigneeId());
         if (assigneeUser != null) {
             AssigneeDTO assigneeDTO = new AssigneeDTO();
             assigneeDTO.setUsername(assigneeUser.getLoginName());
             assigneeDTO.setName(assigneeUser.getRealName());
-            assigneeDTO.setId(assigneeId.intValue());
+            assigneeDTO.setId(assigneeUser.getId().intValue());
             assigneeDTO.setWebUrl(assigneeUser.getImageUrl());
             mergeRequestDTO.setAssignee(assigneeDTO);
         }
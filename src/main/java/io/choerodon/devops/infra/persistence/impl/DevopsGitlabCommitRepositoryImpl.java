@@ -1,12 +1,16 @@
 package io.choerodon.devops.infra.persistence.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 import io.choerodon.core.convertor.ConvertHelper;
@@ -18,6 +22,8 @@ import io.choerodon.devops.domain.application.entity.iam.UserE;
 import io.choerodon.devops.domain.application.repository.DevopsGitlabCommitRepository;
 import io.choerodon.devops.infra.dataobject.DevopsGitlabCommitDO;
 import io.choerodon.devops.infra.mapper.DevopsGitlabCommitMapper;
+import io.choerodon.mybatis.domain.Audit;
+import io.choerodon.mybatis.helper.AuditHelper;
 import io.choerodon.mybatis.pagehelper.PageHelper;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
@@ -46,6 +52,44 @@ public class DevopsGitlabCommitRepositoryImpl implements DevopsGitlabCommitRepos
                 DevopsGitlabCommitE.class);
     }
 
+    @Override
+    public Set<String> listExistingShas(String ref, Collection<String> shas) {
+        if (shas.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(devopsGitlabCommitMapper.listShasByRef(ref, shas));
+    }
+
+    @Override
+    public void batchCreate(List<DevopsGitlabCommitE> devopsGitlabCommitES) {
+        if (devopsGitlabCommitES.isEmpty()) {
+            return;
+        }
+        List<DevopsGitlabCommitDO> devopsGitlabCommitDOS =
+                ConvertHelper.convertList(devopsGitlabCommitES, DevopsGitlabCommitDO.class);
+        // 自定义的批量插入不经过通用Mapper，需要自己填充审计字段
+        Audit audit = AuditHelper.audit();
+        devopsGitlabCommitDOS.forEach(devopsGitlabCommitDO -> {
+            devopsGitlabCommitDO.setCreatedBy(audit.getUser());
+            devopsGitlabCommitDO.setCreationDate(audit.getNow());
+            devopsGitlabCommitDO.setLastUpdatedBy(audit.getUser());
+            devopsGitlabCommitDO.setLastUpdateDate(audit.getNow());
+        });
+        try {
+            if (devopsGitlabCommitMapper.batchInsert(devopsGitlabCommitDOS) != devopsGitlabCommitDOS.size()) {
+                throw new CommonException("error.gitlab.commit.create");
+            }
+        } catch (DuplicateKeyException e) {
+            // 同一分支的推送并发写入了部分commit，只写入还没有记录的commit
+            devopsGitlabCommitDOS.forEach(devopsGitlabCommitDO -> {
+                if (queryByShaAndRef(devopsGitlabCommitDO.getCommitSha(), devopsGitlabCommitDO.getRef()) == null) {
+                    devopsGitlabCommitDO.setId(null);
+                    devopsGitlabCommitMapper.insert(devopsGitlabCommitDO);
+                }
+            });
+        }
+    }
+
     @Override
     public List<DevopsGitlabCommitE> listCommits(Long projectId, List<Long> appIds, Date startDate, Date endDate) {
         List<DevopsGitlabCommitDO> devopsGitlabCommitDOList = devopsGitlabCommitMapper
@@ -1,18 +1,33 @@
 package io.choerodon.devops.infra.persistence.impl;
 
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import io.choerodon.core.convertor.ConvertHelper;
 import io.choerodon.core.domain.Page;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.domain.application.entity.DevopsGitlabPipelineE;
 import io.choerodon.devops.domain.application.repository.DevopsGitlabPipelineRepository;
+import io.choerodon.devops.infra.common.util.enums.PipelineStatus;
 import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDO;
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDailyDO;
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineStageDO;
+import io.choerodon.devops.infra.mapper.DevopsGitlabPipelineDailyMapper;
 import io.choerodon.devops.infra.mapper.DevopsGitlabPipelineMapper;
+import io.choerodon.devops.infra.mapper.DevopsGitlabPipelineStageMapper;
+import io.choerodon.mybatis.domain.Audit;
+import io.choerodon.mybatis.helper.AuditHelper;
 import io.choerodon.mybatis.pagehelper.PageHelper;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 
@@ -22,6 +37,10 @@ public class DevopsGitlabPipelineRepositoryImpl implements DevopsGitlabPipelineR
 
     @Autowired
     private DevopsGitlabPipelineMapper devopsGitlabPipelineMapper;
+    @Autowired
+    private DevopsGitlabPipelineStageMapper devopsGitlabPipelineStageMapper;
+    @Autowired
+    private DevopsGitlabPipelineDailyMapper devopsGitlabPipelineDailyMapper;
 
 
     @Override
@@ -77,4 +96,182 @@ public class DevopsGitlabPipelineRepositoryImpl implements DevopsGitlabPipelineR
     public List<DevopsGitlabPipelineDO> listByBranch(Long appId, String branch) {
         return devopsGitlabPipelineMapper.listByBranch(appId, branch);
     }
+
+    @Override
+    public void saveStage(DevopsGitlabPipelineStageDO stageDO) {
+        DevopsGitlabPipelineStageDO condition = new DevopsGitlabPipelineStageDO();
+        condition.setPipelineId(stageDO.getPipelineId());
+        condition.setJobId(stageDO.getJobId());
+        DevopsGitlabPipelineStageDO existing = devopsGitlabPipelineStageMapper.selectOne(condition);
+        if (existing == null) {
+            try {
+                if (devopsGitlabPipelineStageMapper.insert(stageDO) != 1) {
+                    throw new CommonException("error.gitlab.pipeline.stage.create");
+                }
+            } catch (DuplicateKeyException e) {
+                // pipeline事件同时写入了该job，改为更新
+                stageDO.setId(null);
+                saveStage(stageDO);
+            }
+        } else if (isStageChanged(existing, stageDO)) {
+            stageDO.setId(existing.getId());
+            stageDO.setObjectVersionNumber(existing.getObjectVersionNumber());
+            if (devopsGitlabPipelineStageMapper.updateByPrimaryKeySelective(stageDO) != 1) {
+                throw new CommonException("error.gitlab.pipeline.stage.update");
+            }
+        }
+    }
+
+    @Override
+    public List<DevopsGitlabPipelineStageDO> saveStages(Long pipelineId, List<DevopsGitlabPipelineStageDO> stageDOS) {
+        DevopsGitlabPipelineStageDO condition = new DevopsGitlabPipelineStageDO();
+        condition.setPipelineId(pipelineId);
+        Map<Long, DevopsGitlabPipelineStageDO> existing = devopsGitlabPipelineStageMapper.select(condition).stream()
+                .collect(Collectors.toMap(DevopsGitlabPipelineStageDO::getJobId, Function.identity(), (a, b) -> a));
+        List<DevopsGitlabPipelineStageDO> inserts = new ArrayList<>();
+        stageDOS.forEach(stageDO -> {
+            stageDO.setPipelineId(pipelineId);
+            DevopsGitlabPipelineStageDO saved = existing.get(stageDO.getJobId());
+            if (saved == null) {
+                inserts.add(stageDO);
+                existing.put(stageDO.getJobId(), stageDO);
+            } else if (isStageChanged(saved, stageDO)) {
+                stageDO.setId(saved.getId());
+                stageDO.setObjectVersionNumber(saved.getObjectVersionNumber());
+                if (devopsGitlabPipelineStageMapper.updateByPrimaryKeySelective(stageDO) != 1) {
+                    throw new CommonException("error.gitlab.pipeline.stage.update");
+                }
+                existing.put(stageDO.getJobId(), stageDO);
+            }
+        });
+        if (!inserts.isEmpty()) {
+            batchInsertStages(inserts);
+        }
+        return new ArrayList<>(existing.values());
+    }
+
+    @Override
+    @Transactional
+    public void replaceStages(Long pipelineId, List<DevopsGitlabPipelineStageDO> stageDOS) {
+        DevopsGitlabPipelineStageDO condition = new DevopsGitlabPipelineStageDO();
+        condition.setPipelineId(pipelineId);
+        devopsGitlabPipelineStageMapper.delete(condition);
+        if (!stageDOS.isEmpty()) {
+            stageDOS.forEach(stageDO -> stageDO.setPipelineId(pipelineId));
+            batchInsertStages(stageDOS);
+        }
+    }
+
+    private void batchInsertStages(List<DevopsGitlabPipelineStageDO> stageDOS) {
+        // 自定义的批量插入不经过通用Mapper，需要自己填充审计字段
+        Audit audit = AuditHelper.audit();
+        stageDOS.forEach(stageDO -> {
+            stageDO.setCreatedBy(audit.getUser());
+            stageDO.setCreationDate(audit.getNow());
+            stageDO.setLastUpdatedBy(audit.getUser());
+            stageDO.setLastUpdateDate(audit.getNow());
+        });
+        if (devopsGitlabPipelineStageMapper.batchInsert(stageDOS) != stageDOS.size()) {
+            throw new CommonException("error.gitlab.pipeline.stage.create");
+        }
+    }
+
+    @Override
+    public List<DevopsGitlabPipelineStageDO> listStages(List<Long> pipelineIds) {
+        if (pipelineIds == null || pipelineIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return devopsGitlabPipelineStageMapper.listByPipelineIds(pipelineIds);
+    }
+
+    @Override
+    public List<DevopsGitlabPipelineE> listNeedReconcile(Integer maxAttempts, Integer limit) {
+        return ConvertHelper.convertList(devopsGitlabPipelineMapper.listNeedReconcile(new Date(), maxAttempts, limit),
+                DevopsGitlabPipelineE.class);
+    }
+
+    @Override
+    public boolean claimReconcile(DevopsGitlabPipelineE devopsGitlabPipelineE, Date nextReconcileAt) {
+        Integer reconcileAttempts = devopsGitlabPipelineE.getReconcileAttempts() == null
+                ? 0 : devopsGitlabPipelineE.getReconcileAttempts();
+        if (devopsGitlabPipelineMapper.claimReconcile(devopsGitlabPipelineE.getId(), reconcileAttempts, nextReconcileAt) != 1) {
+            return false;
+        }
+        devopsGitlabPipelineE.setReconcileAttempts(reconcileAttempts + 1);
+        devopsGitlabPipelineE.setNextReconcileAt(nextReconcileAt);
+        return true;
+    }
+
+    @Override
+    public List<DevopsGitlabPipelineE> listWithoutDuration(Integer limit) {
+        return ConvertHelper.convertList(devopsGitlabPipelineMapper.listWithoutDuration(
+                PipelineStatus.finishedValues(), limit), DevopsGitlabPipelineE.class);
+    }
+
+    @Override
+    @Transactional
+    public void refreshDaily(Long appId, Date date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        Date statDate = calendar.getTime();
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        //先锁住当天的汇总行再读取pipeline，同一天的pipeline同时结束时依次计算，先读取的旧数据不会覆盖后面的结果
+        devopsGitlabPipelineDailyMapper.insertIfAbsent(appId, new java.sql.Date(statDate.getTime()), AuditHelper.audit());
+        DevopsGitlabPipelineDailyDO existing = devopsGitlabPipelineDailyMapper.selectForUpdate(appId,
+                new java.sql.Date(statDate.getTime()));
+        if (existing == null) {
+            throw new CommonException("error.gitlab.pipeline.daily.create");
+        }
+        List<DevopsGitlabPipelineDO> pipelineDOS = devopsGitlabPipelineMapper.listFinishedDuration(
+                appId, statDate, calendar.getTime(), PipelineStatus.finishedValues());
+        //无法计算执行时长的pipeline只计入数量，不计入时长和分位数
+        List<Long> durations = pipelineDOS.stream().map(DevopsGitlabPipelineDO::getDuration)
+                .filter(Objects::nonNull).sorted().collect(Collectors.toList());
+
+        DevopsGitlabPipelineDailyDO dailyDO = new DevopsGitlabPipelineDailyDO();
+        dailyDO.setId(existing.getId());
+        dailyDO.setObjectVersionNumber(existing.getObjectVersionNumber());
+        dailyDO.setPipelineCount((long) pipelineDOS.size());
+        dailyDO.setSuccessCount(pipelineDOS.stream()
+                .filter(t -> PipelineStatus.SUCCESS.toValue().equals(t.getStatus())).count());
+        dailyDO.setFailedCount(pipelineDOS.stream()
+                .filter(t -> PipelineStatus.FAILED.toValue().equals(t.getStatus())).count());
+        dailyDO.setTotalDuration(durations.stream().mapToLong(Long::longValue).sum());
+        dailyDO.setP50Duration(percentile(durations, 50));
+        dailyDO.setP90Duration(percentile(durations, 90));
+        if (devopsGitlabPipelineDailyMapper.updateByPrimaryKeySelective(dailyDO) != 1) {
+            throw new CommonException("error.gitlab.pipeline.daily.update");
+        }
+    }
+
+    /**
+     * 最近秩法计算分位数
+     */
+    private Long percentile(List<Long> sortedDurations, int percent) {
+        if (sortedDurations.isEmpty()) {
+            return 0L;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sortedDurations.size());
+        return sortedDurations.get(Math.max(rank, 1) - 1);
+    }
+
+    @Override
+    public List<DevopsGitlabPipelineDailyDO> listDaily(Long appId, Date startTime, Date endTime) {
+        return devopsGitlabPipelineDailyMapper.listByAppIdAndDate(appId,
+                new java.sql.Date(startTime.getTime()), new java.sql.Date(endTime.getTime()));
+    }
+
+    private boolean isStageChanged(DevopsGitlabPipelineStageDO saved, DevopsGitlabPipelineStageDO stageDO) {
+        return (stageDO.getStatus() != null && !stageDO.getStatus().equals(saved.getStatus()))
+                || isTimeChanged(saved.getStartedAt(), stageDO.getStartedAt())
+                || isTimeChanged(saved.getFinishedAt(), stageDO.getFinishedAt());
+    }
+
+    private boolean isTimeChanged(Date saved, Date time) {
+        return time != null && (saved == null || saved.getTime() != time.getTime());
+    }
 }
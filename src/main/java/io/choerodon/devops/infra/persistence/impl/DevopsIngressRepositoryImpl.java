@@ -213,6 +213,15 @@ public class DevopsIngressRepositoryImpl implements DevopsIngressRepository {
         devopsIngressPathMapper.delete(new DevopsIngressPathDO(ingressId));
     }
 
+    @Override
+    public void deleteIngressByIds(List<Long> ingressIds) {
+        if (ingressIds.isEmpty()) {
+            return;
+        }
+        devopsIngressMapper.deleteByIds(ingressIds);
+        devopsIngressPathMapper.deleteByIngressIds(ingressIds);
+    }
+
     @Override
     public Long setStatus(Long envId, String name, String status) {
         DevopsIngressDO ingressDO = new DevopsIngressDO(name);
@@ -5,28 +5,62 @@ import io.choerodon.core.convertor.ConvertPageHelper;
 import io.choerodon.core.domain.Page;
 import io.choerodon.core.exception.CommonException;
 import io.choerodon.devops.domain.application.entity.DevopsMergeRequestE;
+import io.choerodon.devops.domain.application.entity.gitlab.CommitE;
 import io.choerodon.devops.domain.application.repository.DevopsMergeRequestRepository;
+import io.choerodon.devops.infra.dataobject.DevopsMergeRequestCommitDO;
 import io.choerodon.devops.infra.dataobject.DevopsMergeRequestDO;
+import io.choerodon.devops.infra.dataobject.gitlab.CommitDO;
+import io.choerodon.devops.infra.feign.GitlabServiceClient;
+import io.choerodon.devops.infra.mapper.DevopsMergeRequestCommitMapper;
 import io.choerodon.devops.infra.mapper.DevopsMergeRequestMapper;
+import io.choerodon.mybatis.domain.Audit;
+import io.choerodon.mybatis.helper.AuditHelper;
 import io.choerodon.mybatis.pagehelper.PageHelper;
 import io.choerodon.mybatis.pagehelper.domain.PageRequest;
 import io.choerodon.mybatis.pagehelper.domain.Sort;
+import com.zaxxer.hikari.util.UtilityElf;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 
 @Service
 public class DevopsMergeRequestRepositoryImpl implements DevopsMergeRequestRepository {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DevopsMergeRequestRepositoryImpl.class);
+    // 补同步合并请求提交的线程池，队列满时丢弃，下次查询列表时再补
+    private static final ExecutorService COMMIT_SYNC_EXECUTOR = new ThreadPoolExecutor(1, 1,
+            60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(1000), new UtilityElf.DefaultThreadFactory("merge-request-commit-sync", true));
+
+    // 已在队列中等待补同步的合并请求，避免重复提交
+    private final Set<String> pendingSyncs = ConcurrentHashMap.newKeySet();
 
     @Autowired
     DevopsMergeRequestMapper devopsMergeRequestMapper;
+    @Autowired
+    DevopsMergeRequestCommitMapper devopsMergeRequestCommitMapper;
+    @Autowired
+    GitlabServiceClient gitlabServiceClient;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
 
     @Override
     public Integer create(DevopsMergeRequestE devopsMergeRequestE) {
@@ -94,6 +128,8 @@ public class DevopsMergeRequestRepositoryImpl implements DevopsMergeRequestRepos
         Long gitlabMergeRequestId = devopsMergeRequestE.getGitlabMergeRequestId();
         DevopsMergeRequestE mergeRequestETemp = queryByAppIdAndGitlabId(projectId, gitlabMergeRequestId);
         Long mergeRequestId = mergeRequestETemp != null ? mergeRequestETemp.getId() : null;
+        // 合并请求有变化时提交可能也变了，同步提交后再置为已同步
+        devopsMergeRequestE.setCommitsSynced(false);
         if (mergeRequestId == null) {
             try {
                 create(devopsMergeRequestE);
@@ -108,4 +144,121 @@ public class DevopsMergeRequestRepositoryImpl implements DevopsMergeRequestRepos
             }
         }
     }
+
+    @Override
+    public Map<String, Integer> countByState(Integer gitlabProjectId) {
+        Map<String, Integer> counts = new HashMap<>();
+        devopsMergeRequestMapper.countByState(gitlabProjectId).forEach(t -> {
+            if (t.getState() != null) {
+                counts.put(t.getState(), t.getCount());
+            }
+        });
+        return counts;
+    }
+
+    @Override
+    public void syncCommits(DevopsMergeRequestE devopsMergeRequestE) {
+        Long projectId = devopsMergeRequestE.getProjectId();
+        Long gitlabMergeRequestId = devopsMergeRequestE.getGitlabMergeRequestId();
+        if (projectId == null || gitlabMergeRequestId == null) {
+            return;
+        }
+        if (devopsMergeRequestE.getAuthorId() == null) {
+            // 没有创建者无法查询提交，不再重复尝试
+            devopsMergeRequestMapper.updateCommitsSynced(projectId, gitlabMergeRequestId);
+            return;
+        }
+        List<CommitDO> commitDOS;
+        try {
+            // webhook中没有当前用户，以合并请求的创建者查询提交
+            commitDOS = gitlabServiceClient.listCommits(projectId.intValue(), gitlabMergeRequestId.intValue(),
+                    devopsMergeRequestE.getAuthorId().intValue()).getBody();
+        } catch (Exception e) {
+            LOGGER.info("error.merge.request.commits.get: {}", e.getMessage());
+            return;
+        }
+        if (commitDOS == null) {
+            return;
+        }
+        // webhook和补同步可能同时替换同一个合并请求的提交，先锁住合并请求再删除和写入
+        new TransactionTemplate(transactionManager).execute(status -> {
+            devopsMergeRequestMapper.selectForUpdate(projectId, gitlabMergeRequestId);
+            DevopsMergeRequestCommitDO condition = new DevopsMergeRequestCommitDO();
+            condition.setProjectId(projectId);
+            condition.setGitlabMergeRequestId(gitlabMergeRequestId);
+            devopsMergeRequestCommitMapper.delete(condition);
+            if (!commitDOS.isEmpty()) {
+                insertCommits(projectId, gitlabMergeRequestId, commitDOS);
+            }
+            devopsMergeRequestMapper.updateCommitsSynced(projectId, gitlabMergeRequestId);
+            return null;
+        });
+    }
+
+    @Override
+    public void syncCommitsLater(List<DevopsMergeRequestE> devopsMergeRequestES) {
+        devopsMergeRequestES.forEach(devopsMergeRequestE -> {
+            String key = devopsMergeRequestE.getProjectId() + ":" + devopsMergeRequestE.getGitlabMergeRequestId();
+            if (!pendingSyncs.add(key)) {
+                return;
+            }
+            try {
+                COMMIT_SYNC_EXECUTOR.execute(() -> {
+                    try {
+                        syncCommits(devopsMergeRequestE);
+                    } catch (Exception e) {
+                        LOGGER.warn("error.merge.request.commits.sync: {}", e.getMessage());
+                    } finally {
+                        pendingSyncs.remove(key);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                pendingSyncs.remove(key);
+            }
+        });
+    }
+
+    private void insertCommits(Long projectId, Long gitlabMergeRequestId, List<CommitDO> commitDOS) {
+        // 自定义的批量插入不经过通用Mapper，需要自己填充审计字段
+        Audit audit = AuditHelper.audit();
+        devopsMergeRequestCommitMapper.batchInsert(commitDOS.stream().map(commitDO -> {
+            DevopsMergeRequestCommitDO devopsMergeRequestCommitDO = new DevopsMergeRequestCommitDO();
+            devopsMergeRequestCommitDO.setProjectId(projectId);
+            devopsMergeRequestCommitDO.setGitlabMergeRequestId(gitlabMergeRequestId);
+            devopsMergeRequestCommitDO.setCommitSha(commitDO.getId());
+            devopsMergeRequestCommitDO.setShortId(commitDO.getShortId());
+            devopsMergeRequestCommitDO.setTitle(commitDO.getTitle());
+            devopsMergeRequestCommitDO.setMessage(commitDO.getMessage());
+            devopsMergeRequestCommitDO.setAuthorName(commitDO.getAuthorName());
+            devopsMergeRequestCommitDO.setAuthorEmail(commitDO.getAuthorEmail());
+            devopsMergeRequestCommitDO.setCommittedDate(commitDO.getCommittedDate());
+            devopsMergeRequestCommitDO.setCreatedAt(commitDO.getCreatedAt());
+            devopsMergeRequestCommitDO.setCreatedBy(audit.getUser());
+            devopsMergeRequestCommitDO.setCreationDate(audit.getNow());
+            devopsMergeRequestCommitDO.setLastUpdatedBy(audit.getUser());
+            devopsMergeRequestCommitDO.setLastUpdateDate(audit.getNow());
+            return devopsMergeRequestCommitDO;
+        }).collect(Collectors.toList()));
+    }
+
+    @Override
+    public Map<Long, List<CommitE>> listCommits(Long projectId, List<Long> gitlabMergeRequestIds) {
+        Map<Long, List<CommitE>> commits = new LinkedHashMap<>();
+        if (gitlabMergeRequestIds == null || gitlabMergeRequestIds.isEmpty()) {
+            return commits;
+        }
+        devopsMergeRequestCommitMapper.listByMergeRequestIds(projectId, gitlabMergeRequestIds).forEach(t -> {
+            CommitE commitE = new CommitE();
+            commitE.setId(t.getCommitSha());
+            commitE.setShortId(t.getShortId());
+            commitE.setTitle(t.getTitle());
+            commitE.setMessage(t.getMessage());
+            commitE.setAuthorName(t.getAuthorName());
+            commitE.setAuthorEmail(t.getAuthorEmail());
+            commitE.setCommittedDate(t.getCommittedDate());
+            commitE.setCreatedAt(t.getCreatedAt());
+            commits.computeIfAbsent(t.getGitlabMergeRequestId(), k -> new ArrayList<>()).add(commitE);
+        });
+        return commits;
+    }
 }
@@ -128,6 +128,15 @@ public class DevopsServiceRepositoryImpl implements DevopsServiceRepository {
         devopsServiceMapper.deleteByPrimaryKey(id);
     }
 
+    @Override
+    public void deleteByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        devopsServiceMapper.deleteByIds(ids);
+        devopsServiceMapper.deleteServiceInstance(ids);
+    }
+
     @Override
     public void update(DevopsServiceE devopsServiceE) {
         DevopsServiceDO devopsServiceDO = devopsServiceMapper.selectByPrimaryKey(devopsServiceE.getId());
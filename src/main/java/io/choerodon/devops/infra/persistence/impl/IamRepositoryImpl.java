@@ -4,11 +4,28 @@ import static io.choerodon.core.iam.InitRoleCode.PROJECT_MEMBER;
 import static io.choerodon.core.iam.InitRoleCode.PROJECT_OWNER;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 
@@ -32,23 +49,87 @@ import io.choerodon.mybatis.pagehelper.domain.PageRequest;
  * Created by younger on 2018/3/29.
  */
 @Component
-public class IamRepositoryImpl implements IamRepository {
+public class IamRepositoryImpl implements IamRepository, PublicMetrics {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(IamRepositoryImpl.class);
+    private static final String METRIC_PREFIX = "devops.iam.cache.";
+    private static final String PROJECT = "project";
+    private static final String ORGANIZATION = "organization";
+    private static final String USER = "user";
+    private static final String EMAIL = "email";
+    private static final String MISSING_KEY = "%s:%s";
+    private static final String ERROR_PROJECT_GET = "error.project.get";
+    private static final String ERROR_ORGANIZATION_GET = "error.organization.get";
 
     private IamServiceClient iamServiceClient;
 
+    /**
+     * 项目、组织、用户缓存，返回时每次转换出新的实体，调用方修改实体不影响缓存
+     * iam查询不到的对象缓存在missingCache中，过期时间较短
+     */
+    private final Cache<Long, ProjectDO> projectCache;
+    private final Cache<Long, OrganizationDO> organizationCache;
+    private final Cache<Long, UserDO> userCache;
+    private final Cache<String, Boolean> missingCache;
+    /**
+     * 项目下邮箱对应的用户id，项目id:邮箱 -> 用户id，查询不到的邮箱缓存在missingCache中
+     */
+    private final Cache<String, Long> emailUserIdCache;
+    /**
+     * 用户的项目角色快照，项目名称 -> 角色code，角色变更事件时清除
+     */
+    private final Cache<Long, Map<String, Set<String>>> userRoleCache;
+    private final Cache<String, Long> roleIdCache;
+
     public IamRepositoryImpl(IamServiceClient iamServiceClient) {
+        this(iamServiceClient, 5000L, 10L, 30L, 60L);
+    }
+
+    @Autowired
+    public IamRepositoryImpl(IamServiceClient iamServiceClient,
+                             @Value("${iam.cache.maximumSize:5000}") long maximumSize,
+                             @Value("${iam.cache.expireMinutes:10}") long expireMinutes,
+                             @Value("${iam.cache.missingExpireSeconds:30}") long missingExpireSeconds,
+                             @Value("${iam.cache.roleExpireSeconds:60}") long roleExpireSeconds) {
         this.iamServiceClient = iamServiceClient;
+        long size = Math.max(0L, maximumSize);
+        this.userRoleCache = CacheBuilder.newBuilder()
+                .maximumSize(size).expireAfterWrite(roleExpireSeconds, TimeUnit.SECONDS).recordStats().build();
+        this.roleIdCache = CacheBuilder.newBuilder()
+                .maximumSize(size).expireAfterWrite(expireMinutes, TimeUnit.MINUTES).recordStats().build();
+        this.projectCache = CacheBuilder.newBuilder()
+                .maximumSize(size).expireAfterWrite(expireMinutes, TimeUnit.MINUTES).recordStats().build();
+        this.organizationCache = CacheBuilder.newBuilder()
+                .maximumSize(size).expireAfterWrite(expireMinutes, TimeUnit.MINUTES).recordStats().build();
+        this.userCache = CacheBuilder.newBuilder()
+                .maximumSize(size).expireAfterWrite(expireMinutes, TimeUnit.MINUTES).recordStats().build();
+        this.missingCache = CacheBuilder.newBuilder()
+                .maximumSize(size).expireAfterWrite(missingExpireSeconds, TimeUnit.SECONDS).recordStats().build();
+        this.emailUserIdCache = CacheBuilder.newBuilder()
+                .maximumSize(size).expireAfterWrite(expireMinutes, TimeUnit.MINUTES).recordStats().build();
     }
 
     @Override
     public ProjectE queryIamProject(Long projectId) {
-        ResponseEntity<ProjectDO> projectDO = iamServiceClient.queryIamProject(projectId);
-        if (!projectDO.getStatusCode().is2xxSuccessful()) {
-            throw new CommonException("error.project.get");
+        ProjectDO projectDO = projectId == null ? null : projectCache.getIfPresent(projectId);
+        if (projectDO == null) {
+            if (isMissing(PROJECT, projectId)) {
+                throw new CommonException(ERROR_PROJECT_GET);
+            }
+            ResponseEntity<ProjectDO> responseEntity = iamServiceClient.queryIamProject(projectId);
+            if (isNotFound(responseEntity)) {
+                markMissing(PROJECT, projectId);
+                throw new CommonException(ERROR_PROJECT_GET);
+            }
+            if (!responseEntity.getStatusCode().is2xxSuccessful()) {
+                throw new CommonException(ERROR_PROJECT_GET);
+            }
+            projectDO = responseEntity.getBody();
+            if (projectId != null && projectDO != null) {
+                projectCache.put(projectId, projectDO);
+            }
         }
-        return ConvertHelper.convert(projectDO.getBody(), ProjectE.class);
+        return ConvertHelper.convert(projectDO, ProjectE.class);
     }
 
     @Override
@@ -57,18 +138,31 @@ public class IamRepositoryImpl implements IamRepository {
         if (organization.getStatusCode().is2xxSuccessful()) {
             return ConvertHelper.convert(organization.getBody(), Organization.class);
         } else {
-            throw new CommonException("error.organization.get");
+            throw new CommonException(ERROR_ORGANIZATION_GET);
         }
     }
 
     @Override
     public Organization queryOrganizationById(Long organizationId) {
-        ResponseEntity<OrganizationDO> organization = iamServiceClient.queryOrganizationById(organizationId);
-        if (organization.getStatusCode().is2xxSuccessful()) {
-            return ConvertHelper.convert(organization.getBody(), Organization.class);
-        } else {
-            throw new CommonException("error.organization.get");
+        OrganizationDO organizationDO = organizationId == null ? null : organizationCache.getIfPresent(organizationId);
+        if (organizationDO == null) {
+            if (isMissing(ORGANIZATION, organizationId)) {
+                throw new CommonException(ERROR_ORGANIZATION_GET);
+            }
+            ResponseEntity<OrganizationDO> organization = iamServiceClient.queryOrganizationById(organizationId);
+            if (isNotFound(organization)) {
+                markMissing(ORGANIZATION, organizationId);
+                throw new CommonException(ERROR_ORGANIZATION_GET);
+            }
+            if (!organization.getStatusCode().is2xxSuccessful()) {
+                throw new CommonException(ERROR_ORGANIZATION_GET);
+            }
+            organizationDO = organization.getBody();
+            if (organizationId != null && organizationDO != null) {
+                organizationCache.put(organizationId, organizationDO);
+            }
         }
+        return ConvertHelper.convert(organizationDO, Organization.class);
     }
 
     @Override
@@ -152,15 +246,39 @@ public class IamRepositoryImpl implements IamRepository {
     @Override
     public List<UserE> listUsersByIds(List<Long> ids) {
         List<UserE> userES = new ArrayList<>();
-        if (ids != null && !ids.isEmpty()) {
-            Long[] newIds = new Long[ids.size()];
+        if (ids == null || ids.isEmpty()) {
+            return userES;
+        }
+        Set<Long> userIds = ids.stream().filter(Objects::nonNull).collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<Long, UserDO> users = new HashMap<>(userCache.getAllPresent(userIds));
+        List<Long> missingIds = userIds.stream()
+                .filter(id -> !users.containsKey(id) && !isMissing(USER, id))
+                .collect(Collectors.toList());
+        // 缓存中没有的用户一次批量查询
+        if (!missingIds.isEmpty()) {
+            List<UserDO> userDOS;
             try {
-                userES = ConvertHelper.convertList(iamServiceClient
-                        .listUsersByIds(ids.toArray(newIds)).getBody(), UserE.class);
+                ResponseEntity<List<UserDO>> responseEntity =
+                        iamServiceClient.listUsersByIds(missingIds.toArray(new Long[0]));
+                if (!responseEntity.getStatusCode().is2xxSuccessful()) {
+                    throw new CommonException("error.users.get");
+                }
+                userDOS = responseEntity.getBody();
+            } catch (CommonException e) {
+                throw e;
             } catch (Exception e) {
                 throw new CommonException("error.users.get", e);
             }
+            if (userDOS != null) {
+                userDOS.stream().filter(userDO -> userDO.getId() != null).forEach(userDO -> {
+                    users.put(userDO.getId(), userDO);
+                    userCache.put(userDO.getId(), userDO);
+                });
+            }
+            missingIds.stream().filter(id -> !users.containsKey(id)).forEach(id -> markMissing(USER, id));
         }
+        userIds.stream().filter(users::containsKey)
+                .forEach(id -> userES.add(ConvertHelper.convert(users.get(id), UserE.class)));
         return userES;
     }
 
@@ -219,16 +337,55 @@ public class IamRepositoryImpl implements IamRepository {
         }
     }
 
+    @Override
+    public Long queryUserIdByEmail(Long projectId, String email) {
+        if (email == null) {
+            return null;
+        }
+        String key = projectId + ":" + email;
+        Long userId = emailUserIdCache.getIfPresent(key);
+        if (userId != null || isMissing(EMAIL, key)) {
+            return userId;
+        }
+        try {
+            ResponseEntity<Page<UserDO>> userDOResponseEntity = iamServiceClient
+                    .listUsersByEmail(projectId, 0, 10, email);
+            if (!userDOResponseEntity.getStatusCode().is2xxSuccessful()) {
+                LOGGER.error("get user by email {} error", email);
+                return null;
+            }
+            Page<UserDO> userDOPage = userDOResponseEntity.getBody();
+            if (userDOPage == null || userDOPage.getContent() == null || userDOPage.getContent().isEmpty()) {
+                markMissing(EMAIL, key);
+                return null;
+            }
+            userId = userDOPage.getContent().get(0).getId();
+            emailUserIdCache.put(key, userId);
+            return userId;
+        } catch (FeignException e) {
+            LOGGER.error("get user by email {} error", email);
+            return null;
+        }
+    }
+
     @Override
     public Long queryRoleIdByCode(String roleCode) {
+        Long roleId = roleCode == null ? null : roleIdCache.getIfPresent(roleCode);
+        if (roleId != null) {
+            return roleId;
+        }
         try {
             RoleSearchDTO roleSearchDTO = new RoleSearchDTO();
             roleSearchDTO.setCode(roleCode);
-            return iamServiceClient.queryRoleIdByCode(roleSearchDTO).getBody().getContent().get(0).getId();
+            roleId = iamServiceClient.queryRoleIdByCode(roleSearchDTO).getBody().getContent().get(0).getId();
         } catch (FeignException e) {
             LOGGER.error("get role id by code {} error", roleCode);
             return null;
         }
+        if (roleCode != null && roleId != null) {
+            roleIdCache.put(roleCode, roleId);
+        }
+        return roleId;
     }
 
     @Override
@@ -238,25 +395,118 @@ public class IamRepositoryImpl implements IamRepository {
         // 获取项目所有者id
         Long ownerId = this.queryRoleIdByCode(PROJECT_OWNER);
         // 项目下所有项目成员
-        List<Long> memberIds =
+        Set<Long> memberIds =
                 this.pagingQueryUsersByRoleIdOnProjectLevel(new PageRequest(), new RoleAssignmentSearchDTO(), memberId,
-                        projectId, false).getContent().stream().map(UserDTO::getId).collect(Collectors.toList());
+                        projectId, false).getContent().stream().map(UserDTO::getId)
+                        .collect(Collectors.toCollection(LinkedHashSet::new));
         // 项目下所有项目所有者
-        List<Long> ownerIds =
+        Set<Long> ownerIds =
                 this.pagingQueryUsersByRoleIdOnProjectLevel(new PageRequest(), new RoleAssignmentSearchDTO(), ownerId,
-                        projectId, false).getContent().stream().map(UserDTO::getId).collect(Collectors.toList());
-        return memberIds.stream().filter(e -> !ownerIds.contains(e)).collect(Collectors.toList());
+                        projectId, false).getContent().stream().map(UserDTO::getId).collect(Collectors.toSet());
+        memberIds.removeAll(ownerIds);
+        return new ArrayList<>(memberIds);
     }
 
     @Override
     public Boolean isProjectOwner(Long userId, ProjectE projectE) {
-        List<ProjectWithRoleDTO> projectWithRoleDTOList = listProjectWithRoleDTO(userId);
-        List<RoleDTO> roleDTOS = new ArrayList<>();
-        projectWithRoleDTOList.stream().filter(projectWithRoleDTO ->
-                projectWithRoleDTO.getName().equals(projectE.getName())).forEach(projectWithRoleDTO ->
-                roleDTOS.addAll(projectWithRoleDTO.getRoles()
-                        .stream().filter(roleDTO -> roleDTO.getCode().equals(PROJECT_OWNER))
-                        .collect(Collectors.toList())));
-        return !roleDTOS.isEmpty();
+        return queryProjectRoleCodes(userId).getOrDefault(projectE.getName(), Collections.emptySet())
+                .contains(PROJECT_OWNER);
+    }
+
+    /**
+     * 查询用户在各项目下的角色，结果按用户缓存
+     *
+     * @param userId 用户id
+     * @return 项目名称 -> 角色code
+     */
+    private Map<String, Set<String>> queryProjectRoleCodes(Long userId) {
+        Map<String, Set<String>> projectRoleCodes = userId == null ? null : userRoleCache.getIfPresent(userId);
+        if (projectRoleCodes != null) {
+            return projectRoleCodes;
+        }
+        projectRoleCodes = new HashMap<>();
+        for (ProjectWithRoleDTO projectWithRoleDTO : listProjectWithRoleDTO(userId)) {
+            Set<String> roleCodes = projectRoleCodes.computeIfAbsent(projectWithRoleDTO.getName(), k -> new HashSet<>());
+            if (projectWithRoleDTO.getRoles() != null) {
+                projectWithRoleDTO.getRoles().stream().map(RoleDTO::getCode).filter(Objects::nonNull)
+                        .forEach(roleCodes::add);
+            }
+        }
+        projectRoleCodes = Collections.unmodifiableMap(projectRoleCodes);
+        if (userId != null) {
+            userRoleCache.put(userId, projectRoleCodes);
+        }
+        return projectRoleCodes;
+    }
+
+    @Override
+    public void evictProjectCache(Long projectId) {
+        if (projectId != null) {
+            projectCache.invalidate(projectId);
+            missingCache.invalidate(String.format(MISSING_KEY, PROJECT, projectId));
+        }
+    }
+
+    @Override
+    public void evictOrganizationCache(Long organizationId) {
+        if (organizationId != null) {
+            organizationCache.invalidate(organizationId);
+            missingCache.invalidate(String.format(MISSING_KEY, ORGANIZATION, organizationId));
+        }
+    }
+
+    @Override
+    public void evictUserCache(Long userId) {
+        if (userId != null) {
+            userCache.invalidate(userId);
+            missingCache.invalidate(String.format(MISSING_KEY, USER, userId));
+            userRoleCache.invalidate(userId);
+        }
+    }
+
+    @Override
+    public void evictUserRoleCache(Long userId) {
+        if (userId != null) {
+            userRoleCache.invalidate(userId);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        addMetrics(metrics, PROJECT, projectCache);
+        addMetrics(metrics, ORGANIZATION, organizationCache);
+        addMetrics(metrics, USER, userCache);
+        addMetrics(metrics, "missing", missingCache);
+        addMetrics(metrics, EMAIL, emailUserIdCache);
+        addMetrics(metrics, "userRole", userRoleCache);
+        addMetrics(metrics, "roleId", roleIdCache);
+        return metrics;
+    }
+
+    private void addMetrics(List<Metric<?>> metrics, String name, Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        metrics.add(new Metric<>(METRIC_PREFIX + name + ".size", cache.size()));
+        metrics.add(new Metric<>(METRIC_PREFIX + name + ".hit", stats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + name + ".miss", stats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + name + ".hitRate", stats.hitRate()));
+    }
+
+    /**
+     * 只有iam确实查询不到时才缓存，熔断降级返回的500等错误不缓存
+     */
+    private boolean isNotFound(ResponseEntity<?> responseEntity) {
+        return HttpStatus.NOT_FOUND.equals(responseEntity.getStatusCode())
+                || (responseEntity.getStatusCode().is2xxSuccessful() && responseEntity.getBody() == null);
+    }
+
+    private boolean isMissing(String type, Object id) {
+        return id != null && missingCache.getIfPresent(String.format(MISSING_KEY, type, id)) != null;
+    }
+
+    private void markMissing(String type, Object id) {
+        if (id != null) {
+            missingCache.put(String.format(MISSING_KEY, type, id), true);
+        }
     }
 }
@@ -56,6 +56,14 @@ public class UserAttrRepositoryImpl implements UserAttrRepository {
         return ConvertHelper.convertList(userAttrMapper.listByUserIds(userIds), UserAttrE.class);
     }
 
+    @Override
+    public List<UserAttrE> listByGitlabUserIds(List<Long> gitlabUserIds) {
+        if (gitlabUserIds == null || gitlabUserIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return ConvertHelper.convertList(userAttrMapper.listByGitlabUserIds(gitlabUserIds), UserAttrE.class);
+    }
+
     public UserAttrE queryByGitlabUserId(Long gitlabUserId) {
         UserAttrDO userAttrDO = new UserAttrDO();
         userAttrDO.setGitlabUserId(gitlabUserId);
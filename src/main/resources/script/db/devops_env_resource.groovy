@@ -32,4 +32,26 @@ databaseChangeLog(logicalFilePath: 'dba/devops_env_resource.groovy') {
         }
     }
 
+    changeSet(author: 'younger', id: '2019-01-28-add-index') {
+        createIndex(indexName: "env_resource_idx_instance_kind_name", tableName: "devops_env_resource") {
+            column(name: "app_instance_id")
+            column(name: "kind")
+            column(name: "name")
+        }
+        createIndex(indexName: "env_resource_idx_env_kind_name", tableName: "devops_env_resource") {
+            column(name: "env_id")
+            column(name: "kind")
+            column(name: "name")
+        }
+        createIndex(indexName: "env_resource_idx_command_kind", tableName: "devops_env_resource") {
+            column(name: "command_id")
+            column(name: "kind")
+        }
+        createIndex(indexName: "env_resource_idx_kind_name", tableName: "devops_env_resource") {
+            column(name: "kind")
+            column(name: "name")
+            column(name: "creation_date")
+        }
+    }
+
 }
\ No newline at end of file
@@ -15,4 +15,18 @@ databaseChangeLog(logicalFilePath: 'dba/devops_env_resource_detail.groovy') {
             column(name: "last_update_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
         }
     }
+
+    changeSet(author: 'younger', id: '2019-01-21-add-column') {
+        addColumn(tableName: 'devops_env_resource_detail') {
+            column(name: 'summary', type: 'TEXT', remarks: '资源摘要，资源更新时根据资源信息预先生成', afterColumn: 'message')
+            column(name: 'is_release_generated', type: 'TINYINT UNSIGNED', remarks: '是否是实例chart包中定义的资源', afterColumn: 'summary')
+        }
+    }
+
+    changeSet(author: 'younger', id: '2019-02-11-add-column') {
+        addColumn(tableName: 'devops_env_resource_detail') {
+            column(name: 'message_gz', type: 'MEDIUMBLOB', remarks: 'gzip压缩后的资源信息，有值时message为空', afterColumn: 'message')
+            column(name: 'message_digest', type: 'VARCHAR(64)', remarks: '去掉易变字段后的资源信息摘要，未变化时不重复写入', afterColumn: 'message_gz')
+        }
+    }
 }
\ No newline at end of file
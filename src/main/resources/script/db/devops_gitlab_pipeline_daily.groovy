@@ -0,0 +1,29 @@
+package script.db
+
+databaseChangeLog(logicalFilePath: 'dba/devops_gitlab_pipeline_daily.groovy') {
+    changeSet(author: 'younger', id: '2019-02-26-create-table') {
+        createTable(tableName: "devops_gitlab_pipeline_daily", remarks: 'pipeline每日汇总表') {
+            column(name: 'id', type: 'BIGINT UNSIGNED', remarks: '主键，ID', autoIncrement: true) {
+                constraints(primaryKey: true)
+            }
+            column(name: 'app_id', type: 'BIGINT UNSIGNED', remarks: '应用id')
+            column(name: 'stat_date', type: 'DATE', remarks: 'pipeline创建日期')
+            column(name: 'pipeline_count', type: 'BIGINT UNSIGNED', defaultValue: "0", remarks: '执行结束的pipeline数量')
+            column(name: 'success_count', type: 'BIGINT UNSIGNED', defaultValue: "0", remarks: '成功的pipeline数量')
+            column(name: 'failed_count', type: 'BIGINT UNSIGNED', defaultValue: "0", remarks: '失败的pipeline数量')
+            column(name: 'total_duration', type: 'BIGINT UNSIGNED', defaultValue: "0", remarks: 'pipeline总执行时长(毫秒)')
+            column(name: 'p50_duration', type: 'BIGINT UNSIGNED', defaultValue: "0", remarks: 'pipeline执行时长中位数(毫秒)')
+            column(name: 'p90_duration', type: 'BIGINT UNSIGNED', defaultValue: "0", remarks: 'pipeline执行时长90分位数(毫秒)')
+
+            column(name: "object_version_number", type: "BIGINT UNSIGNED", defaultValue: "1")
+            column(name: "created_by", type: "BIGINT UNSIGNED", defaultValue: "0")
+            column(name: "creation_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+            column(name: "last_updated_by", type: "BIGINT UNSIGNED", defaultValue: "0")
+            column(name: "last_update_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+        }
+        createIndex(indexName: "uk_app_date", tableName: "devops_gitlab_pipeline_daily", unique: true) {
+            column(name: "app_id")
+            column(name: "stat_date")
+        }
+    }
+}
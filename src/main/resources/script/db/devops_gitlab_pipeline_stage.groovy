@@ -0,0 +1,29 @@
+package script.db
+
+databaseChangeLog(logicalFilePath: 'dba/devops_gitlab_pipeline_stage.groovy') {
+    changeSet(author: 'younger', id: '2019-02-25-create-table') {
+        createTable(tableName: "devops_gitlab_pipeline_stage", remarks: 'pipeline阶段表') {
+            column(name: 'id', type: 'BIGINT UNSIGNED', remarks: '主键，ID', autoIncrement: true) {
+                constraints(primaryKey: true)
+            }
+            column(name: 'pipeline_id', type: 'BIGINT UNSIGNED', remarks: 'gitlab pipeline Id')
+            column(name: 'job_id', type: 'BIGINT UNSIGNED', remarks: 'gitlab job Id')
+            column(name: 'name', type: 'VARCHAR(255)', remarks: 'job名称')
+            column(name: 'stage', type: 'VARCHAR(255)', remarks: '所属阶段')
+            column(name: 'status', type: 'VARCHAR(32)', remarks: 'job状态')
+            column(name: 'description', type: 'VARCHAR(255)', remarks: '描述')
+            column(name: 'started_at', type: 'DATETIME', remarks: '开始时间')
+            column(name: 'finished_at', type: 'DATETIME', remarks: '结束时间')
+
+            column(name: "object_version_number", type: "BIGINT UNSIGNED", defaultValue: "1")
+            column(name: "created_by", type: "BIGINT UNSIGNED", defaultValue: "0")
+            column(name: "creation_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+            column(name: "last_updated_by", type: "BIGINT UNSIGNED", defaultValue: "0")
+            column(name: "last_update_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+        }
+        createIndex(indexName: "uk_pipeline_job", tableName: "devops_gitlab_pipeline_stage", unique: true) {
+            column(name: "pipeline_id")
+            column(name: "job_id")
+        }
+    }
+}
@@ -65,4 +65,10 @@ databaseChangeLog(logicalFilePath: 'dba/devops_merge_request.groovy') {
                 }
             }
 
-}
\ No newline at end of file
+    changeSet(author: 'younger', id: '2019-02-25-add-column-commits-synced') {
+        addColumn(tableName: 'devops_merge_request') {
+            column(name: "commits_synced", type: "TINYINT UNSIGNED", defaultValue: "0", remarks: '提交是否已同步', afterColumn: 'updated_at')
+        }
+    }
+
+}
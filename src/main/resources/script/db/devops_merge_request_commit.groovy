@@ -0,0 +1,31 @@
+package script.db
+
+databaseChangeLog(logicalFilePath: 'dba/devops_merge_request_commit.groovy') {
+    changeSet(author: 'younger', id: '2019-02-18-create-table') {
+        createTable(tableName: "devops_merge_request_commit", remarks: '合并请求的提交') {
+            column(name: 'id', type: 'BIGINT UNSIGNED', remarks: '主键，ID', autoIncrement: true) {
+                constraints(primaryKey: true)
+            }
+            column(name: 'project_id', type: 'BIGINT UNSIGNED', remarks: 'gitlab项目Id')
+            column(name: 'gitlab_merge_request_id', type: 'BIGINT UNSIGNED', remarks: 'merge_request_Id')
+            column(name: 'commit_sha', type: 'VARCHAR(128)', remarks: '提交sha')
+            column(name: 'short_id', type: 'VARCHAR(32)', remarks: '提交短sha')
+            column(name: 'title', type: 'VARCHAR(1000)', remarks: '提交标题')
+            column(name: 'message', type: 'TEXT', remarks: '提交信息')
+            column(name: 'author_name', type: 'VARCHAR(255)', remarks: '作者名')
+            column(name: 'author_email', type: 'VARCHAR(255)', remarks: '作者邮箱')
+            column(name: 'committed_date', type: 'DATETIME', remarks: '提交时间')
+            column(name: 'created_at', type: 'DATETIME', remarks: '创建时间')
+
+            column(name: "object_version_number", type: "BIGINT UNSIGNED", defaultValue: "1")
+            column(name: "created_by", type: "BIGINT UNSIGNED", defaultValue: "0")
+            column(name: "creation_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+            column(name: "last_updated_by", type: "BIGINT UNSIGNED", defaultValue: "0")
+            column(name: "last_update_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
+        }
+        createIndex(indexName: "merge_request_commit_idx_project_request", tableName: "devops_merge_request_commit") {
+            column(name: "project_id")
+            column(name: "gitlab_merge_request_id")
+        }
+    }
+}
@@ -594,6 +594,7 @@ class ApplicationInstanceControllerSpec extends Specification {
         envSession.setClusterId(1L)
         envs.put("testenv", envSession)
         envListener.connectedEnv() >> envs
+        envUtil.getConnectedAndUpdatedClusterIds(_ as EnvListener) >> ([1L] as Set)
 
         when: '分页查询应用部署'
         def page = restTemplate.postForObject("/v1/projects/1/app_instances/list_by_options?envId=1&appId=1&page=0&size=5", strEntity, Page.class)
@@ -845,7 +846,7 @@ class ApplicationInstanceControllerSpec extends Specification {
         envUtil.checkEnvConnection(_ as Long, _ as EnvListener) >> null
 
         and: 'mock gitUtil'
-        gitUtil.cloneBySsh(_ as String, _ as String) >> null
+        gitUtil.cloneBySsh(_ as String, _ as String, _ as String) >> null
 
         when: '部署应用'
         def dto = restTemplate.postForObject("/v1/projects/1/app_instances", applicationDeployDTO, ApplicationDeployDTO.class)
@@ -961,7 +962,7 @@ class ApplicationInstanceControllerSpec extends Specification {
         envUtil.checkEnvConnection(_ as Long, _ as EnvListener) >> null
 
         and: 'mock gitUtil'
-        gitUtil.cloneBySsh(_ as String, _ as String) >> null
+        gitUtil.cloneBySsh(_ as String, _ as String, _ as String) >> null
 
         and: '手动创建文件目录'
         File file = new File("gitops/org/pro/envCode")
@@ -991,6 +992,7 @@ class ApplicationInstanceControllerSpec extends Specification {
         envSession.setClusterId(1L)
         envs.put("testenv", envSession)
         envListener.connectedEnv() >> envs
+        envUtil.getConnectedAndUpdatedClusterIds(_ as EnvListener) >> ([1L] as Set)
 
         when: '环境总览实例查询'
         def dto = restTemplate.postForObject("/v1/projects/1/app_instances/1/listByEnv", "{\"searchParam\":{},\"param\":\"\"}", DevopsEnvPreviewDTO.class)
@@ -1,6 +1,10 @@
 package io.choerodon.devops.api.controller.v1
 
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
 import com.fasterxml.jackson.databind.JsonNode
+import groovy.json.JsonOutput
 import io.choerodon.core.domain.Page
 import io.choerodon.devops.DependencyInjectUtil
 import io.choerodon.devops.ExportOctetStream2HttpMessageConverter
@@ -21,6 +25,9 @@ import io.choerodon.devops.infra.dataobject.iam.ProjectDO
 import io.choerodon.devops.infra.feign.IamServiceClient
 import io.choerodon.devops.infra.mapper.*
 import io.choerodon.mybatis.pagehelper.domain.PageRequest
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream
 import org.mockito.Mockito
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.test.context.SpringBootTest
@@ -411,6 +418,78 @@ class ApplicationMarketControllerSpec extends Specification {
         }
     }
 
+    def "ImportApps with multiple versions"() {
+        given: '准备包含三个版本的应用市场zip，每个版本的values和README不同'
+        List<String> versions = ["0.1.0", "0.2.0", "0.3.0"]
+        File zip = marketZip("multi-version", versions)
+        HttpHeaders headers = new HttpHeaders()
+        headers.setContentType(MediaType.parseMediaType("multipart/form-data"))
+        MultiValueMap<String, Object> map = new LinkedMultiValueMap<String, Object>()
+        map.add("file", new FileSystemResource(zip))
+        def dto = restTemplate.postForObject("/v1/projects/1/apps_market/upload",
+                new HttpEntity<MultiValueMap<String, Object>>(map, headers), AppMarketTgzDTO.class)
+
+        when: '应用市场导入应用'
+        def bool = restTemplate.postForObject("/v1/projects/1/apps_market/import?file_name=" + dto.fileCode + "&public=true",
+                null, Boolean.class)
+
+        then: '每个版本关联到自己的values和README'
+        bool
+        ApplicationDO app = new ApplicationDO()
+        app.setProjectId(1L)
+        app.setCode("multi-version")
+        ApplicationVersionDO condition = new ApplicationVersionDO()
+        condition.setAppId(applicationMapper.selectOne(app).getId())
+        List<ApplicationVersionDO> imported = applicationVersionMapper.select(condition)
+        imported*.version.sort() == versions
+        imported.every {
+            applicationVersionValueMapper.selectByPrimaryKey(it.valueId).value.startsWith("tag: " + it.version + "\n") &&
+                    applicationVersionReadmeMapper.selectByPrimaryKey(it.readmeValueId).readme == "# " + it.version + "\n"
+        }
+
+        cleanup:
+        zip.delete()
+        applicationVersionMapper.selectAll().each {
+            applicationVersionValueMapper.deleteByPrimaryKey(it.valueId)
+            applicationVersionReadmeMapper.deleteByPrimaryKey(it.readmeValueId)
+            applicationVersionMapper.delete(it)
+        }
+        applicationMarketMapper.selectAll().each { applicationMarketMapper.delete(it) }
+        applicationMapper.selectAll().each { applicationMapper.delete(it) }
+    }
+
+    private static File marketZip(String appCode, List<String> versions) {
+        File zip = File.createTempFile("market", ".zip")
+        new ZipOutputStream(new FileOutputStream(zip)).withCloseable { out ->
+            out.putNextEntry(new ZipEntry("charts/" + appCode + "/" + appCode + ".json"))
+            out.write(JsonOutput.toJson([code       : appCode, name: appCode, contributor: "Choerodon",
+                                         category   : "test", description: appCode,
+                                         appVersions: versions.collect { [version: it] }]).getBytes("UTF-8"))
+            out.closeEntry()
+            versions.each { version ->
+                out.putNextEntry(new ZipEntry("charts/" + appCode + "/" + appCode + "-" + version + ".tgz"))
+                out.write(chart(appCode, version))
+                out.closeEntry()
+            }
+        }
+        return zip
+    }
+
+    private static byte[] chart(String appCode, String version) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+        new TarArchiveOutputStream(new GzipCompressorOutputStream(bytes)).withCloseable { tar ->
+            ["values.yaml": "tag: " + version + "\n", "README.md": "# " + version + "\n"].each { name, content ->
+                byte[] data = content.getBytes("UTF-8")
+                TarArchiveEntry entry = new TarArchiveEntry(appCode + "/" + name)
+                entry.setSize(data.length)
+                tar.putArchiveEntry(entry)
+                tar.write(data)
+                tar.closeArchiveEntry()
+            }
+        }
+        return bytes.toByteArray()
+    }
+
     // 清除测试数据
     def cleanupSpec() {
         FileUtil.deleteDirectory(new File("Charts"))
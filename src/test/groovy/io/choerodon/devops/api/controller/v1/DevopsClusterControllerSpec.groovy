@@ -27,6 +27,7 @@ import org.springframework.beans.factory.annotation.Qualifier
 import org.springframework.boot.test.context.SpringBootTest
 import org.springframework.boot.test.web.client.TestRestTemplate
 import org.springframework.context.annotation.Import
+import org.springframework.data.redis.core.HashOperations
 import org.springframework.data.redis.core.ListOperations
 import org.springframework.data.redis.core.StringRedisTemplate
 import org.springframework.http.HttpStatus
@@ -152,7 +153,12 @@ class DevopsClusterControllerSpec extends Specification {
         ClusterNodeInfoDTO clusterNodeInfoDTO = new ClusterNodeInfoDTO()
         clusterNodeInfoDTO.setNodeName("uat01")
 
-        Mockito.when(mockListOperations.range(anyString(), anyLong(), anyLong())).thenReturn(Arrays.asList(JSONObject.toJSONString(clusterNodeInfoDTO)))
+        Mockito.when(mockListOperations.range(anyString(), anyLong(), anyLong())).thenReturn(Arrays.asList(clusterNodeInfoDTO.getNodeName()))
+
+        HashOperations<String, String, String> mockHashOperations = Mockito.mock(HashOperations)
+        Mockito.when(mockStringRedisTemplate.opsForHash()).thenReturn(mockHashOperations)
+        Mockito.when(mockHashOperations.multiGet(anyString(), anyCollection())).thenReturn(Arrays.asList(JSONObject.toJSONString(clusterNodeInfoDTO)))
+        Mockito.when(mockHashOperations.get(anyString(), anyString())).thenReturn(JSONObject.toJSONString(clusterNodeInfoDTO))
     }
 
     def cleanup() {
@@ -5,15 +5,18 @@ import io.choerodon.devops.DependencyInjectUtil
 import io.choerodon.devops.IntegrationTestConfiguration
 import io.choerodon.devops.api.dto.PipelineFrequencyDTO
 import io.choerodon.devops.api.dto.PipelineTimeDTO
+import io.choerodon.devops.domain.application.repository.DevopsGitlabPipelineRepository
 import io.choerodon.devops.domain.application.repository.IamRepository
 import io.choerodon.devops.infra.dataobject.ApplicationDO
 import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDO
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDailyDO
 import io.choerodon.devops.infra.dataobject.iam.OrganizationDO
 import io.choerodon.devops.infra.dataobject.iam.ProjectDO
 import io.choerodon.devops.infra.dataobject.iam.UserDO
 import io.choerodon.devops.infra.feign.IamServiceClient
 import io.choerodon.devops.infra.mapper.ApplicationMapper
 import io.choerodon.devops.infra.mapper.DevopsGitlabCommitMapper
+import io.choerodon.devops.infra.mapper.DevopsGitlabPipelineDailyMapper
 import io.choerodon.devops.infra.mapper.DevopsGitlabPipelineMapper
 import org.mockito.Mockito
 import org.springframework.beans.factory.annotation.Autowired
@@ -42,6 +45,10 @@ class DevopsGitlabPipelineControlleSpec extends Specification {
     private DevopsGitlabPipelineMapper devopsGitlabPipelineMapper
     @Autowired
     private DevopsGitlabCommitMapper devopsGitlabCommitMapper
+    @Autowired
+    private DevopsGitlabPipelineDailyMapper devopsGitlabPipelineDailyMapper
+    @Autowired
+    private DevopsGitlabPipelineRepository devopsGitlabPipelineRepository
 
     @Autowired
     private ApplicationMapper applicationMapper
@@ -69,7 +76,8 @@ class DevopsGitlabPipelineControlleSpec extends Specification {
         devopsGitlabPipelineDO.setPipelineCreateUserId(1L)
         devopsGitlabPipelineDO.setCommitId(1L)
         devopsGitlabPipelineDO.setPipelineCreationDate(new Date())
-        devopsGitlabPipelineDO.setStatus("passed")
+        devopsGitlabPipelineDO.setStatus("success")
+        devopsGitlabPipelineDO.setDuration(60000L)
     }
 
     def setup() {
@@ -107,14 +115,19 @@ class DevopsGitlabPipelineControlleSpec extends Specification {
 
         then: '校验返回值'
         pipelineTimeDTO.getRefs().size() != 0
+        pipelineTimeDTO.getPipelineTime() == ["1.00"]
     }
 
     def "ListPipelineFrequency"() {
+        given: '计算每日汇总'
+        devopsGitlabPipelineRepository.refreshDaily(1L, devopsGitlabPipelineDO.getPipelineCreationDate())
+
         when: '获取pipeline次数报表'
         def pipelineFrequencyDTO = restTemplate.getForObject("/v1/projects/1/pipeline/frequency?appId=1&startTime=2015/10/12&endTime=3018/10/18", PipelineFrequencyDTO.class)
 
         then: '校验返回值'
         pipelineFrequencyDTO.getPipelineFrequencys().size() != 0
+        pipelineFrequencyDTO.getPipelineSuccessFrequency() == [1L]
     }
 
     def "PagePipeline"() {
@@ -139,5 +152,12 @@ class DevopsGitlabPipelineControlleSpec extends Specification {
                 devopsGitlabPipelineMapper.delete(e)
             }
         }
+        // 删除pipeline每日汇总
+        List<DevopsGitlabPipelineDailyDO> list2 = devopsGitlabPipelineDailyMapper.selectAll()
+        if (list2 != null && !list2.isEmpty()) {
+            for (DevopsGitlabPipelineDailyDO e : list2) {
+                devopsGitlabPipelineDailyMapper.delete(e)
+            }
+        }
     }
 }
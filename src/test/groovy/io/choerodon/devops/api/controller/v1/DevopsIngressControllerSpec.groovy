@@ -271,7 +271,7 @@ class DevopsIngressControllerSpec extends Specification {
         newDevopsIngressDTO.setDomain("test.test-test.test")
 
         envUtil.checkEnvConnection(_ as Long, _ as EnvListener) >> null
-        gitUtil.cloneBySsh(_ as String, _ as String) >> null
+        gitUtil.cloneBySsh(_ as String, _ as String, _ as String) >> null
 
         when: '项目下更新域名'
         restTemplate.put("/v1/projects/1/ingress/1", newDevopsIngressDTO, Object.class)
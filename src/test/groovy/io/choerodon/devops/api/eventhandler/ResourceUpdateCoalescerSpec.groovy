@@ -0,0 +1,119 @@
+package io.choerodon.devops.api.eventhandler
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import io.choerodon.devops.infra.config.AgentMessageProperties
+import spock.lang.Specification
+
+class ResourceUpdateCoalescerSpec extends Specification {
+
+    private AgentMessageProperties properties = new AgentMessageProperties()
+    private AgentMsgExecutor agentMsgExecutor
+    private ResourceUpdateCoalescer resourceUpdateCoalescer
+    private List<String> handled = Collections.synchronizedList(new ArrayList<>())
+
+    def setup() {
+        // 合并窗口足够长，由用例手动刷新
+        properties.setCoalesceWindowMs(60000L)
+        agentMsgExecutor = new AgentMsgExecutor(properties)
+        resourceUpdateCoalescer = new ResourceUpdateCoalescer(agentMsgExecutor, properties)
+    }
+
+    def cleanup() {
+        resourceUpdateCoalescer.destroy()
+        agentMsgExecutor.destroy()
+    }
+
+    def "Read resourceVersion from top level metadata"() {
+        expect:
+        resourceUpdateCoalescer.getResourceVersion(payload) == resourceVersion
+
+        where:
+        payload                                                                                  || resourceVersion
+        '{"metadata":{"name":"pod","resourceVersion":"12"},"status":{}}'                        || 12L
+        '{"spec":{"template":{"metadata":{"resourceVersion":"99"}}},"metadata":{"resourceVersion":"7"}}' || 7L
+        '{"spec":{"metadata":{"resourceVersion":"99"}}}'                                         || Long.MIN_VALUE
+        '{"metadata":{"resourceVersion":"abc"}}'                                                 || Long.MIN_VALUE
+        'not json'                                                                               || Long.MIN_VALUE
+    }
+
+    def "Keep the update with the highest metadata resourceVersion"() {
+        given: '第一条消息嵌套对象的resourceVersion更大，但metadata中的更小'
+        resourceUpdateCoalescer.offer("1:env", "pod", '{"spec":{"template":{"metadata":{"resourceVersion":"100"}}},"metadata":{"resourceVersion":"5"}}',
+                "first", { handled.add("first") } as Runnable)
+        resourceUpdateCoalescer.offer("1:env", "pod", '{"metadata":{"resourceVersion":"6"}}',
+                "second", { handled.add("second") } as Runnable)
+        resourceUpdateCoalescer.offer("1:env", "pod", '{"metadata":{"resourceVersion":"4"}}',
+                "stale", { handled.add("stale") } as Runnable)
+
+        when: '提交该分区的其它消息'
+        resourceUpdateCoalescer.flushAndExecute("1:env", "delete", { handled.add("delete") } as Runnable)
+        agentMsgExecutor.destroy()
+
+        then: '只处理resourceVersion最大的一条，并且在其它消息之前处理'
+        handled == ["second", "delete"]
+    }
+
+    def "Unparseable resourceVersion does not supersede a valid update"() {
+        given: '有效消息之后收到无法解析的消息，再收到两条无法解析的消息'
+        resourceUpdateCoalescer.offer("1:env", "pod", '{"metadata":{"resourceVersion":"6"}}',
+                "valid", { handled.add("valid") } as Runnable)
+        resourceUpdateCoalescer.offer("1:env", "pod", '{"metadata":{"resourceVersion":"abc"}}',
+                "malformed", { handled.add("malformed") } as Runnable)
+        resourceUpdateCoalescer.offer("1:env", "svc", 'not json',
+                "first", { handled.add("first") } as Runnable)
+        resourceUpdateCoalescer.offer("1:env", "svc", '{"metadata":{}}',
+                "last", { handled.add("last") } as Runnable)
+
+        when:
+        resourceUpdateCoalescer.flushAndExecute("1:env", "delete", { handled.add("delete") } as Runnable)
+        agentMsgExecutor.destroy()
+
+        then: '无法解析的消息不替换有效消息，都无法解析时保留最后一条'
+        handled == ["valid", "last", "delete"]
+    }
+
+    def "Flush of one partition does not wait for another partition"() {
+        given: '一个分区，队列容量为1，处理线程被阻塞且队列已满'
+        properties.setPartitions(1)
+        properties.setQueueCapacity(1)
+        properties.setOfferTimeoutMs(10L)
+        resourceUpdateCoalescer.destroy()
+        agentMsgExecutor.destroy()
+        agentMsgExecutor = new AgentMsgExecutor(properties)
+        resourceUpdateCoalescer = new ResourceUpdateCoalescer(agentMsgExecutor, properties)
+        CountDownLatch release = new CountDownLatch(1)
+        agentMsgExecutor.execute("1:env1", "blocking", { release.await() } as Runnable)
+        agentMsgExecutor.execute("1:env1", "queued", { handled.add("queued") } as Runnable)
+        resourceUpdateCoalescer.offer("1:env1", "pod", '{"metadata":{"resourceVersion":"1"}}',
+                "update", { handled.add("update") } as Runnable)
+
+        when: '一个读线程因队列已满阻塞在提交上'
+        Thread blocked = Thread.start {
+            resourceUpdateCoalescer.flushAndExecute("1:env1", "delete", { handled.add("delete") } as Runnable)
+        }
+        blocked.join(300)
+        CountDownLatch offered = new CountDownLatch(1)
+        Thread other = Thread.start {
+            resourceUpdateCoalescer.offer("1:env2", "pod", '{"metadata":{"resourceVersion":"1"}}',
+                    "other", { handled.add("other") } as Runnable)
+            offered.countDown()
+        }
+
+        then: '其它环境的消息仍然可以缓存，不被全局锁阻塞'
+        blocked.isAlive()
+        offered.await(1, TimeUnit.SECONDS)
+
+        when:
+        release.countDown()
+        blocked.join(5000)
+        other.join(5000)
+        resourceUpdateCoalescer.destroy()
+        agentMsgExecutor.destroy()
+
+        then: '全部消息都被处理，同一环境内保持顺序'
+        handled.findAll { it != "other" } == ["queued", "update", "delete"]
+        handled.contains("other")
+    }
+}
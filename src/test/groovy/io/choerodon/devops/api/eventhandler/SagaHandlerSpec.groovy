@@ -7,6 +7,7 @@ import io.choerodon.devops.api.dto.RegisterOrganizationDTO
 import io.choerodon.devops.app.service.*
 import io.choerodon.devops.domain.application.event.OrganizationEventPayload
 import io.choerodon.devops.domain.application.event.ProjectEvent
+import io.choerodon.devops.domain.application.repository.IamRepository
 import org.junit.runner.RunWith
 import org.powermock.api.mockito.PowerMockito
 import org.powermock.modules.junit4.PowerMockRunner
@@ -33,9 +34,10 @@ class SagaHandlerSpec extends Specification {
     private OrganizationService organizationService = PowerMockito.mock(OrganizationService)
     private GitlabGroupMemberService gitlabGroupMemberService = PowerMockito.mock(GitlabGroupMemberService)
     private GitlabUserService gitlabUserService = PowerMockito.mock(GitlabUserService)
+    private IamRepository iamRepository = PowerMockito.mock(IamRepository)
 
     private SagaHandler sagaHandler = new SagaHandler(projectService, gitlabGroupService, harborService,
-            organizationService, gitlabGroupMemberService, gitlabUserService)
+            organizationService, gitlabGroupMemberService, gitlabUserService, iamRepository)
 
     def "HandleGitlabGroupEvent"() {
         given: '初始化msg'
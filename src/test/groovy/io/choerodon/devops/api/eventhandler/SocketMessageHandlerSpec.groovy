@@ -1,9 +1,14 @@
 package io.choerodon.devops.api.eventhandler
 
+import java.util.concurrent.CountDownLatch
+
 import io.choerodon.devops.app.service.DeployMsgHandlerService
+import io.choerodon.devops.infra.config.AgentMessageProperties
 import io.choerodon.devops.infra.common.util.enums.HelmType
 import io.choerodon.websocket.Msg
 import org.junit.runner.RunWith
+import org.mockito.Mockito
+import org.mockito.stubbing.Answer
 import org.powermock.api.mockito.PowerMockito
 import org.powermock.modules.junit4.PowerMockRunner
 import org.powermock.modules.junit4.PowerMockRunnerDelegate
@@ -24,7 +29,11 @@ class SocketMessageHandlerSpec extends Specification {
 
     private DeployMsgHandlerService deployMsgHandlerService = PowerMockito.mock(DeployMsgHandlerService)
 
-    private SocketMessageHandler socketMessageHandler = new SocketMessageHandler(deployMsgHandlerService)
+    private AgentMsgExecutor agentMsgExecutor = new AgentMsgExecutor(new AgentMessageProperties())
+
+    private ResourceUpdateCoalescer resourceUpdateCoalescer = new ResourceUpdateCoalescer(agentMsgExecutor, new AgentMessageProperties())
+
+    private SocketMessageHandler socketMessageHandler = new SocketMessageHandler(deployMsgHandlerService, resourceUpdateCoalescer)
 
     @Unroll
     def "Process"() {
@@ -54,6 +63,66 @@ class SocketMessageHandlerSpec extends Specification {
         noExceptionThrown()
     }
 
+    def "Keep message order in each partition"() {
+        given: '两个环境交替发送消息，记录处理顺序'
+        List<String> handled = Collections.synchronizedList(new ArrayList<>())
+        PowerMockito.doAnswer({ invocation -> handled.add(invocation.getArguments()[0]); null } as Answer)
+                .when(deployMsgHandlerService).updateInstanceStatus(Mockito.anyString(), Mockito.anyString(),
+                Mockito.anyLong(), Mockito.anyString(), Mockito.anyString(), Mockito.anyString())
+        List<String> keys = []
+        for (int i = 0; i < 200; i++) {
+            keys.add("env:env" + (i % 2) + ".release:release" + i)
+        }
+
+        when: '提交消息并等待处理完成'
+        keys.each { key ->
+            Msg msg = new Msg()
+            msg.setKey(key)
+            msg.setClusterId("1")
+            msg.setPayload("payload")
+            msg.setType(HelmType.HELM_RELEASE_START.toValue())
+            socketMessageHandler.process(msg)
+        }
+        agentMsgExecutor.destroy()
+
+        then: '全部处理，每个环境内按提交顺序处理'
+        handled.size() == keys.size()
+        handled.findAll { it.startsWith("env:env0.") } == keys.findAll { it.startsWith("env:env0.") }
+        handled.findAll { it.startsWith("env:env1.") } == keys.findAll { it.startsWith("env:env1.") }
+    }
+
+    def "Block reader when partition is saturated"() {
+        given: '一个分区，队列容量为1，第一条消息阻塞处理线程，第二条消息占满队列'
+        AgentMessageProperties properties = new AgentMessageProperties()
+        properties.setPartitions(1)
+        properties.setQueueCapacity(1)
+        properties.setOfferTimeoutMs(10L)
+        AgentMsgExecutor executor = new AgentMsgExecutor(properties)
+        CountDownLatch release = new CountDownLatch(1)
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>())
+        executor.execute("1:env", "blocking", { release.await(); handled.add(0) } as Runnable)
+        executor.execute("1:env", "queued", { handled.add(1) } as Runnable)
+
+        when: '队列已满时读线程继续提交'
+        boolean[] accepted = [false]
+        Thread reader = Thread.start { accepted[0] = executor.execute("1:env", "overflow", { handled.add(2) } as Runnable) }
+        reader.join(300)
+
+        then: '读线程阻塞等待，没有丢弃消息'
+        reader.isAlive()
+
+        when: '处理线程继续处理'
+        release.countDown()
+        reader.join(5000)
+        executor.destroy()
+
+        then: '三条消息都按顺序处理'
+        accepted[0]
+        handled == [0, 1, 2]
+        executor.metrics().find { it.getName() == "agent.message.rejected" }.getValue() == 0L
+        executor.metrics().find { it.getName() == "agent.message.backpressure" }.getValue() == 1L
+    }
+
     def "GetOrder"() {
         when: '方法调用'
         def order = socketMessageHandler.getOrder()
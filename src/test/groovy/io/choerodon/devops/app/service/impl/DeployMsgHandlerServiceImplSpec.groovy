@@ -0,0 +1,115 @@
+package io.choerodon.devops.app.service.impl
+
+import io.choerodon.devops.domain.application.entity.DevopsEnvResourceE
+import io.choerodon.devops.domain.application.entity.DevopsIngressE
+import io.choerodon.devops.domain.application.entity.DevopsServiceE
+import io.choerodon.devops.domain.application.repository.DevopsEnvCommandRepository
+import io.choerodon.devops.domain.application.repository.DevopsEnvFileResourceRepository
+import io.choerodon.devops.domain.application.repository.DevopsEnvResourceRepository
+import io.choerodon.devops.domain.application.repository.DevopsEnvironmentRepository
+import io.choerodon.devops.domain.application.repository.DevopsIngressRepository
+import io.choerodon.devops.domain.application.repository.DevopsServiceRepository
+import spock.lang.Specification
+import spock.lang.Subject
+
+@Subject(DeployMsgHandlerServiceImpl)
+class DeployMsgHandlerServiceImplSpec extends Specification {
+
+    private static final String KEY = "env:env1.envId:1"
+
+    private DevopsEnvironmentRepository devopsEnvironmentRepository = Stub(DevopsEnvironmentRepository)
+    private DevopsEnvResourceRepository devopsEnvResourceRepository = Mock(DevopsEnvResourceRepository)
+    private DevopsServiceRepository devopsServiceRepository = Mock(DevopsServiceRepository)
+    private DevopsIngressRepository devopsIngressRepository = Mock(DevopsIngressRepository)
+    private DevopsEnvCommandRepository devopsEnvCommandRepository = Mock(DevopsEnvCommandRepository)
+    private DevopsEnvFileResourceRepository devopsEnvFileResourceRepository = Mock(DevopsEnvFileResourceRepository)
+    private DeployMsgHandlerServiceImpl deployMsgHandlerService = new DeployMsgHandlerServiceImpl()
+
+    def setup() {
+        devopsEnvironmentRepository.queryIdByClusterIdAndCode(1L, "env1") >> 1L
+        deployMsgHandlerService.devopsEnvironmentRepository = devopsEnvironmentRepository
+        deployMsgHandlerService.devopsEnvResourceRepository = devopsEnvResourceRepository
+        deployMsgHandlerService.devopsServiceRepository = devopsServiceRepository
+        deployMsgHandlerService.devopsIngressRepository = devopsIngressRepository
+        deployMsgHandlerService.devopsEnvCommandRepository = devopsEnvCommandRepository
+        deployMsgHandlerService.devopsEnvFileResourceRepository = devopsEnvFileResourceRepository
+    }
+
+    def "Delete stale services in one batch"() {
+        given: 'agent中只剩下svc1'
+        String msg = '{"resourceType":"Service","resources":["svc1"]}'
+
+        when:
+        deployMsgHandlerService.resourceSync(KEY, msg, 1L)
+
+        then: '处理中的网络保留，其余网络按环境批量清理'
+        1 * devopsServiceRepository.selectByEnvId(1L) >>
+                [service(1L, "svc1", "running"), service(2L, "svc2", "running"), service(3L, "svc3", "operating")]
+        1 * devopsEnvCommandRepository.create({ it.objectId == 2L && it.object == "service" && it.commandType == "delete" })
+        1 * devopsEnvFileResourceRepository.deleteByEnvIdAndResources(1L, [2L], "Service")
+        1 * devopsEnvResourceRepository.listByEnvIdAndKindAndNames(1L, "Service", ["svc2"] as Set) >>
+                [resource(12L, "svc2")]
+        1 * devopsEnvResourceRepository.deleteByIds([12L])
+        1 * devopsServiceRepository.deleteByIds([2L])
+        0 * devopsEnvResourceRepository.listByEnvAndType(_, _)
+        0 * devopsServiceRepository.delete(_)
+    }
+
+    def "Delete stale ingresses in one batch"() {
+        given: 'agent中只剩下ing1'
+        String msg = '{"resourceType":"Ingress","resources":["ing1"]}'
+
+        when:
+        deployMsgHandlerService.resourceSync(KEY, msg, 1L)
+
+        then: '域名和资源各只删除一次，处理中的域名保留'
+        1 * devopsIngressRepository.listByEnvId(1L) >>
+                [ingress(1L, "ing1", "running"), ingress(2L, "ing2", "running"),
+                 ingress(3L, "ing3", "failed"), ingress(4L, "ing4", "operating")]
+        2 * devopsEnvCommandRepository.create({ it.object == "ingress" && it.commandType == "delete" })
+        1 * devopsEnvFileResourceRepository.deleteByEnvIdAndResources(1L, [2L, 3L], "Ingress")
+        1 * devopsIngressRepository.deleteIngressByIds([2L, 3L])
+        1 * devopsEnvResourceRepository.listByEnvIdAndKindAndNames(1L, "Ingress", ["ing2", "ing3"] as Set) >>
+                [resource(22L, "ing2"), resource(23L, "ing3")]
+        1 * devopsEnvResourceRepository.deleteByIds([22L, 23L])
+        0 * devopsIngressRepository.deleteIngress(_)
+        0 * devopsEnvResourceRepository.deleteByEnvIdAndKindAndName(_, _, _)
+    }
+
+    def "Skip ingress deletes when nothing is stale"() {
+        given:
+        String msg = '{"resourceType":"Ingress","resources":["ing1"]}'
+
+        when:
+        deployMsgHandlerService.resourceSync(KEY, msg, 1L)
+
+        then:
+        1 * devopsIngressRepository.listByEnvId(1L) >> [ingress(1L, "ing1", "running")]
+        0 * devopsIngressRepository.deleteIngressByIds(_)
+        0 * devopsEnvResourceRepository._
+        0 * devopsEnvCommandRepository._
+        0 * devopsEnvFileResourceRepository._
+    }
+
+    private static DevopsEnvResourceE resource(Long id, String name) {
+        DevopsEnvResourceE devopsEnvResourceE = new DevopsEnvResourceE()
+        devopsEnvResourceE.setId(id)
+        devopsEnvResourceE.setName(name)
+        return devopsEnvResourceE
+    }
+
+    private static DevopsServiceE service(Long id, String name, String status) {
+        DevopsServiceE devopsServiceE = new DevopsServiceE()
+        devopsServiceE.setId(id)
+        devopsServiceE.setName(name)
+        devopsServiceE.setStatus(status)
+        return devopsServiceE
+    }
+
+    private static DevopsIngressE ingress(Long id, String name, String status) {
+        DevopsIngressE devopsIngressE = new DevopsIngressE(id)
+        devopsIngressE.setName(name)
+        devopsIngressE.setStatus(status)
+        return devopsIngressE
+    }
+}
@@ -0,0 +1,166 @@
+package io.choerodon.devops.app.service.impl
+
+import com.alibaba.fastjson.JSONObject
+
+import io.choerodon.devops.api.dto.DevopsEnvResourceDTO
+import io.choerodon.devops.api.dto.IngressDTO
+import io.choerodon.devops.api.dto.ServiceDTO
+import io.choerodon.devops.domain.application.entity.ApplicationInstanceE
+import io.choerodon.devops.domain.application.entity.DevopsEnvResourceDetailE
+import io.choerodon.devops.domain.application.entity.DevopsEnvResourceE
+import io.choerodon.devops.domain.application.entity.DevopsServiceE
+import io.choerodon.devops.domain.application.repository.ApplicationInstanceRepository
+import io.choerodon.devops.domain.application.repository.DevopsEnvResourceDetailRepository
+import io.choerodon.devops.domain.application.repository.DevopsEnvResourceRepository
+import io.choerodon.devops.domain.application.repository.DevopsIngressRepository
+import io.choerodon.devops.domain.application.repository.DevopsServiceRepository
+import spock.lang.Specification
+import spock.lang.Subject
+
+@Subject(DevopsEnvResourceServiceImpl)
+class DevopsEnvResourceServiceImplSpec extends Specification {
+
+    private static final String SERVICE_MESSAGE = '{"metadata":{"name":"svc1","creationTimestamp":"2019-01-01T00:00:00Z",' +
+            '"labels":{"choerodon.io/release":"release1"}},' +
+            '"spec":{"type":"ClusterIP","clusterIP":"10.0.0.1","ports":[{"port":80,"targetPort":8080}]}}'
+
+    private ApplicationInstanceRepository applicationInstanceRepository = Stub(ApplicationInstanceRepository)
+    private DevopsEnvResourceRepository devopsEnvResourceRepository = Mock(DevopsEnvResourceRepository)
+    private DevopsEnvResourceDetailRepository devopsEnvResourceDetailRepository = Mock(DevopsEnvResourceDetailRepository)
+    private DevopsServiceRepository devopsServiceRepository = Stub(DevopsServiceRepository)
+    private DevopsIngressRepository devopsIngressRepository = Stub(DevopsIngressRepository)
+    private DevopsEnvResourceServiceImpl devopsEnvResourceService = new DevopsEnvResourceServiceImpl()
+
+    def setup() {
+        ApplicationInstanceE applicationInstanceE = new ApplicationInstanceE()
+        applicationInstanceE.initDevopsEnvironmentEById(1L)
+        applicationInstanceRepository.selectById(1L) >> applicationInstanceE
+        devopsServiceRepository.selectByNameAndEnvId("svc1", 1L) >> service(11L)
+        devopsServiceRepository.selectByNameAndEnvId("svc2", 1L) >> service(12L)
+        devopsIngressRepository.queryIngressNameByServiceId(11L) >> ["ing1", "ing2"]
+        devopsIngressRepository.queryIngressNameByServiceId(12L) >> ["ing3"]
+        devopsEnvResourceService.applicationInstanceRepository = applicationInstanceRepository
+        devopsEnvResourceService.devopsEnvResourceRepository = devopsEnvResourceRepository
+        devopsEnvResourceService.devopsEnvResourceDetailRepository = devopsEnvResourceDetailRepository
+        devopsEnvResourceService.devopsServiceRepository = devopsServiceRepository
+        devopsEnvResourceService.devopsIngressRepository = devopsIngressRepository
+    }
+
+    def "Load ingresses of all services with one summary query"() {
+        when:
+        DevopsEnvResourceDTO devopsEnvResourceDTO = devopsEnvResourceService.listResources(1L)
+
+        then: '实例资源和域名资源各只查询一次摘要，不解析资源信息'
+        1 * devopsEnvResourceRepository.listByInstanceId(1L) >> [resource(1L, "Service", "svc1", 101L),
+                                                                  resource(2L, "Service", "svc2", 102L)]
+        1 * devopsEnvResourceDetailRepository.listSummaryByIds([101L, 102L]) >>
+                [summary(101L, serviceSummary("svc1")), summary(102L, serviceSummary("svc2"))]
+        1 * devopsEnvResourceRepository.listByEnvIdAndKindAndNames(1L, "Ingress", ["ing1", "ing2", "ing3"] as Set) >>
+                [resource(21L, "Ingress", "ing1", 201L), resource(22L, "Ingress", "ing2", 202L)]
+        1 * devopsEnvResourceRepository.listByEnvIdAndKindAndNames(null, "Ingress", ["ing3"] as Set) >>
+                [resource(23L, "Ingress", "ing3", 203L)]
+        1 * devopsEnvResourceDetailRepository.listSummaryByIds({ it as Set == [201L, 202L, 203L] as Set }) >>
+                [summary(201L, ingressSummary("ing1")), summary(202L, ingressSummary("ing2")),
+                 summary(203L, ingressSummary("ing3"))]
+        0 * devopsEnvResourceDetailRepository.query(_)
+
+        and:
+        devopsEnvResourceDTO.getServiceDTOS()*.name == ["svc1", "svc2"]
+        devopsEnvResourceDTO.getIngressDTOS()*.name == ["ing1", "ing2", "ing3"]
+    }
+
+    def "Build summary from resource message"() {
+        given:
+        DevopsEnvResourceDetailE devopsEnvResourceDetailE = new DevopsEnvResourceDetailE()
+        devopsEnvResourceDetailE.setMessage(SERVICE_MESSAGE)
+
+        when:
+        devopsEnvResourceService.fillResourceSummary("Service", devopsEnvResourceDetailE)
+
+        then:
+        serviceNames(devopsEnvResourceDetailE.getSummary()) == ["svc1"]
+        JSONObject.parseObject(devopsEnvResourceDetailE.getSummary(), DevopsEnvResourceDTO)
+                .getServiceDTOS().get(0).getClusterIp() == "10.0.0.1"
+        devopsEnvResourceDetailE.getReleaseGenerated()
+    }
+
+    def "Use empty summary when resource message can not be parsed"() {
+        given:
+        DevopsEnvResourceDetailE devopsEnvResourceDetailE = new DevopsEnvResourceDetailE()
+        devopsEnvResourceDetailE.setMessage("not json")
+
+        when:
+        devopsEnvResourceService.fillResourceSummary("Service", devopsEnvResourceDetailE)
+
+        then: '空串不会被再次当作待生成摘要的数据'
+        devopsEnvResourceDetailE.getSummary() == ""
+        !devopsEnvResourceDetailE.getReleaseGenerated()
+    }
+
+    def "Backfill summaries of legacy resource details"() {
+        given:
+        DevopsEnvResourceDetailE devopsEnvResourceDetailE = new DevopsEnvResourceDetailE(101L)
+        devopsEnvResourceDetailE.setMessage(SERVICE_MESSAGE)
+
+        when:
+        Long lastDetailId = devopsEnvResourceService.fillResourceSummaries(0L, 500)
+
+        then:
+        1 * devopsEnvResourceRepository.listWithoutSummary(0L, 500) >> [resource(1L, "Service", "svc1", 101L)]
+        1 * devopsEnvResourceDetailRepository.query(101L) >> devopsEnvResourceDetailE
+        1 * devopsEnvResourceDetailRepository.updateSummary({
+            it.getId() == 101L && serviceNames(it.getSummary()) == ["svc1"] && it.getReleaseGenerated()
+        })
+        lastDetailId == 101L
+
+        when: '没有需要生成摘要的数据'
+        lastDetailId = devopsEnvResourceService.fillResourceSummaries(101L, 500)
+
+        then:
+        1 * devopsEnvResourceRepository.listWithoutSummary(101L, 500) >> []
+        0 * devopsEnvResourceDetailRepository.updateSummary(_)
+        lastDetailId == null
+    }
+
+    private static DevopsEnvResourceE resource(Long id, String kind, String name, Long detailId) {
+        DevopsEnvResourceE devopsEnvResourceE = new DevopsEnvResourceE()
+        devopsEnvResourceE.setId(id)
+        devopsEnvResourceE.setKind(kind)
+        devopsEnvResourceE.setName(name)
+        devopsEnvResourceE.initDevopsInstanceResourceMessageE(detailId)
+        return devopsEnvResourceE
+    }
+
+    private static DevopsEnvResourceDetailE summary(Long id, String summary) {
+        DevopsEnvResourceDetailE devopsEnvResourceDetailE = new DevopsEnvResourceDetailE(id)
+        devopsEnvResourceDetailE.setSummary(summary)
+        devopsEnvResourceDetailE.setReleaseGenerated(true)
+        return devopsEnvResourceDetailE
+    }
+
+    private static DevopsServiceE service(Long id) {
+        DevopsServiceE devopsServiceE = new DevopsServiceE()
+        devopsServiceE.setId(id)
+        return devopsServiceE
+    }
+
+    private static List<String> serviceNames(String summary) {
+        return JSONObject.parseObject(summary, DevopsEnvResourceDTO).getServiceDTOS()*.name
+    }
+
+    private static String serviceSummary(String name) {
+        ServiceDTO serviceDTO = new ServiceDTO()
+        serviceDTO.setName(name)
+        DevopsEnvResourceDTO devopsEnvResourceDTO = new DevopsEnvResourceDTO()
+        devopsEnvResourceDTO.getServiceDTOS().add(serviceDTO)
+        return JSONObject.toJSONString(devopsEnvResourceDTO)
+    }
+
+    private static String ingressSummary(String name) {
+        IngressDTO ingressDTO = new IngressDTO()
+        ingressDTO.setName(name)
+        DevopsEnvResourceDTO devopsEnvResourceDTO = new DevopsEnvResourceDTO()
+        devopsEnvResourceDTO.getIngressDTOS().add(ingressDTO)
+        return JSONObject.toJSONString(devopsEnvResourceDTO)
+    }
+}
@@ -0,0 +1,76 @@
+package io.choerodon.devops.app.service.impl
+
+import io.choerodon.devops.api.dto.CommitDTO
+import io.choerodon.devops.api.dto.PushWebHookDTO
+import io.choerodon.devops.domain.application.entity.ApplicationE
+import io.choerodon.devops.domain.application.repository.ApplicationRepository
+import io.choerodon.devops.domain.application.repository.DevopsGitRepository
+import io.choerodon.devops.domain.application.repository.DevopsGitlabCommitRepository
+import io.choerodon.devops.domain.application.repository.IamRepository
+import io.choerodon.devops.infra.dataobject.gitlab.AuthorDO
+import spock.lang.Specification
+import spock.lang.Subject
+
+@Subject(DevopsGitlabCommitServiceImpl)
+class DevopsGitlabCommitServiceImplSpec extends Specification {
+
+    private ApplicationRepository applicationRepository = Stub(ApplicationRepository)
+    private IamRepository iamRepository = Mock(IamRepository)
+    private DevopsGitlabCommitRepository devopsGitlabCommitRepository = Mock(DevopsGitlabCommitRepository)
+    private DevopsGitRepository devopsGitRepository = Mock(DevopsGitRepository)
+    private DevopsGitlabCommitServiceImpl devopsGitlabCommitService = new DevopsGitlabCommitServiceImpl()
+
+    def setup() {
+        ApplicationE applicationE = new ApplicationE()
+        applicationE.setId(1L)
+        applicationE.initProjectE(2L)
+        applicationRepository.queryByToken("token") >> applicationE
+        devopsGitlabCommitService.applicationRepository = applicationRepository
+        devopsGitlabCommitService.iamRepository = iamRepository
+        devopsGitlabCommitService.devopsGitlabCommitRepository = devopsGitlabCommitRepository
+        devopsGitlabCommitService.devopsGitRepository = devopsGitRepository
+    }
+
+    def "Record a push with one query, one insert and one user lookup per email"() {
+        given: '推送中有重复的commit、已记录的commit和相同的提交人'
+        PushWebHookDTO pushWebHookDTO = new PushWebHookDTO()
+        pushWebHookDTO.setRef("refs/heads/master")
+        pushWebHookDTO.setCommits([
+                commit("a", "alice", "alice@example.com"),
+                commit("b", "bob", "bob@example.com"),
+                commit("a", "alice", "alice@example.com"),
+                commit("c", "alice", "alice@example.com"),
+                commit("d", "alice", "alice@example.com")])
+
+        when:
+        devopsGitlabCommitService.create(pushWebHookDTO, "token")
+
+        then: '一次查询已记录的commit'
+        1 * devopsGitlabCommitRepository.listExistingShas("master", ["a", "b", "c", "d"] as Set) >> (["c"] as Set)
+
+        and: '每个邮箱只查询一次用户'
+        1 * iamRepository.queryUserIdByEmail(2L, "alice@example.com") >> 11L
+        1 * iamRepository.queryUserIdByEmail(2L, "bob@example.com") >> 12L
+
+        and: '未记录的commit一次批量写入'
+        1 * devopsGitlabCommitRepository.batchCreate({
+            it*.commitSha == ["a", "b", "d"] && it*.userId == [11L, 12L, 11L] && it.every { it.ref == "master" && it.appId == 1L }
+        })
+        0 * devopsGitlabCommitRepository.create(_)
+        0 * devopsGitlabCommitRepository.queryByShaAndRef(*_)
+        0 * devopsGitRepository._
+    }
+
+    private static CommitDTO commit(String sha, String name, String email) {
+        AuthorDO authorDO = new AuthorDO()
+        authorDO.setName(name)
+        authorDO.setEmail(email)
+        CommitDTO commitDTO = new CommitDTO()
+        commitDTO.setId(sha)
+        commitDTO.setMessage("commit " + sha)
+        commitDTO.setUrl("http://gitlab/commit/" + sha)
+        commitDTO.setTimestamp(new Date())
+        commitDTO.setAuthor(authorDO)
+        return commitDTO
+    }
+}
@@ -0,0 +1,286 @@
+package io.choerodon.devops.app.service.impl
+
+import io.choerodon.devops.api.dto.JobWebHookDTO
+import io.choerodon.devops.api.dto.PipelineWebHookAttributesDTO
+import io.choerodon.devops.api.dto.PipelineWebHookBuildDTO
+import io.choerodon.devops.api.dto.PipelineWebHookDTO
+import io.choerodon.devops.api.dto.PipelineWebHookUserDTO
+import io.choerodon.devops.domain.application.entity.ApplicationE
+import io.choerodon.devops.domain.application.entity.DevopsGitlabCommitE
+import io.choerodon.devops.domain.application.entity.DevopsGitlabPipelineE
+import io.choerodon.devops.domain.application.entity.gitlab.GitlabJobE
+import io.choerodon.devops.domain.application.entity.gitlab.GitlabPipelineE
+import io.choerodon.devops.domain.application.repository.ApplicationRepository
+import io.choerodon.devops.domain.application.repository.DevopsGitlabCommitRepository
+import io.choerodon.devops.domain.application.repository.DevopsGitlabPipelineRepository
+import io.choerodon.devops.domain.application.repository.GitlabProjectRepository
+import io.choerodon.devops.domain.application.repository.UserAttrRepository
+import io.choerodon.devops.infra.common.util.enums.JobStatus
+import io.choerodon.devops.infra.common.util.enums.PipelineStatus
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineStageDO
+import io.choerodon.devops.infra.dataobject.gitlab.CommitStatuseDO
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Unroll
+
+@Subject(DevopsGitlabPipelineServiceImpl)
+class DevopsGitlabPipelineServiceImplSpec extends Specification {
+
+    private static final Date CREATED_AT = new Date(1551052800000L)
+
+    private ApplicationRepository applicationRepository = Stub(ApplicationRepository)
+    private UserAttrRepository userAttrRepository = Stub(UserAttrRepository)
+    private DevopsGitlabCommitRepository devopsGitlabCommitRepository = Stub(DevopsGitlabCommitRepository)
+    private DevopsGitlabPipelineRepository devopsGitlabPipelineRepository = Mock(DevopsGitlabPipelineRepository)
+    private GitlabProjectRepository gitlabProjectRepository = Mock(GitlabProjectRepository)
+    private DevopsGitlabPipelineServiceImpl devopsGitlabPipelineService = new DevopsGitlabPipelineServiceImpl()
+
+    def setup() {
+        ApplicationE applicationE = new ApplicationE()
+        applicationE.setId(1L)
+        applicationE.initGitlabProjectE(100)
+        applicationRepository.queryByToken("token") >> applicationE
+        applicationRepository.query(1L) >> applicationE
+        devopsGitlabPipelineService.applicationRepository = applicationRepository
+        devopsGitlabPipelineService.userAttrRepository = userAttrRepository
+        devopsGitlabPipelineService.devopsGitlabCommitRepository = devopsGitlabCommitRepository
+        devopsGitlabPipelineService.devopsGitlabPipelineRepository = devopsGitlabPipelineRepository
+        devopsGitlabPipelineService.gitlabProjectRepository = gitlabProjectRepository
+        devopsGitlabPipelineService.reconcileBatchSize = 50
+        devopsGitlabPipelineService.reconcileMaxAttempts = 5
+        devopsGitlabPipelineService.reconcileRetryDelayMs = 60000L
+    }
+
+    def "Build stages from pipeline payload"() {
+        given: '执行结束的pipeline，payload中有一个没有id的job'
+        PipelineWebHookDTO pipelineWebHookDTO = pipelineWebHook("success", [
+                build(1L, "build", "success", 0L, 1000L),
+                build(2L, "test", "success", 1000L, 3000L),
+                build(null, "deploy", "success", 3000L, 4000L)])
+
+        when:
+        devopsGitlabPipelineService.handleCreate(pipelineWebHookDTO)
+
+        then: '只用payload中的job保存阶段，不请求gitlab'
+        1 * devopsGitlabPipelineRepository.queryByGitlabPipelineId(10L) >> null
+        1 * devopsGitlabPipelineRepository.saveStages(10L, { it*.jobId == [1L, 2L] && it*.stage == ["build", "test"] }) >>
+                { Long pipelineId, List<DevopsGitlabPipelineStageDO> stages -> stages }
+        0 * gitlabProjectRepository._
+
+        and: '阶段完整时直接计算执行时长，同时标记由定时任务获取sonarqube'
+        1 * devopsGitlabPipelineRepository.create({
+            it.needReconcile && it.reconcileAttempts == 0 && it.duration == 3000L && it.status == "success"
+        })
+        1 * devopsGitlabPipelineRepository.refreshDaily(1L, CREATED_AT)
+    }
+
+    @Unroll
+    def "Flag #status pipeline with incomplete stages"() {
+        given:
+        PipelineWebHookDTO pipelineWebHookDTO = pipelineWebHook(status, builds)
+
+        when:
+        devopsGitlabPipelineService.handleCreate(pipelineWebHookDTO)
+
+        then: '阶段信息缺失或与pipeline状态不一致时标记补全，不计算执行时长'
+        1 * devopsGitlabPipelineRepository.queryByGitlabPipelineId(10L) >> null
+        1 * devopsGitlabPipelineRepository.saveStages(10L, _) >>
+                { Long pipelineId, List<DevopsGitlabPipelineStageDO> stages -> stages }
+        1 * devopsGitlabPipelineRepository.create({ it.needReconcile && it.duration == null })
+        0 * devopsGitlabPipelineRepository.refreshDaily(*_)
+
+        where:
+        status    | builds
+        "running" | null
+        "success" | [build(1L, "build", "running", 0L, null)]
+    }
+
+    def "Keep pending flag on repeated finished event"() {
+        given: '已结束且等待补全的pipeline'
+        DevopsGitlabPipelineE devopsGitlabPipelineE = pipeline("success", true, 2)
+
+        when: '再次收到结束事件'
+        devopsGitlabPipelineService.handleCreate(pipelineWebHook("success", [build(1L, "build", "success", 0L, 1000L)]))
+
+        then: '保留补全标记，不覆盖尝试次数'
+        1 * devopsGitlabPipelineRepository.queryByGitlabPipelineId(10L) >> devopsGitlabPipelineE
+        1 * devopsGitlabPipelineRepository.saveStages(10L, _) >>
+                { Long pipelineId, List<DevopsGitlabPipelineStageDO> stages -> stages }
+        1 * devopsGitlabPipelineRepository.update({
+            it.needReconcile && it.reconcileAttempts == null && it.nextReconcileAt == null && it.duration == 1000L
+        })
+    }
+
+    def "Upsert the stage of a job event"() {
+        given:
+        JobWebHookDTO jobWebHookDTO = jobWebHook(10L, 2L, "success")
+
+        when:
+        devopsGitlabPipelineService.updateStages(jobWebHookDTO)
+
+        then: '只写入该job对应的一行'
+        1 * devopsGitlabPipelineRepository.saveStage({
+            it.pipelineId == 10L && it.jobId == 2L && it.name == "unit" && it.stage == "test" && it.status == "success"
+        })
+        0 * devopsGitlabPipelineRepository._
+    }
+
+    def "Ignore created job events"() {
+        when:
+        devopsGitlabPipelineService.updateStages(jobWebHook(10L, 2L, "created"))
+
+        then:
+        0 * devopsGitlabPipelineRepository._
+    }
+
+    def "Flag pipeline when job event has no pipeline id"() {
+        given:
+        DevopsGitlabCommitE devopsGitlabCommitE = new DevopsGitlabCommitE()
+        devopsGitlabCommitE.setId(5L)
+        devopsGitlabCommitRepository.queryByShaAndRef("abc", "master") >> devopsGitlabCommitE
+
+        when:
+        devopsGitlabPipelineService.updateStages(jobWebHook(null, 2L, "success"))
+
+        then: '标记pipeline并重新计算尝试次数'
+        1 * devopsGitlabPipelineRepository.queryByCommitId(5L) >> pipeline("running", false, 3)
+        1 * devopsGitlabPipelineRepository.update({ it.needReconcile && it.reconcileAttempts == 0 && it.nextReconcileAt != null })
+        0 * devopsGitlabPipelineRepository.saveStage(_)
+    }
+
+    def "Reconcile claimed pipeline from gitlab"() {
+        given:
+        DevopsGitlabPipelineE devopsGitlabPipelineE = pipeline("running", true, 0)
+        GitlabPipelineE gitlabPipelineE = new GitlabPipelineE()
+        gitlabPipelineE.setStatus(PipelineStatus.SUCCESS)
+        gitlabPipelineE.setSha("abc")
+
+        when:
+        devopsGitlabPipelineService.reconcilePipelines()
+
+        then: '领取成功后从gitlab查询job和sonarqube状态'
+        1 * devopsGitlabPipelineRepository.listNeedReconcile(5, 50) >> [devopsGitlabPipelineE]
+        1 * devopsGitlabPipelineRepository.claimReconcile(devopsGitlabPipelineE, _) >> true
+        1 * gitlabProjectRepository.getPipeline(100, 10, 1) >> gitlabPipelineE
+        1 * gitlabProjectRepository.listJobs(100, 10, 1) >> [job(1, 0L, 1000L)]
+        1 * gitlabProjectRepository.getCommitStatuse(100, "abc", 1) >> [commitStatus(1, "build"), commitStatus(9, "sonarqube")]
+
+        and: '替换阶段信息，清除标记'
+        1 * devopsGitlabPipelineRepository.replaceStages(10L, { it*.jobId == [1L, 9L] })
+        1 * devopsGitlabPipelineRepository.update({
+            !it.needReconcile && it.reconcileAttempts == 0 && it.status == "success" && it.duration == 1000L
+        })
+        1 * devopsGitlabPipelineRepository.refreshDaily(1L, CREATED_AT)
+    }
+
+    def "Skip pipeline claimed by another instance"() {
+        given:
+        DevopsGitlabPipelineE devopsGitlabPipelineE = pipeline("running", true, 0)
+
+        when:
+        devopsGitlabPipelineService.reconcilePipelines()
+
+        then:
+        1 * devopsGitlabPipelineRepository.listNeedReconcile(5, 50) >> [devopsGitlabPipelineE]
+        1 * devopsGitlabPipelineRepository.claimReconcile(devopsGitlabPipelineE, _) >> false
+        0 * gitlabProjectRepository._
+        0 * devopsGitlabPipelineRepository.update(_)
+    }
+
+    def "Back off failed pipeline without blocking the rest"() {
+        given: '第一个pipeline已失败两次'
+        DevopsGitlabPipelineE failing = pipeline("running", true, 2)
+        DevopsGitlabPipelineE next = pipeline("running", true, 0)
+        next.setId(2L)
+        next.setPipelineId(11L)
+        long now = System.currentTimeMillis()
+
+        when:
+        devopsGitlabPipelineService.reconcilePipelines()
+
+        then: '领取时按尝试次数推迟下次重试时间'
+        1 * devopsGitlabPipelineRepository.listNeedReconcile(5, 50) >> [failing, next]
+        1 * devopsGitlabPipelineRepository.claimReconcile(failing, { it.time - now >= 240000L && it.time - now < 250000L }) >>
+                { DevopsGitlabPipelineE e, Date nextReconcileAt -> e.setReconcileAttempts(3); true }
+        1 * gitlabProjectRepository.getPipeline(100, 10, 1) >> { throw new RuntimeException("timeout") }
+
+        and: '失败的pipeline不更新，后面的pipeline继续补全'
+        1 * devopsGitlabPipelineRepository.claimReconcile(next, _) >> true
+        1 * gitlabProjectRepository.getPipeline(100, 11, 1) >> null
+        1 * gitlabProjectRepository.listJobs(100, 11, 1) >> []
+        1 * devopsGitlabPipelineRepository.replaceStages(11L, [])
+        1 * devopsGitlabPipelineRepository.update({ it.id == 2L && !it.needReconcile })
+        0 * devopsGitlabPipelineRepository.update(_)
+    }
+
+    private static PipelineWebHookDTO pipelineWebHook(String status, List<PipelineWebHookBuildDTO> builds) {
+        PipelineWebHookAttributesDTO attributes = new PipelineWebHookAttributesDTO()
+        attributes.setId(10L)
+        attributes.setStatus(status)
+        attributes.setSha("abc")
+        attributes.setRef("master")
+        attributes.setCreatedAt(CREATED_AT)
+        PipelineWebHookUserDTO user = new PipelineWebHookUserDTO()
+        user.setUsername("test")
+        PipelineWebHookDTO pipelineWebHookDTO = new PipelineWebHookDTO()
+        pipelineWebHookDTO.setToken("token")
+        pipelineWebHookDTO.setObjectAttributes(attributes)
+        pipelineWebHookDTO.setUser(user)
+        pipelineWebHookDTO.setBuilds(builds)
+        return pipelineWebHookDTO
+    }
+
+    private static PipelineWebHookBuildDTO build(Long id, String stage, String status, Long startedAt, Long finishedAt) {
+        PipelineWebHookBuildDTO build = new PipelineWebHookBuildDTO()
+        build.setId(id)
+        build.setName(stage)
+        build.setStage(stage)
+        build.setStatus(status)
+        build.setStartedAt(startedAt == null ? null : new Date(CREATED_AT.time + startedAt))
+        build.setFinishedAt(finishedAt == null ? null : new Date(CREATED_AT.time + finishedAt))
+        return build
+    }
+
+    private static JobWebHookDTO jobWebHook(Long pipelineId, Long buildId, String status) {
+        JobWebHookDTO jobWebHookDTO = new JobWebHookDTO()
+        jobWebHookDTO.setSha("abc")
+        jobWebHookDTO.setRef("master")
+        jobWebHookDTO.setPipelineId(pipelineId)
+        jobWebHookDTO.setBuildId(buildId)
+        jobWebHookDTO.setBuildName("unit")
+        jobWebHookDTO.setBuildStage("test")
+        jobWebHookDTO.setBuildStatus(status)
+        return jobWebHookDTO
+    }
+
+    private static DevopsGitlabPipelineE pipeline(String status, Boolean needReconcile, Integer reconcileAttempts) {
+        DevopsGitlabPipelineE devopsGitlabPipelineE = new DevopsGitlabPipelineE()
+        devopsGitlabPipelineE.setId(1L)
+        devopsGitlabPipelineE.setAppId(1L)
+        devopsGitlabPipelineE.setPipelineId(10L)
+        devopsGitlabPipelineE.setStatus(status)
+        devopsGitlabPipelineE.setPipelineCreationDate(CREATED_AT)
+        devopsGitlabPipelineE.setNeedReconcile(needReconcile)
+        devopsGitlabPipelineE.setReconcileAttempts(reconcileAttempts)
+        return devopsGitlabPipelineE
+    }
+
+    private static GitlabJobE job(Integer id, Long startedAt, Long finishedAt) {
+        GitlabJobE gitlabJobE = new GitlabJobE()
+        gitlabJobE.setId(id)
+        gitlabJobE.setName("build")
+        gitlabJobE.setStage("build")
+        gitlabJobE.setStatus(JobStatus.SUCCESS)
+        gitlabJobE.setStartedAt(new Date(CREATED_AT.time + startedAt))
+        gitlabJobE.setFinishedAt(new Date(CREATED_AT.time + finishedAt))
+        return gitlabJobE
+    }
+
+    private static CommitStatuseDO commitStatus(Integer id, String name) {
+        CommitStatuseDO commitStatuseDO = new CommitStatuseDO()
+        commitStatuseDO.setId(id)
+        commitStatuseDO.setName(name)
+        commitStatuseDO.setStatus("success")
+        return commitStatuseDO
+    }
+}
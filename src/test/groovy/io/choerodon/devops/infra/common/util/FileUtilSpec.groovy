@@ -0,0 +1,79 @@
+package io.choerodon.devops.infra.common.util
+
+import java.nio.file.Files
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream
+import org.apache.commons.io.FileUtils
+import org.springframework.mock.web.MockMultipartFile
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Unroll
+
+@Subject(FileUtil)
+class FileUtilSpec extends Specification {
+
+    private File workDir
+
+    def setup() {
+        workDir = Files.createTempDirectory("file-util-spec").toFile()
+    }
+
+    def cleanup() {
+        FileUtils.deleteQuietly(workDir)
+    }
+
+    @Unroll
+    def "Save #layout tgz unchanged and read the shallowest values.yaml"() {
+        given: '子chart的values.yaml排在前面'
+        ByteArrayOutputStream upload = new ByteArrayOutputStream()
+        upload.write(tgz([
+                "demo/charts/sub/values.yaml": "sub: true\n",
+                "demo/Chart.yaml"            : "name: demo\n",
+                "demo/values.yaml"           : "replicaCount: 1\n"]))
+        upload.write(trailer)
+        byte[] chart = upload.toByteArray()
+        MockMultipartFile file = new MockMultipartFile("file", "demo-0.1.0.tgz", "application/gzip", chart)
+
+        when:
+        Map<String, String> contents = FileUtil.saveTarGzAndReadFiles(workDir.getPath(), file, "values.yaml", "Chart.yaml")
+
+        then: '保存的包与上传的内容逐字节一致'
+        Files.readAllBytes(new File(workDir, "demo-0.1.0.tgz").toPath()) == chart
+        workDir.list() as List == ["demo-0.1.0.tgz"]
+
+        and: '同名文件取层级最浅的一个'
+        contents == ["values.yaml": "replicaCount: 1\n", "Chart.yaml": "name: demo\n"]
+
+        where:
+        layout         | trailer
+        "plain"        | new byte[0]
+        "padded"       | new byte[4096]
+        "multi-member" | tgz(["extra/README.md": "extra\n"])
+    }
+
+    def "Read files from saved tgz"() {
+        given:
+        File tarFile = new File(workDir, "demo.tgz")
+        tarFile.bytes = tgz(["demo/values.yaml": "a: 1\n", "demo/templates/values.yaml": "b: 2\n"])
+
+        expect: '包中不存在的文件不返回'
+        FileUtil.readTarGzFiles(tarFile, "values.yaml", "Chart.yaml") == ["values.yaml": "a: 1\n"]
+    }
+
+    private static byte[] tgz(Map<String, String> files) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+        new TarArchiveOutputStream(new GzipCompressorOutputStream(outputStream)).withCloseable { tarOut ->
+            files.each { String name, String content ->
+                byte[] data = content.getBytes("UTF-8")
+                TarArchiveEntry entry = new TarArchiveEntry(name)
+                entry.setSize(data.length)
+                tarOut.putArchiveEntry(entry)
+                tarOut.write(data)
+                tarOut.closeArchiveEntry()
+            }
+        }
+        return outputStream.toByteArray()
+    }
+}
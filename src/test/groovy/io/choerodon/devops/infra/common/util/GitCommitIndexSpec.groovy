@@ -0,0 +1,114 @@
+package io.choerodon.devops.infra.common.util
+
+import java.nio.file.Files
+
+import org.apache.commons.io.FileUtils
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.api.MergeCommand
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.lib.PersonIdent
+import org.eclipse.jgit.revwalk.RevCommit
+import spock.lang.Specification
+import spock.lang.Subject
+
+@Subject(GitCommitIndex)
+class GitCommitIndexSpec extends Specification {
+
+    private GitCommitIndex gitCommitIndex = new GitCommitIndex()
+    private File workDir
+    private Git git
+    private String repoPath
+    private long time = System.currentTimeMillis() - 3600 * 1000L
+
+    def setup() {
+        workDir = Files.createTempDirectory("git-commit-index-spec").toFile()
+        git = Git.init().setDirectory(workDir).call()
+        repoPath = new File(workDir, ".git").getPath()
+    }
+
+    def cleanup() {
+        git.close()
+        FileUtils.deleteQuietly(workDir)
+    }
+
+    def "Find the latest commit of each path across merge, rename and delete"() {
+        given: '初始提交三个文件'
+        RevCommit first = commit(["a.yaml": "a", "b.yaml": "b", "c.yaml": "c"], [])
+
+        and: '分支中修改b.yaml，master中修改a.yaml后合并分支'
+        git.checkout().setName("feature").setCreateBranch(true).call()
+        RevCommit featureB = commit(["b.yaml": "b2"], [])
+        git.checkout().setName("master").call()
+        RevCommit masterA = commit(["a.yaml": "a2"], [])
+        git.merge().include(git.getRepository().resolve("feature"))
+                .setFastForward(MergeCommand.FastForwardMode.NO_FF).setMessage("merge feature").call()
+        RevCommit merge = git.log().setMaxCount(1).call().iterator().next()
+        time = merge.getCommitTime() * 1000L
+
+        and: 'c.yaml重命名为d.yaml，再删除a.yaml'
+        RevCommit rename = commit(["d.yaml": "c"], ["c.yaml"])
+        RevCommit delete = commit([:], ["a.yaml"])
+
+        when:
+        Map<String, String> commits = gitCommitIndex.getLatestCommits(repoPath,
+                ["a.yaml", "b.yaml", "c.yaml", "d.yaml", "e.yaml"])
+
+        then: '合并提交不算作修改，分支中的修改是b.yaml最后一次修改'
+        merge.getParentCount() == 2
+        commits["b.yaml"] == featureB.getName()
+
+        and: '重命名后的文件和删除的文件都取最后一次改动它的提交，与git log -- path一致'
+        commits["d.yaml"] == rename.getName()
+        commits["c.yaml"] == rename.getName()
+        commits["a.yaml"] == delete.getName()
+
+        and: '历史中不存在的文件不返回'
+        !commits.containsKey("e.yaml")
+        gitCommitIndex.getLatestCommit(repoPath, "e.yaml") == ""
+        [first, masterA].every { !commits.containsValue(it.getName()) }
+    }
+
+    def "Recompute when HEAD moves"() {
+        given:
+        RevCommit first = commit(["a.yaml": "a", "b.yaml": "b"], [])
+
+        expect: '同一HEAD下重复查询结果一致'
+        gitCommitIndex.getLatestCommit(repoPath, "a.yaml") == first.getName()
+        gitCommitIndex.getLatestCommits(repoPath, ["a.yaml", "b.yaml"]) ==
+                ["a.yaml": first.getName(), "b.yaml": first.getName()]
+
+        when: 'HEAD移动到修改a.yaml的新提交'
+        RevCommit second = commit(["a.yaml": "a2"], [])
+
+        then: '缓存失效，a.yaml取新提交，b.yaml不变'
+        gitCommitIndex.getLatestCommits(repoPath, ["a.yaml", "b.yaml"]) ==
+                ["a.yaml": second.getName(), "b.yaml": first.getName()]
+
+        when: '仓库被删除后重新创建'
+        git.close()
+        FileUtils.deleteDirectory(workDir)
+        gitCommitIndex.invalidate(repoPath)
+        git = Git.init().setDirectory(workDir).call()
+        RevCommit recreated = commit(["a.yaml": "a3"], [])
+
+        then:
+        gitCommitIndex.getLatestCommit(repoPath, "a.yaml") == recreated.getName()
+        gitCommitIndex.getLatestCommit(repoPath, "b.yaml") == ""
+    }
+
+    def "Return nothing for a repository without commits"() {
+        expect:
+        gitCommitIndex.getLatestCommits(repoPath, ["a.yaml"]).isEmpty()
+    }
+
+    private RevCommit commit(Map<String, String> files, List<String> removed) {
+        files.each { name, content -> FileUtils.write(new File(workDir, name), content, "UTF-8") }
+        removed.each { new File(workDir, it).delete() }
+        git.add().addFilepattern(".").call()
+        removed.each { git.rm().addFilepattern(it).call() }
+        // 提交时间按顺序递增，保证遍历历史的顺序确定
+        time += 60 * 1000L
+        PersonIdent ident = new PersonIdent("test", "test@example.com", new Date(time), TimeZone.getDefault())
+        return git.commit().setMessage("commit " + time).setAuthor(ident).setCommitter(ident).call()
+    }
+}
@@ -0,0 +1,88 @@
+package io.choerodon.devops.infra.common.util
+
+import java.nio.file.Files
+
+import org.apache.commons.io.FileUtils
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.revwalk.RevCommit
+import spock.lang.Specification
+import spock.lang.Subject
+
+import io.choerodon.core.exception.CommonException
+
+@Subject(GitUtil)
+class GitUtilSpec extends Specification {
+
+    private GitUtil gitUtil = new GitUtil()
+    private File workDir
+    private Git remote
+    private File local
+
+    def setup() {
+        workDir = Files.createTempDirectory("git-util-spec").toFile()
+        remote = Git.init().setDirectory(new File(workDir, "remote")).call()
+        commit("first")
+        local = new File(workDir, "local")
+        Git.cloneRepository().setURI(remote.getRepository().getDirectory().toURI().toString())
+                .setDirectory(local).call().close()
+    }
+
+    def cleanup() {
+        remote.close()
+        FileUtils.deleteQuietly(workDir)
+    }
+
+    def "Fetch master and checkout the pushed commit"() {
+        given: '远程仓库有新的提交'
+        RevCommit second = commit("second")
+
+        when:
+        gitUtil.fetchAndCheckout(new File(local, ".git").getPath(), second.getName(), "key")
+
+        then: 'HEAD处于新提交，本地master移动到远程master'
+        Git git = Git.open(local)
+        git.getRepository().resolve(Constants.HEAD) == second.getId()
+        git.getRepository().resolve(Constants.R_HEADS + "master") == second.getId()
+        new File(local, "second.yaml").exists()
+
+        cleanup:
+        git?.close()
+    }
+
+    def "Throw when the commit can not be checked out"() {
+        when:
+        gitUtil.fetchAndCheckout(new File(local, ".git").getPath(), "0000000000000000000000000000000000000000", "key")
+
+        then:
+        CommonException e = thrown()
+        e.getCode() == "error.git.fetch"
+    }
+
+    def "Throw when the remote can not be fetched"() {
+        given: '远程仓库已不存在'
+        FileUtils.deleteDirectory(new File(workDir, "remote"))
+
+        when:
+        gitUtil.fetchAndCheckout(new File(local, ".git").getPath(), "master", "key")
+
+        then:
+        CommonException e = thrown()
+        e.getCode() == "error.git.fetch"
+    }
+
+    def "Throw when checkout fails"() {
+        when:
+        gitUtil.checkout(new File(local, ".git").getPath(), "not-exist")
+
+        then:
+        CommonException e = thrown()
+        e.getCode() == "error.git.checkout"
+    }
+
+    private RevCommit commit(String name) {
+        FileUtils.write(new File(remote.getRepository().getWorkTree(), name + ".yaml"), name, "UTF-8")
+        remote.add().addFilepattern(".").call()
+        return remote.commit().setMessage(name).call()
+    }
+}
@@ -0,0 +1,90 @@
+package io.choerodon.devops.infra.common.util
+
+import spock.lang.Specification
+import spock.lang.Subject
+
+import io.choerodon.core.exception.CommonException
+import io.choerodon.devops.domain.application.valueobject.HighlightMarker
+import io.choerodon.devops.domain.application.valueobject.ReplaceResult
+
+@Subject(ReplaceResultCache)
+class ReplaceResultCacheSpec extends Specification {
+
+    private ReplaceResultCache replaceResultCache = new ReplaceResultCache(10L, 30L)
+
+    def "Return an equal but independent copy on hit"() {
+        given: '第一次合并结果写入缓存'
+        int loads = 0
+        ReplaceResult first = replaceResultCache.get("a: 1\n", "a: 2\n", { loads++; result("a: 2\n") })
+
+        when: '调用方修改返回的结果后再次获取'
+        first.getNewLines().add(9)
+        first.getHighlightMarkers().get(0).setLine(9)
+        first.setYaml("changed")
+        ReplaceResult second = replaceResultCache.get("a: 1\n", "a: 2\n", { loads++; result("other") })
+
+        then: '命中缓存，内容与第一次计算的结果相同'
+        loads == 1
+        !second.is(first)
+        second.getYaml() == "a: 2\n"
+        second.getDeltaYaml() == "\na: 2\n"
+        second.getTotalLine() == 1
+        second.getNewLines() == [0]
+        second.getHighlightMarkers().collect { [it.getLine(), it.getEndLine(), it.getStartColumn(), it.getEndColumn()] } ==
+                [[0, 0, 3, 4]]
+
+        when: '再次获取'
+        ReplaceResult third = replaceResultCache.get("a: 1\n", "a: 2\n", { loads++; result("other") })
+
+        then: '每次返回的列表和标记互不共享'
+        loads == 1
+        !third.getNewLines().is(second.getNewLines())
+        !third.getHighlightMarkers().get(0).is(second.getHighlightMarkers().get(0))
+    }
+
+    def "Do not collide on different values"() {
+        given:
+        int loads = 0
+
+        when: '版本values和部署values拼接后相同，但分别不同'
+        ReplaceResult first = replaceResultCache.get("a: 1\n", "b: 2\n", { loads++; result("first") })
+        ReplaceResult second = replaceResultCache.get("a: 1\nb: 2\n", "", { loads++; result("second") })
+        ReplaceResult third = replaceResultCache.get("b: 2\n", "a: 1\n", { loads++; result("third") })
+
+        then: '分别计算'
+        loads == 3
+        first.getYaml() == "first"
+        second.getYaml() == "second"
+        third.getYaml() == "third"
+    }
+
+    def "Do not cache failures"() {
+        when: '合并失败'
+        replaceResultCache.get("a: 1\n", "a: [\n", { throw new CommonException("error.value.illegal") })
+
+        then: '抛出原异常'
+        CommonException e = thrown()
+        e.getCode() == "error.value.illegal"
+
+        when: '再次获取'
+        ReplaceResult replaceResult = replaceResultCache.get("a: 1\n", "a: [\n", { result("retry") })
+
+        then: '重新计算'
+        replaceResult.getYaml() == "retry"
+    }
+
+    private static ReplaceResult result(String yaml) {
+        HighlightMarker highlightMarker = new HighlightMarker()
+        highlightMarker.setLine(0)
+        highlightMarker.setEndLine(0)
+        highlightMarker.setStartColumn(3)
+        highlightMarker.setEndColumn(4)
+        ReplaceResult replaceResult = new ReplaceResult()
+        replaceResult.setYaml(yaml)
+        replaceResult.setDeltaYaml("\n" + yaml)
+        replaceResult.setTotalLine(1)
+        replaceResult.setNewLines([0])
+        replaceResult.setHighlightMarkers([highlightMarker])
+        return replaceResult
+    }
+}
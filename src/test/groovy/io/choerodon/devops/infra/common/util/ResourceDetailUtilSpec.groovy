@@ -0,0 +1,84 @@
+package io.choerodon.devops.infra.common.util
+
+import spock.lang.Specification
+import spock.lang.Subject
+
+import io.choerodon.core.exception.CommonException
+import io.choerodon.devops.infra.dataobject.DevopsEnvResourceDetailDO
+
+@Subject(ResourceDetailUtil)
+class ResourceDetailUtilSpec extends Specification {
+
+    private static final String POD = '{"kind":"Pod","metadata":{"name":"pod1","resourceVersion":"100",' +
+            '"managedFields":[{"manager":"kubelet"}],"labels":{"app":"demo"}},' +
+            '"status":{"phase":"Running","conditions":[{"type":"Ready","status":"True",' +
+            '"lastProbeTime":null,"lastHeartbeatTime":"2019-01-01T00:00:00Z"}]}}'
+
+    def "Round trip through gzip"() {
+        given: '包含中文和多字节字符的资源信息'
+        String message = POD.replace("demo", "演示-😀")
+
+        when:
+        byte[] data = ResourceDetailUtil.compress(message)
+
+        then: '解压后与原文一致'
+        data[0] == (byte) 0x1f
+        data[1] == (byte) 0x8b
+        ResourceDetailUtil.decompress(data) == message
+        ResourceDetailUtil.decompress(ResourceDetailUtil.compress("")) == ""
+    }
+
+    def "Fail on data that is not gzip"() {
+        when:
+        ResourceDetailUtil.decompress(POD.getBytes("UTF-8"))
+
+        then:
+        CommonException e = thrown()
+        e.getCode() == "error.resource.detail.decompress"
+    }
+
+    def "Encode and read message"() {
+        given:
+        DevopsEnvResourceDetailDO devopsEnvResourceDetailDO = new DevopsEnvResourceDetailDO()
+        devopsEnvResourceDetailDO.setMessage(POD)
+
+        when: '转为压缩存储格式'
+        ResourceDetailUtil.encode(devopsEnvResourceDetailDO)
+
+        then: 'message置空，读取时解压'
+        devopsEnvResourceDetailDO.getMessage() == null
+        devopsEnvResourceDetailDO.getMessageDigest() == ResourceDetailUtil.digest(POD)
+        ResourceDetailUtil.getMessage(devopsEnvResourceDetailDO) == POD
+
+        when: '未压缩的旧数据'
+        DevopsEnvResourceDetailDO legacy = new DevopsEnvResourceDetailDO()
+        legacy.setMessage(POD)
+
+        then: '直接读取message'
+        ResourceDetailUtil.getMessage(legacy) == POD
+    }
+
+    def "Ignore volatile fields and key order in digest"() {
+        given: '只有易变字段和字段顺序不同'
+        String changed = '{"status":{"conditions":[{"lastHeartbeatTime":"2019-01-02T00:00:00Z","status":"True",' +
+                '"type":"Ready","lastProbeTime":"2019-01-02T00:00:00Z"}],"phase":"Running"},' +
+                '"metadata":{"labels":{"app":"demo"},"name":"pod1","resourceVersion":"200"},"kind":"Pod"}'
+
+        expect: '摘要相同'
+        ResourceDetailUtil.digest(changed) == ResourceDetailUtil.digest(POD)
+    }
+
+    def "Keep meaningful fields in digest"() {
+        expect: '状态、标签变化时摘要不同'
+        ResourceDetailUtil.digest(POD.replace('"Running"', '"Pending"')) != ResourceDetailUtil.digest(POD)
+        ResourceDetailUtil.digest(POD.replace('"app":"demo"', '"app":"other"')) != ResourceDetailUtil.digest(POD)
+        ResourceDetailUtil.digest(POD.replace('"status":"True"', '"status":"False"')) != ResourceDetailUtil.digest(POD)
+    }
+
+    def "Digest raw text when message is not a json object"() {
+        expect:
+        ResourceDetailUtil.digest("not json") == ResourceDetailUtil.digest("not json")
+        ResourceDetailUtil.digest("not json") != ResourceDetailUtil.digest("not json ")
+        ResourceDetailUtil.digest("[1,2]") != ResourceDetailUtil.digest("[2,1]")
+    }
+}
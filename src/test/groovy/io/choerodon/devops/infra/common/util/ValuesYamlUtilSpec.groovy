@@ -0,0 +1,121 @@
+package io.choerodon.devops.infra.common.util
+
+import java.nio.file.Files
+
+import spock.lang.Requires
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * 期望结果按values_yaml脚本的规则编写，可用resources/values下的generate.py运行脚本重新生成；
+ * 安装了python3和ruamel.yaml时同时与脚本的输出直接比较，该比较通过前线上仍调用脚本合并(values.inProcess)
+ */
+class ValuesYamlUtilSpec extends Specification {
+
+    private static final List<String> CASES = ["update", "add", "list", "empty-map", "unchanged", "float", "comment"]
+    private static final String SPLIT = "------love----you------choerodon----"
+
+    @Unroll
+    def "Merge #name"() {
+        given: "准备数据"
+        String versionValue = read(name, "version.yaml")
+        String deployValue = read(name, "deploy.yaml")
+
+        when: "合并values"
+        def result = ValuesYamlUtil.merge(versionValue, deployValue)
+
+        then: "校验结果"
+        result.getYaml() == read(name, "expected.yaml")
+        result.getDeltaYaml() == "\n" + read(name, "delta.yaml")
+
+        where:
+        name << CASES
+    }
+
+    @Requires({ ValuesYamlUtilSpec.scriptAvailable() })
+    @Unroll
+    def "Merge the same as values_yaml script #index"() {
+        when: "合并values并运行脚本"
+        def result = ValuesYamlUtil.merge(versionValue, deployValue)
+        String[] output = runScript(versionValue + "\n---\n" + deployValue).split(SPLIT + "\n")
+
+        then: "与脚本输出一致"
+        result.getYaml() == output[0]
+        result.getDeltaYaml() == "\n" + output[1]
+
+        where:
+        [versionValue, deployValue] << CASES.collect { [read(it, "version.yaml"), read(it, "deploy.yaml")] } + [
+                ["text: |\n  a\nfold: >\n  b\nnum: 0755\nnone: 1\n", "text: |\n  c\nfold: >\n  d\nnum: 755\nnone: ~\nextra: >\n  e\n"],
+                ["rate: 0.5\nlimit: 1_000\n", "rate:\n  max: 1\nlimit: 1000\nflag: yes\n"]]
+        index << (0..CASES.size() + 1)
+    }
+
+    def "Mark updated values"() {
+        when: "合并values"
+        def result = ValuesYamlUtil.merge(read("update", "version.yaml"), read("update", "deploy.yaml"))
+
+        then: "修改的值高亮，没有新增行"
+        result.getNewLines().isEmpty()
+        result.getHighlightMarkers().collect { [it.getLine(), it.getStartColumn(), it.getEndColumn()] } ==
+                [[1, 14, 15], [5, 14, 26], [8, 10, 14], [12, 9, 14]]
+    }
+
+    def "Mark added values"() {
+        when: "合并values"
+        def result = ValuesYamlUtil.merge(read("add", "version.yaml"), read("add", "deploy.yaml"))
+
+        then: "新增的行标记，没有高亮"
+        result.getHighlightMarkers().isEmpty()
+        result.getNewLines().containsAll([3, 5, 8, 10, 11, 12, 13, 14])
+    }
+
+    def "Merge into flow mapping"() {
+        when: "合并values"
+        def result = ValuesYamlUtil.merge("flow: {x: 1, y: [1, 2]}\n", "flow:\n  x: 3\n  z:\n    w: 1\n")
+
+        then: "保持流式风格"
+        result.getYaml() == "flow: {x: 3, y: [1, 2], z: {w: 1}}\n"
+    }
+
+    def "Replace literal block"() {
+        when: "合并values"
+        def result = ValuesYamlUtil.merge("a:\n  text: |\n    x\n  n: 1\n", "a:\n  text: |\n    c\n    d\n")
+
+        then: "块标量的内容按key缩进"
+        result.getYaml() == "a:\n  text: |\n    c\n    d\n  n: 1\n"
+    }
+
+    def "Keep yes as string"() {
+        when: "合并values"
+        def result = ValuesYamlUtil.merge("enable: 'yes'\n", "enable: yes\n")
+
+        then: "按YAML 1.2识别，yes与'yes'相同"
+        result.getDeltaYaml() == "\n{}\n"
+    }
+
+    private static String read(String name, String file) {
+        return ValuesYamlUtilSpec.getResource("/values/" + name + "/" + file).getText("UTF-8")
+    }
+
+    static boolean scriptAvailable() {
+        try {
+            return ["python3", "-c", "import ruamel.yaml"].execute().waitFor() == 0
+        } catch (IOException e) {
+            return false
+        }
+    }
+
+    private static String runScript(String values) {
+        File file = Files.createTempFile("values", ".yaml").toFile()
+        try {
+            file.setText(values, "UTF-8")
+            String script = new File(ValuesYamlUtilSpec.getResource("/values/values_yaml.py").toURI()).getPath()
+            Process process = ["python3", script, file.getPath()].execute()
+            String output = process.getInputStream().getText("UTF-8")
+            process.waitFor()
+            return output
+        } finally {
+            file.delete()
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package io.choerodon.devops.infra.mapper
+
+import java.sql.Connection
+import java.sql.PreparedStatement
+import java.sql.ResultSet
+import javax.sql.DataSource
+
+import io.choerodon.devops.IntegrationTestConfiguration
+import org.apache.ibatis.mapping.BoundSql
+import org.apache.ibatis.mapping.ParameterMapping
+import org.apache.ibatis.session.SqlSessionFactory
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.context.annotation.Import
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT
+
+/**
+ * 造数据后校验DevopsEnvResourceMapper每条语句的执行计划，防止表结构或语句修改后索引失效
+ * 数据量可通过-DenvResource.planRows调整，如按百万行验证
+ */
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@Import(IntegrationTestConfiguration)
+class DevopsEnvResourceMapperSpec extends Specification {
+
+    // 造的数据id从此开始，避免和其他用例的数据冲突，最后删除
+    private static final long BASE_ID = 1000000L
+    private static final int ROWS = Integer.getInteger("envResource.planRows", 20000)
+    private static final int INSTANCES = Math.max(1, ROWS.intdiv(10))
+    private static final int ENVS = 20
+    private static final int BATCH_SIZE = 1000
+    private static final String[] KINDS = ["Pod", "Service", "Ingress", "ReplicaSet", "Deployment",
+                                           "Job", "ConfigMap", "Secret", "Certificate", "Endpoints"]
+
+    @Autowired
+    private DataSource dataSource
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory
+
+    // 造数据的连接来源，cleanupSpec中无法注入，在setup中记录
+    private static DataSource loadedDataSource
+
+    def setup() {
+        if (loadedDataSource == null) {
+            loadResources(dataSource)
+            loadedDataSource = dataSource
+        }
+    }
+
+    def cleanupSpec() {
+        if (loadedDataSource != null) {
+            withConnection(loadedDataSource) { Connection connection ->
+                connection.createStatement().execute("DELETE FROM devops_env_resource WHERE id >= " + BASE_ID)
+                connection.createStatement().execute("DELETE FROM devops_app_instance WHERE id >= " + BASE_ID)
+            }
+            loadedDataSource = null
+        }
+    }
+
+    @Unroll
+    def "Plan of #statement uses #indexes"() {
+        when: '查询执行计划'
+        String plan = explain(statement, params)
+
+        then: '资源表走索引'
+        !plan.contains("DEVOPS_ENV_RESOURCE.tableScan")
+        indexes.any { plan.contains(it) }
+
+        where:
+        statement                                     | params                                                                                         || indexes
+        "listJobs"                                    | [commandId: BASE_ID]                                                                           || ["ENV_RESOURCE_IDX_COMMAND_KIND"]
+        "queryResource"                               | [instanceId: BASE_ID, commandId: null, envId: null, kind: "Pod", name: "plan-resource-0"]      || ["ENV_RESOURCE_IDX_INSTANCE_KIND_NAME"]
+        "queryResource"                               | [instanceId: null, commandId: null, envId: BASE_ID, kind: "Pod", name: "plan-resource-0"]      || ["ENV_RESOURCE_IDX_ENV_KIND_NAME"]
+        "queryResource"                               | [instanceId: BASE_ID, commandId: BASE_ID + 1, envId: null, kind: "Job", name: "plan-resource-5"] || ["ENV_RESOURCE_IDX_INSTANCE_KIND_NAME", "ENV_RESOURCE_IDX_COMMAND_KIND"]
+        "listByEnvAndType"                            | [envId: BASE_ID, type: "Service"]                                                              || ["ENV_RESOURCE_IDX_INSTANCE_KIND_NAME"]
+        "listByEnvIdAndKindAndNames"                  | [envId: BASE_ID, kind: "Ingress", names: ["plan-resource-2"]]                                  || ["ENV_RESOURCE_IDX_ENV_KIND_NAME"]
+        "queryLatestJob"                              | [kind: "Job", name: "plan-resource-5"]                                                         || ["ENV_RESOURCE_IDX_KIND_NAME"]
+        "getResourceDetailByNameAndTypeAndInstanceId" | [instanceId: BASE_ID, name: "plan-resource-0", kind: "Pod"]                                   || ["ENV_RESOURCE_IDX_INSTANCE_KIND_NAME"]
+        "deleteByIds"                                 | [ids: [BASE_ID, BASE_ID + 1]]                                                                  || ["PRIMARY_KEY"]
+    }
+
+    private static void loadResources(DataSource dataSource) {
+        withConnection(dataSource) { Connection connection ->
+            PreparedStatement instance = connection.prepareStatement(
+                    "INSERT INTO devops_app_instance (id, code, env_id, status) VALUES (?, ?, ?, 'running')")
+            for (int i = 0; i < INSTANCES; i++) {
+                instance.setLong(1, BASE_ID + i)
+                instance.setString(2, "plan-instance-" + i)
+                instance.setLong(3, BASE_ID + i % ENVS)
+                instance.addBatch()
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    instance.executeBatch()
+                }
+            }
+            instance.executeBatch()
+
+            PreparedStatement resource = connection.prepareStatement(
+                    "INSERT INTO devops_env_resource (id, app_instance_id, env_id, command_id, kind, name, resource_detail_id) " +
+                            "VALUES (?, ?, ?, ?, ?, ?, ?)")
+            for (int i = 0; i < ROWS; i++) {
+                int instanceIndex = i % INSTANCES
+                resource.setLong(1, BASE_ID + i)
+                resource.setLong(2, BASE_ID + instanceIndex)
+                resource.setLong(3, BASE_ID + instanceIndex % ENVS)
+                resource.setLong(4, BASE_ID + i.intdiv(5))
+                resource.setString(5, KINDS[i % KINDS.length])
+                resource.setString(6, "plan-resource-" + i)
+                resource.setLong(7, BASE_ID + i)
+                resource.addBatch()
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    resource.executeBatch()
+                }
+            }
+            resource.executeBatch()
+            connection.createStatement().execute("ANALYZE")
+        }
+    }
+
+    private String explain(String statement, Map<String, Object> params) {
+        BoundSql boundSql = sqlSessionFactory.getConfiguration()
+                .getMappedStatement(DevopsEnvResourceMapper.class.getName() + "." + statement)
+                .getBoundSql(params)
+        String plan = null
+        withConnection(dataSource) { Connection connection ->
+            PreparedStatement explain = connection.prepareStatement("EXPLAIN " + boundSql.getSql())
+            boundSql.getParameterMappings().eachWithIndex { ParameterMapping mapping, int i ->
+                String property = mapping.getProperty()
+                explain.setObject(i + 1, boundSql.hasAdditionalParameter(property)
+                        ? boundSql.getAdditionalParameter(property) : params.get(property))
+            }
+            ResultSet resultSet = explain.executeQuery()
+            resultSet.next()
+            plan = resultSet.getString(1)
+        }
+        return plan
+    }
+
+    private static void withConnection(DataSource dataSource, Closure closure) {
+        Connection connection = dataSource.getConnection()
+        try {
+            closure.call(connection)
+        } finally {
+            connection.close()
+        }
+    }
+}
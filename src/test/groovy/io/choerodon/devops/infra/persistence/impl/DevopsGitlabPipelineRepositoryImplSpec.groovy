@@ -0,0 +1,152 @@
+package io.choerodon.devops.infra.persistence.impl
+
+import org.springframework.dao.DuplicateKeyException
+import spock.lang.Specification
+import spock.lang.Subject
+
+import io.choerodon.devops.domain.application.entity.DevopsGitlabPipelineE
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDO
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineDailyDO
+import io.choerodon.devops.infra.dataobject.DevopsGitlabPipelineStageDO
+import io.choerodon.devops.infra.mapper.DevopsGitlabPipelineDailyMapper
+import io.choerodon.devops.infra.mapper.DevopsGitlabPipelineMapper
+import io.choerodon.devops.infra.mapper.DevopsGitlabPipelineStageMapper
+
+@Subject(DevopsGitlabPipelineRepositoryImpl)
+class DevopsGitlabPipelineRepositoryImplSpec extends Specification {
+
+    private DevopsGitlabPipelineMapper devopsGitlabPipelineMapper = Mock(DevopsGitlabPipelineMapper)
+    private DevopsGitlabPipelineStageMapper devopsGitlabPipelineStageMapper = Mock(DevopsGitlabPipelineStageMapper)
+    private DevopsGitlabPipelineDailyMapper devopsGitlabPipelineDailyMapper = Mock(DevopsGitlabPipelineDailyMapper)
+    private DevopsGitlabPipelineRepositoryImpl devopsGitlabPipelineRepository = new DevopsGitlabPipelineRepositoryImpl()
+
+    def setup() {
+        devopsGitlabPipelineRepository.devopsGitlabPipelineMapper = devopsGitlabPipelineMapper
+        devopsGitlabPipelineRepository.devopsGitlabPipelineStageMapper = devopsGitlabPipelineStageMapper
+        devopsGitlabPipelineRepository.devopsGitlabPipelineDailyMapper = devopsGitlabPipelineDailyMapper
+    }
+
+    def "Insert the stage of a new job"() {
+        given:
+        DevopsGitlabPipelineStageDO stageDO = stage("running", 0L)
+
+        when:
+        devopsGitlabPipelineRepository.saveStage(stageDO)
+
+        then:
+        1 * devopsGitlabPipelineStageMapper.selectOne({ it.pipelineId == 10L && it.jobId == 2L }) >> null
+        1 * devopsGitlabPipelineStageMapper.insert(stageDO) >> 1
+        0 * devopsGitlabPipelineStageMapper.updateByPrimaryKeySelective(_)
+    }
+
+    def "Update the stage only when it changed"() {
+        given: '已保存的job'
+        DevopsGitlabPipelineStageDO saved = stage("running", 0L)
+        saved.setId(7L)
+        saved.setObjectVersionNumber(3L)
+
+        when: 'job状态变化'
+        devopsGitlabPipelineRepository.saveStage(stage("success", 0L))
+
+        then: '按已保存的版本更新该行'
+        1 * devopsGitlabPipelineStageMapper.selectOne(_) >> saved
+        1 * devopsGitlabPipelineStageMapper.updateByPrimaryKeySelective({
+            it.id == 7L && it.objectVersionNumber == 3L && it.status == "success"
+        }) >> 1
+        0 * devopsGitlabPipelineStageMapper.insert(_)
+
+        when: '重复的job事件'
+        devopsGitlabPipelineRepository.saveStage(stage("running", 0L))
+
+        then: '不写入'
+        1 * devopsGitlabPipelineStageMapper.selectOne(_) >> saved
+        0 * devopsGitlabPipelineStageMapper.insert(_)
+        0 * devopsGitlabPipelineStageMapper.updateByPrimaryKeySelective(_)
+    }
+
+    def "Update when the stage is inserted concurrently"() {
+        given: 'pipeline事件同时写入了该job'
+        DevopsGitlabPipelineStageDO saved = stage("running", null)
+        saved.setId(7L)
+        saved.setObjectVersionNumber(1L)
+
+        when:
+        devopsGitlabPipelineRepository.saveStage(stage("success", 0L))
+
+        then:
+        2 * devopsGitlabPipelineStageMapper.selectOne(_) >>> [null, saved]
+        1 * devopsGitlabPipelineStageMapper.insert(_) >> { throw new DuplicateKeyException("duplicate") }
+        1 * devopsGitlabPipelineStageMapper.updateByPrimaryKeySelective({ it.id == 7L && it.status == "success" }) >> 1
+    }
+
+    def "Claim reconcile with the listed attempts"() {
+        given:
+        DevopsGitlabPipelineE devopsGitlabPipelineE = new DevopsGitlabPipelineE()
+        devopsGitlabPipelineE.setId(1L)
+        devopsGitlabPipelineE.setReconcileAttempts(2)
+        Date nextReconcileAt = new Date()
+
+        when:
+        boolean claimed = devopsGitlabPipelineRepository.claimReconcile(devopsGitlabPipelineE, nextReconcileAt)
+
+        then: '领取成功后尝试次数加一'
+        1 * devopsGitlabPipelineMapper.claimReconcile(1L, 2, nextReconcileAt) >> 1
+        claimed
+        devopsGitlabPipelineE.getReconcileAttempts() == 3
+
+        when: '其他实例已领取'
+        claimed = devopsGitlabPipelineRepository.claimReconcile(devopsGitlabPipelineE, nextReconcileAt)
+
+        then:
+        1 * devopsGitlabPipelineMapper.claimReconcile(1L, 3, nextReconcileAt) >> 0
+        !claimed
+        devopsGitlabPipelineE.getReconcileAttempts() == 3
+    }
+
+    def "Lock the daily row before reading pipelines"() {
+        given:
+        Date date = new GregorianCalendar(2019, Calendar.FEBRUARY, 26, 15, 30).getTime()
+        java.sql.Date statDate = java.sql.Date.valueOf("2019-02-26")
+        DevopsGitlabPipelineDailyDO locked = new DevopsGitlabPipelineDailyDO()
+        locked.setId(3L)
+        locked.setObjectVersionNumber(4L)
+
+        when:
+        devopsGitlabPipelineRepository.refreshDaily(1L, date)
+
+        then: '先插入并锁住当天的汇总行'
+        1 * devopsGitlabPipelineDailyMapper.insertIfAbsent(1L, statDate, _)
+
+        then:
+        1 * devopsGitlabPipelineDailyMapper.selectForUpdate(1L, statDate) >> locked
+
+        then: '再读取当天执行结束的pipeline，其中一个无法计算执行时长'
+        1 * devopsGitlabPipelineMapper.listFinishedDuration(1L, _, _, _) >>
+                [pipeline("success", 3000L), pipeline("failed", 1000L), pipeline("success", 2000L), pipeline("failed", null)]
+
+        then: '按锁住的行更新汇总，无法计算的只计入数量'
+        1 * devopsGitlabPipelineDailyMapper.updateByPrimaryKeySelective({
+            it.id == 3L && it.objectVersionNumber == 4L && it.pipelineCount == 4L && it.successCount == 2L &&
+                    it.failedCount == 2L && it.totalDuration == 6000L && it.p50Duration == 2000L && it.p90Duration == 3000L
+        }) >> 1
+        0 * devopsGitlabPipelineDailyMapper.insert(_)
+    }
+
+    private static DevopsGitlabPipelineDO pipeline(String status, Long duration) {
+        DevopsGitlabPipelineDO devopsGitlabPipelineDO = new DevopsGitlabPipelineDO()
+        devopsGitlabPipelineDO.setStatus(status)
+        devopsGitlabPipelineDO.setDuration(duration)
+        return devopsGitlabPipelineDO
+    }
+
+    private static DevopsGitlabPipelineStageDO stage(String status, Long startedAt) {
+        DevopsGitlabPipelineStageDO stageDO = new DevopsGitlabPipelineStageDO()
+        stageDO.setPipelineId(10L)
+        stageDO.setJobId(2L)
+        stageDO.setName("unit")
+        stageDO.setStage("test")
+        stageDO.setStatus(status)
+        stageDO.setStartedAt(startedAt == null ? null : new Date(startedAt))
+        return stageDO
+    }
+}
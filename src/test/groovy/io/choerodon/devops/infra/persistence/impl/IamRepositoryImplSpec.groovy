@@ -1,9 +1,16 @@
 package io.choerodon.devops.infra.persistence.impl
 
 import io.choerodon.asgard.saga.feign.SagaClient
+import io.choerodon.core.domain.Page
+import io.choerodon.core.exception.CommonException
 import io.choerodon.devops.IntegrationTestConfiguration
+import io.choerodon.devops.api.dto.iam.ProjectWithRoleDTO
+import io.choerodon.devops.api.dto.iam.RoleDTO
+import io.choerodon.devops.domain.application.entity.ProjectE
 import io.choerodon.devops.domain.application.repository.IamRepository
 import io.choerodon.devops.infra.dataobject.iam.OrganizationDO
+import io.choerodon.devops.infra.dataobject.iam.ProjectDO
+import io.choerodon.devops.infra.dataobject.iam.UserDO
 import io.choerodon.devops.infra.feign.IamServiceClient
 import org.mockito.Mockito
 import org.springframework.beans.factory.annotation.Autowired
@@ -40,4 +47,180 @@ class IamRepositoryImplSpec extends Specification {
         then:
         newOrganization.getId()==1L
     }
+
+    def "QueryIamProject from cache"() {
+        given:
+        iamRepository = new IamRepositoryImpl(iamServiceClient)
+        ProjectDO projectDO = new ProjectDO()
+        projectDO.setId(1L)
+        Mockito.doReturn(new ResponseEntity<>(projectDO, HttpStatus.OK)).when(iamServiceClient).queryIamProject(1L)
+
+        when:
+        iamRepository.queryIamProject(1L)
+        def projectE = iamRepository.queryIamProject(1L)
+
+        then: '只调用一次iam'
+        projectE.getId() == 1L
+        Mockito.verify(iamServiceClient, Mockito.times(1)).queryIamProject(1L)
+
+        when: '项目更新后清除缓存'
+        iamRepository.evictProjectCache(1L)
+        iamRepository.queryIamProject(1L)
+
+        then:
+        Mockito.verify(iamServiceClient, Mockito.times(2)).queryIamProject(1L)
+    }
+
+    def "QueryOrganizationById not found"() {
+        given:
+        iamRepository = new IamRepositoryImpl(iamServiceClient)
+        Mockito.doReturn(new ResponseEntity<>(HttpStatus.NOT_FOUND)).when(iamServiceClient).queryOrganizationById(2L)
+
+        when:
+        iamRepository.queryOrganizationById(2L)
+
+        then:
+        thrown(CommonException)
+
+        when: '查询不到的组织短时间内不再调用iam'
+        iamRepository.queryOrganizationById(2L)
+
+        then:
+        thrown(CommonException)
+        Mockito.verify(iamServiceClient, Mockito.times(1)).queryOrganizationById(2L)
+    }
+
+    def "QueryIamProject does not cache fallback errors"() {
+        given: '第一次iam熔断降级返回500，第二次正常返回'
+        iamRepository = new IamRepositoryImpl(iamServiceClient)
+        ProjectDO projectDO = new ProjectDO()
+        projectDO.setId(3L)
+        Mockito.doReturn(new ResponseEntity<>("error.project.get", HttpStatus.INTERNAL_SERVER_ERROR))
+                .doReturn(new ResponseEntity<>(projectDO, HttpStatus.OK))
+                .when(iamServiceClient).queryIamProject(3L)
+
+        when:
+        iamRepository.queryIamProject(3L)
+
+        then:
+        thrown(CommonException)
+
+        when: '再次查询'
+        def projectE = iamRepository.queryIamProject(3L)
+
+        then: '仍然调用iam并返回项目'
+        projectE.getId() == 3L
+        Mockito.verify(iamServiceClient, Mockito.times(2)).queryIamProject(3L)
+    }
+
+    def "ListUsersByIds does not cache fallback errors"() {
+        given: '第一次iam熔断降级返回500，第二次正常返回'
+        iamRepository = new IamRepositoryImpl(iamServiceClient)
+        UserDO userDO = new UserDO()
+        userDO.setId(4L)
+        Mockito.doReturn(new ResponseEntity<>("error.user.get.byIds", HttpStatus.INTERNAL_SERVER_ERROR))
+                .doReturn(new ResponseEntity<>([userDO], HttpStatus.OK))
+                .when(iamServiceClient).listUsersByIds([4L] as Long[])
+
+        when:
+        iamRepository.listUsersByIds([4L])
+
+        then:
+        thrown(CommonException)
+
+        when: '再次查询'
+        def users = iamRepository.listUsersByIds([4L])
+
+        then: '仍然调用iam并返回用户'
+        users*.getId() == [4L]
+        Mockito.verify(iamServiceClient, Mockito.times(2)).listUsersByIds([4L] as Long[])
+    }
+
+    def "ListUsersByIds only queries uncached users"() {
+        given:
+        iamRepository = new IamRepositoryImpl(iamServiceClient)
+        UserDO user1 = new UserDO()
+        user1.setId(1L)
+        UserDO user2 = new UserDO()
+        user2.setId(2L)
+        Mockito.doReturn(new ResponseEntity<>([user1], HttpStatus.OK)).when(iamServiceClient).listUsersByIds([1L] as Long[])
+        Mockito.doReturn(new ResponseEntity<>([user2], HttpStatus.OK)).when(iamServiceClient).listUsersByIds([2L, 3L] as Long[])
+        iamRepository.listUsersByIds([1L])
+
+        when:
+        def users = iamRepository.listUsersByIds([2L, 1L, 3L, 2L])
+
+        then: '按传入顺序返回，去重，iam中不存在的用户不返回'
+        users*.getId() == [2L, 1L]
+        Mockito.verify(iamServiceClient, Mockito.times(1)).listUsersByIds([2L, 3L] as Long[])
+
+        when: '全部命中缓存时不调用iam'
+        users = iamRepository.listUsersByIds([3L, 1L, 2L])
+
+        then:
+        users*.getId() == [1L, 2L]
+        Mockito.verify(iamServiceClient, Mockito.times(2)).listUsersByIds(Mockito.any())
+    }
+
+    def "QueryUserIdByEmail from cache"() {
+        given:
+        iamRepository = new IamRepositoryImpl(iamServiceClient)
+        UserDO userDO = new UserDO()
+        userDO.setId(1L)
+        Page<UserDO> userPage = new Page<>()
+        userPage.setContent([userDO])
+        Page<UserDO> emptyPage = new Page<>()
+        emptyPage.setContent([])
+        Mockito.doReturn(new ResponseEntity<>(userPage, HttpStatus.OK))
+                .when(iamServiceClient).listUsersByEmail(1L, 0, 10, "test@hand-china.com")
+        Mockito.doReturn(new ResponseEntity<>(emptyPage, HttpStatus.OK))
+                .when(iamServiceClient).listUsersByEmail(1L, 0, 10, "none@hand-china.com")
+
+        when:
+        iamRepository.queryUserIdByEmail(1L, "test@hand-china.com")
+        def userId = iamRepository.queryUserIdByEmail(1L, "test@hand-china.com")
+        iamRepository.queryUserIdByEmail(1L, "none@hand-china.com")
+        def missingUserId = iamRepository.queryUserIdByEmail(1L, "none@hand-china.com")
+
+        then: '查询到和查询不到的邮箱都只调用一次iam'
+        userId == 1L
+        missingUserId == null
+        Mockito.verify(iamServiceClient, Mockito.times(1)).listUsersByEmail(1L, 0, 10, "test@hand-china.com")
+        Mockito.verify(iamServiceClient, Mockito.times(1)).listUsersByEmail(1L, 0, 10, "none@hand-china.com")
+    }
+
+    def "IsProjectOwner from role snapshot"() {
+        given:
+        iamRepository = new IamRepositoryImpl(iamServiceClient)
+        RoleDTO roleDTO = new RoleDTO()
+        roleDTO.setCode("role/project/default/project-owner")
+        ProjectWithRoleDTO projectWithRoleDTO = new ProjectWithRoleDTO()
+        projectWithRoleDTO.setName("pro")
+        projectWithRoleDTO.setRoles([roleDTO])
+        Page<ProjectWithRoleDTO> projectWithRoleDTOPage = new Page<>()
+        projectWithRoleDTOPage.setContent([projectWithRoleDTO])
+        projectWithRoleDTOPage.setTotalPages(1)
+        Mockito.doReturn(new ResponseEntity<>(projectWithRoleDTOPage, HttpStatus.OK))
+                .when(iamServiceClient).listProjectWithRole(1L, 0, 200)
+        ProjectE pro = new ProjectE()
+        pro.setName("pro")
+        ProjectE other = new ProjectE()
+        other.setName("other")
+
+        when:
+        def isOwner = iamRepository.isProjectOwner(1L, pro)
+        def isOtherOwner = iamRepository.isProjectOwner(1L, other)
+
+        then: '同一用户只查询一次iam'
+        isOwner
+        !isOtherOwner
+        Mockito.verify(iamServiceClient, Mockito.times(1)).listProjectWithRole(1L, 0, 200)
+
+        when: '角色变更后清除缓存'
+        iamRepository.evictUserRoleCache(1L)
+        iamRepository.isProjectOwner(1L, pro)
+
+        then:
+        Mockito.verify(iamServiceClient, Mockito.times(2)).listProjectWithRole(1L, 0, 200)
+    }
 }
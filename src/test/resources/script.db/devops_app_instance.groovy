@@ -35,4 +35,10 @@ databaseChangeLog(logicalFilePath: 'dba/devops_app_instance.groovy') {
                 }
             }
 
+    changeSet(author: 'younger', id: '2019-01-28-add-index') {
+        createIndex(indexName: "app_instance_idx_env_id", tableName: "devops_app_instance") {
+            column(name: "env_id")
+        }
+    }
+
 }
\ No newline at end of file
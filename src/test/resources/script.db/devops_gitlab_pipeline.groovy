@@ -25,4 +25,39 @@ databaseChangeLog(logicalFilePath: 'dba/devops_gitlab_pipeline.groovyovy') {
             column(name: "last_update_date", type: "DATETIME", defaultValueComputed: "CURRENT_TIMESTAMP")
         }
     }
-}
\ No newline at end of file
+
+    changeSet(author: 'younger', id: '2019-02-25-add-column') {
+        addColumn(tableName: 'devops_gitlab_pipeline') {
+            column(name: 'need_reconcile', type: 'TINYINT UNSIGNED', defaultValue: "0", remarks: '阶段信息是否需要从gitlab补全', afterColumn: 'pipeline_creation_date')
+        }
+        createIndex(indexName: "idx_need_reconcile", tableName: "devops_gitlab_pipeline") {
+            column(name: "need_reconcile")
+        }
+    }
+
+    changeSet(author: 'younger', id: '2019-02-26-add-column') {
+        addColumn(tableName: 'devops_gitlab_pipeline') {
+            column(name: 'duration', type: 'BIGINT UNSIGNED', remarks: 'pipeline执行时长(毫秒)，执行结束后写入', afterColumn: 'need_reconcile')
+        }
+        createIndex(indexName: "idx_app_id_creation_date", tableName: "devops_gitlab_pipeline") {
+            column(name: "app_id")
+            column(name: "pipeline_creation_date")
+        }
+        createIndex(indexName: "idx_duration", tableName: "devops_gitlab_pipeline") {
+            column(name: "duration")
+        }
+    }
+
+    changeSet(author: 'younger', id: '2019-02-27-add-column') {
+        addColumn(tableName: 'devops_gitlab_pipeline') {
+            column(name: 'reconcile_attempts', type: 'INT UNSIGNED', defaultValue: "0", remarks: '从gitlab补全的尝试次数', afterColumn: 'duration')
+            column(name: 'next_reconcile_at', type: 'DATETIME', remarks: '下次从gitlab补全的时间', afterColumn: 'reconcile_attempts')
+        }
+    }
+
+    changeSet(author: 'younger', id: '2019-02-28-add-column') {
+        addColumn(tableName: 'devops_gitlab_pipeline') {
+            column(name: 'duration_missing', type: 'TINYINT UNSIGNED', defaultValue: "0", remarks: '执行时长是否无法计算，如没有阶段信息', afterColumn: 'duration')
+        }
+    }
+}
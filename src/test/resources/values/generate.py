@@ -0,0 +1,47 @@
+"""
+Regenerate expected.yaml and delta.yaml of every case in this directory by
+running values_yaml.py on version.yaml and deploy.yaml, the same way the
+service used to call it.
+
+    pip install -r requirements.txt
+    python3 generate.py
+"""
+import os
+import subprocess
+import sys
+import tempfile
+
+SPLIT = '------love----you------choerodon----'
+BASE = os.path.dirname(os.path.abspath(__file__))
+
+
+def read(path):
+    with open(path) as f:
+        return f.read()
+
+
+def write(path, content):
+    with open(path, 'w') as f:
+        f.write(content)
+
+
+def main():
+    for name in sorted(os.listdir(BASE)):
+        case = os.path.join(BASE, name)
+        if not os.path.isfile(os.path.join(case, 'version.yaml')):
+            continue
+        values = read(os.path.join(case, 'version.yaml')) + '\n---\n' + read(os.path.join(case, 'deploy.yaml'))
+        with tempfile.NamedTemporaryFile('w', suffix='.yaml', delete=False) as f:
+            f.write(values)
+        try:
+            output = subprocess.check_output([sys.executable, os.path.join(BASE, 'values_yaml.py'), f.name])
+        finally:
+            os.remove(f.name)
+        parts = output.decode('utf-8').split(SPLIT + '\n')
+        write(os.path.join(case, 'expected.yaml'), parts[0])
+        write(os.path.join(case, 'delta.yaml'), parts[1])
+        print(name)
+
+
+if __name__ == '__main__':
+    main()